@@ -0,0 +1,62 @@
+package com.sizphoto.shiningproject.engine;
+
+/**
+ * Fixed time step of the game loop. The time elapsed between frames is accumulated and spent in updates of a fixed
+ * interval, what is left is the fraction of an interval frames interpolate by. A frame runs a bounded number of
+ * updates: catching up with every update missed would make the frame even longer, so the time beyond them is
+ * dropped and the game slows down instead.
+ */
+final class FixedTimeStep {
+
+    private final float interval;
+
+    private final int maxUpdates;
+
+    private float accumulator;
+
+    private int droppedUpdates;
+
+    /**
+     * @param interval   seconds of game time each update advances
+     * @param maxUpdates updates a frame runs at most
+     */
+    FixedTimeStep(final float interval, final int maxUpdates) {
+        this.interval = interval;
+        this.maxUpdates = maxUpdates;
+    }
+
+    /**
+     * Adds the time elapsed since the previous frame.
+     *
+     * @return the updates to run in this frame
+     */
+    int advance(final float elapsedTime) {
+        accumulator += elapsedTime;
+        droppedUpdates = 0;
+        int updates = 0;
+        while (accumulator >= interval) {
+            if (updates == maxUpdates) {
+                droppedUpdates = (int) (accumulator / interval);
+                accumulator %= interval;
+                break;
+            }
+            accumulator -= interval;
+            updates++;
+        }
+        return updates;
+    }
+
+    /**
+     * @return the updates the last frame could not run, whose time was dropped
+     */
+    int getDroppedUpdates() {
+        return droppedUpdates;
+    }
+
+    /**
+     * @return the fraction of an interval accumulated and not spent yet, from 0 to 1
+     */
+    float getAlpha() {
+        return accumulator / interval;
+    }
+}
@@ -1,10 +1,17 @@
 package com.sizphoto.shiningproject.engine;
 
+import com.sizphoto.shiningproject.engine.graph.Camera;
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.joml.Vector2d;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
+import static com.sizphoto.shiningproject.utils.Constant.MAX_CATCH_UP_UPDATES;
 import static com.sizphoto.shiningproject.utils.Constant.TARGET_FPS;
 import static com.sizphoto.shiningproject.utils.Constant.TARGET_UPS;
 
@@ -21,16 +28,38 @@ public class GameEngine implements Runnable {
 
     private final MouseInput mouseInput;
 
+    private final PerformanceMonitor performanceMonitor;
+
+    private final Camera camera;
+
+    private final boolean updateThread;
+
     private final Thread gameLoopThread;
 
+    private long startTime;
+
+    private boolean firstFrame;
+
+    // Snapshots of the scene published by the update thread to the game loop thread
+    private TripleBuffer<SceneSnapshot> snapshots;
+
+    // Snapshots of the input published by the game loop thread to the update thread
+    private TripleBuffer<InputSnapshot> inputSnapshots;
+
+    private volatile boolean running;
+
     @Autowired
     public GameEngine(final Window window, final Timer timer, final IGameLogic gameLogic,
-                      final MouseInput mouseInput) {
+                      final MouseInput mouseInput, final PerformanceMonitor performanceMonitor, final Camera camera,
+                      @Value("${engine.updateThread}") final boolean updateThread) {
         gameLoopThread = new Thread(this, "GAME_LOOP_THREAD");
         this.window = window;
         this.timer = timer;
         this.gameLogic = gameLogic;
         this.mouseInput = mouseInput;
+        this.performanceMonitor = performanceMonitor;
+        this.camera = camera;
+        this.updateThread = updateThread;
     }
 
     public void start() {
@@ -46,8 +75,13 @@ public class GameEngine implements Runnable {
     @Override
     public void run() {
         try {
+            startTime = System.nanoTime();
             init();
-            gameLoop();
+            if (updateThread) {
+                threadedGameLoop();
+            } else {
+                gameLoop();
+            }
         } catch (final Exception exception) {
             LOGGER.error("run() - Game engine run failed: {}", exception.getMessage());
             exception.printStackTrace();
@@ -61,25 +95,36 @@ public class GameEngine implements Runnable {
         timer.init();
         mouseInput.init(window);
         gameLogic.init(window);
+        performanceMonitor.init();
     }
 
     private void gameLoop() {
-        float elapsedTime;
-        float accumulator = 0f;
         final float interval = 1f / TARGET_UPS;
+        final FixedTimeStep timeStep = new FixedTimeStep(interval, MAX_CATCH_UP_UPDATES);
+        final Scene scene = gameLogic.getScene();
+        final InputSnapshot inputSnapshot = new InputSnapshot();
+        final Vector2d previousCursorPos = new Vector2d(-1, -1);
+        firstFrame = true;
 
         while (!this.window.windowShouldClose()) {
-            elapsedTime = timer.getElapsedTime();
-            accumulator += elapsedTime;
+            final int updates = timeStep.advance(timer.getElapsedTime());
+            if (timeStep.getDroppedUpdates() > 0) {
+                LOGGER.debug("gameLoop() - Dropping {} updates behind", timeStep.getDroppedUpdates());
+            }
 
-            input();
+            input(inputSnapshot);
+            inputSnapshot.measureDisplacement(previousCursorPos);
 
-            while (accumulator >= interval) {
-                update(interval);
-                accumulator -= interval;
+            for (int i = 0; i < updates; i++) {
+                storePreviousTransforms(scene);
+                update(interval, inputSnapshot);
             }
 
-            render();
+            // Frames between two updates are drawn where the items would be at that time
+            final float alpha = timeStep.getAlpha();
+            interpolateRenderTransforms(scene, alpha);
+            render(alpha);
+            frameRendered();
 
             if (!window.isVsync()) {
                 sync();
@@ -87,6 +132,97 @@ public class GameEngine implements Runnable {
         }
     }
 
+    /**
+     * Runs the fixed step updates on their own thread while this one polls the input and renders, so a slow update
+     * does not hold back the frames and the other way round. After each update the scene is captured into a
+     * {@link TripleBuffer}, every frame draws the latest snapshot published, interpolated by the time elapsed since
+     * it was captured. Input callbacks and GL calls stay on this thread, the update must not call GL. The input is
+     * captured on every frame and handed to the update thread the same way, in another {@link TripleBuffer}.
+     */
+    private void threadedGameLoop() throws InterruptedException {
+        final Scene scene = gameLogic.getScene();
+        snapshots = new TripleBuffer<>(SceneSnapshot::new);
+        // The first frame draws the initial state
+        snapshots.getBack().capture(scene, camera);
+        snapshots.publish();
+        inputSnapshots = new TripleBuffer<>(InputSnapshot::new);
+        inputSnapshots.getBack().capture(window, mouseInput);
+        inputSnapshots.publish();
+        final long intervalNanos = 1_000_000_000L / TARGET_UPS;
+        firstFrame = true;
+
+        running = true;
+        final Thread updateLoopThread = new Thread(this::updateLoop, "UPDATE_LOOP_THREAD");
+        updateLoopThread.start();
+        try {
+            while (running && !this.window.windowShouldClose()) {
+                timer.getElapsedTime();
+
+                input(inputSnapshots.getBack());
+                inputSnapshots.publish();
+
+                snapshots.acquire();
+                final SceneSnapshot snapshot = snapshots.getFront();
+                final float alpha = Math.min(1f,
+                        (float) (System.nanoTime() - snapshot.getCaptureTime()) / intervalNanos);
+                snapshot.apply(scene, camera, alpha);
+
+                render(alpha);
+                frameRendered();
+
+                if (!window.isVsync()) {
+                    sync();
+                }
+            }
+        } finally {
+            running = false;
+            updateLoopThread.join();
+        }
+    }
+
+    private void updateLoop() {
+        final Scene scene = gameLogic.getScene();
+        final float interval = 1f / TARGET_UPS;
+        final long intervalNanos = 1_000_000_000L / TARGET_UPS;
+        // Only used by this thread, the cursor position of the input read by the previous update
+        final Vector2d previousCursorPos = new Vector2d(-1, -1);
+        long nextUpdate = System.nanoTime();
+        try {
+            while (running) {
+                // The latest input captured, or the one read by the previous update if no frame was rendered since
+                inputSnapshots.acquire();
+                final InputSnapshot inputSnapshot = inputSnapshots.getFront();
+                inputSnapshot.measureDisplacement(previousCursorPos);
+                storePreviousTransforms(scene);
+                update(interval, inputSnapshot);
+                snapshots.getBack().capture(scene, camera);
+                snapshots.publish();
+
+                nextUpdate += intervalNanos;
+                final long now = System.nanoTime();
+                if (now < nextUpdate) {
+                    Thread.sleep((nextUpdate - now) / 1_000_000, (int) ((nextUpdate - now) % 1_000_000));
+                } else if (now - nextUpdate > MAX_CATCH_UP_UPDATES * intervalNanos) {
+                    // Too far behind, do not try to catch up with every update missed
+                    nextUpdate = now;
+                }
+            }
+        } catch (final Exception exception) {
+            LOGGER.error("updateLoop() - Update failed", exception);
+            running = false;
+        }
+    }
+
+    private void frameRendered() {
+        performanceMonitor.frameRendered();
+        if (firstFrame) {
+            // Time to first frame, compare runs with and without the mesh cache to see the loading cost
+            LOGGER.info("gameLoop() - First frame rendered {} ms after start",
+                    (System.nanoTime() - startTime) / 1_000_000);
+            firstFrame = false;
+        }
+    }
+
     private void sync() {
         final float loopSlot = 1f / TARGET_FPS;
         final double endTime = timer.getLastLoopTime() + loopSlot;
@@ -99,22 +235,51 @@ public class GameEngine implements Runnable {
         }
     }
 
-    private void input() {
-        mouseInput.input(window);
+    /**
+     * Runs the input handling of the game and captures the input for the next updates, on the game loop thread.
+     */
+    private void input(final InputSnapshot inputSnapshot) {
         gameLogic.input(window, mouseInput);
+        inputSnapshot.capture(window, mouseInput);
     }
 
-    private void update(final float interval) {
-        gameLogic.update(interval, mouseInput);
+    private void update(final float interval, final InputSnapshot inputSnapshot) {
+        gameLogic.update(interval, inputSnapshot);
+        performanceMonitor.updated();
     }
 
     private void cleanup() {
-        window.release();
+        // The game deletes its GL objects while the context still exists
         gameLogic.cleanup();
+        window.release();
+    }
+
+    private void storePreviousTransforms(final Scene scene) {
+        camera.storePreviousTransform();
+        if (scene == null) {
+            return;
+        }
+        final List<GameItem> gameItems = scene.getGameItems();
+        final int numItems = gameItems.size();
+        for (int i = 0; i < numItems; i++) {
+            gameItems.get(i).storePreviousTransform();
+        }
+    }
+
+    private void interpolateRenderTransforms(final Scene scene, final float alpha) {
+        camera.interpolateRenderTransform(alpha);
+        if (scene == null) {
+            return;
+        }
+        final List<GameItem> gameItems = scene.getGameItems();
+        final int numItems = gameItems.size();
+        for (int i = 0; i < numItems; i++) {
+            gameItems.get(i).interpolateRenderTransform(alpha);
+        }
     }
 
-    private void render() {
-        gameLogic.render(this.window);
+    private void render(final float alpha) {
+        gameLogic.render(this.window, alpha);
         window.update();
     }
 }
\ No newline at end of file
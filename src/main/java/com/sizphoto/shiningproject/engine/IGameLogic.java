@@ -4,11 +4,35 @@ public interface IGameLogic {
 
     void init(Window window) throws Exception;
 
+    /**
+     * Reacts to the input on the render thread, on every frame. Only state the renderer owns may be changed here,
+     * the scene is changed by {@link #update(float, InputSnapshot)}.
+     */
     void input(Window window, MouseInput mouseInput);
 
-    void update(float interval, MouseInput mouseInput);
+    /**
+     * @param input the keyboard and mouse state captured by the render thread, the only input the update may read
+     */
+    void update(float interval, InputSnapshot input);
 
     void render(Window window);
 
+    /**
+     * Renders a frame drawn between two updates, the scene and the camera are already interpolated.
+     *
+     * @param alpha fraction of the update interval elapsed since the last update, from 0 to 1
+     */
+    default void render(final Window window, final float alpha) {
+        render(window);
+    }
+
     void cleanup();
+
+    /**
+     * @return the scene moved by {@link #update(float, InputSnapshot)}, it is published to the renderer when the update
+     * runs on its own thread. Games without one return null and only the camera is published.
+     */
+    default Scene getScene() {
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.sizphoto.shiningproject.engine;
+
+import org.joml.Vector2d;
+import org.joml.Vector2f;
+
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_LAST;
+
+/**
+ * Copy of the keyboard and mouse state the game logic reads while it updates. GLFW delivers input on the render
+ * thread, which captures it into a snapshot on every frame, so the update never reads state the callbacks are
+ * writing. When the update runs on its own thread the snapshots are handed over through a {@link TripleBuffer} and
+ * the update reads the latest one. The cursor is copied as a position rather than a displacement, so frames whose
+ * snapshot no update read lose no movement.
+ */
+public class InputSnapshot {
+
+    private final boolean[] keys;
+
+    private final Vector2d cursorPos;
+
+    private final Vector2f displVec;
+
+    private boolean inWindow;
+
+    private boolean leftButtonPressed;
+
+    private boolean rightButtonPressed;
+
+    InputSnapshot() {
+        keys = new boolean[GLFW_KEY_LAST + 1];
+        cursorPos = new Vector2d();
+        displVec = new Vector2f();
+    }
+
+    /**
+     * Copies the live input, on the render thread.
+     */
+    void capture(final Window window, final MouseInput mouseInput) {
+        window.copyKeys(keys);
+        captureMouse(mouseInput);
+    }
+
+    void captureMouse(final MouseInput mouseInput) {
+        cursorPos.set(mouseInput.getCurrentPos());
+        inWindow = mouseInput.isInWindow();
+        leftButtonPressed = mouseInput.isLeftButtonPressed();
+        rightButtonPressed = mouseInput.isRightButtonPressed();
+    }
+
+    /**
+     * Sets the displacement of the cursor since the previous position, on the thread that updates.
+     *
+     * @param previousPos position of the cursor in the snapshot read before, replaced by the one of this snapshot
+     */
+    void measureDisplacement(final Vector2d previousPos) {
+        displVec.x = 0;
+        displVec.y = 0;
+        if (previousPos.x > 0 && previousPos.y > 0 && inWindow) {
+            // Moving the mouse sideways rotates around the vertical axis
+            displVec.y = (float) (cursorPos.x - previousPos.x);
+            displVec.x = (float) (cursorPos.y - previousPos.y);
+        }
+        previousPos.set(cursorPos);
+    }
+
+    /**
+     * @param keyCode GLFW key code
+     */
+    public boolean isKeyPressed(final int keyCode) {
+        return keyCode >= 0 && keyCode < keys.length && keys[keyCode];
+    }
+
+    /**
+     * @return the movement of the cursor since the previous update, x holding the vertical movement and y the
+     * horizontal one
+     */
+    public Vector2f getDisplVec() {
+        return displVec;
+    }
+
+    public boolean isLeftButtonPressed() {
+        return leftButtonPressed;
+    }
+
+    public boolean isRightButtonPressed() {
+        return rightButtonPressed;
+    }
+}
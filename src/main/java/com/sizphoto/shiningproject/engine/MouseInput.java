@@ -1,20 +1,19 @@
 package com.sizphoto.shiningproject.engine;
 
 import org.joml.Vector2d;
-import org.joml.Vector2f;
 import org.springframework.stereotype.Component;
 
 import static org.lwjgl.glfw.GLFW.*;
 
+/**
+ * Mouse state written by the GLFW callbacks, on the render thread. The game logic reads it from the
+ * {@link InputSnapshot} given to its update.
+ */
 @Component
 public class MouseInput {
 
-    private final Vector2d previousPos;
-
     private final Vector2d currentPos;
 
-    private final Vector2f displVec;
-
     private boolean inWindow = false;
 
     private boolean leftButtonPressed = false;
@@ -22,45 +21,34 @@ public class MouseInput {
     private boolean rightButtonPressed = false;
 
     MouseInput() {
-        previousPos = new Vector2d(-1, -1);
         currentPos = new Vector2d(0, 0);
-        displVec = new Vector2f();
     }
 
     void init(final Window window) {
         final long winHandle = window.getWindowHandle();
-        glfwSetCursorPosCallback(winHandle, (windowHandle, xpos, ypos) -> {
-            currentPos.x = xpos;
-            currentPos.y = ypos;
-        });
-        glfwSetCursorEnterCallback(winHandle, (windowHandle, entered) -> inWindow = entered);
+        glfwSetCursorPosCallback(winHandle, (windowHandle, xpos, ypos) -> cursorMoved(xpos, ypos));
+        glfwSetCursorEnterCallback(winHandle, (windowHandle, entered) -> cursorEntered(entered));
         glfwSetMouseButtonCallback(winHandle, (windowHandle, button, action, mode) -> {
             leftButtonPressed = button == GLFW_MOUSE_BUTTON_1 && action == GLFW_PRESS;
             rightButtonPressed = button == GLFW_MOUSE_BUTTON_2 && action == GLFW_PRESS;
         });
     }
 
-    public Vector2f getDisplVec() {
-        return displVec;
+    void cursorMoved(final double x, final double y) {
+        currentPos.x = x;
+        currentPos.y = y;
+    }
+
+    void cursorEntered(final boolean entered) {
+        inWindow = entered;
+    }
+
+    Vector2d getCurrentPos() {
+        return currentPos;
     }
 
-    void input(final Window window) {
-        displVec.x = 0;
-        displVec.y = 0;
-        if (previousPos.x > 0 && previousPos.y > 0 && inWindow) {
-            final double deltax = currentPos.x - previousPos.x;
-            final double deltay = currentPos.y - previousPos.y;
-            final boolean rotateX = deltax != 0;
-            final boolean rotateY = deltay != 0;
-            if (rotateX) {
-                displVec.y = (float) deltax;
-            }
-            if (rotateY) {
-                displVec.x = (float) deltay;
-            }
-        }
-        previousPos.x = currentPos.x;
-        previousPos.y = currentPos.y;
+    boolean isInWindow() {
+        return inWindow;
     }
 
     public boolean isLeftButtonPressed() {
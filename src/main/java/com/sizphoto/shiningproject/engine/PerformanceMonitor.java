@@ -0,0 +1,183 @@
+package com.sizphoto.shiningproject.engine;
+
+import org.springframework.stereotype.Component;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Frame and update timings of the game loop. Frame times are kept in a ring buffer of primitives, and in order in a
+ * second array for the percentiles, and the rates and garbage collector figures are sampled once per second, so
+ * recording and reading them allocates nothing.
+ */
+@Component
+public class PerformanceMonitor {
+
+    static final int NUM_SAMPLES = 240;
+
+    private static final long SECOND_NANOS = 1_000_000_000L;
+
+    // Frame times in milliseconds, the next sample overwrites the oldest one
+    private final float[] frameTimes = new float[NUM_SAMPLES];
+
+    // The same frame times in ascending order, kept sorted as samples come and go
+    private final float[] sortedFrameTimes = new float[NUM_SAMPLES];
+
+    private GarbageCollectorMXBean[] collectors;
+
+    private int nextSample;
+
+    private int numSamples;
+
+    private long lastFrameTime;
+
+    private long secondStart;
+
+    private int frames;
+
+    // Written by the thread that updates, which may not be the one rendering
+    private volatile long updates;
+
+    private long secondStartUpdates;
+
+    private int framesPerSecond;
+
+    private int updatesPerSecond;
+
+    private long gcCount;
+
+    private long gcTime;
+
+    private long gcTimePerSecond;
+
+    void init() {
+        init(System.nanoTime());
+    }
+
+    void init(final long now) {
+        collectors = ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+        lastFrameTime = now;
+        secondStart = now;
+        sampleCollectors();
+    }
+
+    void updated() {
+        // A single thread updates, so the increment needs no atomic operation
+        updates++;
+    }
+
+    void frameRendered() {
+        frameRendered(System.nanoTime());
+    }
+
+    /**
+     * @param now the time the frame was rendered at, in the nanoseconds of {@link System#nanoTime()}
+     */
+    void frameRendered(final long now) {
+        final float frameTime = (now - lastFrameTime) / 1_000_000f;
+        if (numSamples == NUM_SAMPLES) {
+            removeSorted(frameTimes[nextSample]);
+            numSamples--;
+        }
+        insertSorted(frameTime);
+        numSamples++;
+        frameTimes[nextSample] = frameTime;
+        nextSample = (nextSample + 1) % NUM_SAMPLES;
+        lastFrameTime = now;
+
+        frames++;
+        if (now - secondStart >= SECOND_NANOS) {
+            final float seconds = (float) (now - secondStart) / SECOND_NANOS;
+            framesPerSecond = Math.round(frames / seconds);
+            final long totalUpdates = updates;
+            updatesPerSecond = Math.round((totalUpdates - secondStartUpdates) / seconds);
+            frames = 0;
+            secondStartUpdates = totalUpdates;
+            secondStart = now;
+            final long previousGcTime = gcTime;
+            sampleCollectors();
+            gcTimePerSecond = gcTime - previousGcTime;
+        }
+    }
+
+    /**
+     * @return the number of frame times recorded, up to {@link #NUM_SAMPLES}
+     */
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    /**
+     * @param age 0 for the last frame, 1 for the one before and so on
+     * @return the frame time in milliseconds
+     */
+    public float getFrameTime(final int age) {
+        return frameTimes[(nextSample - 1 - age + 2 * NUM_SAMPLES) % NUM_SAMPLES];
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the frame time in milliseconds under which that percentage of the recorded frames were
+     */
+    public float getFrameTimePercentile(final int percentile) {
+        if (numSamples == 0) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(percentile / 100.0 * numSamples) - 1;
+        return sortedFrameTimes[Math.max(0, Math.min(numSamples - 1, rank))];
+    }
+
+    public int getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    public int getUpdatesPerSecond() {
+        return updatesPerSecond;
+    }
+
+    /**
+     * @return the collections run since the start of the virtual machine, as of the last second
+     */
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * @return the milliseconds spent collecting since the start of the virtual machine, as of the last second
+     */
+    public long getGcTime() {
+        return gcTime;
+    }
+
+    /**
+     * @return the milliseconds spent collecting during the last second
+     */
+    public long getGcTimePerSecond() {
+        return gcTimePerSecond;
+    }
+
+    private void removeSorted(final float frameTime) {
+        final int index = Arrays.binarySearch(sortedFrameTimes, 0, numSamples, frameTime);
+        System.arraycopy(sortedFrameTimes, index + 1, sortedFrameTimes, index, numSamples - index - 1);
+    }
+
+    private void insertSorted(final float frameTime) {
+        final int found = Arrays.binarySearch(sortedFrameTimes, 0, numSamples, frameTime);
+        final int index = found >= 0 ? found : -found - 1;
+        System.arraycopy(sortedFrameTimes, index, sortedFrameTimes, index + 1, numSamples - index);
+        sortedFrameTimes[index] = frameTime;
+    }
+
+    private void sampleCollectors() {
+        long count = 0;
+        long time = 0;
+        for (final GarbageCollectorMXBean collector : collectors) {
+            // Collectors report -1 when the figure is not available
+            count += Math.max(0, collector.getCollectionCount());
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        gcCount = count;
+        gcTime = time;
+    }
+}
@@ -0,0 +1,179 @@
+package com.sizphoto.shiningproject.engine;
+
+import com.sizphoto.shiningproject.engine.graph.DynamicMesh;
+import com.sizphoto.shiningproject.engine.graph.GlStateCache;
+import com.sizphoto.shiningproject.engine.graph.IFont;
+import com.sizphoto.shiningproject.engine.graph.Material;
+import com.sizphoto.shiningproject.engine.graph.Renderer;
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import com.sizphoto.shiningproject.engine.items.TextItem;
+import org.joml.Vector4f;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import static com.sizphoto.shiningproject.utils.Constant.TARGET_FPS;
+import static com.sizphoto.shiningproject.utils.Constant.TARGET_UPS;
+
+/**
+ * HUD with the figures of the game loop and the renderer: a graph of the last frame times, their percentiles, the
+ * update rate, the draw calls and the garbage collections. It is rebuilt on every frame it is shown without
+ * allocating, the lines are formatted into a reused builder and the graph is rewritten in place.
+ */
+public class PerformanceOverlay implements IHud {
+
+    private static final int NUM_LINES = 5;
+
+    private static final float MARGIN = 10f;
+
+    private static final float BAR_WIDTH = 1f;
+
+    private static final float PIXELS_PER_MS = 2f;
+
+    private static final float GRAPH_HEIGHT = 100f;
+
+    private static final float Z_POS = 0.0f;
+
+    // A bar per sample and the line of the target frame time
+    private static final int NUM_QUADS = PerformanceMonitor.NUM_SAMPLES + 1;
+
+    private final PerformanceMonitor monitor;
+
+    private final Renderer renderer;
+
+    private final IFont font;
+
+    private final TextItem[] lines;
+
+    private final DynamicMesh graphMesh;
+
+    private final GameItem graphItem;
+
+    private final GameItem[] gameItems;
+
+    private final StringBuilder text;
+
+    /**
+     * @param font font of the text, it is left to its owner
+     */
+    public PerformanceOverlay(final IFont font, final PerformanceMonitor monitor, final Renderer renderer) {
+        this.monitor = monitor;
+        this.renderer = renderer;
+        this.font = font;
+        this.text = new StringBuilder(64);
+
+        gameItems = new GameItem[NUM_LINES + 1];
+        lines = new TextItem[NUM_LINES];
+        for (int i = 0; i < NUM_LINES; i++) {
+            lines[i] = new TextItem("", font);
+            lines[i].getMesh().getMaterial().setAmbientColour(new Vector4f(1, 1, 0.4f, 1));
+            gameItems[i] = lines[i];
+        }
+
+        graphMesh = new DynamicMesh();
+        final Material material = new Material();
+        material.setAmbientColour(new Vector4f(0.3f, 1, 0.3f, 0.8f));
+        graphMesh.setMaterial(material);
+        final ShortBuffer indices = graphMesh.beginIndices(NUM_QUADS * 6);
+        for (int i = 0; i < NUM_QUADS; i++) {
+            final int first = i * 4;
+            indices.put((short) first).put((short) (first + 1)).put((short) (first + 2));
+            indices.put((short) first).put((short) (first + 2)).put((short) (first + 3));
+        }
+        graphMesh.endIndices();
+        graphMesh.setIndexCount(NUM_QUADS * 6);
+        graphItem = new GameItem(graphMesh);
+        gameItems[NUM_LINES] = graphItem;
+    }
+
+    @Override
+    public GameItem[] getGameItems() {
+        return gameItems;
+    }
+
+    /**
+     * Rewrites the figures with those of the last frame, to be called before rendering the overlay.
+     */
+    public void update() {
+        final float lineHeight = font.getHeight();
+
+        text.setLength(0);
+        text.append("FPS ").append(monitor.getFramesPerSecond()).append("  frame ");
+        appendMillis(monitor.getNumSamples() > 0 ? monitor.getFrameTime(0) : 0);
+        setLine(0);
+
+        text.setLength(0);
+        text.append("p50 ");
+        appendMillis(monitor.getFrameTimePercentile(50));
+        text.append("  p95 ");
+        appendMillis(monitor.getFrameTimePercentile(95));
+        text.append("  p99 ");
+        appendMillis(monitor.getFrameTimePercentile(99));
+        setLine(1);
+
+        text.setLength(0);
+        text.append("UPS ").append(monitor.getUpdatesPerSecond()).append(" / ").append(TARGET_UPS);
+        setLine(2);
+
+        text.setLength(0);
+        text.append("Draw calls ").append(GlStateCache.getLastFrameDrawCalls())
+                .append(" (HUD ").append(renderer.getHudDrawCalls()).append(")  triangles ")
+                .append(GlStateCache.getLastFrameTriangles());
+        setLine(3);
+
+        text.setLength(0);
+        text.append("GC ").append(monitor.getGcCount()).append(" (").append(monitor.getGcTime())
+                .append(" ms)  last second ").append(monitor.getGcTimePerSecond()).append(" ms");
+        setLine(4);
+
+        for (int i = 0; i < NUM_LINES; i++) {
+            lines[i].setPosition(MARGIN, MARGIN + i * lineHeight, 0);
+        }
+        graphItem.setPosition(MARGIN, MARGIN + NUM_LINES * lineHeight, 0);
+        buildGraph();
+    }
+
+    @Override
+    public void cleanup() {
+        for (final TextItem line : lines) {
+            line.cleanup();
+        }
+        graphMesh.cleanUp();
+    }
+
+    private void setLine(final int line) {
+        lines[line].setText(text);
+    }
+
+    /**
+     * Appends milliseconds with one decimal, without the allocations of the formatter.
+     */
+    private void appendMillis(final float millis) {
+        final int tenths = Math.round(millis * 10);
+        text.append(tenths / 10).append('.').append(tenths % 10).append(" ms");
+    }
+
+    private void buildGraph() {
+        final FloatBuffer vertices = graphMesh.beginVertices(NUM_QUADS * 4);
+        // Oldest frame on the left, samples not recorded yet are empty bars
+        final int numSamples = monitor.getNumSamples();
+        for (int i = 0; i < PerformanceMonitor.NUM_SAMPLES; i++) {
+            final int age = PerformanceMonitor.NUM_SAMPLES - 1 - i;
+            final float height = age < numSamples
+                    ? Math.min(GRAPH_HEIGHT, monitor.getFrameTime(age) * PIXELS_PER_MS)
+                    : 0;
+            putQuad(vertices, i * BAR_WIDTH, GRAPH_HEIGHT - height, (i + 1) * BAR_WIDTH, GRAPH_HEIGHT);
+        }
+        final float targetY = GRAPH_HEIGHT - Math.min(GRAPH_HEIGHT, 1000f / TARGET_FPS * PIXELS_PER_MS);
+        putQuad(vertices, 0, targetY, PerformanceMonitor.NUM_SAMPLES * BAR_WIDTH, targetY + 1);
+        graphMesh.endVertices();
+    }
+
+    private static void putQuad(final FloatBuffer vertices, final float left, final float top, final float right,
+                                final float bottom) {
+        vertices.put(left).put(top).put(Z_POS).put(0).put(0);
+        vertices.put(left).put(bottom).put(Z_POS).put(0).put(0);
+        vertices.put(right).put(bottom).put(Z_POS).put(0).put(0);
+        vertices.put(right).put(top).put(Z_POS).put(0).put(0);
+    }
+}
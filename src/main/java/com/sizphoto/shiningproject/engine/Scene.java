@@ -3,35 +3,64 @@ package com.sizphoto.shiningproject.engine;
 import com.sizphoto.shiningproject.engine.graph.Mesh;
 import com.sizphoto.shiningproject.engine.items.GameItem;
 import com.sizphoto.shiningproject.engine.items.SkyBox;
+import com.sizphoto.shiningproject.engine.items.Terrain;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 public class Scene {
 
-    private Map<Mesh, List<GameItem>> meshMap;
+    // Draw order is decided by the renderer's sort keys, the scene only keeps the items
+    private final List<GameItem> gameItems;
+
+    private final Set<Mesh> meshes;
+
+    private Terrain terrain;
 
     private SkyBox skyBox;
 
     private SceneLight sceneLight;
 
+    // State drawn by the renderer, the live state unless the update thread publishes snapshots of it
+    private List<GameItem> renderGameItems;
+
+    private SceneLight renderSceneLight;
+
     public Scene() {
-        meshMap = new HashMap<>();
+        gameItems = new ArrayList<>();
+        meshes = new LinkedHashSet<>();
     }
 
-    public Map<Mesh, List<GameItem>> getGameMeshes() {
-        return meshMap;
+    public List<GameItem> getGameItems() {
+        return gameItems;
+    }
+
+    public Set<Mesh> getMeshes() {
+        return meshes;
     }
 
     public void setGameItems(final GameItem[] gameItems) {
         int numGameItems = gameItems != null ? gameItems.length : 0;
         for (int i = 0; i < numGameItems; i++) {
             GameItem gameItem = gameItems[i];
-            Mesh mesh = gameItem.getMesh();
-            List<GameItem> list = meshMap.computeIfAbsent(mesh, k -> new ArrayList<>());
-            list.add(gameItem);
+            this.gameItems.add(gameItem);
+            meshes.add(gameItem.getMesh());
+        }
+    }
+
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    /**
+     * Sets the terrain, whose chunks are selected by the renderer on each frame.
+     */
+    public void setTerrain(final Terrain terrain) {
+        this.terrain = terrain;
+        for (GameItem gameItem : terrain.getGameItems()) {
+            meshes.add(gameItem.getMesh());
         }
     }
 
@@ -51,4 +80,17 @@ public class Scene {
         this.sceneLight = sceneLight;
     }
 
+    public List<GameItem> getRenderGameItems() {
+        return renderGameItems != null ? renderGameItems : gameItems;
+    }
+
+    public SceneLight getRenderSceneLight() {
+        return renderSceneLight != null ? renderSceneLight : sceneLight;
+    }
+
+    void setRenderState(final List<GameItem> renderGameItems, final SceneLight renderSceneLight) {
+        this.renderGameItems = renderGameItems;
+        this.renderSceneLight = renderSceneLight;
+    }
+
 }
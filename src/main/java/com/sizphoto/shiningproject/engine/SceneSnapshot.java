@@ -0,0 +1,208 @@
+package com.sizphoto.shiningproject.engine;
+
+import com.sizphoto.shiningproject.engine.graph.Camera;
+import com.sizphoto.shiningproject.engine.graph.lights.DirectionalLight;
+import com.sizphoto.shiningproject.engine.graph.lights.PointLight;
+import com.sizphoto.shiningproject.engine.graph.lights.SpotLight;
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copy of the state of a scene the renderer reads: the items and their transforms before and after the update, the
+ * camera and the lights. It is captured by the update thread and applied on the render thread, so the renderer never
+ * reads state the game logic is writing. The buffers and lights are reused, capturing only allocates when the scene
+ * has more items than ever before or its number of point or spot lights changes.
+ */
+class SceneSnapshot {
+
+    // Position, rotation and scale
+    private static final int TRANSFORM_SIZE = 7;
+
+    // Previous and live transforms of an item
+    private static final int ITEM_SIZE = 2 * TRANSFORM_SIZE;
+
+    // Previous and live position and rotation of the camera
+    private static final int CAMERA_SIZE = 12;
+
+    private final List<GameItem> gameItems;
+
+    private final float[] cameraTransform;
+
+    private final SceneLight sceneLight;
+
+    private final DirectionalLight directionalLight;
+
+    // Copies of the point and spot lights, the arrays are as long as the live ones since the renderer reads them whole
+    private PointLight[] pointLights;
+
+    private SpotLight[] spotLights;
+
+    private float[] transforms;
+
+    private boolean hasScene;
+
+    private boolean hasSceneLight;
+
+    private long captureTime;
+
+    SceneSnapshot() {
+        gameItems = new ArrayList<>();
+        cameraTransform = new float[CAMERA_SIZE];
+        transforms = new float[0];
+        sceneLight = new SceneLight();
+        sceneLight.setAmbientLight(new Vector3f());
+        sceneLight.setSkyBoxLight(new Vector3f());
+        directionalLight = new DirectionalLight(new Vector3f(), new Vector3f(), 0);
+        pointLights = new PointLight[0];
+        spotLights = new SpotLight[0];
+    }
+
+    /**
+     * Copies the live state, on the thread that updates it.
+     *
+     * @param scene the scene, or null if the game logic has none
+     */
+    void capture(final Scene scene, final Camera camera) {
+        captureTime = System.nanoTime();
+        putVectors(cameraTransform, 0, camera.getPreviousPosition(), camera.getPreviousRotation());
+        putVectors(cameraTransform, CAMERA_SIZE / 2, camera.getPosition(), camera.getRotation());
+
+        hasScene = scene != null;
+        gameItems.clear();
+        if (!hasScene) {
+            return;
+        }
+        final List<GameItem> liveItems = scene.getGameItems();
+        final int numItems = liveItems.size();
+        if (transforms.length < numItems * ITEM_SIZE) {
+            transforms = new float[numItems * ITEM_SIZE];
+        }
+        for (int i = 0; i < numItems; i++) {
+            final GameItem gameItem = liveItems.get(i);
+            final int offset = i * ITEM_SIZE;
+            putVectors(transforms, offset, gameItem.getPreviousPosition(), gameItem.getPreviousRotation());
+            transforms[offset + 6] = gameItem.getPreviousScale();
+            putVectors(transforms, offset + TRANSFORM_SIZE, gameItem.getPosition(), gameItem.getRotation());
+            transforms[offset + TRANSFORM_SIZE + 6] = gameItem.getScale();
+            gameItems.add(gameItem);
+        }
+        captureLights(scene.getSceneLight());
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the snapshot was captured, right after its update
+     */
+    long getCaptureTime() {
+        return captureTime;
+    }
+
+    /**
+     * Hands the copied state to the renderer, on the render thread.
+     *
+     * @param alpha position of the frame between the transforms before and after the update, from 0 to 1
+     */
+    void apply(final Scene scene, final Camera camera, final float alpha) {
+        final float[] c = cameraTransform;
+        final int live = CAMERA_SIZE / 2;
+        camera.setRenderTransform(lerp(c, 0, live, alpha), lerp(c, 1, live, alpha), lerp(c, 2, live, alpha),
+                lerpAngle(c, 3, live, alpha), lerpAngle(c, 4, live, alpha), lerpAngle(c, 5, live, alpha));
+        if (!hasScene) {
+            return;
+        }
+        final float[] t = transforms;
+        final int numItems = gameItems.size();
+        for (int i = 0; i < numItems; i++) {
+            final int offset = i * ITEM_SIZE;
+            gameItems.get(i).setRenderTransform(
+                    lerp(t, offset, TRANSFORM_SIZE, alpha),
+                    lerp(t, offset + 1, TRANSFORM_SIZE, alpha),
+                    lerp(t, offset + 2, TRANSFORM_SIZE, alpha),
+                    lerpAngle(t, offset + 3, TRANSFORM_SIZE, alpha),
+                    lerpAngle(t, offset + 4, TRANSFORM_SIZE, alpha),
+                    lerpAngle(t, offset + 5, TRANSFORM_SIZE, alpha),
+                    lerp(t, offset + 6, TRANSFORM_SIZE, alpha));
+        }
+        scene.setRenderState(gameItems, hasSceneLight ? sceneLight : null);
+    }
+
+    private static void putVectors(final float[] values, final int offset, final Vector3f position,
+                                   final Vector3f rotation) {
+        values[offset] = position.x;
+        values[offset + 1] = position.y;
+        values[offset + 2] = position.z;
+        values[offset + 3] = rotation.x;
+        values[offset + 4] = rotation.y;
+        values[offset + 5] = rotation.z;
+    }
+
+    /**
+     * Interpolates the value at the index towards the live value, found the given distance further.
+     */
+    private static float lerp(final float[] values, final int index, final int live, final float alpha) {
+        return values[index] + (values[index + live] - values[index]) * alpha;
+    }
+
+    private static float lerpAngle(final float[] values, final int index, final int live, final float alpha) {
+        return Utils.lerpAngle(values[index], values[index + live], alpha);
+    }
+
+    private void captureLights(final SceneLight liveLight) {
+        hasSceneLight = liveLight != null;
+        if (!hasSceneLight) {
+            return;
+        }
+        sceneLight.getAmbientLight().set(liveLight.getAmbientLight());
+        sceneLight.getSkyBoxLight().set(liveLight.getSkyBoxLight());
+        sceneLight.setPointLightList(capturePointLights(liveLight.getPointLightList()));
+        sceneLight.setSpotLightList(captureSpotLights(liveLight.getSpotLightList()));
+        final DirectionalLight liveDirectionalLight = liveLight.getDirectionalLight();
+        if (liveDirectionalLight != null) {
+            directionalLight.getColour().set(liveDirectionalLight.getColour());
+            directionalLight.getDirection().set(liveDirectionalLight.getDirection());
+            // Also raises the dirty flag, the renderer may have consumed this copy before it was reused
+            directionalLight.setIntensity(liveDirectionalLight.getIntensity());
+            sceneLight.setDirectionalLight(directionalLight);
+        } else {
+            sceneLight.setDirectionalLight(null);
+        }
+    }
+
+    private PointLight[] capturePointLights(final PointLight[] liveLights) {
+        if (liveLights == null) {
+            return null;
+        }
+        if (pointLights.length != liveLights.length) {
+            final PointLight[] resized = Arrays.copyOf(pointLights, liveLights.length);
+            for (int i = pointLights.length; i < resized.length; i++) {
+                resized[i] = new PointLight(new Vector3f(), new Vector3f(), 0);
+            }
+            pointLights = resized;
+        }
+        for (int i = 0; i < liveLights.length; i++) {
+            // Also raises the dirty flag, as for the directional light
+            pointLights[i].set(liveLights[i]);
+        }
+        return pointLights;
+    }
+
+    private SpotLight[] captureSpotLights(final SpotLight[] liveLights) {
+        if (liveLights == null) {
+            return null;
+        }
+        if (spotLights.length != liveLights.length) {
+            final SpotLight[] resized = Arrays.copyOf(spotLights, liveLights.length);
+            for (int i = spotLights.length; i < resized.length; i++) {
+                resized[i] = new SpotLight(new PointLight(new Vector3f(), new Vector3f(), 0), new Vector3f(), 0);
+            }
+            spotLights = resized;
+        }
+        for (int i = 0; i < liveLights.length; i++) {
+            spotLights[i].set(liveLights[i]);
+        }
+        return spotLights;
+    }
+}
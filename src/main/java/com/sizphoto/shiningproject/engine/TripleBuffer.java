@@ -0,0 +1,71 @@
+package com.sizphoto.shiningproject.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Three slots shared by one writer and one reader without locks. The writer fills the back slot and publishes it,
+ * the reader takes the latest published slot as its front one. A third slot sits between them, so neither side
+ * ever waits for the other and the reader never sees a slot that is being written. Slots are swapped with a single
+ * atomic exchange, which also makes the writes to a published slot visible to the reader.
+ */
+final class TripleBuffer<T> {
+
+    private static final int INDEX_MASK = 3;
+
+    // Set on the middle slot when it holds a slot the reader has not taken yet
+    private static final int FRESH = 4;
+
+    private final Object[] slots;
+
+    private final AtomicInteger middle;
+
+    // Only used by the writer
+    private int back;
+
+    // Only used by the reader
+    private int front;
+
+    TripleBuffer(final Supplier<T> factory) {
+        slots = new Object[]{factory.get(), factory.get(), factory.get()};
+        back = 0;
+        middle = new AtomicInteger(1);
+        front = 2;
+    }
+
+    /**
+     * @return the slot the writer fills
+     */
+    @SuppressWarnings("unchecked")
+    T getBack() {
+        return (T) slots[back];
+    }
+
+    /**
+     * Hands the back slot to the reader, the writer gets the slot the reader did not take in exchange.
+     */
+    void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Takes the latest published slot as the front one, if the writer published one since the last call.
+     *
+     * @return true if the front slot changed
+     */
+    boolean acquire() {
+        if ((middle.get() & FRESH) == 0) {
+            return false;
+        }
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * @return the slot the reader uses
+     */
+    @SuppressWarnings("unchecked")
+    T getFront() {
+        return (T) slots[front];
+    }
+}
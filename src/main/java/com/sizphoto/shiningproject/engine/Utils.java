@@ -41,6 +41,15 @@ public class Utils {
         return list;
     }
 
+    /**
+     * Interpolates between two angles in degrees along the shorter arc, so an angle that wraps around from 359 to 0
+     * does not spin the other way.
+     */
+    public static float lerpAngle(final float from, final float to, final float alpha) {
+        final float delta = ((to - from) % 360 + 540) % 360 - 180;
+        return from + delta * alpha;
+    }
+
     public static float[] listToArray(final List<Float> list) {
         final int size = list != null ? list.size() : 0;
         float[] floatArr = new float[size];
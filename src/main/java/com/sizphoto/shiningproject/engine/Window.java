@@ -1,5 +1,6 @@
 package com.sizphoto.shiningproject.engine;
 
+import com.sizphoto.shiningproject.engine.graph.GlStateCache;
 import org.lwjgl.glfw.GLFWErrorCallback;
 import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
@@ -21,6 +22,9 @@ public class Window {
 
     private final String title;
 
+    // Written by the key callback, on the render thread
+    private final boolean[] keysPressed = new boolean[GLFW_KEY_LAST + 1];
+
     private int width;
 
     private int height;
@@ -31,6 +35,8 @@ public class Window {
 
     private boolean resized;
 
+    private boolean performanceOverlay;
+
     private long windowHandle;
 
     @Autowired
@@ -39,7 +45,8 @@ public class Window {
             @Value("${window.width}") final int width,
             @Value("${window.height}") final int height,
             @Value("${window.vsync}") final boolean vsync,
-            @Value("${rendering.polygonMode}") final boolean polygonMode
+            @Value("${rendering.polygonMode}") final boolean polygonMode,
+            @Value("${window.performanceOverlay}") final boolean performanceOverlay
     ) {
         this.title = title;
         this.width = width;
@@ -47,6 +54,7 @@ public class Window {
         this.vsync = vsync;
         this.polygonMode = polygonMode;
         this.resized = false;
+        this.performanceOverlay = performanceOverlay;
     }
 
     void init() {
@@ -84,8 +92,13 @@ public class Window {
 
         // Setup a key callback. It will be called every time a key is pressed, repeated or released.
         glfwSetKeyCallback(windowHandle, (window, key, scancode, action, mods) -> {
+            if (key >= 0 && key <= GLFW_KEY_LAST) {
+                keysPressed[key] = action != GLFW_RELEASE;
+            }
             if (key == GLFW_KEY_ESCAPE && action == GLFW_RELEASE) {
                 glfwSetWindowShouldClose(window, true); // We will detect this in the rendering loop
+            } else if (key == GLFW_KEY_F3 && action == GLFW_RELEASE) {
+                performanceOverlay = !performanceOverlay;
             }
         });
 
@@ -120,23 +133,24 @@ public class Window {
         // creates the ContextCapabilities instance and makes the OpenGL
         // bindings available for use.
         GL.createCapabilities();
+        GlStateCache.reset();
 
         // Set the clear color
         setClearColour(0.0f, 0.0f, 0.0f, 0.0f);
 
         // Enable depth testing
-        glEnable(GL_DEPTH_TEST);
+        GlStateCache.setDepthTest(true);
 
         if (isPolygonMode()) {
             glPolygonMode(GL_FRONT_AND_BACK, GL_LINE);
         }
 
         // Support for transparencies
-        glEnable(GL_BLEND);
+        GlStateCache.setBlend(true);
         glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
 
         // Face culling
-        glEnable(GL_CULL_FACE);
+        GlStateCache.setCullFace(true);
         glCullFace(GL_BACK);
     }
 
@@ -148,6 +162,13 @@ public class Window {
         return glfwGetKey(windowHandle, keyCode) == GLFW_PRESS;
     }
 
+    /**
+     * Copies the state of every key, as {@link #isKeyPressed(int)} would return it.
+     */
+    void copyKeys(final boolean[] keys) {
+        System.arraycopy(keysPressed, 0, keys, 0, keysPressed.length);
+    }
+
     boolean windowShouldClose() {
         return glfwWindowShouldClose(windowHandle);
     }
@@ -172,6 +193,13 @@ public class Window {
         this.resized = resized;
     }
 
+    /**
+     * @return true if the performance overlay must be shown, it is toggled with F3
+     */
+    public boolean isPerformanceOverlay() {
+        return performanceOverlay;
+    }
+
     boolean isVsync() {
         return vsync;
     }
@@ -197,6 +225,15 @@ public class Window {
         // Release window and window callbacks
         glfwFreeCallbacks(windowHandle);
         glfwDestroyWindow(windowHandle);
+
+        // Terminate GLFW and free the error callback
+        glfwTerminate();
+        GLFWErrorCallback errorCallback = glfwSetErrorCallback(null);
+        if (errorCallback != null) {
+            errorCallback.free();
+        } else {
+            LOGGER.error("release() - errorCallback is null");
+        }
     }
 
     private void setClearColour(final float r, final float g, final float b, final float alpha) {
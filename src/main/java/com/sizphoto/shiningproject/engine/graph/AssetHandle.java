@@ -0,0 +1,115 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Result of an asynchronous load started by the {@link AssetLoader}. Until the asset is uploaded the handle returns
+ * a placeholder. Handles are completed on the render thread and must only be used from it. Assets shared by a cache,
+ * such as textures, must be given back with {@link #release()}.
+ */
+public class AssetHandle<T> {
+
+    private final String name;
+
+    private final T placeholder;
+
+    // Gives back a shared asset, null if the asset belongs to whoever uses it
+    private final Consumer<T> releaser;
+
+    private final List<Consumer<T>> listeners;
+
+    private T asset;
+
+    private boolean released;
+
+    private boolean loaded;
+
+    private Exception error;
+
+    AssetHandle(final String name, final T placeholder) {
+        this(name, placeholder, null);
+    }
+
+    AssetHandle(final String name, final T placeholder, final Consumer<T> releaser) {
+        this.name = name;
+        this.placeholder = placeholder;
+        this.releaser = releaser;
+        this.asset = placeholder;
+        listeners = new ArrayList<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the asset, or the placeholder while it is loading or if it failed to load
+     */
+    public T get() {
+        return asset;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Runs the listener with the asset once it is uploaded, right away if it already is. Listeners are not called
+     * if the load fails.
+     */
+    public void whenLoaded(final Consumer<T> listener) {
+        if (loaded) {
+            listener.accept(asset);
+        } else if (error == null) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Gives back a shared asset, a texture to the {@link TextureCache}. An asset still loading is given back as soon
+     * as it is uploaded and its listeners are not called. The handle then returns the placeholder again. Assets that
+     * are not shared, such as meshes, are left to whoever uses them.
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        listeners.clear();
+        if (loaded && releaser != null) {
+            releaser.accept(asset);
+        }
+        asset = placeholder;
+        loaded = false;
+    }
+
+    void complete(final T loadedAsset) {
+        if (released) {
+            if (releaser != null) {
+                releaser.accept(loadedAsset);
+            }
+            return;
+        }
+        asset = loadedAsset;
+        loaded = true;
+        for (Consumer<T> listener : listeners) {
+            listener.accept(loadedAsset);
+        }
+        listeners.clear();
+    }
+
+    void fail(final Exception exception) {
+        error = exception;
+        listeners.clear();
+    }
+}
@@ -0,0 +1,271 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.lwjgl.system.MemoryStack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads assets without stalling the render thread. Files are read and decoded on a pool of worker threads, and
+ * the decoded data is queued for the render thread, which uploads it to GL in {@link #processUploads()} within a
+ * budget of bytes per frame. An asset larger than the budget is uploaded alone in its frame.
+ */
+@Component
+public class AssetLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AssetLoader.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private final int uploadBudget;
+
+    private final ExecutorService workers;
+
+    // Decoded jobs waiting for the render thread
+    private final Queue<LoadJob<?, ?>> decodedJobs;
+
+    private Texture placeholderTexture;
+
+    private int pendingJobs;
+
+    @Autowired
+    public AssetLoader(
+            @Value("${assets.workerThreads}") final int workerThreads,
+            @Value("${assets.uploadBudget}") final int uploadBudget
+    ) {
+        this.uploadBudget = uploadBudget;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "ASSET_LOADER_THREAD_" + threadNumber.incrementAndGet());
+            // Loads still running must not keep the application alive
+            thread.setDaemon(true);
+            return thread;
+        });
+        decodedJobs = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Creates the placeholders, it must be called from the render thread.
+     */
+    public void init() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            placeholderTexture = new Texture(1, 1, stack.bytes((byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF));
+        }
+    }
+
+    /**
+     * @return a handle holding a plain white texture until the image is loaded, the texture is acquired from the
+     * {@link TextureCache} and given back with {@link AssetHandle#release()}
+     */
+    public AssetHandle<Texture> loadTexture(final String fileName) {
+        final Texture cachedTexture = TextureCache.acquireIfLoaded(fileName);
+        if (cachedTexture != null) {
+            final AssetHandle<Texture> handle = new AssetHandle<>(fileName, placeholderTexture, TextureCache::release);
+            handle.complete(cachedTexture);
+            return handle;
+        }
+        final TextureJob job = new TextureJob(new AssetHandle<>(fileName, placeholderTexture, TextureCache::release));
+        submit(job);
+        return job.getHandle();
+    }
+
+    /**
+     * @return a handle holding null until the model is loaded, items using it can be created in
+     * {@link AssetHandle#whenLoaded}
+     */
+    public AssetHandle<Mesh> loadMesh(final String fileName) {
+        final MeshJob job = new MeshJob(new AssetHandle<>(fileName, null));
+        submit(job);
+        return job.getHandle();
+    }
+
+    /**
+     * Uploads decoded assets until the frame budget is spent. It must be called from the render thread.
+     */
+    public void processUploads() {
+        int uploadedBytes = 0;
+        LoadJob<?, ?> job;
+        while (uploadedBytes < uploadBudget && (job = decodedJobs.poll()) != null) {
+            try {
+                uploadedBytes += job.finish();
+            } finally {
+                pendingJobs--;
+            }
+        }
+    }
+
+    /**
+     * @return the assets requested and not yet uploaded
+     */
+    public int getPendingAssets() {
+        return pendingJobs;
+    }
+
+    public void cleanup() {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LoadJob<?, ?> job;
+        while ((job = decodedJobs.poll()) != null) {
+            job.discard();
+        }
+        if (placeholderTexture != null) {
+            placeholderTexture.cleanup();
+        }
+    }
+
+    void submit(final LoadJob<?, ?> job) {
+        pendingJobs++;
+        workers.execute(job);
+    }
+
+    /**
+     * Decodes an asset on a worker thread and uploads it on the render thread.
+     *
+     * @param <D> decoded data
+     * @param <T> asset
+     */
+    abstract class LoadJob<D, T> implements Runnable {
+
+        private final AssetHandle<T> handle;
+
+        private final long requestTime;
+
+        private D data;
+
+        private Exception error;
+
+        LoadJob(final AssetHandle<T> handle) {
+            this.handle = handle;
+            requestTime = System.nanoTime();
+        }
+
+        AssetHandle<T> getHandle() {
+            return handle;
+        }
+
+        abstract D decode() throws Exception;
+
+        abstract T upload(D decodedData);
+
+        abstract int getSize(D decodedData);
+
+        void free(final D decodedData) {
+        }
+
+        @Override
+        public void run() {
+            try {
+                data = decode();
+            } catch (Exception e) {
+                error = e;
+            } catch (Throwable t) {
+                // Errors fail the asset too, a job that is never queued would be pending forever
+                error = new Exception(t.toString(), t);
+            } finally {
+                // The queue publishes the result to the render thread
+                decodedJobs.add(this);
+            }
+        }
+
+        /**
+         * @return the bytes uploaded
+         */
+        int finish() {
+            if (error != null) {
+                LOGGER.error("processUploads() - [{}] not loaded: {}", handle.getName(), error.getMessage());
+                handle.fail(error);
+                return 0;
+            }
+            final int size = getSize(data);
+            final T asset;
+            try {
+                asset = upload(data);
+            } catch (RuntimeException e) {
+                LOGGER.error("processUploads() - [{}] not uploaded: {}", handle.getName(), e.getMessage());
+                handle.fail(e);
+                return 0;
+            } finally {
+                // The upload frees the data, whether it succeeds or not
+                data = null;
+            }
+            handle.complete(asset);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("processUploads() - [{}] uploaded, {} bytes, {} ms after the request",
+                        handle.getName(), size, (System.nanoTime() - requestTime) / 1_000_000);
+            }
+            return size;
+        }
+
+        void discard() {
+            if (data != null) {
+                free(data);
+                data = null;
+            }
+        }
+    }
+
+    private class TextureJob extends LoadJob<TextureData, Texture> {
+
+        TextureJob(final AssetHandle<Texture> handle) {
+            super(handle);
+        }
+
+        @Override
+        TextureData decode() throws Exception {
+            return TextureData.load(getHandle().getName());
+        }
+
+        @Override
+        Texture upload(final TextureData decodedData) {
+            // Another load of the same image may have finished first
+            return TextureCache.acquire(getHandle().getName(), decodedData);
+        }
+
+        @Override
+        int getSize(final TextureData decodedData) {
+            return decodedData.getSize();
+        }
+
+        @Override
+        void free(final TextureData decodedData) {
+            decodedData.free();
+        }
+    }
+
+    private class MeshJob extends LoadJob<MeshData, Mesh> {
+
+        MeshJob(final AssetHandle<Mesh> handle) {
+            super(handle);
+        }
+
+        @Override
+        MeshData decode() throws Exception {
+            return ObjLoader.loadMeshData(getHandle().getName());
+        }
+
+        @Override
+        Mesh upload(final MeshData decodedData) {
+            return new Mesh(decodedData.getPositions(), decodedData.getTextCoords(), decodedData.getNormals(),
+                    decodedData.getIndices(), true);
+        }
+
+        @Override
+        int getSize(final MeshData decodedData) {
+            return (decodedData.getPositions().length + decodedData.getTextCoords().length
+                    + decodedData.getNormals().length + decodedData.getIndices().length) * Float.BYTES;
+        }
+    }
+}
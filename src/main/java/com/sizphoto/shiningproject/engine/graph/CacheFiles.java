@@ -0,0 +1,115 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.springframework.util.ResourceUtils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * File handling shared by the caches that keep processed assets on disk.
+ */
+final class CacheFiles {
+
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    // Hexadecimal digits of the path hash in the cache file names
+    private static final int HASH_DIGITS = 16;
+
+    private CacheFiles() {
+    }
+
+    /**
+     * @return the cache file of a source. Its path is normalized and flattened, followed by a hash of the normalized
+     * path so that sources whose flattened paths are equal get different files: "/models/cube.obj" is cached as
+     * "models_cube.obj-" followed by the hash and the extension
+     */
+    static Path resolve(final Path directory, final String fileName, final String extension) {
+        final String normalized = normalize(fileName);
+        return directory.resolve(normalized.replaceAll("^/+", "").replaceAll("[^A-Za-z0-9._-]", "_")
+                + "-" + hash(normalized) + extension);
+    }
+
+    static File getSourceFile(final String fileName) throws IOException {
+        return ResourceUtils.getFile(String.format("file:%s", fileName));
+    }
+
+    /**
+     * Reads a whole file into a new buffer outside the Java heap, which the caller must release with memFree. The
+     * file is not kept mapped, so it can be replaced as soon as the channel is closed.
+     */
+    static ByteBuffer read(final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = memAlloc((int) channel.size());
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("File ended after " + buffer.position() + " bytes");
+                }
+            }
+        } catch (IOException e) {
+            memFree(buffer);
+            throw e;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes the remaining bytes of the buffers to a temporary file, which then replaces the cache file, so
+     * readers never see a partially written file.
+     */
+    static void write(final Path cacheFile, final ByteBuffer... buffers) throws IOException {
+        // Sources can be loaded from several threads, each one writes its own temporary file
+        final Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + "."
+                + Thread.currentThread().getId() + TEMP_EXTENSION);
+        Files.createDirectories(cacheFile.getParent());
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String normalize(final String fileName) {
+        try {
+            return Paths.get(fileName).normalize().toString().replace('\\', '/');
+        } catch (InvalidPathException e) {
+            // Keys that are not valid paths on this platform are used as they are
+            return fileName;
+        }
+    }
+
+    private static String hash(final String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(HASH_DIGITS);
+            for (int i = 0; i < HASH_DIGITS / 2; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16))
+                        .append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
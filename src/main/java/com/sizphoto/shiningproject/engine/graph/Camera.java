@@ -1,5 +1,6 @@
 package com.sizphoto.shiningproject.engine.graph;
 
+import com.sizphoto.shiningproject.engine.Utils;
 import org.joml.Vector3f;
 import org.springframework.stereotype.Component;
 
@@ -10,14 +11,29 @@ public class Camera {
 
     private final Vector3f rotation;
 
+    // Position and rotation drawn by the renderer, the live ones until a copy is handed to the camera
+    private Vector3f renderPosition;
+
+    private Vector3f renderRotation;
+
+    // Live position and rotation before the last update, frames drawn between two updates interpolate from them
+    private final Vector3f previousPosition;
+
+    private final Vector3f previousRotation;
+
+    private boolean previousTransformStored;
+
     public Camera() {
-        position = new Vector3f(0, 0, 0);
-        rotation = new Vector3f(0, 0, 0);
+        this(new Vector3f(0, 0, 0), new Vector3f(0, 0, 0));
     }
 
     public Camera(final Vector3f position, final Vector3f rotation) {
         this.position = position;
         this.rotation = rotation;
+        this.renderPosition = position;
+        this.renderRotation = rotation;
+        this.previousPosition = new Vector3f();
+        this.previousRotation = new Vector3f();
     }
 
     public Vector3f getPosition() {
@@ -57,4 +73,66 @@ public class Camera {
         rotation.y += offsetY;
         rotation.z += offsetZ;
     }
+
+    public Vector3f getRenderPosition() {
+        return renderPosition;
+    }
+
+    public Vector3f getRenderRotation() {
+        return renderRotation;
+    }
+
+    /**
+     * Sets the position and rotation drawn by the renderer, which from then on no longer follow the live ones. Used
+     * when the game logic moves the camera on another thread than the renderer.
+     */
+    public void setRenderTransform(
+            final float posX,
+            final float posY,
+            final float posZ,
+            final float rotX,
+            final float rotY,
+            final float rotZ
+    ) {
+        if (renderPosition == position) {
+            renderPosition = new Vector3f();
+            renderRotation = new Vector3f();
+        }
+        renderPosition.set(posX, posY, posZ);
+        renderRotation.set(rotX, rotY, rotZ);
+    }
+
+    /**
+     * Keeps the live position and rotation as the previous ones, called by the engine before each update.
+     */
+    public void storePreviousTransform() {
+        previousPosition.set(position);
+        previousRotation.set(rotation);
+        previousTransformStored = true;
+    }
+
+    public Vector3f getPreviousPosition() {
+        return previousTransformStored ? previousPosition : position;
+    }
+
+    public Vector3f getPreviousRotation() {
+        return previousTransformStored ? previousRotation : rotation;
+    }
+
+    /**
+     * Sets the render position and rotation between the previous ones and the live ones.
+     *
+     * @param alpha fraction of the update interval elapsed since the last update, from 0 to 1
+     */
+    public void interpolateRenderTransform(final float alpha) {
+        final Vector3f fromPosition = getPreviousPosition();
+        final Vector3f fromRotation = getPreviousRotation();
+        setRenderTransform(
+                fromPosition.x + (position.x - fromPosition.x) * alpha,
+                fromPosition.y + (position.y - fromPosition.y) * alpha,
+                fromPosition.z + (position.z - fromPosition.z) * alpha,
+                Utils.lerpAngle(fromRotation.x, rotation.x, alpha),
+                Utils.lerpAngle(fromRotation.y, rotation.y, alpha),
+                Utils.lerpAngle(fromRotation.z, rotation.z, alpha));
+    }
 }
\ No newline at end of file
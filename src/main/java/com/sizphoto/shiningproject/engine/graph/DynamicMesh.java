@@ -0,0 +1,161 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+
+/**
+ * Mesh whose geometry is rewritten often, such as HUD text. Vertices hold a float position and float texture
+ * coordinates, indices are 16 bits. The buffers persist for the life of the mesh: the geometry is written into
+ * reusable direct buffers, which only grow when the geometry outgrows them, and each upload orphans the GL buffer
+ * so that the driver does not wait for draws still reading the previous content.
+ */
+public class DynamicMesh extends Mesh {
+
+    static final int VERTEX_SIZE_FLOATS = 5;
+
+    private static final int VERTEX_SIZE_BYTES = VERTEX_SIZE_FLOATS * Float.BYTES;
+
+    private static final int MIN_CAPACITY = 64;
+
+    private final int vertexVboId;
+
+    private final int indexVboId;
+
+    private FloatBuffer vertices;
+
+    private ShortBuffer indices;
+
+    // Bytes allocated by GL for each buffer
+    private long vertexVboSize;
+
+    private long indexVboSize;
+
+    private int indexCount;
+
+    public DynamicMesh() {
+        super();
+        vertices = MemoryUtil.memAllocFloat(MIN_CAPACITY * VERTEX_SIZE_FLOATS);
+        indices = MemoryUtil.memAllocShort(MIN_CAPACITY);
+
+        GlStateCache.bindVertexArray(getVaoId());
+        vertexVboId = createBuffer();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexVboId);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, VERTEX_SIZE_BYTES, 0);
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(1, 2, GL_FLOAT, false, VERTEX_SIZE_BYTES, 3 * Float.BYTES);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        // The element buffer binding is part of the VAO
+        indexVboId = createBuffer();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexVboId);
+        GlStateCache.bindVertexArray(0);
+    }
+
+    /**
+     * @return the vertex buffer, empty and with room for the vertices, to be filled with x, y, z, u, v for each
+     * vertex before {@link #endVertices()}
+     */
+    public FloatBuffer beginVertices(final int numVertices) {
+        final int floats = numVertices * VERTEX_SIZE_FLOATS;
+        if (vertices.capacity() < floats) {
+            vertices = MemoryUtil.memRealloc(vertices, Math.max(floats, vertices.capacity() * 2));
+        }
+        vertices.clear();
+        return vertices;
+    }
+
+    /**
+     * Uploads the vertices written since {@link #beginVertices(int)}.
+     */
+    public void endVertices() {
+        vertices.flip();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexVboId);
+        vertexVboSize = orphan(GL_ARRAY_BUFFER, vertexVboSize, (long) vertices.capacity() * Float.BYTES);
+        glBufferSubData(GL_ARRAY_BUFFER, 0, vertices);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * @return the index buffer, empty and with room for the indices, to be filled before {@link #endIndices()}
+     */
+    public ShortBuffer beginIndices(final int numIndices) {
+        if (indices.capacity() < numIndices) {
+            indices = MemoryUtil.memRealloc(indices, Math.max(numIndices, indices.capacity() * 2));
+        }
+        indices.clear();
+        return indices;
+    }
+
+    /**
+     * Uploads the indices written since {@link #beginIndices(int)}.
+     */
+    public void endIndices() {
+        indices.flip();
+        GlStateCache.bindVertexArray(getVaoId());
+        indexVboSize = orphan(GL_ELEMENT_ARRAY_BUFFER, indexVboSize, (long) indices.capacity() * Short.BYTES);
+        glBufferSubData(GL_ELEMENT_ARRAY_BUFFER, 0, indices);
+    }
+
+    /**
+     * Sets the number of indices drawn, which may be less than the indices uploaded.
+     */
+    public void setIndexCount(final int indexCount) {
+        this.indexCount = indexCount;
+    }
+
+    @Override
+    int getVertexCount() {
+        return indexCount;
+    }
+
+    /**
+     * @return the vertices last uploaded, still held on the CPU
+     */
+    FloatBuffer getVertices() {
+        return vertices;
+    }
+
+    /**
+     * @return the indices last uploaded, only the first {@link #getVertexCount()} are drawn
+     */
+    ShortBuffer getIndices() {
+        return indices;
+    }
+
+    @Override
+    public void cleanUp() {
+        super.cleanUp();
+        freeBuffers();
+    }
+
+    @Override
+    public void deleteBuffers() {
+        super.deleteBuffers();
+        freeBuffers();
+    }
+
+    /**
+     * Gives the bound buffer new storage, of the size of the client buffer once it has grown. Storage of the same
+     * size is orphaned: GL hands out fresh memory while draws in flight keep the old one.
+     *
+     * @return the size of the storage
+     */
+    private static long orphan(final int target, final long currentSize, final long size) {
+        final long newSize = Math.max(currentSize, size);
+        glBufferData(target, newSize, GL_STREAM_DRAW);
+        return newSize;
+    }
+
+    private void freeBuffers() {
+        MemoryUtil.memFree(vertices);
+        MemoryUtil.memFree(indices);
+        vertices = null;
+        indices = null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import java.util.Map;
+
+/**
+ * Glyphs of a font baked into a single row image, with the position of each character in it.
+ */
+class FontAtlas {
+
+    private final TextureData image;
+
+    private final Map<Character, FontTexture.CharInfo> charMap;
+
+    FontAtlas(final TextureData image, final Map<Character, FontTexture.CharInfo> charMap) {
+        this.image = image;
+        this.charMap = charMap;
+    }
+
+    TextureData getImage() {
+        return image;
+    }
+
+    Map<Character, FontTexture.CharInfo> getCharMap() {
+        return charMap;
+    }
+}
@@ -0,0 +1,154 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Disk cache of baked font atlases, so that later runs neither enumerate the charset nor draw the glyphs with AWT.
+ * Each font, size and charset gets one little endian file in the cache directory:
+ * <pre>
+ * int  magic, version
+ * int  key length, then the key in UTF-8
+ * int  width, height, characters
+ * int  character, start x, width of each character
+ * byte RGBA pixels
+ * </pre>
+ * Files are read into a native buffer that is uploaded as it is. Fonts have no source file to compare with, so a
+ * file stays valid until the format changes, the cache directory must be emptied when the installed fonts change.
+ * Failures to read or write the cache are logged and the atlas is then baked again.
+ */
+final class FontCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FontCache.class);
+
+    // "SPFC" read as a little endian int
+    private static final int MAGIC = 0x43465053;
+
+    // Increase when the layout or the baking of the atlas changes, to discard old files
+    private static final int VERSION = 1;
+
+    private static final int CHAR_INFO_INTS = 3;
+
+    private static final String EXTENSION = ".font";
+
+    private static Path directory;
+
+    private FontCache() {
+    }
+
+    /**
+     * @param directoryName directory of the cache files, created on the first write, or empty to disable the cache
+     */
+    static void setDirectory(final String directoryName) {
+        directory = directoryName == null || directoryName.isEmpty() ? null : Paths.get(directoryName);
+    }
+
+    /**
+     * @param key name, style, size and charset of the font
+     * @return the cached atlas, or null if the cache is disabled or has no valid entry for the font
+     */
+    static FontAtlas load(final String key) {
+        if (directory == null) {
+            return null;
+        }
+        final Path cacheFile = CacheFiles.resolve(directory, key, EXTENSION);
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        ByteBuffer buffer = null;
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            if (channel.size() < getHeaderSize(keyBytes.length, 0) || channel.size() > Integer.MAX_VALUE) {
+                LOGGER.warn("load() - [{}] is not a font cache file", cacheFile);
+                return null;
+            }
+            // Read rather than mapped, a mapping would keep the file locked on some platforms until it is collected
+            buffer = CacheFiles.read(channel).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != keyBytes.length
+                    || !matches(buffer, keyBytes)) {
+                LOGGER.debug("load() - [{}] is out of date", cacheFile);
+                return null;
+            }
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            final int numChars = buffer.getInt();
+            if (width <= 0 || height <= 0 || numChars < 0 || getHeaderSize(keyBytes.length, numChars)
+                    + TextureData.getSize(width, height, 1) != buffer.limit()) {
+                LOGGER.warn("load() - [{}] is truncated", cacheFile);
+                return null;
+            }
+            final Map<Character, FontTexture.CharInfo> charMap = new HashMap<>(numChars * 2);
+            for (int i = 0; i < numChars; i++) {
+                final char c = (char) buffer.getInt();
+                final int startX = buffer.getInt();
+                charMap.put(c, new FontTexture.CharInfo(startX, buffer.getInt()));
+            }
+            // The pixels are a slice of the whole file, which is released with them
+            final ByteBuffer fileBuffer = buffer;
+            final TextureData image = new TextureData(width, height, 1, buffer.slice(), pixels -> memFree(fileBuffer));
+            buffer = null;
+            return new FontAtlas(image, charMap);
+        } catch (IOException e) {
+            LOGGER.warn("load() - Could not read [{}]: {}", cacheFile, e.getMessage());
+            return null;
+        } finally {
+            if (buffer != null) {
+                memFree(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes a baked atlas, replacing any previous entry.
+     */
+    static void store(final String key, final FontAtlas atlas) {
+        if (directory == null) {
+            return;
+        }
+        final Path cacheFile = CacheFiles.resolve(directory, key, EXTENSION);
+        try {
+            final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            final Map<Character, FontTexture.CharInfo> charMap = atlas.getCharMap();
+            final TextureData image = atlas.getImage();
+            final ByteBuffer header = ByteBuffer.allocate(getHeaderSize(keyBytes.length, charMap.size()))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(keyBytes.length).put(keyBytes);
+            header.putInt(image.getWidth()).putInt(image.getHeight()).putInt(charMap.size());
+            for (Map.Entry<Character, FontTexture.CharInfo> entry : charMap.entrySet()) {
+                header.putInt(entry.getKey()).putInt(entry.getValue().getStartX()).putInt(entry.getValue().getWidth());
+            }
+            header.flip();
+            CacheFiles.write(cacheFile, header, image.getPixels().duplicate());
+            LOGGER.debug("store() - [{}] cached in [{}], {} characters", key, cacheFile, charMap.size());
+        } catch (IOException e) {
+            LOGGER.warn("store() - Could not write [{}]: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private static int getHeaderSize(final int keyLength, final int numChars) {
+        return 3 * Integer.BYTES + keyLength + 3 * Integer.BYTES + numChars * CHAR_INFO_INTS * Integer.BYTES;
+    }
+
+    private static boolean matches(final ByteBuffer buffer, final byte[] keyBytes) {
+        for (byte keyByte : keyBytes) {
+            if (buffer.get() != keyByte) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,18 +1,25 @@
 package com.sizphoto.shiningproject.engine.graph;
 
-import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.nio.ByteBuffer;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.util.HashMap;
 import java.util.Map;
 
-public class FontTexture {
+/**
+ * Glyphs of a font drawn side by side in one texture. The atlas is baked with AWT the first time a font, size and
+ * charset are used, and read back from the {@link FontCache} on the next runs.
+ */
+public class FontTexture implements IFont {
 
-    private static final String IMAGE_FORMAT = "png";
+    private static final Logger LOGGER = LoggerFactory.getLogger(FontTexture.class);
 
     private static final int CHAR_PADDING = 2;
 
@@ -40,10 +47,12 @@ public class FontTexture {
         return width;
     }
 
+    @Override
     public int getHeight() {
         return height;
     }
 
+    @Override
     public Texture getTexture() {
         return texture;
     }
@@ -52,6 +61,33 @@ public class FontTexture {
         return charMap.get(c);
     }
 
+    @Override
+    public boolean acquireGlyph(final int codePoint, final Glyph glyph) {
+        // The charset is baked from a code page, which has no character outside the Basic Multilingual Plane
+        final CharInfo charInfo = Character.isBmpCodePoint(codePoint) ? charMap.get((char) codePoint) : null;
+        if (charInfo == null) {
+            glyph.setQuad(0, 0, 0, 0);
+            glyph.setTextCoords(0, 0, 0, 0);
+            glyph.setAdvance(0);
+            return false;
+        }
+        glyph.setQuad(0, 0, charInfo.getWidth(), height);
+        glyph.setTextCoords((float) charInfo.getStartX() / width, 0,
+                (float) (charInfo.getStartX() + charInfo.getWidth()) / width, 1);
+        glyph.setAdvance(charInfo.getWidth());
+        // Every glyph of the charset stays in the texture, there is nothing to hold
+        return false;
+    }
+
+    @Override
+    public void releaseGlyph(final int codePoint) {
+    }
+
+    @Override
+    public void cleanup() {
+        TextureCache.release(texture);
+    }
+
     private String getAllAvailableChars(String charsetName) {
         CharsetEncoder ce = Charset.forName(charsetName).newEncoder();
         StringBuilder result = new StringBuilder();
@@ -63,7 +99,28 @@ public class FontTexture {
         return result.toString();
     }
 
-    private void buildTexture() throws Exception {
+    private void buildTexture() {
+        final long start = System.nanoTime();
+        final String cacheKey = String.format("%s_%d_%d_%s", font.getName(), font.getStyle(), font.getSize(),
+                charSetName);
+        FontAtlas atlas = FontCache.load(cacheKey);
+        final boolean cached = atlas != null;
+        if (!cached) {
+            atlas = bakeAtlas();
+            FontCache.store(cacheKey, atlas);
+        }
+        charMap.putAll(atlas.getCharMap());
+        this.width = atlas.getImage().getWidth();
+        this.height = atlas.getImage().getHeight();
+        texture = new Texture(atlas.getImage());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("buildTexture() - [{}] {}x{} atlas {} in {} ms", cacheKey, width, height,
+                    cached ? "loaded" : "baked", (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private FontAtlas bakeAtlas() {
+        final Map<Character, CharInfo> bakedChars = new HashMap<>();
         // Get the font metrics for each character for the selected font by using image
         BufferedImage img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2D = img.createGraphics();
@@ -72,18 +129,18 @@ public class FontTexture {
         FontMetrics fontMetrics = g2D.getFontMetrics();
 
         String allChars = getAllAvailableChars(charSetName);
-        this.width = 0;
-        this.height = fontMetrics.getHeight();
+        int imageWidth = 0;
+        final int imageHeight = fontMetrics.getHeight();
         for (char c : allChars.toCharArray()) {
             // Get the size for each character and update global image size
-            CharInfo charInfo = new CharInfo(width, fontMetrics.charWidth(c));
-            charMap.put(c, charInfo);
-            width += charInfo.getWidth() + CHAR_PADDING;
+            CharInfo charInfo = new CharInfo(imageWidth, fontMetrics.charWidth(c));
+            bakedChars.put(c, charInfo);
+            imageWidth += charInfo.getWidth() + CHAR_PADDING;
         }
         g2D.dispose();
 
         // Create the image associated to the charset
-        img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        img = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
         g2D = img.createGraphics();
         g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2D.setFont(font);
@@ -91,22 +148,22 @@ public class FontTexture {
         g2D.setColor(Color.WHITE);
         int startX = 0;
         for (char c : allChars.toCharArray()) {
-            CharInfo charInfo = charMap.get(c);
+            CharInfo charInfo = bakedChars.get(c);
             g2D.drawString("" + c, startX, fontMetrics.getAscent());
             startX += charInfo.getWidth() + CHAR_PADDING;
         }
         g2D.dispose();
 
-        ByteBuffer buf;
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            ImageIO.write(img, IMAGE_FORMAT, out);
-            out.flush();
-            byte[] data = out.toByteArray();
-            buf = ByteBuffer.allocateDirect(data.length);
-            buf.put(data, 0, data.length);
-            buf.flip();
+        // Convert the ARGB raster in place of an image encoding round trip, the RGBA bytes read as a little
+        // endian int are ABGR
+        final int[] argb = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        final TextureData image = TextureData.allocate(imageWidth, imageHeight, 1);
+        final IntBuffer rgba = image.getPixels().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        for (int i = 0; i < argb.length; i++) {
+            final int pixel = argb[i];
+            rgba.put(i, pixel & 0xFF00FF00 | pixel >> 16 & 0xFF | (pixel & 0xFF) << 16);
         }
-        texture = new Texture(buf);
+        return new FontAtlas(image, bakedChars);
     }
 
     public static class CharInfo {
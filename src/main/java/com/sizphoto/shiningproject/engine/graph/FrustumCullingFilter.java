@@ -0,0 +1,44 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+class FrustumCullingFilter {
+
+    private final Matrix4f projViewMatrix;
+
+    private final FrustumIntersection frustumInt;
+
+    private final Vector3f center;
+
+    private final Vector3f min;
+
+    private final Vector3f max;
+
+    FrustumCullingFilter() {
+        projViewMatrix = new Matrix4f();
+        frustumInt = new FrustumIntersection();
+        center = new Vector3f();
+        min = new Vector3f();
+        max = new Vector3f();
+    }
+
+    void updateFrustum(final Matrix4f projectionMatrix, final Matrix4f viewMatrix) {
+        // The frustum planes are extracted from the combined projection and view matrix
+        projViewMatrix.set(projectionMatrix);
+        projViewMatrix.mul(viewMatrix);
+        frustumInt.set(projViewMatrix);
+    }
+
+    boolean insideFrustum(final Matrix4f modelMatrix, final float scale, final Mesh mesh) {
+        // Cheap test first: the bounding sphere does not depend on the rotation of the item
+        modelMatrix.transformPosition(mesh.getBoundingCenter(), center);
+        if (!frustumInt.testSphere(center, mesh.getBoundingRadius() * scale)) {
+            return false;
+        }
+        // Refine with the world space box that encloses the transformed bounding box
+        modelMatrix.transformAab(mesh.getBoundsMin(), mesh.getBoundsMax(), min, max);
+        return frustumInt.testAab(min, max);
+    }
+}
@@ -0,0 +1,502 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL43.*;
+
+/**
+ * One large vertex buffer and one large index buffer shared by the static meshes, so that drawing different meshes
+ * does not require switching VAOs. Every mesh gets a range of vertices and a range of indices from a free list
+ * allocator. Vertices use the layout of {@link VertexPacking}. Indices are stored as 16 bit values relative to the
+ * first vertex of the mesh and drawn with glDrawElementsBaseVertex.
+ * When the context supports glMultiDrawElementsIndirect, all the items of a batch are drawn with a single call:
+ * their model matrices and texture array layers are written to per instance attributes and each draw command
+ * selects its own instance through its base instance.
+ */
+class GeometryArena {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeometryArena.class);
+
+    private static final int FLOAT_SIZE_BYTES = 4;
+
+    // The interleaved mesh layout with float texture coordinates, which terrain repeating its texture needs
+    private static final boolean HALF_TEXT_COORDS = false;
+
+    private static final int VERTEX_SIZE_BYTES = VertexPacking.vertexSize(HALF_TEXT_COORDS, true);
+
+    // Indices are relative to the first vertex of their mesh, so 16 bits are enough for any mesh the arena takes
+    private static final int INDEX_SIZE_BYTES = Short.BYTES;
+
+    private static final int MATRIX_SIZE_FLOATS = 4 * 4;
+
+    private static final int MATRIX_SIZE_BYTES = MATRIX_SIZE_FLOATS * FLOAT_SIZE_BYTES;
+
+    // model matrix followed by the texture layer
+    private static final int INSTANCE_SIZE_FLOATS = MATRIX_SIZE_FLOATS + 1;
+
+    private static final int INSTANCE_SIZE_BYTES = INSTANCE_SIZE_FLOATS * FLOAT_SIZE_BYTES;
+
+    private static final int VECTOR4F_SIZE_BYTES = 4 * FLOAT_SIZE_BYTES;
+
+    // count, instance count, first index, base vertex and base instance
+    private static final int COMMAND_SIZE_INTS = 5;
+
+    private static final int MODEL_MATRIX_LOCATION = 3;
+
+    private final int vertexCapacity;
+
+    private final int indexCapacity;
+
+    private final int maxDrawsPerCall;
+
+    private final boolean multiDrawIndirect;
+
+    private final FreeList vertexSpace;
+
+    private final FreeList indexSpace;
+
+    private final List<Allocation> allocations;
+
+    private final int vaoId;
+
+    private int vertexVboId;
+
+    private int indexVboId;
+
+    private int instanceVboId;
+
+    private int indirectBufferId;
+
+    private FloatBuffer instanceBuffer;
+
+    private IntBuffer commandBuffer;
+
+    GeometryArena(final int vertexCapacity, final int indexCapacity, final int maxDrawsPerCall) {
+        this.vertexCapacity = vertexCapacity;
+        this.indexCapacity = indexCapacity;
+        this.maxDrawsPerCall = maxDrawsPerCall;
+        vertexSpace = new FreeList(vertexCapacity);
+        indexSpace = new FreeList(indexCapacity);
+        allocations = new ArrayList<>();
+
+        // Base instances in draw commands need GL 4.2 or its extension
+        final GLCapabilities capabilities = GL.getCapabilities();
+        multiDrawIndirect = capabilities.OpenGL43
+                || capabilities.GL_ARB_multi_draw_indirect && capabilities.GL_ARB_base_instance;
+
+        vaoId = glGenVertexArrays();
+        vertexVboId = createBuffer(GL_ARRAY_BUFFER, (long) vertexCapacity * VERTEX_SIZE_BYTES, GL_STATIC_DRAW);
+        indexVboId = createBuffer(GL_ARRAY_BUFFER, (long) indexCapacity * INDEX_SIZE_BYTES, GL_STATIC_DRAW);
+        setUpVertexArray();
+
+        if (multiDrawIndirect) {
+            // Both buffers are filled on each batch, so they are long lived and managed by hand
+            instanceBuffer = MemoryUtil.memAllocFloat(maxDrawsPerCall * INSTANCE_SIZE_FLOATS);
+            commandBuffer = MemoryUtil.memAllocInt(maxDrawsPerCall * COMMAND_SIZE_INTS);
+            instanceVboId = createBuffer(GL_ARRAY_BUFFER, (long) maxDrawsPerCall * INSTANCE_SIZE_BYTES,
+                    GL_DYNAMIC_DRAW);
+            indirectBufferId = createBuffer(GL_DRAW_INDIRECT_BUFFER,
+                    (long) maxDrawsPerCall * COMMAND_SIZE_INTS * Integer.BYTES, GL_DYNAMIC_DRAW);
+
+            GlStateCache.bindVertexArray(vaoId);
+            glBindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+            int location = MODEL_MATRIX_LOCATION;
+            for (int i = 0; i < 4; i++) {
+                glEnableVertexAttribArray(location);
+                glVertexAttribPointer(location, 4, GL_FLOAT, false, INSTANCE_SIZE_BYTES,
+                        (long) i * VECTOR4F_SIZE_BYTES);
+                glVertexAttribDivisor(location, 1);
+                location++;
+            }
+            glEnableVertexAttribArray(Mesh.TEXTURE_LAYER_LOCATION);
+            glVertexAttribPointer(Mesh.TEXTURE_LAYER_LOCATION, 1, GL_FLOAT, false, INSTANCE_SIZE_BYTES,
+                    MATRIX_SIZE_BYTES);
+            glVertexAttribDivisor(Mesh.TEXTURE_LAYER_LOCATION, 1);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            GlStateCache.bindVertexArray(0);
+        }
+
+        LOGGER.info("GeometryArena() - {} vertices, {} indices, multi draw indirect {}",
+                vertexCapacity, indexCapacity, multiDrawIndirect ? "enabled" : "not supported");
+    }
+
+    int getVaoId() {
+        return vaoId;
+    }
+
+    boolean isMultiDrawIndirect() {
+        return multiDrawIndirect;
+    }
+
+    int getVertexCapacity() {
+        return vertexCapacity;
+    }
+
+    int getUsedVertices() {
+        return vertexCapacity - vertexSpace.getFreeSize();
+    }
+
+    int getIndexCapacity() {
+        return indexCapacity;
+    }
+
+    int getUsedIndices() {
+        return indexCapacity - indexSpace.getFreeSize();
+    }
+
+    int getNumAllocations() {
+        return allocations.size();
+    }
+
+    /**
+     * @return the number of free ranges in the vertex and index buffers, more than two means they are fragmented
+     */
+    int getNumFreeBlocks() {
+        return vertexSpace.getNumBlocks() + indexSpace.getNumBlocks();
+    }
+
+    /**
+     * Copies the geometry of a mesh to the arena, compacting it first if no free range is large enough.
+     *
+     * @return the ranges given to the mesh, or null if the arena has not enough space left or the mesh has too many
+     * vertices for 16 bit indices
+     */
+    Allocation allocate(final float[] positions, final float[] textCoords, final float[] normals,
+                        final int[] indices) {
+        final int numVertices = positions.length / 3;
+        final int numIndices = indices.length;
+        if (numVertices > VertexPacking.MAX_SHORT_INDEX_VERTICES) {
+            LOGGER.debug("allocate() - {} vertices need 32 bit indices, the mesh keeps its own buffers",
+                    numVertices);
+            return null;
+        }
+        if (numVertices > vertexSpace.getFreeSize() || numIndices > indexSpace.getFreeSize()) {
+            LOGGER.warn("allocate() - No room for {} vertices and {} indices, the mesh keeps its own buffers",
+                    numVertices, numIndices);
+            return null;
+        }
+        if (vertexSpace.getLargestBlock() < numVertices || indexSpace.getLargestBlock() < numIndices) {
+            defragment();
+        }
+        final Allocation allocation = new Allocation(
+                vertexSpace.allocate(numVertices), numVertices, indexSpace.allocate(numIndices), numIndices);
+        allocations.add(allocation);
+
+        ByteBuffer vertexBuffer = null;
+        ShortBuffer indicesBuffer = null;
+        try {
+            vertexBuffer = MemoryUtil.memAlloc(numVertices * VERTEX_SIZE_BYTES);
+            VertexPacking.putVertices(vertexBuffer, positions, textCoords, normals, HALF_TEXT_COORDS, true);
+            vertexBuffer.flip();
+            indicesBuffer = MemoryUtil.memAllocShort(numIndices);
+            for (int index : indices) {
+                indicesBuffer.put((short) index);
+            }
+            indicesBuffer.flip();
+
+            // The copy write target does not touch the element buffer binding of the bound VAO
+            glBindBuffer(GL_COPY_WRITE_BUFFER, vertexVboId);
+            glBufferSubData(GL_COPY_WRITE_BUFFER, (long) allocation.firstVertex * VERTEX_SIZE_BYTES, vertexBuffer);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, indexVboId);
+            glBufferSubData(GL_COPY_WRITE_BUFFER, (long) allocation.firstIndex * INDEX_SIZE_BYTES, indicesBuffer);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        } finally {
+            if (vertexBuffer != null) {
+                MemoryUtil.memFree(vertexBuffer);
+            }
+            if (indicesBuffer != null) {
+                MemoryUtil.memFree(indicesBuffer);
+            }
+        }
+        logOccupancy("allocate()");
+        return allocation;
+    }
+
+    void free(final Allocation allocation) {
+        if (allocations.remove(allocation)) {
+            vertexSpace.free(allocation.firstVertex, allocation.numVertices);
+            indexSpace.free(allocation.firstIndex, allocation.numIndices);
+            logOccupancy("free()");
+        }
+    }
+
+    /**
+     * Moves all the allocations to the start of new buffers, leaving a single free range in each of them.
+     * Indices are relative to the first vertex of their mesh, so they are copied unchanged.
+     */
+    void defragment() {
+        final int newVertexVboId = createBuffer(GL_COPY_WRITE_BUFFER, (long) vertexCapacity * VERTEX_SIZE_BYTES,
+                GL_STATIC_DRAW);
+        final int newIndexVboId = createBuffer(GL_COPY_WRITE_BUFFER, (long) indexCapacity * INDEX_SIZE_BYTES,
+                GL_STATIC_DRAW);
+
+        int nextVertex = 0;
+        int nextIndex = 0;
+        for (Allocation allocation : allocations) {
+            copy(vertexVboId, newVertexVboId, allocation.firstVertex, nextVertex, allocation.numVertices,
+                    VERTEX_SIZE_BYTES);
+            copy(indexVboId, newIndexVboId, allocation.firstIndex, nextIndex, allocation.numIndices,
+                    INDEX_SIZE_BYTES);
+            allocation.firstVertex = nextVertex;
+            allocation.firstIndex = nextIndex;
+            nextVertex += allocation.numVertices;
+            nextIndex += allocation.numIndices;
+        }
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+
+        glDeleteBuffers(vertexVboId);
+        glDeleteBuffers(indexVboId);
+        vertexVboId = newVertexVboId;
+        indexVboId = newIndexVboId;
+        setUpVertexArray();
+
+        vertexSpace.reset(nextVertex);
+        indexSpace.reset(nextIndex);
+        logOccupancy("defragment()");
+    }
+
+    /**
+     * Draws the geometry of a mesh, the arena VAO must be bound.
+     */
+    void drawElements(final Allocation allocation) {
+        glDrawElementsBaseVertex(GL_TRIANGLES, allocation.numIndices, GL_UNSIGNED_SHORT,
+                (long) allocation.firstIndex * INDEX_SIZE_BYTES, allocation.firstVertex);
+        GlStateCache.drawCalled(allocation.numIndices, 1);
+    }
+
+    /**
+     * Draws the items, whose meshes must be in this arena, with one glMultiDrawElementsIndirect call per
+     * chunk of items. Only available when {@link #isMultiDrawIndirect()} is true and the VAO is bound. The items
+     * may use different layers of the same texture array, each one is drawn with the layer of its material.
+     */
+    void drawIndirect(final List<GameItem> gameItems, final Transformation transformation) {
+        final int size = gameItems.size();
+        for (int start = 0; start < size; start += maxDrawsPerCall) {
+            final int end = Math.min(size, start + maxDrawsPerCall);
+            instanceBuffer.clear();
+            commandBuffer.clear();
+            int numIndices = 0;
+            for (int i = start; i < end; i++) {
+                final GameItem gameItem = gameItems.get(i);
+                final Allocation allocation = gameItem.getMesh().getArenaAllocation();
+                final int instanceOffset = (i - start) * INSTANCE_SIZE_FLOATS;
+                transformation.buildModelMatrix(gameItem).get(instanceOffset, instanceBuffer);
+                instanceBuffer.put(instanceOffset + MATRIX_SIZE_FLOATS,
+                        gameItem.getMesh().getMaterial().getTextureLayer());
+                commandBuffer.put(allocation.numIndices)
+                        .put(1)
+                        .put(allocation.firstIndex)
+                        .put(allocation.firstVertex)
+                        .put(i - start);
+                numIndices += allocation.numIndices;
+            }
+            instanceBuffer.limit((end - start) * INSTANCE_SIZE_FLOATS);
+            commandBuffer.flip();
+
+            glBindBuffer(GL_ARRAY_BUFFER, instanceVboId);
+            glBufferSubData(GL_ARRAY_BUFFER, 0, instanceBuffer);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            glBindBuffer(GL_DRAW_INDIRECT_BUFFER, indirectBufferId);
+            glBufferSubData(GL_DRAW_INDIRECT_BUFFER, 0, commandBuffer);
+
+            glMultiDrawElementsIndirect(GL_TRIANGLES, GL_UNSIGNED_SHORT, 0, end - start, 0);
+            GlStateCache.drawCalled(numIndices, 1);
+            glBindBuffer(GL_DRAW_INDIRECT_BUFFER, 0);
+        }
+    }
+
+    void cleanup() {
+        GlStateCache.vertexArrayDeleted(vaoId);
+        glDeleteVertexArrays(vaoId);
+        glDeleteBuffers(vertexVboId);
+        glDeleteBuffers(indexVboId);
+        if (multiDrawIndirect) {
+            glDeleteBuffers(instanceVboId);
+            glDeleteBuffers(indirectBufferId);
+            MemoryUtil.memFree(instanceBuffer);
+            MemoryUtil.memFree(commandBuffer);
+        }
+        allocations.clear();
+    }
+
+    private void setUpVertexArray() {
+        GlStateCache.bindVertexArray(vaoId);
+        glBindBuffer(GL_ARRAY_BUFFER, vertexVboId);
+        VertexPacking.setUpAttributes(HALF_TEXT_COORDS, true);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexVboId);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        GlStateCache.bindVertexArray(0);
+    }
+
+    private void logOccupancy(final String method) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} - {} meshes, {}/{} vertices, {}/{} indices, {} free blocks", method,
+                    allocations.size(), getUsedVertices(), vertexCapacity, getUsedIndices(), indexCapacity,
+                    getNumFreeBlocks());
+        }
+    }
+
+    private static int createBuffer(final int target, final long size, final int usage) {
+        final int bufferId = glGenBuffers();
+        glBindBuffer(target, bufferId);
+        glBufferData(target, size, usage);
+        glBindBuffer(target, 0);
+        return bufferId;
+    }
+
+    private static void copy(final int sourceId, final int targetId, final int sourceOffset, final int targetOffset,
+                             final int count, final int elementSize) {
+        glBindBuffer(GL_COPY_READ_BUFFER, sourceId);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, targetId);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, (long) sourceOffset * elementSize,
+                (long) targetOffset * elementSize, (long) count * elementSize);
+    }
+
+    /**
+     * Ranges of vertices and indices given to a mesh. They are updated when the arena is defragmented.
+     */
+    static class Allocation {
+
+        private int firstVertex;
+
+        private final int numVertices;
+
+        private int firstIndex;
+
+        private final int numIndices;
+
+        Allocation(final int firstVertex, final int numVertices, final int firstIndex, final int numIndices) {
+            this.firstVertex = firstVertex;
+            this.numVertices = numVertices;
+            this.firstIndex = firstIndex;
+            this.numIndices = numIndices;
+        }
+    }
+
+    /**
+     * First fit allocator over a range of elements. Free ranges are kept sorted by offset and merged with their
+     * neighbours when released, so that they do not split the space more than needed.
+     */
+    static class FreeList {
+
+        private static final int INITIAL_BLOCKS = 16;
+
+        private final int capacity;
+
+        private int[] offsets;
+
+        private int[] sizes;
+
+        private int numBlocks;
+
+        FreeList(final int capacity) {
+            this.capacity = capacity;
+            offsets = new int[INITIAL_BLOCKS];
+            sizes = new int[INITIAL_BLOCKS];
+            reset(0);
+        }
+
+        int getNumBlocks() {
+            return numBlocks;
+        }
+
+        int getFreeSize() {
+            int free = 0;
+            for (int i = 0; i < numBlocks; i++) {
+                free += sizes[i];
+            }
+            return free;
+        }
+
+        int getLargestBlock() {
+            int largest = 0;
+            for (int i = 0; i < numBlocks; i++) {
+                largest = Math.max(largest, sizes[i]);
+            }
+            return largest;
+        }
+
+        /**
+         * @return the offset of the allocated range, or -1 if no free range is large enough
+         */
+        int allocate(final int size) {
+            for (int i = 0; i < numBlocks; i++) {
+                if (sizes[i] >= size) {
+                    final int offset = offsets[i];
+                    offsets[i] += size;
+                    sizes[i] -= size;
+                    if (sizes[i] == 0) {
+                        remove(i);
+                    }
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        void free(final int offset, final int size) {
+            if (size == 0) {
+                return;
+            }
+            int index = 0;
+            while (index < numBlocks && offsets[index] < offset) {
+                index++;
+            }
+            final boolean mergePrevious = index > 0 && offsets[index - 1] + sizes[index - 1] == offset;
+            final boolean mergeNext = index < numBlocks && offset + size == offsets[index];
+            if (mergePrevious && mergeNext) {
+                sizes[index - 1] += size + sizes[index];
+                remove(index);
+            } else if (mergePrevious) {
+                sizes[index - 1] += size;
+            } else if (mergeNext) {
+                offsets[index] = offset;
+                sizes[index] += size;
+            } else {
+                insert(index, offset, size);
+            }
+        }
+
+        /**
+         * Leaves a single free range after the given number of used elements.
+         */
+        void reset(final int used) {
+            numBlocks = 0;
+            if (used < capacity) {
+                insert(0, used, capacity - used);
+            }
+        }
+
+        private void insert(final int index, final int offset, final int size) {
+            if (numBlocks == offsets.length) {
+                offsets = Arrays.copyOf(offsets, numBlocks * 2);
+                sizes = Arrays.copyOf(sizes, numBlocks * 2);
+            }
+            System.arraycopy(offsets, index, offsets, index + 1, numBlocks - index);
+            System.arraycopy(sizes, index, sizes, index + 1, numBlocks - index);
+            offsets[index] = offset;
+            sizes[index] = size;
+            numBlocks++;
+        }
+
+        private void remove(final int index) {
+            System.arraycopy(offsets, index + 1, offsets, index, numBlocks - index - 1);
+            System.arraycopy(sizes, index + 1, sizes, index, numBlocks - index - 1);
+            numBlocks--;
+        }
+    }
+}
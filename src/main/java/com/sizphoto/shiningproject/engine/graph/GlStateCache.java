@@ -0,0 +1,249 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import java.util.Arrays;
+
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Shadow copy of the GL state the engine changes most often. Every program, VAO, texture and capability change
+ * made by the engine goes through this class, so calls that would not change anything are dropped before they
+ * reach the driver. The initial values match the defaults of a freshly created context.
+ * GL is only used from the game loop thread, so the state is kept in static fields.
+ */
+public final class GlStateCache {
+
+    private static final int MAX_TEXTURE_UNITS = 16;
+
+    private static final int[] TEXTURES = new int[MAX_TEXTURE_UNITS];
+
+    private static int program;
+
+    private static int vertexArray;
+
+    private static int activeTextureUnit;
+
+    private static boolean blend;
+
+    private static boolean depthTest;
+
+    private static boolean cullFace;
+
+    private static boolean depthMask = true;
+
+    private static int issuedCalls;
+
+    private static int skippedCalls;
+
+    private static int lastFrameIssuedCalls;
+
+    private static int lastFrameSkippedCalls;
+
+    private static int drawCalls;
+
+    private static long triangles;
+
+    private static int lastFrameDrawCalls;
+
+    private static long lastFrameTriangles;
+
+    private GlStateCache() {
+    }
+
+    /**
+     * Forgets the cached state, to be called once a new context is current. The cache then holds the defaults of a
+     * fresh context, the state of a previous context would skip binds the new one still needs.
+     */
+    public static void reset() {
+        program = 0;
+        vertexArray = 0;
+        activeTextureUnit = 0;
+        Arrays.fill(TEXTURES, 0);
+        blend = false;
+        depthTest = false;
+        cullFace = false;
+        depthMask = true;
+        issuedCalls = 0;
+        skippedCalls = 0;
+        drawCalls = 0;
+        triangles = 0;
+    }
+
+    public static void useProgram(final int programId) {
+        if (program == programId) {
+            skippedCalls++;
+            return;
+        }
+        program = programId;
+        issuedCalls++;
+        glUseProgram(programId);
+    }
+
+    public static void bindVertexArray(final int vaoId) {
+        if (vertexArray == vaoId) {
+            skippedCalls++;
+            return;
+        }
+        vertexArray = vaoId;
+        issuedCalls++;
+        glBindVertexArray(vaoId);
+    }
+
+    /**
+     * Binds a 2D texture to the given texture unit, starting at 0 for GL_TEXTURE0.
+     */
+    public static void bindTexture(final int unit, final int textureId) {
+        bindTexture(unit, GL_TEXTURE_2D, textureId);
+    }
+
+    /**
+     * Binds a texture of any target. Only one target is tracked per unit, so each unit must always be used with
+     * the same target.
+     */
+    public static void bindTexture(final int unit, final int target, final int textureId) {
+        if (TEXTURES[unit] == textureId) {
+            skippedCalls++;
+            return;
+        }
+        activeTexture(unit);
+        TEXTURES[unit] = textureId;
+        issuedCalls++;
+        glBindTexture(target, textureId);
+    }
+
+    public static void setBlend(final boolean enabled) {
+        if (blend == enabled) {
+            skippedCalls++;
+            return;
+        }
+        blend = enabled;
+        setCapability(GL_BLEND, enabled);
+    }
+
+    public static void setDepthTest(final boolean enabled) {
+        if (depthTest == enabled) {
+            skippedCalls++;
+            return;
+        }
+        depthTest = enabled;
+        setCapability(GL_DEPTH_TEST, enabled);
+    }
+
+    public static void setCullFace(final boolean enabled) {
+        if (cullFace == enabled) {
+            skippedCalls++;
+            return;
+        }
+        cullFace = enabled;
+        setCapability(GL_CULL_FACE, enabled);
+    }
+
+    public static void setDepthMask(final boolean enabled) {
+        if (depthMask == enabled) {
+            skippedCalls++;
+            return;
+        }
+        depthMask = enabled;
+        issuedCalls++;
+        glDepthMask(enabled);
+    }
+
+    /**
+     * Must be called when a program is deleted, GL reverts the binding to 0 if it was in use.
+     */
+    public static void programDeleted(final int programId) {
+        if (program == programId) {
+            program = 0;
+        }
+    }
+
+    /**
+     * Must be called when a VAO is deleted, GL reverts the binding to 0 if it was bound.
+     */
+    public static void vertexArrayDeleted(final int vaoId) {
+        if (vertexArray == vaoId) {
+            vertexArray = 0;
+        }
+    }
+
+    /**
+     * Must be called when a texture is deleted, GL reverts every unit it was bound to back to 0.
+     */
+    public static void textureDeleted(final int textureId) {
+        for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+            if (TEXTURES[i] == textureId) {
+                TEXTURES[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Counts a draw call in the statistics of the current frame.
+     *
+     * @param numIndices triangle indices drawn by each instance
+     * @param instances  instances drawn
+     */
+    static void drawCalled(final int numIndices, final int instances) {
+        drawCalls++;
+        triangles += (long) numIndices / 3 * instances;
+    }
+
+    /**
+     * Closes the statistics of the current frame, they can be read until the next call.
+     */
+    public static void endFrame() {
+        lastFrameIssuedCalls = issuedCalls;
+        lastFrameSkippedCalls = skippedCalls;
+        lastFrameDrawCalls = drawCalls;
+        lastFrameTriangles = triangles;
+        issuedCalls = 0;
+        skippedCalls = 0;
+        drawCalls = 0;
+        triangles = 0;
+    }
+
+    /**
+     * @return the number of state changes sent to GL during the last frame
+     */
+    public static int getLastFrameIssuedCalls() {
+        return lastFrameIssuedCalls;
+    }
+
+    /**
+     * @return the number of state changes dropped during the last frame because GL was already in that state
+     */
+    public static int getLastFrameSkippedCalls() {
+        return lastFrameSkippedCalls;
+    }
+
+    /**
+     * @return the number of draw calls of the last frame
+     */
+    public static int getLastFrameDrawCalls() {
+        return lastFrameDrawCalls;
+    }
+
+    /**
+     * @return the number of triangles submitted during the last frame
+     */
+    public static long getLastFrameTriangles() {
+        return lastFrameTriangles;
+    }
+
+    private static void activeTexture(final int unit) {
+        if (activeTextureUnit == unit) {
+            return;
+        }
+        activeTextureUnit = unit;
+        issuedCalls++;
+        glActiveTexture(GL_TEXTURE0 + unit);
+    }
+
+    private static void setCapability(final int capability, final boolean enabled) {
+        issuedCalls++;
+        if (enabled) {
+            glEnable(capability);
+        } else {
+            glDisable(capability);
+        }
+    }
+}
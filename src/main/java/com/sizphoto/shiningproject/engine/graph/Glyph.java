@@ -0,0 +1,83 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+/**
+ * Quad and texture coordinates of a character, filled by an {@link IFont}. Positions are in pixels, relative to
+ * the pen position on the top of the line, with y growing downwards as in screen coordinates.
+ */
+public class Glyph {
+
+    private float x0;
+
+    private float y0;
+
+    private float x1;
+
+    private float y1;
+
+    private float u0;
+
+    private float v0;
+
+    private float u1;
+
+    private float v1;
+
+    private float advance;
+
+    void setQuad(final float x0, final float y0, final float x1, final float y1) {
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+    }
+
+    void setTextCoords(final float u0, final float v0, final float u1, final float v1) {
+        this.u0 = u0;
+        this.v0 = v0;
+        this.u1 = u1;
+        this.v1 = v1;
+    }
+
+    void setAdvance(final float advance) {
+        this.advance = advance;
+    }
+
+    public float getX0() {
+        return x0;
+    }
+
+    public float getY0() {
+        return y0;
+    }
+
+    public float getX1() {
+        return x1;
+    }
+
+    public float getY1() {
+        return y1;
+    }
+
+    public float getU0() {
+        return u0;
+    }
+
+    public float getV0() {
+        return v0;
+    }
+
+    public float getU1() {
+        return u1;
+    }
+
+    public float getV1() {
+        return v1;
+    }
+
+    /**
+     * @return the distance from this character to the next one
+     */
+    public float getAdvance() {
+        return advance;
+    }
+}
@@ -0,0 +1,332 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.lwjgl.stb.STBTTFontinfo;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.lwjgl.stb.STBTruetype.*;
+
+/**
+ * Glyphs of a TrueType font rasterized with stb_truetype the first time they are drawn, so any Unicode character
+ * can be shown while the video memory stays bounded by a fixed size atlas. Glyphs are packed with a
+ * {@link SkylinePacker} and each new glyph only updates its own rectangle of the texture. When the atlas is full,
+ * the least recently used glyph that no text holds any more gives its rectangle to the new one. Glyphs held by
+ * texts are never evicted, a glyph that finds no room while every rectangle is held is drawn as an empty quad.
+ * Glyphs are found by code point through a primitive hash map, so characters outside the Basic Multilingual Plane
+ * are drawn like any other. The atlas must only be used from the render thread.
+ */
+public class GlyphAtlas implements IFont {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GlyphAtlas.class);
+
+    // Empty texels between glyphs, so that filtering never reads a neighbour
+    private static final int PADDING = 1;
+
+    private static final int NONE = -1;
+
+    private static final int MAX_GLYPHS = 4096;
+
+    private final ByteBuffer fontData;
+
+    private final STBTTFontinfo fontInfo;
+
+    private final float scale;
+
+    private final int ascent;
+
+    private final int height;
+
+    private final int size;
+
+    private final Texture texture;
+
+    private final SkylinePacker packer;
+
+    private final int maxGlyphs;
+
+    // Glyph index of each code point in the atlas
+    private final LongIntHashMap glyphIndices;
+
+    private final int[] glyphCodePoints;
+
+    private final int[] slotX;
+
+    private final int[] slotY;
+
+    private final int[] slotWidth;
+
+    private final int[] slotHeight;
+
+    private final float[] glyphBounds;
+
+    private final float[] glyphAdvances;
+
+    private final int[] references;
+
+    private final int[] lruPrevious;
+
+    private final int[] lruNext;
+
+    private int lruHead = NONE;
+
+    private int lruTail = NONE;
+
+    private int numGlyphs;
+
+    private ByteBuffer bitmap;
+
+    private ByteBuffer pixels;
+
+    private int rasterized;
+
+    private int evicted;
+
+    /**
+     * @param fontFile   TrueType font file
+     * @param pixelSize  height of the glyphs in pixels
+     * @param atlasSize  side of the square atlas texture in pixels
+     */
+    public GlyphAtlas(final String fontFile, final int pixelSize, final int atlasSize) throws Exception {
+        final byte[] fileBytes = Files.readAllBytes(Paths.get(fontFile));
+        // stb_truetype reads the font data on every glyph, it must live as long as the atlas
+        fontData = MemoryUtil.memAlloc(fileBytes.length);
+        fontData.put(fileBytes).flip();
+        fontInfo = STBTTFontinfo.create();
+        if (!stbtt_InitFont(fontInfo, fontData)) {
+            MemoryUtil.memFree(fontData);
+            throw new Exception("Font file [" + fontFile + "] not loaded");
+        }
+        scale = stbtt_ScaleForPixelHeight(fontInfo, pixelSize);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final IntBuffer ascentBuffer = stack.mallocInt(1);
+            final IntBuffer descentBuffer = stack.mallocInt(1);
+            final IntBuffer lineGapBuffer = stack.mallocInt(1);
+            stbtt_GetFontVMetrics(fontInfo, ascentBuffer, descentBuffer, lineGapBuffer);
+            ascent = Math.round(ascentBuffer.get(0) * scale);
+            height = Math.round((ascentBuffer.get(0) - descentBuffer.get(0) + lineGapBuffer.get(0)) * scale);
+        }
+
+        size = atlasSize;
+        final TextureData empty = TextureData.allocate(size, size, 1);
+        MemoryUtil.memSet(empty.getPixels(), 0);
+        texture = new Texture(empty);
+        packer = new SkylinePacker(size);
+
+        // Glyphs take at least a padded pixel each way, in practice far more
+        maxGlyphs = Math.min((size / (1 + PADDING)) * (size / (1 + PADDING)), MAX_GLYPHS);
+        glyphIndices = new LongIntHashMap(maxGlyphs);
+        glyphCodePoints = new int[maxGlyphs];
+        slotX = new int[maxGlyphs];
+        slotY = new int[maxGlyphs];
+        slotWidth = new int[maxGlyphs];
+        slotHeight = new int[maxGlyphs];
+        glyphBounds = new float[maxGlyphs * 4];
+        glyphAdvances = new float[maxGlyphs];
+        references = new int[maxGlyphs];
+        lruPrevious = new int[maxGlyphs];
+        lruNext = new int[maxGlyphs];
+        LOGGER.debug("GlyphAtlas() - [{}] {} pixels, {}x{} atlas", fontFile, pixelSize, size, size);
+    }
+
+    @Override
+    public Texture getTexture() {
+        return texture;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean acquireGlyph(final int codePoint, final Glyph glyph) {
+        int index = glyphIndices.get(codePoint);
+        if (index == NONE) {
+            index = loadGlyph(codePoint, glyph);
+            if (index == NONE) {
+                return false;
+            }
+        }
+        if (references[index] == 0) {
+            unlink(index);
+        }
+        references[index]++;
+        final int bounds = index * 4;
+        glyph.setQuad(glyphBounds[bounds], glyphBounds[bounds + 1], glyphBounds[bounds + 2],
+                glyphBounds[bounds + 3]);
+        final float width = glyphBounds[bounds + 2] - glyphBounds[bounds];
+        final float glyphHeight = glyphBounds[bounds + 3] - glyphBounds[bounds + 1];
+        glyph.setTextCoords((float) slotX[index] / size, (float) slotY[index] / size,
+                (slotX[index] + width) / size, (slotY[index] + glyphHeight) / size);
+        glyph.setAdvance(glyphAdvances[index]);
+        return true;
+    }
+
+    @Override
+    public void releaseGlyph(final int codePoint) {
+        final int index = glyphIndices.get(codePoint);
+        if (index == NONE || references[index] == 0) {
+            return;
+        }
+        references[index]--;
+        if (references[index] == 0) {
+            // Most recently used glyphs are evicted last
+            link(index);
+        }
+    }
+
+    /**
+     * @return the glyphs rasterized so far, evicted ones included
+     */
+    public int getRasterized() {
+        return rasterized;
+    }
+
+    public int getEvicted() {
+        return evicted;
+    }
+
+    @Override
+    public void cleanup() {
+        TextureCache.release(texture);
+        MemoryUtil.memFree(fontData);
+        MemoryUtil.memFree(bitmap);
+        MemoryUtil.memFree(pixels);
+    }
+
+    /**
+     * Rasterizes a character into the atlas.
+     *
+     * @return the index of its glyph, or NONE if it has nothing to draw or does not fit, the glyph then gets an
+     * empty quad and the advance of the character
+     */
+    private int loadGlyph(final int codePoint, final Glyph glyph) {
+        final int x0;
+        final int y0;
+        final int width;
+        final int glyphHeight;
+        final float advance;
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final IntBuffer advanceWidth = stack.mallocInt(1);
+            final IntBuffer leftSideBearing = stack.mallocInt(1);
+            stbtt_GetCodepointHMetrics(fontInfo, codePoint, advanceWidth, leftSideBearing);
+            advance = advanceWidth.get(0) * scale;
+            final IntBuffer ix0 = stack.mallocInt(1);
+            final IntBuffer iy0 = stack.mallocInt(1);
+            final IntBuffer ix1 = stack.mallocInt(1);
+            final IntBuffer iy1 = stack.mallocInt(1);
+            stbtt_GetCodepointBitmapBox(fontInfo, codePoint, scale, scale, ix0, iy0, ix1, iy1);
+            x0 = ix0.get(0);
+            y0 = iy0.get(0);
+            width = ix1.get(0) - x0;
+            glyphHeight = iy1.get(0) - y0;
+        }
+        glyph.setQuad(0, 0, 0, 0);
+        glyph.setTextCoords(0, 0, 0, 0);
+        glyph.setAdvance(advance);
+        if (width <= 0 || glyphHeight <= 0 || stbtt_FindGlyphIndex(fontInfo, codePoint) == 0) {
+            return NONE;
+        }
+
+        final int index = allocate(width + PADDING, glyphHeight + PADDING);
+        if (index == NONE) {
+            LOGGER.warn("loadGlyph() - No room for [U+{}], every glyph of the atlas is on screen",
+                    Integer.toHexString(codePoint));
+            return NONE;
+        }
+        glyphCodePoints[index] = codePoint;
+        glyphIndices.putIfAbsent(codePoint, index);
+        references[index] = 0;
+        link(index);
+        // The quad is relative to the top of the line, glyph boxes are relative to the baseline
+        final int bounds = index * 4;
+        glyphBounds[bounds] = x0;
+        glyphBounds[bounds + 1] = ascent + y0;
+        glyphBounds[bounds + 2] = x0 + width;
+        glyphBounds[bounds + 3] = ascent + y0 + glyphHeight;
+        glyphAdvances[index] = advance;
+
+        // The whole slot is uploaded, clearing what a larger evicted glyph left around the new one
+        final int uploadWidth = slotWidth[index];
+        final int uploadHeight = slotHeight[index];
+        bitmap = ensureCapacity(bitmap, uploadWidth * uploadHeight);
+        pixels = ensureCapacity(pixels, uploadWidth * uploadHeight * TextureData.BYTES_PER_PIXEL);
+        MemoryUtil.memSet(bitmap, 0);
+        stbtt_MakeCodepointBitmap(fontInfo, bitmap, width, glyphHeight, uploadWidth, scale, scale, codePoint);
+        for (int i = 0; i < uploadWidth * uploadHeight; i++) {
+            // White glyphs, the text colour comes from the material
+            final int p = i * TextureData.BYTES_PER_PIXEL;
+            pixels.put(p, (byte) 0xFF).put(p + 1, (byte) 0xFF).put(p + 2, (byte) 0xFF).put(p + 3, bitmap.get(i));
+        }
+        texture.update(slotX[index], slotY[index], uploadWidth, uploadHeight, pixels);
+        rasterized++;
+        return index;
+    }
+
+    /**
+     * Finds a rectangle for a new glyph, packing it in the free space first and evicting the least recently used
+     * glyph large enough otherwise.
+     */
+    private int allocate(final int width, final int slotHeightNeeded) {
+        if (numGlyphs < maxGlyphs && packer.pack(width, slotHeightNeeded)) {
+            final int index = numGlyphs++;
+            slotX[index] = packer.getPackedX();
+            slotY[index] = packer.getPackedY();
+            slotWidth[index] = width;
+            slotHeight[index] = slotHeightNeeded;
+            return index;
+        }
+        for (int index = lruHead; index != NONE; index = lruNext[index]) {
+            if (slotWidth[index] >= width && slotHeight[index] >= slotHeightNeeded) {
+                // The new glyph keeps the whole slot, so it can be reused by a glyph as large as the evicted one
+                unlink(index);
+                glyphIndices.remove(glyphCodePoints[index]);
+                evicted++;
+                return index;
+            }
+        }
+        return NONE;
+    }
+
+    private void link(final int index) {
+        lruPrevious[index] = lruTail;
+        lruNext[index] = NONE;
+        if (lruTail != NONE) {
+            lruNext[lruTail] = index;
+        } else {
+            lruHead = index;
+        }
+        lruTail = index;
+    }
+
+    private void unlink(final int index) {
+        final int previous = lruPrevious[index];
+        final int next = lruNext[index];
+        if (previous != NONE) {
+            lruNext[previous] = next;
+        } else {
+            lruHead = next;
+        }
+        if (next != NONE) {
+            lruPrevious[next] = previous;
+        } else {
+            lruTail = previous;
+        }
+    }
+
+    private static ByteBuffer ensureCapacity(final ByteBuffer buffer, final int capacity) {
+        if (buffer != null && buffer.capacity() >= capacity) {
+            buffer.clear();
+            return buffer;
+        }
+        MemoryUtil.memFree(buffer);
+        return MemoryUtil.memAlloc(Math.max(capacity, 1));
+    }
+}
@@ -3,6 +3,8 @@ package com.sizphoto.shiningproject.engine.graph;
 import com.sizphoto.shiningproject.engine.Utils;
 import org.joml.Vector3f;
 import org.lwjgl.system.MemoryStack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.ResourceUtils;
 
 import java.io.File;
@@ -10,11 +12,14 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import static org.lwjgl.stb.STBImage.*;
 
 public class HeightMapMesh {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeightMapMesh.class);
+
     private static final int MAX_COLOUR = 255 * 255 * 255;
 
     private static final float START_X = -0.5f;
@@ -25,18 +30,242 @@ public class HeightMapMesh {
 
     private final float maxY;
 
-    private final Mesh mesh;
+    private final int numCols;
+
+    private final int numRows;
+
+    private final float[] positions;
+
+    private final float[] textCoords;
+
+    private final float[] normals;
+
+    private final int[] indices;
 
+    private Material material;
+
+    private Mesh mesh;
+
+    /**
+     * The texture is acquired from the {@link TextureCache}, whoever creates the height map gives it back by
+     * releasing the texture of {@link #getMaterial()}, as the terrain does.
+     */
     public HeightMapMesh(
             final float minY,
             final float maxY,
             final String heightMapFile,
             final String textureFile,
             final int textInc
+    ) throws Exception {
+        this(minY, maxY, heightMapFile, (Material) null, textInc);
+        // Acquired once the height map is read, a height map that fails to load holds no texture
+        material = new Material(TextureCache.acquire(textureFile), 0.0f);
+    }
+
+    /**
+     * @param material material of every mesh built from the height map, such as a layer of a texture array
+     */
+    public HeightMapMesh(
+            final float minY,
+            final float maxY,
+            final String heightMapFile,
+            final Material material,
+            final int textInc
     ) throws Exception {
         this.minY = minY;
         this.maxY = maxY;
 
+        final long start = System.nanoTime();
+        final long cacheParameters = Objects.hash(minY, maxY, textInc);
+        MeshData data = MeshCache.load(heightMapFile, cacheParameters);
+        if (data != null && data.getGridColumns() > 0) {
+            LOGGER.debug("HeightMapMesh() - [{}] read from the mesh cache in {} ms", heightMapFile,
+                    (System.nanoTime() - start) / 1_000_000);
+        } else {
+            data = decodeHeightMap(heightMapFile, textInc);
+            MeshCache.store(heightMapFile, cacheParameters, data);
+            LOGGER.debug("HeightMapMesh() - [{}] decoded in {} ms", heightMapFile,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        this.numCols = data.getGridColumns();
+        this.numRows = data.getNumVertices() / numCols;
+        this.positions = data.getPositions();
+        this.textCoords = data.getTextCoords();
+        this.normals = data.getNormals();
+        this.indices = data.getIndices();
+        this.material = material;
+    }
+
+    /**
+     * @return the full resolution mesh, created on the first call so that chunked terrains do not upload it
+     */
+    public Mesh getMesh() {
+        if (mesh == null) {
+            // The optimizer reorders the arrays, which are still needed in grid order to build chunks
+            final float[] meshPositions = positions.clone();
+            final float[] meshTextCoords = textCoords.clone();
+            final float[] meshNormals = normals.clone();
+            final int[] meshIndices = indices.clone();
+            MeshOptimizer.optimize(meshPositions, meshTextCoords, meshNormals, meshIndices, false);
+            mesh = new Mesh(meshPositions, meshTextCoords, meshNormals, meshIndices, true);
+            mesh.setMaterial(material);
+        }
+        return mesh;
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumTriangles() {
+        return (numCols - 1) * (numRows - 1) * 2;
+    }
+
+    float getMinY() {
+        return minY;
+    }
+
+    float getMaxY() {
+        return maxY;
+    }
+
+    float getHeight(final int col, final int row) {
+        return positions[(row * numCols + col) * 3 + 1];
+    }
+
+    /**
+     * Builds a mesh for the vertices between the given columns and rows (both inclusive), taking one of every
+     * step vertices. The border is extended downwards with a skirt, which hides the cracks left next to chunks
+     * drawn with a different step.
+     */
+    Mesh createChunkMesh(final int startCol, final int startRow, final int endCol, final int endRow,
+                         final int step, final float skirtDepth) {
+        final int cols = sampleCount(startCol, endCol, step);
+        final int rows = sampleCount(startRow, endRow, step);
+        final int gridVertices = cols * rows;
+        final int skirtVertices = 2 * (cols + rows) - 4;
+        final float[] chunkPositions = new float[(gridVertices + skirtVertices) * 3];
+        final float[] chunkTextCoords = new float[(gridVertices + skirtVertices) * 2];
+        final float[] chunkNormals = new float[(gridVertices + skirtVertices) * 3];
+        final int[] chunkIndices = new int[((cols - 1) * (rows - 1) + skirtVertices) * 6];
+
+        for (int j = 0; j < rows; j++) {
+            final int row = sample(startRow, endRow, step, j);
+            for (int i = 0; i < cols; i++) {
+                copyVertex(sample(startCol, endCol, step, i) + row * numCols, j * cols + i, 0,
+                        chunkPositions, chunkTextCoords, chunkNormals);
+            }
+        }
+
+        // Same triangulation as the full resolution mesh
+        int index = 0;
+        for (int j = 0; j < rows - 1; j++) {
+            for (int i = 0; i < cols - 1; i++) {
+                final int leftTop = j * cols + i;
+                final int leftBottom = (j + 1) * cols + i;
+                final int rightBottom = (j + 1) * cols + i + 1;
+                final int rightTop = j * cols + i + 1;
+
+                chunkIndices[index++] = leftTop;
+                chunkIndices[index++] = leftBottom;
+                chunkIndices[index++] = rightTop;
+
+                chunkIndices[index++] = rightTop;
+                chunkIndices[index++] = leftBottom;
+                chunkIndices[index++] = rightBottom;
+            }
+        }
+
+        // Walk the border keeping the chunk on the same side (north edge towards +x, then east, south and west),
+        // so that the skirt faces outwards
+        int skirtVertex = gridVertices;
+        for (int k = 0; k < skirtVertices; k++) {
+            final int gridVertex = borderVertex(k, cols, rows);
+            final int nextGridVertex = borderVertex((k + 1) % skirtVertices, cols, rows);
+            final int nextSkirtVertex = gridVertices + (k + 1) % skirtVertices;
+            copyVertex(gridIndexToVertex(gridVertex, cols, startCol, endCol, startRow, endRow, step), skirtVertex,
+                    skirtDepth, chunkPositions, chunkTextCoords, chunkNormals);
+
+            chunkIndices[index++] = gridVertex;
+            chunkIndices[index++] = nextGridVertex;
+            chunkIndices[index++] = skirtVertex;
+
+            chunkIndices[index++] = nextGridVertex;
+            chunkIndices[index++] = nextSkirtVertex;
+            chunkIndices[index++] = skirtVertex;
+            skirtVertex++;
+        }
+
+        // A height field is seen from above, so only the vertex cache order is worth changing
+        MeshOptimizer.optimize(chunkPositions, chunkTextCoords, chunkNormals, chunkIndices, false);
+        final Mesh chunkMesh = new Mesh(chunkPositions, chunkTextCoords, chunkNormals, chunkIndices, true);
+        chunkMesh.setMaterial(material);
+        return chunkMesh;
+    }
+
+    static int sampleCount(final int start, final int end, final int step) {
+        return (end - start + step - 1) / step + 1;
+    }
+
+    /**
+     * @return the i-th sampled column or row, the last one is always the end even if the step does not reach it
+     */
+    static int sample(final int start, final int end, final int step, final int i) {
+        return Math.min(start + i * step, end);
+    }
+
+    /**
+     * @return the index in the chunk grid of the k-th vertex of its border, walked clockwise seen from above
+     */
+    private static int borderVertex(final int k, final int cols, final int rows) {
+        if (k < cols - 1) {
+            return k;
+        }
+        if (k < cols + rows - 2) {
+            return (k - (cols - 1)) * cols + cols - 1;
+        }
+        if (k < 2 * cols + rows - 3) {
+            return (rows - 1) * cols + (cols - 1) - (k - (cols + rows - 2));
+        }
+        return (rows - 1 - (k - (2 * cols + rows - 3))) * cols;
+    }
+
+    private int gridIndexToVertex(final int gridVertex, final int cols, final int startCol, final int endCol,
+                                  final int startRow, final int endRow, final int step) {
+        final int col = sample(startCol, endCol, step, gridVertex % cols);
+        final int row = sample(startRow, endRow, step, gridVertex / cols);
+        return row * numCols + col;
+    }
+
+    private void copyVertex(final int source, final int target, final float depth, final float[] chunkPositions,
+                            final float[] chunkTextCoords, final float[] chunkNormals) {
+        chunkPositions[target * 3] = positions[source * 3];
+        chunkPositions[target * 3 + 1] = positions[source * 3 + 1] - depth;
+        chunkPositions[target * 3 + 2] = positions[source * 3 + 2];
+        chunkTextCoords[target * 2] = textCoords[source * 2];
+        chunkTextCoords[target * 2 + 1] = textCoords[source * 2 + 1];
+        chunkNormals[target * 3] = normals[source * 3];
+        chunkNormals[target * 3 + 1] = normals[source * 3 + 1];
+        chunkNormals[target * 3 + 2] = normals[source * 3 + 2];
+    }
+
+    public static float getXLength() {
+        return Math.abs(-START_X * 2);
+    }
+
+    public static float getZLength() {
+        return Math.abs(-START_Z * 2);
+    }
+
+    private MeshData decodeHeightMap(final String heightMapFile, final int textInc) throws Exception {
         ByteBuffer buf;
         int width;
         int height;
@@ -58,8 +287,6 @@ public class HeightMapMesh {
             height = h.get();
         }
 
-        final Texture texture = new Texture(textureFile);
-
         final float incX = getXLength() / (width - 1);
         final float incZ = getZLength() / (height - 1);
 
@@ -71,7 +298,7 @@ public class HeightMapMesh {
             for (int col = 0; col < width; col++) {
                 // Create vertex for current position
                 positions.add(START_X + col * incX); // x
-                positions.add(getHeight(col, row, width, buf)); //y
+                positions.add(decodeHeight(col, row, width, buf)); //y
                 positions.add(START_Z + row * incZ); //z
 
                 // Set texture coordinates
@@ -96,26 +323,9 @@ public class HeightMapMesh {
             }
         }
         final float[] posArr = Utils.listToArray(positions);
-        final int[] indicesArr = indices.stream().mapToInt(i -> i).toArray();
-        final float[] textCoordsArr = Utils.listToArray(textCoords);
-        final float[] normalsArr = calcNormals(posArr, width, height);
-        this.mesh = new Mesh(posArr, textCoordsArr, normalsArr, indicesArr);
-        final Material material = new Material(texture, 0.0f);
-        mesh.setMaterial(material);
-
         stbi_image_free(buf);
-    }
-
-    public Mesh getMesh() {
-        return mesh;
-    }
-
-    public static float getXLength() {
-        return Math.abs(-START_X * 2);
-    }
-
-    public static float getZLength() {
-        return Math.abs(-START_Z * 2);
+        return new MeshData(posArr, Utils.listToArray(textCoords), calcNormals(posArr, width, height),
+                indices.stream().mapToInt(i -> i).toArray(), width);
     }
 
     private float[] calcNormals(final float[] posArr, final int width, final int height) {
@@ -190,7 +400,7 @@ public class HeightMapMesh {
         return Utils.listToArray(normals);
     }
 
-    private float getHeight(final int x, final int z, final int width, final ByteBuffer buffer) {
+    private float decodeHeight(final int x, final int z, final int width, final ByteBuffer buffer) {
         byte r = buffer.get(x * 4 + z * 4 * width);
         byte g = buffer.get(x * 4 + 1 + z * 4 * width);
         byte b = buffer.get(x * 4 + 2 + z * 4 * width);
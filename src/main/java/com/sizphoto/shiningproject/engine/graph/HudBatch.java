@@ -0,0 +1,173 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import static org.lwjgl.opengl.GL30.*;
+
+/**
+ * Draws consecutive HUD items that share a texture with a single call. Their vertices are transformed on the CPU
+ * and written, with the colour of their material, into one streaming vertex buffer that is orphaned on every
+ * draw, its new storage sized to the pending items rather than to the capacity of the batch. Only items whose
+ * geometry is kept on the CPU, that is {@link DynamicMesh} items such as text, can be batched, the others are drawn
+ * on their own.
+ */
+class HudBatch {
+
+    static final int COLOUR_LOCATION = 3;
+
+    // float position, float texture coordinates and an RGBA colour
+    private static final int VERTEX_SIZE_BYTES = 3 * Float.BYTES + 2 * Float.BYTES + 4;
+
+    // 16 bit indices
+    private static final int MAX_VERTICES = 65536;
+
+    private static final int MAX_INDICES = MAX_VERTICES * 3;
+
+    private final int vaoId;
+
+    private final int vertexVboId;
+
+    private final int indexVboId;
+
+    private final ByteBuffer vertices;
+
+    private final ShortBuffer indices;
+
+    private final Vector3f position;
+
+    private Texture texture;
+
+    private int numVertices;
+
+    private int numIndices;
+
+    HudBatch() {
+        vertices = MemoryUtil.memAlloc(MAX_VERTICES * VERTEX_SIZE_BYTES);
+        indices = MemoryUtil.memAllocShort(MAX_INDICES);
+        position = new Vector3f();
+
+        vaoId = glGenVertexArrays();
+        GlStateCache.bindVertexArray(vaoId);
+        vertexVboId = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexVboId);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, VERTEX_SIZE_BYTES, 0);
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(1, 2, GL_FLOAT, false, VERTEX_SIZE_BYTES, 3 * Float.BYTES);
+        glEnableVertexAttribArray(COLOUR_LOCATION);
+        glVertexAttribPointer(COLOUR_LOCATION, 4, GL_UNSIGNED_BYTE, true, VERTEX_SIZE_BYTES, 5 * Float.BYTES);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        indexVboId = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexVboId);
+        GlStateCache.bindVertexArray(0);
+    }
+
+    static boolean canBatch(final Mesh mesh) {
+        return mesh instanceof DynamicMesh;
+    }
+
+    /**
+     * @return true if the mesh can join the pending items, false if they must be drawn first
+     */
+    boolean accepts(final Mesh mesh) {
+        final DynamicMesh dynamicMesh = (DynamicMesh) mesh;
+        return isEmpty() || mesh.getMaterial().getTexture() == texture
+                && numVertices + getNumVertices(dynamicMesh) <= MAX_VERTICES
+                && numIndices + dynamicMesh.getVertexCount() <= MAX_INDICES;
+    }
+
+    /**
+     * Appends the geometry of an item, {@link #accepts(Mesh)} must have returned true for its mesh.
+     */
+    void add(final GameItem gameItem, final Matrix4f modelMatrix) {
+        final DynamicMesh mesh = (DynamicMesh) gameItem.getMesh();
+        final FloatBuffer source = mesh.getVertices();
+        final ShortBuffer sourceIndices = mesh.getIndices();
+        final int sourceVertices = getNumVertices(mesh);
+        final int sourceIndexCount = mesh.getVertexCount();
+        texture = mesh.getMaterial().getTexture();
+
+        final Vector4f colour = mesh.getMaterial().getAmbientColour();
+        final byte red = toByte(colour.x);
+        final byte green = toByte(colour.y);
+        final byte blue = toByte(colour.z);
+        final byte alpha = toByte(colour.w);
+        for (int i = 0; i < sourceVertices; i++) {
+            final int offset = i * DynamicMesh.VERTEX_SIZE_FLOATS;
+            modelMatrix.transformPosition(source.get(offset), source.get(offset + 1), source.get(offset + 2),
+                    position);
+            vertices.putFloat(position.x).putFloat(position.y).putFloat(position.z);
+            vertices.putFloat(source.get(offset + 3)).putFloat(source.get(offset + 4));
+            vertices.put(red).put(green).put(blue).put(alpha);
+        }
+        for (int i = 0; i < sourceIndexCount; i++) {
+            indices.put((short) (numVertices + (sourceIndices.get(i) & 0xFFFF)));
+        }
+        numVertices += sourceVertices;
+        numIndices += sourceIndexCount;
+    }
+
+    boolean isEmpty() {
+        return numIndices == 0;
+    }
+
+    Texture getTexture() {
+        return texture;
+    }
+
+    /**
+     * @return the indices of the pending items, written up to the position of the buffer
+     */
+    ShortBuffer getIndices() {
+        return indices;
+    }
+
+    /**
+     * Draws the pending items and clears the batch, the HUD shader and its uniforms must be set up.
+     */
+    void draw() {
+        vertices.flip();
+        indices.flip();
+        if (texture != null) {
+            texture.bind();
+        }
+        GlStateCache.bindVertexArray(vaoId);
+        glBindBuffer(GL_ARRAY_BUFFER, vertexVboId);
+        // Orphans and uploads in one call, the flipped buffers hold numVertices and numIndices entries
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STREAM_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STREAM_DRAW);
+        glDrawElements(GL_TRIANGLES, numIndices, GL_UNSIGNED_SHORT, 0);
+        GlStateCache.drawCalled(numIndices, 1);
+        vertices.clear();
+        indices.clear();
+        numVertices = 0;
+        numIndices = 0;
+        texture = null;
+    }
+
+    void cleanup() {
+        glDeleteBuffers(vertexVboId);
+        glDeleteBuffers(indexVboId);
+        GlStateCache.vertexArrayDeleted(vaoId);
+        glDeleteVertexArrays(vaoId);
+        MemoryUtil.memFree(vertices);
+        MemoryUtil.memFree(indices);
+    }
+
+    private static int getNumVertices(final DynamicMesh mesh) {
+        return mesh.getVertices().limit() / DynamicMesh.VERTEX_SIZE_FLOATS;
+    }
+
+    private static byte toByte(final float value) {
+        return (byte) Math.round(Math.max(0, Math.min(1, value)) * 255);
+    }
+}
@@ -0,0 +1,34 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+/**
+ * Source of the glyphs drawn by text items. A glyph is held from the moment it is acquired until it is released,
+ * so fonts that load glyphs on demand know which ones are on screen and must not be evicted.
+ */
+public interface IFont {
+
+    Texture getTexture();
+
+    /**
+     * @return the height of a line of text in pixels
+     */
+    int getHeight();
+
+    /**
+     * Fills the glyph of a character, loading it if needed. Characters with nothing to draw, such as spaces or
+     * characters missing from the font, get an empty quad.
+     *
+     * @param codePoint Unicode code point of the character, surrogate pairs are not split
+     * @return true if the character is held and must be released
+     */
+    boolean acquireGlyph(int codePoint, Glyph glyph);
+
+    /**
+     * Gives back a character acquired before.
+     */
+    void releaseGlyph(int codePoint);
+
+    /**
+     * Deletes the texture and anything else held by the font.
+     */
+    void cleanup();
+}
@@ -0,0 +1,127 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL33.*;
+
+public class InstancedMesh extends Mesh {
+
+    private static final int FLOAT_SIZE_BYTES = 4;
+
+    private static final int VECTOR4F_SIZE_BYTES = 4 * FLOAT_SIZE_BYTES;
+
+    private static final int MATRIX_SIZE_FLOATS = 4 * 4;
+
+    private static final int MATRIX_SIZE_BYTES = MATRIX_SIZE_FLOATS * FLOAT_SIZE_BYTES;
+
+    // First attribute location used by the per instance model matrix (a mat4 takes four vec4 slots)
+    private static final int MODEL_MATRIX_LOCATION = 3;
+
+    private final int numInstances;
+
+    private final int modelVboId;
+
+    private FloatBuffer modelBuffer;
+
+    public InstancedMesh(
+            final float[] positions,
+            final float[] textCoords,
+            final float[] normals,
+            final int[] indices,
+            final int numInstances
+    ) {
+        super(positions, textCoords, normals, indices);
+        this.numInstances = numInstances;
+
+        GlStateCache.bindVertexArray(getVaoId());
+
+        // Model matrices VBO. It is filled on each render call, so it is created as a dynamic buffer
+        // which is long lived and therefore managed by hand.
+        modelVboId = glGenBuffers();
+        modelBuffer = MemoryUtil.memAllocFloat(numInstances * MATRIX_SIZE_FLOATS);
+        glBindBuffer(GL_ARRAY_BUFFER, modelVboId);
+        glBufferData(GL_ARRAY_BUFFER, (long) numInstances * MATRIX_SIZE_BYTES, GL_DYNAMIC_DRAW);
+        int location = MODEL_MATRIX_LOCATION;
+        for (int i = 0; i < 4; i++) {
+            glEnableVertexAttribArray(location);
+            glVertexAttribPointer(location, 4, GL_FLOAT, false, MATRIX_SIZE_BYTES, (long) i * VECTOR4F_SIZE_BYTES);
+            // Advance this attribute once per instance instead of once per vertex
+            glVertexAttribDivisor(location, 1);
+            location++;
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        GlStateCache.bindVertexArray(0);
+    }
+
+    void renderListInstanced(final List<GameItem> gameItems, final Transformation transformation) {
+        initRender();
+
+        drawListInstanced(gameItems, transformation);
+
+        endRender();
+    }
+
+    /**
+     * Draws the items without touching the bindings, the caller must have called initRender before.
+     */
+    void drawListInstanced(final List<GameItem> gameItems, final Transformation transformation) {
+        // Items that do not fit in the instance buffer are drawn in several chunks
+        final int size = gameItems.size();
+        for (int start = 0; start < size; start += numInstances) {
+            final int end = Math.min(size, start + numInstances);
+            renderChunkInstanced(gameItems, start, end, transformation);
+        }
+    }
+
+    private void renderChunkInstanced(
+            final List<GameItem> gameItems,
+            final int start,
+            final int end,
+            final Transformation transformation
+    ) {
+        final int chunkSize = end - start;
+        modelBuffer.clear();
+        for (int i = start; i < end; i++) {
+            final Matrix4f modelMatrix = transformation.buildModelMatrix(gameItems.get(i));
+            modelMatrix.get((i - start) * MATRIX_SIZE_FLOATS, modelBuffer);
+        }
+        modelBuffer.limit(chunkSize * MATRIX_SIZE_FLOATS);
+
+        glBindBuffer(GL_ARRAY_BUFFER, modelVboId);
+        glBufferSubData(GL_ARRAY_BUFFER, 0, modelBuffer);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        glDrawElementsInstanced(GL_TRIANGLES, getVertexCount(), getIndexType(), 0, chunkSize);
+        GlStateCache.drawCalled(getVertexCount(), chunkSize);
+    }
+
+    @Override
+    public void cleanUp() {
+        super.cleanUp();
+        deleteInstanceBuffers();
+    }
+
+    @Override
+    public void deleteBuffers() {
+        super.deleteBuffers();
+        deleteInstanceBuffers();
+    }
+
+    /**
+     * Both cleanUp and deleteBuffers end up here, so the buffers are only released the first time.
+     */
+    private void deleteInstanceBuffers() {
+        if (modelBuffer == null) {
+            return;
+        }
+        glDeleteBuffers(modelVboId);
+        MemoryUtil.memFree(modelBuffer);
+        modelBuffer = null;
+    }
+}
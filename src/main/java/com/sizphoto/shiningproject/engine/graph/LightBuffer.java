@@ -0,0 +1,242 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.SceneLight;
+import com.sizphoto.shiningproject.engine.graph.lights.DirectionalLight;
+import com.sizphoto.shiningproject.engine.graph.lights.PointLight;
+import com.sizphoto.shiningproject.engine.graph.lights.SpotLight;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL31.*;
+
+/**
+ * CPU side copy of the std140 "Lights" uniform block declared in the scene fragment shader.
+ * Lights are transformed to view space while they are packed into a single direct buffer, which is uploaded
+ * with one glBufferSubData call only when some value has changed. The buffer is also the persistent cache of
+ * the view space lights, so nothing is allocated per frame. A light is only transformed again when it is dirty, is
+ * not the one transformed last time into its slot, or the view matrix changed.
+ * The offsets below must be kept in sync with the block declaration.
+ */
+class LightBuffer {
+
+    private static final int AMBIENT_LIGHT_OFFSET = 0;
+
+    private static final int SPECULAR_POWER_OFFSET = 12;
+
+    private static final int DIRECTIONAL_LIGHT_OFFSET = 16;
+
+    private static final int NUM_POINT_LIGHTS_OFFSET = 48;
+
+    private static final int NUM_SPOT_LIGHTS_OFFSET = 52;
+
+    private static final int HEADER_SIZE = 64;
+
+    // vec3 colour, vec3 position, float intensity and the attenuation struct, each rounded to 16 bytes
+    private static final int POINT_LIGHT_SIZE = 48;
+
+    // Point light followed by vec3 conedir and float cutoff
+    private static final int SPOT_LIGHT_SIZE = POINT_LIGHT_SIZE + 16;
+
+    private final int bufferId;
+
+    private final int bindingPoint;
+
+    private final int maxPointLights;
+
+    private final int maxSpotLights;
+
+    private final int spotLightsOffset;
+
+    private final ByteBuffer buffer;
+
+    private int numPointLights;
+
+    private int numSpotLights;
+
+    private final Vector4f aux;
+
+    private boolean changed;
+
+    // View matrix and lights the view space lights were last computed from
+    private final Matrix4f lastViewMatrix;
+
+    private final PointLight[] lastPointLights;
+
+    private final SpotLight[] lastSpotLights;
+
+    private DirectionalLight lastDirectionalLight;
+
+    LightBuffer(final int bindingPoint, final int maxPointLights, final int maxSpotLights) {
+        this.bindingPoint = bindingPoint;
+        this.maxPointLights = maxPointLights;
+        this.maxSpotLights = maxSpotLights;
+        this.spotLightsOffset = HEADER_SIZE + maxPointLights * POINT_LIGHT_SIZE;
+
+        // The buffer lives as long as the renderer, so it is managed by hand
+        buffer = MemoryUtil.memCalloc(getSize());
+        aux = new Vector4f();
+        changed = true;
+        lastViewMatrix = new Matrix4f();
+        lastPointLights = new PointLight[maxPointLights];
+        lastSpotLights = new SpotLight[maxSpotLights];
+
+        bufferId = glGenBuffers();
+        glBindBuffer(GL_UNIFORM_BUFFER, bufferId);
+        glBufferData(GL_UNIFORM_BUFFER, getSize(), GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+
+        // Binding points are global state, so the buffer stays attached to the shader block
+        glBindBufferBase(GL_UNIFORM_BUFFER, bindingPoint, bufferId);
+    }
+
+    int getSize() {
+        return spotLightsOffset + maxSpotLights * SPOT_LIGHT_SIZE;
+    }
+
+    int getBindingPoint() {
+        return bindingPoint;
+    }
+
+    int getMaxPointLights() {
+        return maxPointLights;
+    }
+
+    int getMaxSpotLights() {
+        return maxSpotLights;
+    }
+
+    /**
+     * Packs the lights of the scene that changed since the previous call, and all of them when the view changed.
+     * The dirty flags of the lights packed are cleared.
+     */
+    void setLights(final SceneLight sceneLight, final Matrix4f viewMatrix, final float specularPower) {
+        final boolean viewChanged = !lastViewMatrix.equals(viewMatrix);
+        if (viewChanged) {
+            lastViewMatrix.set(viewMatrix);
+        }
+
+        setAmbientLight(sceneLight.getAmbientLight(), specularPower);
+
+        final PointLight[] pointLightList = sceneLight.getPointLightList();
+        final int numPointLights = pointLightList != null ? Math.min(pointLightList.length, maxPointLights) : 0;
+        for (int i = 0; i < numPointLights; i++) {
+            final PointLight pointLight = pointLightList[i];
+            if (viewChanged || pointLight.isDirty() || pointLight != lastPointLights[i]) {
+                setPointLight(i, pointLight, viewMatrix);
+                pointLight.setDirty(false);
+                lastPointLights[i] = pointLight;
+            }
+        }
+
+        final SpotLight[] spotLightList = sceneLight.getSpotLightList();
+        final int numSpotLights = spotLightList != null ? Math.min(spotLightList.length, maxSpotLights) : 0;
+        for (int i = 0; i < numSpotLights; i++) {
+            final SpotLight spotLight = spotLightList[i];
+            if (viewChanged || spotLight.isDirty() || spotLight != lastSpotLights[i]) {
+                setSpotLight(i, spotLight, viewMatrix);
+                spotLight.setDirty(false);
+                lastSpotLights[i] = spotLight;
+            }
+        }
+        setNumLights(numPointLights, numSpotLights);
+
+        final DirectionalLight directionalLight = sceneLight.getDirectionalLight();
+        if (viewChanged || directionalLight.isDirty() || directionalLight != lastDirectionalLight) {
+            setDirectionalLight(directionalLight, viewMatrix);
+            directionalLight.setDirty(false);
+            lastDirectionalLight = directionalLight;
+        }
+    }
+
+    void setAmbientLight(final Vector3f ambientLight, final float specularPower) {
+        putVector3f(AMBIENT_LIGHT_OFFSET, ambientLight);
+        putFloat(SPECULAR_POWER_OFFSET, specularPower);
+    }
+
+    void setDirectionalLight(final DirectionalLight directionalLight, final Matrix4f viewMatrix) {
+        putVector3f(DIRECTIONAL_LIGHT_OFFSET, directionalLight.getColour());
+        putTransformed(DIRECTIONAL_LIGHT_OFFSET + 16, directionalLight.getDirection(), 0, viewMatrix);
+        putFloat(DIRECTIONAL_LIGHT_OFFSET + 28, directionalLight.getIntensity());
+    }
+
+    void setNumLights(final int numPointLights, final int numSpotLights) {
+        if (this.numPointLights != numPointLights || this.numSpotLights != numSpotLights) {
+            this.numPointLights = numPointLights;
+            this.numSpotLights = numSpotLights;
+            buffer.putInt(NUM_POINT_LIGHTS_OFFSET, numPointLights);
+            buffer.putInt(NUM_SPOT_LIGHTS_OFFSET, numSpotLights);
+            changed = true;
+        }
+    }
+
+    void setPointLight(final int index, final PointLight pointLight, final Matrix4f viewMatrix) {
+        putPointLight(HEADER_SIZE + index * POINT_LIGHT_SIZE, pointLight, viewMatrix);
+    }
+
+    void setSpotLight(final int index, final SpotLight spotLight, final Matrix4f viewMatrix) {
+        final int offset = spotLightsOffset + index * SPOT_LIGHT_SIZE;
+        putPointLight(offset, spotLight.getPointLight(), viewMatrix);
+        putTransformed(offset + POINT_LIGHT_SIZE, spotLight.getConeDirection(), 0, viewMatrix);
+        putFloat(offset + POINT_LIGHT_SIZE + 12, spotLight.getCutOff());
+    }
+
+    void upload() {
+        if (!changed) {
+            return;
+        }
+        changed = false;
+
+        // Only the header and the slots of the active lights need to reach the GPU
+        final int usedSize = numSpotLights > 0
+                ? spotLightsOffset + numSpotLights * SPOT_LIGHT_SIZE
+                : HEADER_SIZE + numPointLights * POINT_LIGHT_SIZE;
+        buffer.limit(usedSize);
+        buffer.position(0);
+        glBindBuffer(GL_UNIFORM_BUFFER, bufferId);
+        glBufferSubData(GL_UNIFORM_BUFFER, 0, buffer);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        buffer.clear();
+    }
+
+    void cleanup() {
+        glDeleteBuffers(bufferId);
+        MemoryUtil.memFree(buffer);
+    }
+
+    private void putPointLight(final int offset, final PointLight pointLight, final Matrix4f viewMatrix) {
+        putVector3f(offset, pointLight.getColour());
+        putTransformed(offset + 16, pointLight.getPosition(), 1, viewMatrix);
+        putFloat(offset + 28, pointLight.getIntensity());
+        final PointLight.Attenuation att = pointLight.getAttenuation();
+        putFloat(offset + 32, att.getConstant());
+        putFloat(offset + 36, att.getLinear());
+        putFloat(offset + 40, att.getExponent());
+    }
+
+    /**
+     * Transforms a position (w = 1) or a direction (w = 0) to view coordinates and stores it.
+     */
+    private void putTransformed(final int offset, final Vector3f value, final float w, final Matrix4f viewMatrix) {
+        aux.set(value, w).mul(viewMatrix);
+        putFloat(offset, aux.x);
+        putFloat(offset + 4, aux.y);
+        putFloat(offset + 8, aux.z);
+    }
+
+    private void putVector3f(final int offset, final Vector3f value) {
+        putFloat(offset, value.x);
+        putFloat(offset + 4, value.y);
+        putFloat(offset + 8, value.z);
+    }
+
+    private void putFloat(final int offset, final float value) {
+        if (Float.floatToRawIntBits(buffer.getFloat(offset)) != Float.floatToRawIntBits(value)) {
+            buffer.putFloat(offset, value);
+            changed = true;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import java.util.Arrays;
+
+/**
+ * Map from non negative long keys to int values, with open addressing and linear probing over primitive arrays
+ * so that no key or value is ever boxed.
+ */
+class LongIntHashMap {
+
+    static final int NO_VALUE = -1;
+
+    private static final long EMPTY = -1L;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // The table is doubled when it gets more than half full, which keeps probe sequences short
+    private static final int MAX_LOAD_DIVISOR = 2;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int mask;
+
+    private int size;
+
+    LongIntHashMap(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * MAX_LOAD_DIVISOR) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Stores the value unless the key is already present.
+     *
+     * @return the value already stored for the key, or NO_VALUE if the new value has been stored
+     */
+    int putIfAbsent(final long key, final int value) {
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * MAX_LOAD_DIVISOR > keys.length) {
+            rehash();
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * @return the value stored for the key, or NO_VALUE
+     */
+    int get(final long key) {
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * @return the value that was stored for the key, or NO_VALUE if there was none
+     */
+    int remove(final long key) {
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                final int value = values[slot];
+                closeGap(slot);
+                size--;
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Empties a slot, moving back the keys after it that could no longer be found past an empty slot.
+     */
+    private void closeGap(final int slot) {
+        int gap = slot;
+        for (int next = (slot + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            // A key can fill the gap if the gap lies between its own slot and where it is now
+            if (((next - slot(keys[next])) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    private int slot(final long key) {
+        // Mix the bits, consecutive keys are common and would otherwise fill runs of slots
+        long hash = key * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return (int) hash & mask;
+    }
+
+    private void rehash() {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+}
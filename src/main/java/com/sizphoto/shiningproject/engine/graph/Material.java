@@ -2,8 +2,12 @@ package com.sizphoto.shiningproject.engine.graph;
 
 import org.joml.Vector4f;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Material {
 
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
     private static final Vector4f DEFAULT_COLOUR = new Vector4f(1.0f, 1.0f, 1.0f, 1.0f);
 
     private Vector4f ambientColour;
@@ -16,7 +20,14 @@ public class Material {
 
     private Texture texture;
 
+    private int textureLayer;
+
+    private boolean transparent;
+
+    private final int id;
+
     public Material() {
+        this.id = NEXT_ID.getAndIncrement();
         this.ambientColour = DEFAULT_COLOUR;
         this.diffuseColour = DEFAULT_COLOUR;
         this.specularColour = DEFAULT_COLOUR;
@@ -43,6 +54,7 @@ public class Material {
             final Texture texture,
             final float reflectance
     ) {
+        this.id = NEXT_ID.getAndIncrement();
         this.ambientColour = ambientColour;
         this.diffuseColour = diffuseColour;
         this.specularColour = specularColour;
@@ -91,6 +103,45 @@ public class Material {
     }
 
     public void setTexture(final Texture texture) {
+        setTexture(texture, 0);
+    }
+
+    /**
+     * @param layer layer of a texture array, ignored for other textures
+     */
+    public void setTexture(final Texture texture, final int layer) {
         this.texture = texture;
+        this.textureLayer = layer;
+    }
+
+    int getTextureLayer() {
+        return textureLayer;
+    }
+
+    /**
+     * @return true if the items of both materials can be drawn together: they are the same material, or they only
+     * differ by the layer of the texture array they use
+     */
+    boolean canBatchWith(final Material other) {
+        return this == other || texture != null && texture == other.texture && texture.isArray()
+                && transparent == other.transparent && reflectance == other.reflectance
+                && ambientColour.equals(other.ambientColour) && diffuseColour.equals(other.diffuseColour)
+                && specularColour.equals(other.specularColour);
+    }
+
+    /**
+     * @return true if items using this material must be blended, so they are drawn back to front after
+     * the opaque ones
+     */
+    public boolean isTransparent() {
+        return transparent;
+    }
+
+    public void setTransparent(final boolean transparent) {
+        this.transparent = transparent;
+    }
+
+    int getId() {
+        return id;
     }
 }
\ No newline at end of file
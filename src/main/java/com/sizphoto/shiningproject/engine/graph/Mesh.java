@@ -1,25 +1,58 @@
 package com.sizphoto.shiningproject.engine.graph;
 
-import java.nio.FloatBuffer;
-
 import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.joml.Vector3f;
 import org.lwjgl.system.MemoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
-import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL33.*;
 
 public class Mesh {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Mesh.class);
+
+    private static final int FLOAT_SIZE_BYTES = 4;
+
+    // Attribute holding the texture array layer, constant for each draw unless the arena sets it per instance
+    static final int TEXTURE_LAYER_LOCATION = 7;
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private static GeometryArena geometryArena;
+
+    private final int id;
+
     private final int vaoId;
 
     private final List<Integer> vboIdList;
 
     private final int vertexCount;
 
+    private final int indexType;
+
+    // Shared arena holding the geometry, null when the mesh owns its buffers
+    private final GeometryArena arena;
+
+    private final GeometryArena.Allocation arenaAllocation;
+
+    private final Vector3f boundsMin;
+
+    private final Vector3f boundsMax;
+
+    private final Vector3f boundingCenter;
+
+    private final float boundingRadius;
+
     private Material material;
 
     public Mesh(
@@ -28,19 +61,99 @@ public class Mesh {
             final float[] normals,
             final int[] indices
     ) {
-        FloatBuffer posBuffer = null;
-        FloatBuffer textCoordsBuffer = null;
-        FloatBuffer vecNormalsBuffer = null;
-        IntBuffer indicesBuffer = null;
-        try {
-            vertexCount = indices.length;
-            vboIdList = new ArrayList<>();
+        this(positions, textCoords, normals, indices, false);
+    }
 
-            // Create the VAO and bind to it
+    /**
+     * @param staticGeometry true for geometry that is never rebuilt, which is placed in the shared geometry arena
+     *                       when it is enabled and has room for it
+     */
+    Mesh(
+            final float[] positions,
+            final float[] textCoords,
+            final float[] normals,
+            final int[] indices,
+            final boolean staticGeometry
+    ) {
+        id = NEXT_ID.getAndIncrement();
+
+        // Local space bounding volumes, used to cull the items that share this mesh
+        boundsMin = new Vector3f();
+        boundsMax = new Vector3f();
+        boundingCenter = new Vector3f();
+        boundingRadius = calcBounds(positions, boundsMin, boundsMax, boundingCenter);
+
+        vertexCount = indices.length;
+        vboIdList = new ArrayList<>();
+
+        arenaAllocation = staticGeometry && geometryArena != null
+                ? geometryArena.allocate(positions, textCoords, normals, indices)
+                : null;
+        if (arenaAllocation != null) {
+            arena = geometryArena;
+            vaoId = arena.getVaoId();
+            indexType = GL_UNSIGNED_SHORT;
+        } else {
+            arena = null;
+            // Create the VAO
             vaoId = glGenVertexArrays();
-            glBindVertexArray(vaoId);
+            indexType = createBuffers(vaoId, positions, textCoords, normals, indices, vboIdList);
+        }
+    }
+
+    /**
+     * Creates a mesh with an empty VAO, for subclasses that create and fill their own buffers.
+     */
+    Mesh() {
+        id = NEXT_ID.getAndIncrement();
+        boundsMin = new Vector3f();
+        boundsMax = new Vector3f();
+        boundingCenter = new Vector3f();
+        boundingRadius = 0;
+        vertexCount = 0;
+        vboIdList = new ArrayList<>();
+        arena = null;
+        arenaAllocation = null;
+        vaoId = glGenVertexArrays();
+        indexType = GL_UNSIGNED_SHORT;
+    }
+
+    /**
+     * Sets the arena used by the static meshes created from now on, or null to give each of them its own buffers.
+     */
+    static void setGeometryArena(final GeometryArena geometryArena) {
+        Mesh.geometryArena = geometryArena;
+    }
+
+    /**
+     * Creates the VBOs of the mesh and stores their ids in the given list.
+     *
+     * @return the type of the indices
+     */
+    private static int createBuffers(
+            final int vaoId,
+            final float[] positions,
+            final float[] textCoords,
+            final float[] normals,
+            final int[] indices,
+            final List<Integer> vboIdList
+    ) {
+        ByteBuffer vertexBuffer = null;
+        Buffer indicesBuffer = null;
 
-            // Position VBO
+        try {
+            // All the attributes of a vertex are interleaved in a single VBO. Texture coordinates use half floats
+            // when their range allows it and normals are packed in a single int. Meshes without normals (such as
+            // HUD text) do not reserve space for them.
+            final int numVertices = positions.length / 3;
+            final boolean halfTextCoords = VertexPacking.fitsHalfFloat(textCoords);
+            final boolean hasNormals = normals.length > 0;
+            final int stride = VertexPacking.vertexSize(halfTextCoords, hasNormals);
+
+            // Bind the VAO
+            GlStateCache.bindVertexArray(vaoId);
+
+            // Vertex VBO
             int vboId = glGenBuffers();
             vboIdList.add(vboId);
             // LWJGL 3 proposes two methods for buffer management:
@@ -52,61 +165,56 @@ public class Mesh {
             // finished. These buffers are intended for long time operations or for large amounts of data.
             // This is achieved by using the MemoryUtil class.
             // You can consult the details here: https://blog.lwjgl.org/memory-management-in-lwjgl-3/.
-            posBuffer = MemoryUtil.memAllocFloat(positions.length);
-            posBuffer.put(positions).flip();
+            vertexBuffer = MemoryUtil.memAlloc(numVertices * stride);
+            VertexPacking.putVertices(vertexBuffer, positions, textCoords, normals, halfTextCoords, hasNormals);
+            vertexBuffer.flip();
             glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, posBuffer, GL_STATIC_DRAW);
-            glEnableVertexAttribArray(0);
-            // Define structure of the data
-            glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
+            glBufferData(GL_ARRAY_BUFFER, vertexBuffer, GL_STATIC_DRAW);
 
-            // Texture coordinates VBO
-            vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            textCoordsBuffer = MemoryUtil.memAllocFloat(textCoords.length);
-            textCoordsBuffer.put(textCoords).flip();
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, textCoordsBuffer, GL_STATIC_DRAW);
-            glEnableVertexAttribArray(1);
-            glVertexAttribPointer(1, 2, GL_FLOAT, false, 0, 0);
+            // Define structure of the data
+            VertexPacking.setUpAttributes(halfTextCoords, hasNormals);
 
-            // Vertex normals VBO
+            // Index VBO, 16 bit indices are enough for most meshes
             vboId = glGenBuffers();
             vboIdList.add(vboId);
-            vecNormalsBuffer = MemoryUtil.memAllocFloat(normals.length);
-            if (vecNormalsBuffer.capacity() > 0) {
-                vecNormalsBuffer.put(normals).flip();
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboId);
+            final int indexType;
+            if (numVertices <= VertexPacking.MAX_SHORT_INDEX_VERTICES) {
+                indexType = GL_UNSIGNED_SHORT;
+                final ShortBuffer shortIndices = MemoryUtil.memAllocShort(indices.length);
+                indicesBuffer = shortIndices;
+                for (int index : indices) {
+                    shortIndices.put((short) index);
+                }
+                shortIndices.flip();
+                glBufferData(GL_ELEMENT_ARRAY_BUFFER, shortIndices, GL_STATIC_DRAW);
             } else {
-                // Create empty structure
-                vecNormalsBuffer = MemoryUtil.memAllocFloat(positions.length);
+                indexType = GL_UNSIGNED_INT;
+                final IntBuffer intIndices = MemoryUtil.memAllocInt(indices.length);
+                indicesBuffer = intIndices;
+                intIndices.put(indices).flip();
+                glBufferData(GL_ELEMENT_ARRAY_BUFFER, intIndices, GL_STATIC_DRAW);
             }
-            glBindBuffer(GL_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ARRAY_BUFFER, vecNormalsBuffer, GL_STATIC_DRAW);
-            glEnableVertexAttribArray(2);
-            glVertexAttribPointer(2, 3, GL_FLOAT, false, 0, 0);
-
-            // Index VBO
-            vboId = glGenBuffers();
-            vboIdList.add(vboId);
-            indicesBuffer = MemoryUtil.memAllocInt(indices.length);
-            indicesBuffer.put(indices).flip();
-            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboId);
-            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indicesBuffer, GL_STATIC_DRAW);
 
             // Unbind the VBO
             glBindBuffer(GL_ARRAY_BUFFER, 0);
 
             // Unbind the VAO
-            glBindVertexArray(0);
-        } finally {
-            if (posBuffer != null) {
-                MemoryUtil.memFree(posBuffer);
+            GlStateCache.bindVertexArray(0);
+
+            if (LOGGER.isDebugEnabled()) {
+                // Separate float position, texture coordinates and normals buffers and 32 bit indices
+                final long separateBytes = (long) positions.length * 2 * FLOAT_SIZE_BYTES
+                        + (long) textCoords.length * FLOAT_SIZE_BYTES + (long) indices.length * Integer.BYTES;
+                final long interleavedBytes = (long) numVertices * stride
+                        + (long) indices.length * (indexType == GL_UNSIGNED_SHORT ? Short.BYTES : Integer.BYTES);
+                LOGGER.debug("Mesh() - {} vertices, {} indices: {} bytes, {} bytes with separate buffers",
+                        numVertices, indices.length, interleavedBytes, separateBytes);
             }
-            if (textCoordsBuffer != null) {
-                MemoryUtil.memFree(textCoordsBuffer);
-            }
-            if (vecNormalsBuffer != null) {
-                MemoryUtil.memFree(vecNormalsBuffer);
+            return indexType;
+        } finally {
+            if (vertexBuffer != null) {
+                MemoryUtil.memFree(vertexBuffer);
             }
             if (indicesBuffer != null) {
                 MemoryUtil.memFree(indicesBuffer);
@@ -114,6 +222,22 @@ public class Mesh {
         }
     }
 
+    Vector3f getBoundsMin() {
+        return boundsMin;
+    }
+
+    Vector3f getBoundsMax() {
+        return boundsMax;
+    }
+
+    Vector3f getBoundingCenter() {
+        return boundingCenter;
+    }
+
+    float getBoundingRadius() {
+        return boundingRadius;
+    }
+
     public Material getMaterial() {
         return material;
     }
@@ -122,30 +246,33 @@ public class Mesh {
         this.material = material;
     }
 
-    private void initRender() {
+    void initRender() {
+        initRender(null);
+    }
+
+    /**
+     * Binds the texture and the VAO of this mesh. The texture bind is skipped when it is the one already bound,
+     * which happens when consecutive meshes of a sorted render queue share it.
+     */
+    void initRender(final Texture boundTexture) {
         final Texture texture = material.getTexture();
-        if (texture != null) {
-            // Activate firs texture bank
-            glActiveTexture(GL_TEXTURE0);
-            // Bind the texture
-            glBindTexture(GL_TEXTURE_2D, texture.getId());
+        if (texture != null && texture != boundTexture) {
+            // 2D textures use the first texture bank and texture arrays the next one
+            texture.bind();
         }
 
         // Draw the mesh
-        glBindVertexArray(getVaoId());
+        GlStateCache.bindVertexArray(getVaoId());
     }
 
-    private void endRender() {
-        // Restore state
-        glBindVertexArray(0);
-
-        glBindTexture(GL_TEXTURE_2D, 0);
+    void endRender() {
+        // Bindings are left in place: the next mesh replaces them and the state cache drops them when they match
     }
 
     void render() {
         initRender();
 
-        glDrawElements(GL_TRIANGLES, getVertexCount(), GL_UNSIGNED_INT, 0);
+        drawElements();
 
         endRender();
     }
@@ -153,38 +280,54 @@ public class Mesh {
     void renderList(final List<GameItem> gameItems, final Consumer<GameItem> consumer) {
         initRender();
 
-        for (GameItem gameItem : gameItems) {
+        drawList(gameItems, consumer);
+
+        endRender();
+    }
+
+    /**
+     * Draws the items without touching the bindings, the caller must have called initRender before.
+     */
+    void drawList(final List<GameItem> gameItems, final Consumer<GameItem> consumer) {
+        final int numItems = gameItems.size();
+        for (int i = 0; i < numItems; i++) {
+            final GameItem gameItem = gameItems.get(i);
             // Set up data required by gameItem
             consumer.accept(gameItem);
             // Render this game item
-            glDrawElements(GL_TRIANGLES, getVertexCount(), GL_UNSIGNED_INT, 0);
+            drawElements();
         }
-
-        endRender();
     }
 
-    public void cleanUp() {
-        glDisableVertexAttribArray(0);
-
-        // Delete the VBOs
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        for (int vboId : vboIdList) {
-            glDeleteBuffers(vboId);
+    private void drawElements() {
+        if (arenaAllocation != null) {
+            arena.drawElements(arenaAllocation);
+        } else {
+            glDrawElements(GL_TRIANGLES, getVertexCount(), getIndexType(), 0);
+            GlStateCache.drawCalled(getVertexCount(), 1);
         }
+    }
 
-        // Delete the texture
+    public void cleanUp() {
+        // Shared textures are released by whoever acquired them from the cache
         final Texture texture = material.getTexture();
-        if (texture != null) {
+        if (texture != null && !TextureCache.isCached(texture)) {
             texture.cleanup();
         }
 
-        // Delete the VAO
-        glBindVertexArray(0);
-        glDeleteVertexArrays(vaoId);
+        deleteGeometry();
     }
 
     public void deleteBuffers() {
-        glDisableVertexAttribArray(0);
+        deleteGeometry();
+    }
+
+    private void deleteGeometry() {
+        if (arenaAllocation != null) {
+            // The arena buffers are shared, only the space of this mesh is released
+            arena.free(arenaAllocation);
+            return;
+        }
 
         // Delete the VBOs
         glBindBuffer(GL_ARRAY_BUFFER, 0);
@@ -193,15 +336,77 @@ public class Mesh {
         }
 
         // Delete the VAO
-        glBindVertexArray(0);
+        GlStateCache.vertexArrayDeleted(vaoId);
         glDeleteVertexArrays(vaoId);
     }
 
-    private int getVaoId() {
+    /**
+     * @return a sequential identifier of the mesh, used to build render queue sort keys
+     */
+    int getId() {
+        return id;
+    }
+
+    int getVaoId() {
         return vaoId;
     }
 
-    private int getVertexCount() {
+    /**
+     * @return a new buffer, deleted with the mesh
+     */
+    int createBuffer() {
+        final int vboId = glGenBuffers();
+        vboIdList.add(vboId);
+        return vboId;
+    }
+
+    int getVertexCount() {
         return vertexCount;
     }
+
+    int getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * @return the arena holding the geometry of this mesh, or null when it has its own buffers
+     */
+    GeometryArena getArena() {
+        return arena;
+    }
+
+    GeometryArena.Allocation getArenaAllocation() {
+        return arenaAllocation;
+    }
+
+    /**
+     * Computes the axis aligned bounding box of the positions and the sphere centered on it.
+     *
+     * @return the radius of the bounding sphere
+     */
+    private static float calcBounds(final float[] positions, final Vector3f min, final Vector3f max,
+                                    final Vector3f center) {
+        if (positions.length < 3) {
+            return 0;
+        }
+        min.set(Float.MAX_VALUE);
+        max.set(-Float.MAX_VALUE);
+        for (int i = 0; i + 2 < positions.length; i += 3) {
+            min.x = Math.min(min.x, positions[i]);
+            min.y = Math.min(min.y, positions[i + 1]);
+            min.z = Math.min(min.z, positions[i + 2]);
+            max.x = Math.max(max.x, positions[i]);
+            max.y = Math.max(max.y, positions[i + 1]);
+            max.z = Math.max(max.z, positions[i + 2]);
+        }
+        min.add(max, center).mul(0.5f);
+        float radiusSquared = 0;
+        for (int i = 0; i + 2 < positions.length; i += 3) {
+            final float dx = positions[i] - center.x;
+            final float dy = positions[i + 1] - center.y;
+            final float dz = positions[i + 2] - center.z;
+            radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+        }
+        return (float) Math.sqrt(radiusSquared);
+    }
 }
\ No newline at end of file
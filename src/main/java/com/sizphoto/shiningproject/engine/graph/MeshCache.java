@@ -0,0 +1,171 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Disk cache of decoded geometry, so that later runs skip parsing, indexing and optimizing the source files.
+ * Each source gets one little endian file in the cache directory:
+ * <pre>
+ * int   magic, version
+ * long  source size, source modification time, load parameters
+ * int   position, texture coordinate and normal components
+ * int   vertices, indices, grid columns
+ * float positions[], texture coordinates[], normals[]
+ * int   indices[]
+ * </pre>
+ * Files are read into a native buffer and copied in bulk into the attribute arrays. A file is ignored, and rewritten
+ * after the source is decoded again, when the source size or modification time, the parameters or the format differ.
+ * Failures to read or write the cache are logged and never stop the source from loading.
+ */
+final class MeshCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeshCache.class);
+
+    // "SPMC" read as a little endian int
+    private static final int MAGIC = 0x434D5053;
+
+    // Increase when the layout or the processing of the cached geometry changes, to discard old files
+    private static final int VERSION = 1;
+
+    private static final int POSITION_SIZE = 3;
+
+    private static final int TEXT_COORD_SIZE = 2;
+
+    private static final int NORMAL_SIZE = 3;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + 3 * Long.BYTES + 6 * Integer.BYTES;
+
+    private static final String EXTENSION = ".mesh";
+
+    private static Path directory;
+
+    private MeshCache() {
+    }
+
+    /**
+     * @param directoryName directory of the cache files, created on the first write, or empty to disable the cache
+     */
+    static void setDirectory(final String directoryName) {
+        directory = directoryName == null || directoryName.isEmpty() ? null : Paths.get(directoryName);
+    }
+
+    /**
+     * @param fileName   source file, as given to the loader
+     * @param parameters load options that change the decoded geometry
+     * @return the cached geometry, or null if the cache is disabled or has no valid entry for the source
+     */
+    static MeshData load(final String fileName, final long parameters) {
+        if (directory == null) {
+            return null;
+        }
+        final Path cacheFile = CacheFiles.resolve(directory, fileName, EXTENSION);
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        ByteBuffer buffer = null;
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            final File source = CacheFiles.getSourceFile(fileName);
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                LOGGER.warn("load() - [{}] is not a mesh cache file", cacheFile);
+                return null;
+            }
+            // Read rather than mapped, a mapping would keep the file locked on some platforms until it is collected
+            buffer = CacheFiles.read(channel).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != source.length()
+                    || buffer.getLong() != source.lastModified() || buffer.getLong() != parameters
+                    || buffer.getInt() != POSITION_SIZE || buffer.getInt() != TEXT_COORD_SIZE
+                    || buffer.getInt() != NORMAL_SIZE) {
+                LOGGER.debug("load() - [{}] is out of date", cacheFile);
+                return null;
+            }
+            final int numVertices = buffer.getInt();
+            final int numIndices = buffer.getInt();
+            final int gridColumns = buffer.getInt();
+            if (numVertices < 0 || numIndices < 0 || getFileSize(numVertices, numIndices) != buffer.limit()) {
+                LOGGER.warn("load() - [{}] is truncated", cacheFile);
+                return null;
+            }
+            final float[] positions = getFloats(buffer, numVertices * POSITION_SIZE);
+            final float[] textCoords = getFloats(buffer, numVertices * TEXT_COORD_SIZE);
+            final float[] normals = getFloats(buffer, numVertices * NORMAL_SIZE);
+            final int[] indices = new int[numIndices];
+            buffer.asIntBuffer().get(indices);
+            return new MeshData(positions, textCoords, normals, indices, gridColumns);
+        } catch (IOException e) {
+            LOGGER.warn("load() - Could not read [{}]: {}", cacheFile, e.getMessage());
+            return null;
+        } finally {
+            if (buffer != null) {
+                memFree(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the geometry decoded from the source file, replacing any previous entry.
+     */
+    static void store(final String fileName, final long parameters, final MeshData data) {
+        if (directory == null) {
+            return;
+        }
+        final long fileSize = getFileSize(data.getNumVertices(), data.getIndices().length);
+        if (fileSize > Integer.MAX_VALUE) {
+            LOGGER.debug("store() - [{}] is too large to be cached", fileName);
+            return;
+        }
+        final Path cacheFile = CacheFiles.resolve(directory, fileName, EXTENSION);
+        ByteBuffer buffer = null;
+        try {
+            final File source = CacheFiles.getSourceFile(fileName);
+            buffer = memAlloc((int) fileSize).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            buffer.putLong(source.length()).putLong(source.lastModified()).putLong(parameters);
+            buffer.putInt(POSITION_SIZE).putInt(TEXT_COORD_SIZE).putInt(NORMAL_SIZE);
+            buffer.putInt(data.getNumVertices()).putInt(data.getIndices().length).putInt(data.getGridColumns());
+            putFloats(buffer, data.getPositions());
+            putFloats(buffer, data.getTextCoords());
+            putFloats(buffer, data.getNormals());
+            buffer.asIntBuffer().put(data.getIndices());
+            buffer.rewind();
+            CacheFiles.write(cacheFile, buffer);
+            LOGGER.debug("store() - [{}] cached in [{}], {} bytes", fileName, cacheFile, fileSize);
+        } catch (IOException e) {
+            LOGGER.warn("store() - Could not write [{}]: {}", cacheFile, e.getMessage());
+        } finally {
+            if (buffer != null) {
+                memFree(buffer);
+            }
+        }
+    }
+
+    private static long getFileSize(final int numVertices, final int numIndices) {
+        return HEADER_BYTES + (long) numVertices * (POSITION_SIZE + TEXT_COORD_SIZE + NORMAL_SIZE) * Float.BYTES
+                + (long) numIndices * Integer.BYTES;
+    }
+
+    private static float[] getFloats(final ByteBuffer buffer, final int count) {
+        final float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * Float.BYTES);
+        return values;
+    }
+
+    private static void putFloats(final ByteBuffer buffer, final float[] values) {
+        buffer.asFloatBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Float.BYTES);
+    }
+}
@@ -0,0 +1,55 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+/**
+ * Indexed geometry decoded from a source file, before it is uploaded to GL.
+ */
+class MeshData {
+
+    private final float[] positions;
+
+    private final float[] textCoords;
+
+    private final float[] normals;
+
+    private final int[] indices;
+
+    // Vertices per row when the vertices form a grid, as in height maps, 0 otherwise
+    private final int gridColumns;
+
+    MeshData(final float[] positions, final float[] textCoords, final float[] normals, final int[] indices) {
+        this(positions, textCoords, normals, indices, 0);
+    }
+
+    MeshData(final float[] positions, final float[] textCoords, final float[] normals, final int[] indices,
+             final int gridColumns) {
+        this.positions = positions;
+        this.textCoords = textCoords;
+        this.normals = normals;
+        this.indices = indices;
+        this.gridColumns = gridColumns;
+    }
+
+    float[] getPositions() {
+        return positions;
+    }
+
+    float[] getTextCoords() {
+        return textCoords;
+    }
+
+    float[] getNormals() {
+        return normals;
+    }
+
+    int[] getIndices() {
+        return indices;
+    }
+
+    int getGridColumns() {
+        return gridColumns;
+    }
+
+    int getNumVertices() {
+        return positions.length / 3;
+    }
+}
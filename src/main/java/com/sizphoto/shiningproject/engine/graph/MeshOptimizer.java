@@ -0,0 +1,374 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Load time reordering of indexed triangle lists, done on the CPU before the geometry reaches GL:
+ * <ul>
+ * <li>triangles are ordered for the post transform vertex cache with Tom Forsyth's linear speed algorithm,</li>
+ * <li>optionally, runs of triangles that start with a cold cache are sorted so that the ones facing away from the
+ * centre of the mesh are drawn first, which reduces overdraw without losing the cache order inside each run,</li>
+ * <li>vertices are renumbered in order of first use, so that vertex fetch walks the buffer forwards.</li>
+ * </ul>
+ * Cache efficiency is measured as the average cache miss ratio (ACMR), the vertex shader invocations per triangle
+ * on a simulated FIFO cache.
+ */
+final class MeshOptimizer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeshOptimizer.class);
+
+    // Simulated FIFO cache used to measure the ACMR
+    static final int FIFO_CACHE_SIZE = 16;
+
+    // Simulated LRU cache and scoring constants of the Forsyth algorithm
+    private static final int LRU_CACHE_SIZE = 32;
+
+    private static final float CACHE_DECAY_POWER = 1.5f;
+
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    private MeshOptimizer() {
+    }
+
+    /**
+     * Runs all the passes, changing the arrays in place. The attribute arrays keep their length.
+     */
+    static void optimize(final float[] positions, final float[] textCoords, final float[] normals,
+                         final int[] indices, final boolean reduceOverdraw) {
+        final int numVertices = positions.length / 3;
+        final float acmrBefore = LOGGER.isDebugEnabled() ? calcAcmr(indices, numVertices) : 0;
+
+        optimizeVertexCache(indices, numVertices);
+        if (reduceOverdraw) {
+            optimizeOverdraw(indices, positions);
+        }
+        final int[] remap = buildVertexFetchRemap(indices, numVertices);
+        remapAttribute(positions, 3, remap);
+        remapAttribute(textCoords, 2, remap);
+        remapAttribute(normals, 3, remap);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("optimize() - {} vertices, {} triangles, ACMR {} before and {} after", numVertices,
+                    indices.length / 3, acmrBefore, calcAcmr(indices, numVertices));
+        }
+    }
+
+    /**
+     * @return the vertices transformed per triangle with a FIFO cache of {@link #FIFO_CACHE_SIZE} entries,
+     * between 0.5 for an ideal mesh and 3 when no vertex is reused
+     */
+    static float calcAcmr(final int[] indices, final int numVertices) {
+        if (indices.length == 0) {
+            return 0;
+        }
+        final int[] timestamps = new int[numVertices];
+        Arrays.fill(timestamps, -FIFO_CACHE_SIZE - 1);
+        int timestamp = 0;
+        int misses = 0;
+        for (int index : indices) {
+            if (timestamp - timestamps[index] > FIFO_CACHE_SIZE) {
+                timestamps[index] = timestamp++;
+                misses++;
+            }
+        }
+        return (float) misses / (indices.length / 3);
+    }
+
+    /**
+     * Reorders the triangles so that consecutive ones reuse the vertices still in the post transform cache.
+     */
+    static void optimizeVertexCache(final int[] indices, final int numVertices) {
+        final int numTriangles = indices.length / 3;
+        if (numTriangles == 0) {
+            return;
+        }
+
+        // Triangles of each vertex not emitted yet, stored as ranges of a single array
+        final int[] remaining = new int[numVertices];
+        for (int index : indices) {
+            remaining[index]++;
+        }
+        final int[] offsets = new int[numVertices + 1];
+        for (int i = 0; i < numVertices; i++) {
+            offsets[i + 1] = offsets[i] + remaining[i];
+        }
+        final int[] adjacency = new int[indices.length];
+        final int[] filled = new int[numVertices];
+        for (int i = 0; i < indices.length; i++) {
+            final int vertex = indices[i];
+            adjacency[offsets[vertex] + filled[vertex]++] = i / 3;
+        }
+
+        final int[] cachePosition = new int[numVertices];
+        Arrays.fill(cachePosition, -1);
+        final float[] vertexScores = new float[numVertices];
+        for (int i = 0; i < numVertices; i++) {
+            vertexScores[i] = vertexScore(-1, remaining[i]);
+        }
+        final float[] triangleScores = new float[numTriangles];
+        int bestTriangle = 0;
+        for (int i = 0; i < numTriangles; i++) {
+            triangleScores[i] = vertexScores[indices[i * 3]] + vertexScores[indices[i * 3 + 1]]
+                    + vertexScores[indices[i * 3 + 2]];
+            if (triangleScores[i] > triangleScores[bestTriangle]) {
+                bestTriangle = i;
+            }
+        }
+
+        final boolean[] emitted = new boolean[numTriangles];
+        final int[] output = new int[indices.length];
+        int[] cache = new int[LRU_CACHE_SIZE + 3];
+        int[] newCache = new int[LRU_CACHE_SIZE + 3];
+        int cacheSize = 0;
+        int scanCursor = 0;
+        for (int t = 0; t < numTriangles; t++) {
+            if (bestTriangle < 0) {
+                // Nothing left around the cache, continue with the first triangle not emitted
+                while (emitted[scanCursor]) {
+                    scanCursor++;
+                }
+                bestTriangle = scanCursor;
+            }
+            emitted[bestTriangle] = true;
+
+            // The vertices of the triangle go to the front of the cache, the rest keep their order
+            int newCacheSize = 0;
+            for (int k = 0; k < 3; k++) {
+                final int vertex = indices[bestTriangle * 3 + k];
+                output[t * 3 + k] = vertex;
+                removeTriangle(adjacency, offsets[vertex], remaining[vertex], bestTriangle);
+                remaining[vertex]--;
+                if (!contains(newCache, newCacheSize, vertex)) {
+                    newCache[newCacheSize++] = vertex;
+                }
+            }
+            final int numTriangleVertices = newCacheSize;
+            for (int i = 0; i < cacheSize; i++) {
+                if (!contains(newCache, numTriangleVertices, cache[i])) {
+                    newCache[newCacheSize++] = cache[i];
+                }
+            }
+
+            // Rescore the vertices that moved or fell out of the cache and their triangles
+            for (int i = 0; i < newCacheSize; i++) {
+                final int vertex = newCache[i];
+                cachePosition[vertex] = i < LRU_CACHE_SIZE ? i : -1;
+                vertexScores[vertex] = vertexScore(cachePosition[vertex], remaining[vertex]);
+            }
+            bestTriangle = -1;
+            float bestScore = -1;
+            for (int i = 0; i < newCacheSize; i++) {
+                final int vertex = newCache[i];
+                for (int j = offsets[vertex]; j < offsets[vertex] + remaining[vertex]; j++) {
+                    final int triangle = adjacency[j];
+                    final float score = vertexScores[indices[triangle * 3]] + vertexScores[indices[triangle * 3 + 1]]
+                            + vertexScores[indices[triangle * 3 + 2]];
+                    triangleScores[triangle] = score;
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestTriangle = triangle;
+                    }
+                }
+            }
+
+            final int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheSize = Math.min(newCacheSize, LRU_CACHE_SIZE);
+        }
+        System.arraycopy(output, 0, indices, 0, indices.length);
+    }
+
+    /**
+     * Splits the triangles in clusters that start where the FIFO cache would miss all three vertices, so that
+     * reordering them hardly changes the ACMR, and draws first the clusters facing away from the mesh centre.
+     * Those are usually in front of the others, so the hidden fragments fail the depth test earlier.
+     */
+    static void optimizeOverdraw(final int[] indices, final float[] positions) {
+        final int numTriangles = indices.length / 3;
+        if (numTriangles == 0) {
+            return;
+        }
+
+        // Cluster boundaries
+        final int[] clusterStarts = new int[numTriangles + 1];
+        int numClusters = 0;
+        final int[] timestamps = new int[positions.length / 3];
+        Arrays.fill(timestamps, -FIFO_CACHE_SIZE - 1);
+        int timestamp = 0;
+        for (int t = 0; t < numTriangles; t++) {
+            int misses = 0;
+            for (int k = 0; k < 3; k++) {
+                final int vertex = indices[t * 3 + k];
+                if (timestamp - timestamps[vertex] > FIFO_CACHE_SIZE) {
+                    timestamps[vertex] = timestamp++;
+                    misses++;
+                }
+            }
+            if (t == 0 || misses == 3) {
+                clusterStarts[numClusters++] = t;
+            }
+        }
+        clusterStarts[numClusters] = numTriangles;
+        if (numClusters < 2) {
+            return;
+        }
+
+        // Area weighted centroid and normal of each cluster and centroid of the mesh
+        final Vector3f v0 = new Vector3f();
+        final Vector3f v1 = new Vector3f();
+        final Vector3f v2 = new Vector3f();
+        final Vector3f cross = new Vector3f();
+        final Vector3f meshCentroid = new Vector3f();
+        final float[] clusterData = new float[numClusters * 6];
+        float meshArea = 0;
+        for (int c = 0; c < numClusters; c++) {
+            float clusterArea = 0;
+            for (int t = clusterStarts[c]; t < clusterStarts[c + 1]; t++) {
+                loadPosition(positions, indices[t * 3], v0);
+                loadPosition(positions, indices[t * 3 + 1], v1);
+                loadPosition(positions, indices[t * 3 + 2], v2);
+                v1.sub(v0);
+                v2.sub(v0);
+                v1.cross(v2, cross);
+                final float area = cross.length();
+                // Centroid of the triangle times its area, v1 and v2 are now relative to v0
+                final float x = (v0.x * 3 + v1.x + v2.x) / 3 * area;
+                final float y = (v0.y * 3 + v1.y + v2.y) / 3 * area;
+                final float z = (v0.z * 3 + v1.z + v2.z) / 3 * area;
+                clusterData[c * 6] += x;
+                clusterData[c * 6 + 1] += y;
+                clusterData[c * 6 + 2] += z;
+                clusterData[c * 6 + 3] += cross.x;
+                clusterData[c * 6 + 4] += cross.y;
+                clusterData[c * 6 + 5] += cross.z;
+                clusterArea += area;
+            }
+            meshCentroid.add(clusterData[c * 6], clusterData[c * 6 + 1], clusterData[c * 6 + 2]);
+            meshArea += clusterArea;
+            if (clusterArea > 0) {
+                clusterData[c * 6] /= clusterArea;
+                clusterData[c * 6 + 1] /= clusterArea;
+                clusterData[c * 6 + 2] /= clusterArea;
+            }
+        }
+        if (meshArea > 0) {
+            meshCentroid.div(meshArea);
+        }
+
+        // Sort by decreasing dot product of the offset from the centre and the cluster normal, the cluster index
+        // fills the low bits of the key
+        final long[] keys = new long[numClusters];
+        for (int c = 0; c < numClusters; c++) {
+            cross.set(clusterData[c * 6 + 3], clusterData[c * 6 + 4], clusterData[c * 6 + 5]);
+            final float length = cross.length();
+            final float dot = length > 0
+                    ? ((clusterData[c * 6] - meshCentroid.x) * cross.x
+                    + (clusterData[c * 6 + 1] - meshCentroid.y) * cross.y
+                    + (clusterData[c * 6 + 2] - meshCentroid.z) * cross.z) / length
+                    : 0;
+            keys[c] = ((long) sortableBits(-dot) << 32) | c;
+        }
+        Arrays.sort(keys);
+
+        final int[] output = new int[indices.length];
+        int next = 0;
+        for (long key : keys) {
+            final int c = (int) key;
+            final int start = clusterStarts[c] * 3;
+            final int length = (clusterStarts[c + 1] - clusterStarts[c]) * 3;
+            System.arraycopy(indices, start, output, next, length);
+            next += length;
+        }
+        System.arraycopy(output, 0, indices, 0, indices.length);
+    }
+
+    /**
+     * Renumbers the vertices in order of first use and rewrites the indices. Unused vertices go to the end.
+     *
+     * @return the new index of each vertex
+     */
+    static int[] buildVertexFetchRemap(final int[] indices, final int numVertices) {
+        final int[] remap = new int[numVertices];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (int i = 0; i < indices.length; i++) {
+            final int vertex = indices[i];
+            if (remap[vertex] < 0) {
+                remap[vertex] = next++;
+            }
+            indices[i] = remap[vertex];
+        }
+        for (int i = 0; i < numVertices; i++) {
+            if (remap[i] < 0) {
+                remap[i] = next++;
+            }
+        }
+        return remap;
+    }
+
+    static void remapAttribute(final float[] values, final int size, final int[] remap) {
+        if (values.length < remap.length * size) {
+            // Missing or partial attributes, such as meshes without normals, are left as they are
+            return;
+        }
+        final float[] source = Arrays.copyOf(values, remap.length * size);
+        for (int i = 0; i < remap.length; i++) {
+            System.arraycopy(source, i * size, values, remap[i] * size, size);
+        }
+    }
+
+    private static float vertexScore(final int cachePosition, final int remainingTriangles) {
+        if (remainingTriangles == 0) {
+            // No triangle left to draw with this vertex
+            return -1;
+        }
+        float score = 0;
+        if (cachePosition >= 3) {
+            final float scaler = 1.0f / (LRU_CACHE_SIZE - 3);
+            score = (float) Math.pow(1.0f - (cachePosition - 3) * scaler, CACHE_DECAY_POWER);
+        } else if (cachePosition >= 0) {
+            // The vertices of the last triangle get a fixed score, so that it is not drawn again right away
+            score = LAST_TRIANGLE_SCORE;
+        }
+        return score + VALENCE_BOOST_SCALE * (float) Math.pow(remainingTriangles, -VALENCE_BOOST_POWER);
+    }
+
+    private static boolean contains(final int[] values, final int size, final int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void removeTriangle(final int[] adjacency, final int offset, final int count, final int triangle) {
+        for (int i = offset; i < offset + count; i++) {
+            if (adjacency[i] == triangle) {
+                adjacency[i] = adjacency[offset + count - 1];
+                return;
+            }
+        }
+    }
+
+    private static void loadPosition(final float[] positions, final int vertex, final Vector3f target) {
+        target.set(positions[vertex * 3], positions[vertex * 3 + 1], positions[vertex * 3 + 2]);
+    }
+
+    /**
+     * @return the bits of the float as an int with the same order
+     */
+    private static int sortableBits(final float value) {
+        final int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+}
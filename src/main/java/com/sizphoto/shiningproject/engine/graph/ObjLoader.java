@@ -1,168 +1,128 @@
 package com.sizphoto.shiningproject.engine.graph;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import com.sizphoto.shiningproject.engine.Utils;
-import org.joml.Vector2f;
-import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public final class ObjLoader {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjLoader.class);
+
+    // No load option changes the decoded geometry
+    private static final long CACHE_PARAMETERS = 0;
+
     private ObjLoader() {
     }
 
     public static Mesh loadMesh(final String fileName) throws Exception {
-        final List<String> lines = Utils.readAllLines(fileName);
-
-        List<Vector3f> vertices = new ArrayList<>();
-        List<Vector2f> textures = new ArrayList<>();
-        List<Vector3f> normals = new ArrayList<>();
-        List<Face> faces = new ArrayList<>();
-
-        for (String line : lines) {
-            final String[] tokens = line.split("\\s+");
-            switch (tokens[0]) {
-                case "v":
-                    // Geometric vertex
-                    final Vector3f vec3f = new Vector3f(
-                            Float.parseFloat(tokens[1]),
-                            Float.parseFloat(tokens[2]),
-                            Float.parseFloat(tokens[3]));
-                    vertices.add(vec3f);
-                    break;
-                case "vt":
-                    // Texture coordinate
-                    final Vector2f vec2f = new Vector2f(
-                            Float.parseFloat(tokens[1]),
-                            Float.parseFloat(tokens[2]));
-                    textures.add(vec2f);
-                    break;
-                case "vn":
-                    // Vertex normal
-                    final Vector3f vec3fNorm = new Vector3f(
-                            Float.parseFloat(tokens[1]),
-                            Float.parseFloat(tokens[2]),
-                            Float.parseFloat(tokens[3]));
-                    normals.add(vec3fNorm);
-                    break;
-                case "f":
-                    final Face face = new Face(tokens[1], tokens[2], tokens[3]);
-                    faces.add(face);
-                    break;
-                default:
-                    // Ignore other lines
-                    break;
-            }
-        }
-        return reorderLists(vertices, textures, normals, faces);
+        return loadMesh(fileName, 1);
     }
 
-    private static Mesh reorderLists(final List<Vector3f> posList, final List<Vector2f> textCoordList,
-                                     final List<Vector3f> normList, final List<Face> facesList) {
-
-        List<Integer> indices = new ArrayList<>();
-        // Create position array in the order it has been declared
-        float[] posArr = new float[posList.size() * 3];
-        int i = 0;
-        for (Vector3f pos : posList) {
-            posArr[i * 3] = pos.x;
-            posArr[i * 3 + 1] = pos.y;
-            posArr[i * 3 + 2] = pos.z;
-            i++;
+    public static Mesh loadMesh(final String fileName, final int instances) throws Exception {
+        final MeshData data = loadMeshData(fileName);
+        if (instances > 1) {
+            return new InstancedMesh(data.getPositions(), data.getTextCoords(), data.getNormals(), data.getIndices(),
+                    instances);
         }
-        float[] textCoordArr = new float[posList.size() * 2];
-        float[] normArr = new float[posList.size() * 3];
+        return new Mesh(data.getPositions(), data.getTextCoords(), data.getNormals(), data.getIndices(), true);
+    }
 
-        for (Face face : facesList) {
-            final IdxGroup[] faceVertexIndices = face.getFaceVertexIndices();
-            for (IdxGroup indValue : faceVertexIndices) {
-                processFaceVertex(indValue, textCoordList, normList,
-                        indices, textCoordArr, normArr);
+    /**
+     * Reads the geometry of an OBJ file from the mesh cache, or decodes it. No GL calls are made, so it can run on
+     * any thread.
+     */
+    static MeshData loadMeshData(final String fileName) throws Exception {
+        final long start = System.nanoTime();
+        MeshData data = MeshCache.load(fileName, CACHE_PARAMETERS);
+        if (data != null) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("loadMeshData() - [{}] {} vertices, {} triangles, read from the mesh cache in {} ms",
+                        fileName, data.getNumVertices(), data.getIndices().length / 3,
+                        (System.nanoTime() - start) / 1_000_000);
             }
+        } else {
+            data = decodeMesh(fileName);
+            MeshCache.store(fileName, CACHE_PARAMETERS, data);
         }
-        int[] indicesArr = indices.stream().mapToInt((Integer v) -> v).toArray();
-        return new Mesh(posArr, textCoordArr, normArr, indicesArr);
+        return data;
     }
 
-    private static void processFaceVertex(final IdxGroup indices, final List<Vector2f> textCoordList,
-                                          final List<Vector3f> normList,
-                                          final List<Integer> indicesList,
-                                          final float[] texCoordArr, final float[] normArr) {
-
-        // Set index for vertex coordinates
-        final int posIndex = indices.idxPos;
-        indicesList.add(posIndex);
-
-        // Reorder texture coordinates
-        if (indices.idxTextCoord >= 0) {
-            final Vector2f textCoord = textCoordList.get(indices.idxTextCoord);
-            texCoordArr[posIndex * 2] = textCoord.x;
-            texCoordArr[posIndex * 2 + 1] = 1 - textCoord.y;
-        }
-        if (indices.idxVecNormal >= 0) {
-            // Reorder vector normals
-            final Vector3f vecNorm = normList.get(indices.idxVecNormal);
-            normArr[posIndex * 3] = vecNorm.x;
-            normArr[posIndex * 3 + 1] = vecNorm.y;
-            normArr[posIndex * 3 + 2] = vecNorm.z;
+    private static MeshData decodeMesh(final String fileName) throws Exception {
+        final long start = System.nanoTime();
+        final ObjParser parser = ObjParser.parse(fileName);
+        final long parsed = System.nanoTime();
+        final MeshData data = buildVertices(fileName, parser);
+        MeshOptimizer.optimize(data.getPositions(), data.getTextCoords(), data.getNormals(), data.getIndices(), true);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("decodeMesh() - [{}] {} positions, {} unique vertices, {} triangles, parsed in {} ms, "
+                            + "indexed and optimized in {} ms", fileName, parser.getPositions().size() / 3,
+                    data.getNumVertices(), data.getIndices().length / 3, (parsed - start) / 1_000_000,
+                    (System.nanoTime() - parsed) / 1_000_000);
         }
+        return data;
     }
 
-    static class Face {
-
-        /**
-         * List of idxGroup groups for a face triangle (3 vertices per face).
-         */
-        private final IdxGroup[] idxGroups;
-
-        Face(final String v1, final String v2, final String v3) {
-            idxGroups = new IdxGroup[3];
-            // Parse the lines
-            idxGroups[0] = parseLine(v1);
-            idxGroups[1] = parseLine(v2);
-            idxGroups[2] = parseLine(v3);
+    /**
+     * Creates one vertex for each distinct combination of position, texture coordinates and normal referenced by
+     * the faces, so that a position shared by faces with different attributes (such as the corners of a cube)
+     * keeps all of them. Vertices are numbered in order of first use. The parser has checked that every index is
+     * in range.
+     */
+    private static MeshData buildVertices(final String fileName, final ObjParser parser) throws Exception {
+        final ObjParser.FloatArray positions = parser.getPositions();
+        final ObjParser.FloatArray textCoords = parser.getTextCoords();
+        final ObjParser.FloatArray normals = parser.getNormals();
+        final ObjParser.IntArray corners = parser.getCorners();
+        final int numPositions = positions.size() / 3;
+        final int numTextCoords = textCoords.size() / 2;
+        final int numNormals = normals.size() / 3;
+
+        // Each vertex is keyed by its indices as the digits of a mixed radix number, 0 meaning absent
+        final long normalRadix = numNormals + 1L;
+        final long positionRadix;
+        try {
+            positionRadix = Math.multiplyExact(numTextCoords + 1L, normalRadix);
+            Math.multiplyExact(positionRadix, (long) numPositions);
+        } catch (ArithmeticException e) {
+            throw new Exception("OBJ file [" + fileName + "] has too many attributes to index its vertices");
         }
 
-        private IdxGroup parseLine(final String line) {
-            IdxGroup idxGroup = new IdxGroup();
-
-            final String[] lineTokens = line.split("/");
-            final int length = lineTokens.length;
-            idxGroup.idxPos = Integer.parseInt(lineTokens[0]) - 1;
-            if (length > 1) {
-                // It can be empty if the obj does not define text coords
-                final String textCoord = lineTokens[1];
-                idxGroup.idxTextCoord = textCoord.length() > 0
-                        ? Integer.parseInt(textCoord) - 1
-                        : IdxGroup.NO_VALUE;
-                if (length > 2) {
-                    idxGroup.idxVecNormal = Integer.parseInt(lineTokens[2]) - 1;
-                }
+        final int numCorners = corners.size() / 3;
+        final LongIntHashMap vertexMap = new LongIntHashMap(numPositions);
+        final ObjParser.FloatArray posArr = new ObjParser.FloatArray();
+        final ObjParser.FloatArray textCoordArr = new ObjParser.FloatArray();
+        final ObjParser.FloatArray normArr = new ObjParser.FloatArray();
+        final int[] indicesArr = new int[numCorners];
+        for (int i = 0; i < numCorners; i++) {
+            final int posIndex = corners.get(i * 3);
+            final int textCoordIndex = corners.get(i * 3 + 1);
+            final int normalIndex = corners.get(i * 3 + 2);
+            final long key = posIndex * positionRadix + (textCoordIndex + 1) * normalRadix + normalIndex + 1;
+            final int vertex = vertexMap.putIfAbsent(key, vertexMap.size());
+            if (vertex != LongIntHashMap.NO_VALUE) {
+                indicesArr[i] = vertex;
+                continue;
+            }
+            indicesArr[i] = vertexMap.size() - 1;
+            posArr.add(positions.get(posIndex * 3));
+            posArr.add(positions.get(posIndex * 3 + 1));
+            posArr.add(positions.get(posIndex * 3 + 2));
+            if (textCoordIndex != ObjParser.NO_VALUE) {
+                textCoordArr.add(textCoords.get(textCoordIndex * 2));
+                textCoordArr.add(1 - textCoords.get(textCoordIndex * 2 + 1));
+            } else {
+                textCoordArr.add(0);
+                textCoordArr.add(0);
+            }
+            if (normalIndex != ObjParser.NO_VALUE) {
+                normArr.add(normals.get(normalIndex * 3));
+                normArr.add(normals.get(normalIndex * 3 + 1));
+                normArr.add(normals.get(normalIndex * 3 + 2));
+            } else {
+                normArr.add(0);
+                normArr.add(0);
+                normArr.add(0);
             }
-
-            return idxGroup;
-        }
-
-        IdxGroup[] getFaceVertexIndices() {
-            return idxGroups;
-        }
-    }
-
-    static class IdxGroup {
-
-        static final int NO_VALUE = -1;
-
-        int idxPos;
-
-        int idxTextCoord;
-
-        int idxVecNormal;
-
-        IdxGroup() {
-            idxPos = NO_VALUE;
-            idxTextCoord = NO_VALUE;
-            idxVecNormal = NO_VALUE;
         }
+        return new MeshData(posArr.toArray(), textCoordArr.toArray(), normArr.toArray(), indicesArr);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,383 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.springframework.util.ResourceUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Single pass OBJ parser. The file is memory mapped and scanned byte by byte, numbers are parsed in place and
+ * stored in growable primitive arrays, so no line, token or vector objects are created.
+ * Only the statements used by the engine are read: "v", "vt", "vn" and "f", whose polygons are triangulated.
+ */
+final class ObjParser {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Exact powers of ten that a double can represent
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Digits that fit in a long without overflowing, the rest only change the exponent
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    static final int NO_VALUE = -1;
+
+    private final String fileName;
+
+    private final ByteBuffer buffer;
+
+    private final int limit;
+
+    private int position;
+
+    private int line;
+
+    private final FloatArray positions;
+
+    private final FloatArray textCoords;
+
+    private final FloatArray normals;
+
+    // Position, texture coordinate and normal indices of each triangle corner, NO_VALUE when absent
+    private final IntArray corners;
+
+    private final int[] firstCorner;
+
+    private final int[] previousCorner;
+
+    private final int[] corner;
+
+    private ObjParser(final String fileName, final ByteBuffer buffer) {
+        this.fileName = fileName;
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.line = 1;
+        positions = new FloatArray();
+        textCoords = new FloatArray();
+        normals = new FloatArray();
+        corners = new IntArray();
+        firstCorner = new int[3];
+        previousCorner = new int[3];
+        corner = new int[3];
+    }
+
+    static ObjParser parse(final String fileName) throws Exception {
+        try (FileChannel channel = FileChannel.open(
+                ResourceUtils.getFile(String.format("file:%s", fileName)).toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new Exception("OBJ file [" + fileName + "] is too large: " + channel.size() + " bytes");
+            }
+            // The mapping stays valid after the channel is closed
+            final ObjParser parser = new ObjParser(fileName,
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            parser.parseStatements();
+            return parser;
+        }
+    }
+
+    FloatArray getPositions() {
+        return positions;
+    }
+
+    FloatArray getTextCoords() {
+        return textCoords;
+    }
+
+    FloatArray getNormals() {
+        return normals;
+    }
+
+    IntArray getCorners() {
+        return corners;
+    }
+
+    private void parseStatements() throws Exception {
+        while (position < limit) {
+            skipSpaces();
+            if (position < limit) {
+                final byte first = buffer.get(position);
+                final byte second = position + 1 < limit ? buffer.get(position + 1) : (byte) '\n';
+                if (first == 'v' && isSpace(second)) {
+                    // Geometric vertex
+                    position++;
+                    parseFloats(positions, 3);
+                } else if (first == 'v' && second == 't') {
+                    // Texture coordinate, an optional third component is ignored
+                    position += 2;
+                    parseFloats(textCoords, 2);
+                } else if (first == 'v' && second == 'n') {
+                    // Vertex normal
+                    position += 2;
+                    parseFloats(normals, 3);
+                } else if (first == 'f' && isSpace(second)) {
+                    position++;
+                    parseFace();
+                }
+            }
+            // Ignore the rest of the line and any other statement
+            skipLine();
+        }
+    }
+
+    private void parseFloats(final FloatArray target, final int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            skipSpaces();
+            target.add(parseFloat());
+        }
+    }
+
+    /**
+     * Reads a polygon and splits it in a fan of triangles around its first corner.
+     */
+    private void parseFace() throws Exception {
+        int numCorners = 0;
+        skipSpaces();
+        while (hasIndex()) {
+            if (numCorners == 0) {
+                parseCorner(firstCorner);
+            } else if (numCorners == 1) {
+                parseCorner(previousCorner);
+            } else {
+                parseCorner(corner);
+                addCorner(firstCorner);
+                addCorner(previousCorner);
+                addCorner(corner);
+                System.arraycopy(corner, 0, previousCorner, 0, corner.length);
+            }
+            numCorners++;
+            skipSpaces();
+        }
+        if (numCorners < 3) {
+            throw error("face with less than three corners");
+        }
+    }
+
+    private void parseCorner(final int[] target) throws Exception {
+        target[0] = parseIndex(positions.size() / 3);
+        target[1] = NO_VALUE;
+        target[2] = NO_VALUE;
+        if (position < limit && buffer.get(position) == '/') {
+            position++;
+            // Both can be empty if the obj does not define text coords or normals
+            if (hasIndex()) {
+                target[1] = parseIndex(textCoords.size() / 2);
+            }
+            if (position < limit && buffer.get(position) == '/') {
+                position++;
+                if (hasIndex()) {
+                    target[2] = parseIndex(normals.size() / 3);
+                }
+            }
+        }
+    }
+
+    private void addCorner(final int[] source) {
+        corners.add(source[0]);
+        corners.add(source[1]);
+        corners.add(source[2]);
+    }
+
+    private boolean hasIndex() {
+        return position < limit && (isDigit(buffer.get(position)) || buffer.get(position) == '-');
+    }
+
+    /**
+     * Parses a one based index, negative values count back from the last element declared so far.
+     *
+     * @param count number of elements of that kind declared so far
+     * @return the zero based index
+     */
+    private int parseIndex(final int count) throws Exception {
+        final boolean negative = position < limit && buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        final int start = position;
+        int value = 0;
+        while (position < limit && isDigit(buffer.get(position))) {
+            value = value * 10 + (buffer.get(position) - '0');
+            position++;
+        }
+        if (position == start) {
+            throw error("index expected");
+        }
+        final int index = negative ? count - value : value - 1;
+        if (index < 0 || index >= count) {
+            throw error("index " + (negative ? "-" : "") + value + " out of range, " + count + " declared");
+        }
+        return index;
+    }
+
+    private float parseFloat() throws Exception {
+        final int start = position;
+        boolean negative = false;
+        if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position) == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        while (position < limit && isDigit(buffer.get(position))) {
+            anyDigit = true;
+            if (digits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (buffer.get(position) - '0');
+                if (mantissa > 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+            position++;
+        }
+        if (position < limit && buffer.get(position) == '.') {
+            position++;
+            while (position < limit && isDigit(buffer.get(position))) {
+                anyDigit = true;
+                if (digits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (buffer.get(position) - '0');
+                    if (mantissa > 0) {
+                        digits++;
+                    }
+                    exponent--;
+                }
+                position++;
+            }
+        }
+        if (anyDigit && position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+            position++;
+            final boolean negativeExponent = position < limit && buffer.get(position) == '-';
+            if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                position++;
+            }
+            int value = 0;
+            while (position < limit && isDigit(buffer.get(position))) {
+                value = Math.min(value * 10 + (buffer.get(position) - '0'), 1000);
+                position++;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (!anyDigit || position < limit && !isSpace(buffer.get(position))) {
+            // Not a plain decimal number (nan, inf, hexadecimal...), let the JDK deal with it
+            return parseFloatSlow(start);
+        }
+
+        double value = mantissa;
+        if (exponent < 0) {
+            value = -exponent < POWERS_OF_TEN.length
+                    ? value / POWERS_OF_TEN[-exponent] : value * Math.pow(10, exponent);
+        } else if (exponent > 0) {
+            value = exponent < POWERS_OF_TEN.length ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    private float parseFloatSlow(final int start) throws Exception {
+        position = start;
+        while (position < limit && !isSpace(buffer.get(position))) {
+            position++;
+        }
+        final byte[] token = new byte[position - start];
+        for (int i = 0; i < token.length; i++) {
+            token[i] = buffer.get(start + i);
+        }
+        try {
+            return Float.parseFloat(new String(token, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw error("number expected");
+        }
+    }
+
+    private void skipSpaces() {
+        while (position < limit && (buffer.get(position) == ' ' || buffer.get(position) == '\t')) {
+            position++;
+        }
+    }
+
+    private void skipLine() {
+        while (position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        position++;
+        line++;
+    }
+
+    private Exception error(final String message) {
+        return new Exception("OBJ file [" + fileName + "] line " + line + ": " + message);
+    }
+
+    private static boolean isDigit(final byte value) {
+        return value >= '0' && value <= '9';
+    }
+
+    private static boolean isSpace(final byte value) {
+        return value == ' ' || value == '\t' || value == '\r' || value == '\n';
+    }
+
+    static class FloatArray {
+
+        private float[] values;
+
+        private int size;
+
+        FloatArray() {
+            values = new float[INITIAL_CAPACITY];
+        }
+
+        void add(final float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        float get(final int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    static class IntArray {
+
+        private int[] values;
+
+        private int size;
+
+        IntArray() {
+            values = new int[INITIAL_CAPACITY];
+        }
+
+        void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(final int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
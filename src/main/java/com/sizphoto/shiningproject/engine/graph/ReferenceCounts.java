@@ -0,0 +1,115 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Resources shared under a key and counted by reference, the bookkeeping of the {@link TextureCache}. A resource is
+ * handed to the deleter when its last reference is released. It is not thread safe.
+ */
+final class ReferenceCounts<T> {
+
+    private final Map<String, Entry<T>> entries;
+
+    private final Map<T, Entry<T>> resourceEntries;
+
+    private final Consumer<T> deleter;
+
+    ReferenceCounts(final Consumer<T> deleter) {
+        this.deleter = deleter;
+        entries = new HashMap<>();
+        resourceEntries = new IdentityHashMap<>();
+    }
+
+    /**
+     * @return the resource shared under the key, with one more reference, or null if no one holds it
+     */
+    T acquire(final String key) {
+        final Entry<T> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.references++;
+        return entry.resource;
+    }
+
+    /**
+     * Shares a resource under a key, the caller holds its first reference.
+     */
+    T add(final String key, final T resource) {
+        final Entry<T> entry = new Entry<>(key, resource);
+        entries.put(key, entry);
+        resourceEntries.put(resource, entry);
+        return resource;
+    }
+
+    /**
+     * Drops a reference, the resource is deleted when it was the last one.
+     *
+     * @return false if the resource is not shared, it is then left to the caller
+     */
+    boolean release(final T resource) {
+        final Entry<T> entry = resourceEntries.get(resource);
+        if (entry == null) {
+            return false;
+        }
+        entry.references--;
+        if (entry.references == 0) {
+            entries.remove(entry.key);
+            resourceEntries.remove(resource);
+            deleter.accept(resource);
+        }
+        return true;
+    }
+
+    boolean contains(final T resource) {
+        return resourceEntries.containsKey(resource);
+    }
+
+    /**
+     * @return the references held on the resource, 0 if it is not shared
+     */
+    int getReferences(final T resource) {
+        final Entry<T> entry = resourceEntries.get(resource);
+        return entry != null ? entry.references : 0;
+    }
+
+    /**
+     * @return the resources held
+     */
+    Iterable<T> getResources() {
+        return resourceEntries.keySet();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Deletes every resource still held, whatever its references.
+     */
+    void deleteAll() {
+        for (T resource : resourceEntries.keySet()) {
+            deleter.accept(resource);
+        }
+        entries.clear();
+        resourceEntries.clear();
+    }
+
+    private static class Entry<T> {
+
+        private final String key;
+
+        private final T resource;
+
+        private int references;
+
+        Entry(final String key, final T resource) {
+            this.key = key;
+            this.resource = resource;
+            this.references = 1;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.items.GameItem;
+
+import java.util.Arrays;
+
+/**
+ * List of the items to draw in a frame, ordered by 64 bit sort keys. Keys are built so that items sharing
+ * shader, texture, material and mesh end up next to each other. Opaque items are drawn front to back inside
+ * each state group, while blended items are drawn back to front before anything else is considered.
+ * Sorting is a least significant digit radix sort over reusable arrays, so a frame allocates nothing once
+ * the queue has grown to the size of the scene.
+ */
+class RenderQueue {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final int RADIX_BITS = 8;
+
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private static final int KEY_BITS = 64;
+
+    private static final int ID_BITS = 12;
+
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    private static final int SHADER_BITS = 3;
+
+    private static final long SHADER_MASK = (1L << SHADER_BITS) - 1;
+
+    private static final int DEPTH_BITS = 24;
+
+    private static final long DEPTH_MAX = (1L << DEPTH_BITS) - 1;
+
+    private static final int PASS_SHIFT = 63;
+
+    private static final int SHADER_SHIFT = PASS_SHIFT - SHADER_BITS;
+
+    private final int[] counts;
+
+    private long[] keys;
+
+    private long[] tmpKeys;
+
+    private int[] values;
+
+    private int[] tmpValues;
+
+    private GameItem[] items;
+
+    private int size;
+
+    RenderQueue() {
+        counts = new int[RADIX];
+        keys = new long[INITIAL_CAPACITY];
+        tmpKeys = new long[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+        tmpValues = new int[INITIAL_CAPACITY];
+        items = new GameItem[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Key for an opaque item: state first, then the quantized distance so that near items are drawn first.
+     */
+    static long opaqueKey(final int shader, final int texture, final int material, final int mesh,
+                          final float depth, final float maxDepth) {
+        return ((shader & SHADER_MASK) << SHADER_SHIFT)
+                | ((texture & ID_MASK) << (SHADER_SHIFT - ID_BITS))
+                | ((material & ID_MASK) << (SHADER_SHIFT - 2 * ID_BITS))
+                | ((mesh & ID_MASK) << (SHADER_SHIFT - 3 * ID_BITS))
+                | quantizeDepth(depth, maxDepth);
+    }
+
+    /**
+     * Key for a blended item: it goes after every opaque item and the inverted distance comes before the state,
+     * so that far items are drawn first.
+     */
+    static long blendedKey(final int shader, final int texture, final int material, final int mesh,
+                           final float depth, final float maxDepth) {
+        return (1L << PASS_SHIFT)
+                | ((shader & SHADER_MASK) << SHADER_SHIFT)
+                | ((DEPTH_MAX - quantizeDepth(depth, maxDepth)) << (SHADER_SHIFT - DEPTH_BITS))
+                | ((texture & ID_MASK) << (2 * ID_BITS))
+                | ((material & ID_MASK) << ID_BITS)
+                | (mesh & ID_MASK);
+    }
+
+    /**
+     * @return true if the key was built by {@link #blendedKey}
+     */
+    static boolean isBlended(final long key) {
+        return key < 0;
+    }
+
+    private static long quantizeDepth(final float depth, final float maxDepth) {
+        final float normalized = Math.max(0.0f, Math.min(1.0f, depth / maxDepth));
+        return (long) (normalized * DEPTH_MAX);
+    }
+
+    void clear() {
+        // Drop the references so that removed items can be collected
+        Arrays.fill(items, 0, size, null);
+        size = 0;
+    }
+
+    void add(final GameItem gameItem, final long key) {
+        if (size == keys.length) {
+            final int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            tmpKeys = new long[capacity];
+            values = Arrays.copyOf(values, capacity);
+            tmpValues = new int[capacity];
+            items = Arrays.copyOf(items, capacity);
+        }
+        keys[size] = key;
+        values[size] = size;
+        items[size] = gameItem;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the item at the given position of the sorted queue
+     */
+    GameItem get(final int index) {
+        return items[values[index]];
+    }
+
+    /**
+     * @return the key of the item at the given position of the sorted queue
+     */
+    long getKey(final int index) {
+        return keys[index];
+    }
+
+    void sort() {
+        for (int shift = 0; shift < KEY_BITS; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            // All the keys share this digit, so the pass would not move anything
+            if (counts[(int) (keys[0] >>> shift) & (RADIX - 1)] == size) {
+                continue;
+            }
+            int total = 0;
+            for (int i = 0; i < RADIX; i++) {
+                final int count = counts[i];
+                counts[i] = total;
+                total += count;
+            }
+            for (int i = 0; i < size; i++) {
+                final int digit = (int) (keys[i] >>> shift) & (RADIX - 1);
+                final int target = counts[digit]++;
+                tmpKeys[target] = keys[i];
+                tmpValues[target] = values[i];
+            }
+            final long[] swapKeys = keys;
+            keys = tmpKeys;
+            tmpKeys = swapKeys;
+            final int[] swapValues = values;
+            values = tmpValues;
+            tmpValues = swapValues;
+        }
+    }
+}
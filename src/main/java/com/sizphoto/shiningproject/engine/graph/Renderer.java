@@ -1,27 +1,26 @@
 package com.sizphoto.shiningproject.engine.graph;
 
 import com.sizphoto.shiningproject.engine.*;
-import com.sizphoto.shiningproject.engine.graph.lights.DirectionalLight;
-import com.sizphoto.shiningproject.engine.graph.lights.PointLight;
-import com.sizphoto.shiningproject.engine.graph.lights.SpotLight;
 import com.sizphoto.shiningproject.engine.items.GameItem;
 import com.sizphoto.shiningproject.engine.items.SkyBox;
+import com.sizphoto.shiningproject.engine.items.Terrain;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
-import org.lwjgl.glfw.GLFWErrorCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 import static com.sizphoto.shiningproject.utils.Constant.*;
-import static org.lwjgl.glfw.GLFW.glfwSetErrorCallback;
-import static org.lwjgl.glfw.GLFW.glfwTerminate;
 import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.glVertexAttrib1f;
+import static org.lwjgl.opengl.GL20.glVertexAttrib4f;
 
 @Component
 public class Renderer {
@@ -30,13 +29,13 @@ public class Renderer {
 
     private static final String PROJECTION_MATRIX_UNIFORM_NAME = "projectionMatrix";
     private static final String MODEL_VIEW_MATRIX_UNIFORM_NAME = "modelViewMatrix";
+    private static final String VIEW_MATRIX_UNIFORM_NAME = "viewMatrix";
+    private static final String IS_INSTANCED_UNIFORM_NAME = "isInstanced";
     private static final String TEXTURE_SAMPLER_UNIFORM_NAME = "texture_sampler";
+    private static final String TEXTURE_ARRAY_SAMPLER_UNIFORM_NAME = "texture_array_sampler";
     private static final String MATERIAL_UNIFORM_NAME = "material";
-    private static final String SPECULAR_POWER_UNIFORM_NAME = "specularPower";
     private static final String AMBIENT_LIGHT_UNIFORM_NAME = "ambientLight";
-    private static final String POINT_LIGHTS_UNIFORM_NAME = "pointLights";
-    private static final String SPOT_LIGHTS_UNIFORM_NAME = "spotLights";
-    private static final String DIRECTIONAL_LIGHT_UNIFORM_NAME = "directionalLight";
+    private static final String LIGHTS_UNIFORM_BLOCK_NAME = "Lights";
     private static final String PROJ_MODEL_MATRIX_UNIFORM_NAME = "projModelMatrix";
     private static final String COLOUR_UNIFORM_NAME = "colour";
     private static final String HAS_TEXTURE_UNIFORM_NAME = "hasTexture";
@@ -50,9 +49,16 @@ public class Renderer {
 
     private static final float Z_FAR = 1000.f;
 
-    private static final int MAX_POINT_LIGHTS = 5;
+    private static final String MAX_POINT_LIGHTS_DEFINE = "MAX_POINT_LIGHTS";
 
-    private static final int MAX_SPOT_LIGHTS = 5;
+    private static final String MAX_SPOT_LIGHTS_DEFINE = "MAX_SPOT_LIGHTS";
+
+    private static final int LIGHTS_BINDING_POINT = 0;
+
+    private static final int MAX_INDIRECT_DRAWS = 1024;
+
+    // Batched HUD items carry their colour in their vertices
+    private static final Vector4f HUD_BATCH_COLOUR = new Vector4f(1, 1, 1, 1);
 
     private ShaderProgram sceneShaderProgram;
 
@@ -62,11 +68,124 @@ public class Renderer {
 
     private final float specularPower;
 
+    private final boolean instancedRendering;
+
+    private final int maxPointLights;
+
+    private final int maxSpotLights;
+
+    private LightBuffer lightBuffer;
+
+    private final boolean useGeometryArena;
+
+    private final int geometryArenaVertices;
+
+    private final int geometryArenaIndices;
+
+    private GeometryArena geometryArena;
+
+    private final float terrainPixelError;
+
+    private final String meshCacheDirectory;
+
+    private final String textureCacheDirectory;
+
+    private final String fontCacheDirectory;
+
+    private final float anisotropy;
+
+    private final boolean hudBatching;
+
+    private HudBatch hudBatch;
+
+    private int hudDrawCalls;
+
+    private long hudNanos;
+
+    private final AssetLoader assetLoader;
+
+    private final boolean frustumCulling;
+
+    private final FrustumCullingFilter frustumFilter;
+
+    private final RenderQueue renderQueue;
+
+    private final List<GameItem> batchItems;
+
+    private final Vector3f viewPosition;
+
+    private final Consumer<GameItem> modelViewUpdater;
+
+    private int culledItems;
+
+    private int submittedItems;
+
+    private int skyBoxProjectionMatrixUniform;
+
+    private int skyBoxModelViewMatrixUniform;
+
+    private int skyBoxTextureSamplerUniform;
+
+    private int skyBoxAmbientLightUniform;
+
+    private int sceneProjectionMatrixUniform;
+
+    private int sceneModelViewMatrixUniform;
+
+    private int sceneViewMatrixUniform;
+
+    private int sceneIsInstancedUniform;
+
+    private int sceneTextureSamplerUniform;
+
+    private int sceneTextureArraySamplerUniform;
+
+    private ShaderProgram.MaterialUniforms sceneMaterialUniforms;
+
+    private int hudProjModelMatrixUniform;
+
+    private int hudColourUniform;
+
+    private int hudHasTextureUniform;
+
     @Autowired
     public Renderer(
-            final Transformation transformation
+            final Transformation transformation,
+            final AssetLoader assetLoader,
+            @Value("${rendering.instanced}") final boolean instancedRendering,
+            @Value("${rendering.maxPointLights}") final int maxPointLights,
+            @Value("${rendering.maxSpotLights}") final int maxSpotLights,
+            @Value("${rendering.frustumCulling}") final boolean frustumCulling,
+            @Value("${rendering.geometryArena}") final boolean useGeometryArena,
+            @Value("${rendering.geometryArenaVertices}") final int geometryArenaVertices,
+            @Value("${rendering.geometryArenaIndices}") final int geometryArenaIndices,
+            @Value("${rendering.terrainPixelError}") final float terrainPixelError,
+            @Value("${rendering.meshCacheDirectory}") final String meshCacheDirectory,
+            @Value("${rendering.textureCacheDirectory}") final String textureCacheDirectory,
+            @Value("${rendering.fontCacheDirectory}") final String fontCacheDirectory,
+            @Value("${rendering.anisotropy}") final float anisotropy,
+            @Value("${rendering.hudBatching}") final boolean hudBatching
     ) {
         this.transformation = transformation;
+        this.assetLoader = assetLoader;
+        this.instancedRendering = instancedRendering;
+        this.maxPointLights = maxPointLights;
+        this.maxSpotLights = maxSpotLights;
+        this.frustumCulling = frustumCulling;
+        this.useGeometryArena = useGeometryArena;
+        this.geometryArenaVertices = geometryArenaVertices;
+        this.geometryArenaIndices = geometryArenaIndices;
+        this.terrainPixelError = terrainPixelError;
+        this.meshCacheDirectory = meshCacheDirectory;
+        this.textureCacheDirectory = textureCacheDirectory;
+        this.fontCacheDirectory = fontCacheDirectory;
+        this.anisotropy = anisotropy;
+        this.hudBatching = hudBatching;
+        frustumFilter = new FrustumCullingFilter();
+        renderQueue = new RenderQueue();
+        batchItems = new ArrayList<>();
+        viewPosition = new Vector3f();
+        modelViewUpdater = this::updateModelViewMatrix;
         specularPower = 10f;
     }
 
@@ -74,6 +193,17 @@ public class Renderer {
         setupSkyBoxShader();
         setupSceneShader();
         setupHudShader();
+
+        MeshCache.setDirectory(meshCacheDirectory);
+        TextureContainer.setDirectory(textureCacheDirectory);
+        FontCache.setDirectory(fontCacheDirectory);
+        Texture.setAnisotropy(anisotropy);
+        assetLoader.init();
+        if (useGeometryArena) {
+            // Static meshes loaded from now on share the arena buffers
+            geometryArena = new GeometryArena(geometryArenaVertices, geometryArenaIndices, MAX_INDIRECT_DRAWS);
+            Mesh.setGeometryArena(geometryArena);
+        }
     }
 
     private void setupSkyBoxShader() throws Exception {
@@ -83,31 +213,42 @@ public class Renderer {
         skyBoxShaderProgram.link();
 
         // Create uniforms for projection matrix
-        skyBoxShaderProgram.createUniform(PROJECTION_MATRIX_UNIFORM_NAME);
-        skyBoxShaderProgram.createUniform(MODEL_VIEW_MATRIX_UNIFORM_NAME);
-        skyBoxShaderProgram.createUniform(TEXTURE_SAMPLER_UNIFORM_NAME);
-        skyBoxShaderProgram.createUniform(AMBIENT_LIGHT_UNIFORM_NAME);
+        skyBoxProjectionMatrixUniform = skyBoxShaderProgram.createUniform(PROJECTION_MATRIX_UNIFORM_NAME);
+        skyBoxModelViewMatrixUniform = skyBoxShaderProgram.createUniform(MODEL_VIEW_MATRIX_UNIFORM_NAME);
+        skyBoxTextureSamplerUniform = skyBoxShaderProgram.createUniform(TEXTURE_SAMPLER_UNIFORM_NAME);
+        skyBoxAmbientLightUniform = skyBoxShaderProgram.createUniform(AMBIENT_LIGHT_UNIFORM_NAME);
     }
 
     private void setupSceneShader() throws Exception {
         // Create shader
         this.sceneShaderProgram = new ShaderProgram();
         this.sceneShaderProgram.createVertexShader(Utils.loadResource(SCENE_VERTEX_SHADER_FILE_NAME));
-        this.sceneShaderProgram.createFragmentShader(Utils.loadResource(SCENE_FRAGMENT_SHADER_FILE_NAME));
+        // Light arrays are sized at compile time from the configured limits
+        String fragmentShaderCode = Utils.loadResource(SCENE_FRAGMENT_SHADER_FILE_NAME);
+        fragmentShaderCode = addDefine(fragmentShaderCode, MAX_POINT_LIGHTS_DEFINE, maxPointLights);
+        fragmentShaderCode = addDefine(fragmentShaderCode, MAX_SPOT_LIGHTS_DEFINE, maxSpotLights);
+        this.sceneShaderProgram.createFragmentShader(fragmentShaderCode);
         this.sceneShaderProgram.link();
 
         // Create uniforms for modelView and projection matrices and texture
-        this.sceneShaderProgram.createUniform(PROJECTION_MATRIX_UNIFORM_NAME);
-        this.sceneShaderProgram.createUniform(MODEL_VIEW_MATRIX_UNIFORM_NAME);
-        this.sceneShaderProgram.createUniform(TEXTURE_SAMPLER_UNIFORM_NAME);
+        sceneProjectionMatrixUniform = sceneShaderProgram.createUniform(PROJECTION_MATRIX_UNIFORM_NAME);
+        sceneModelViewMatrixUniform = sceneShaderProgram.createUniform(MODEL_VIEW_MATRIX_UNIFORM_NAME);
+        sceneViewMatrixUniform = sceneShaderProgram.createUniform(VIEW_MATRIX_UNIFORM_NAME);
+        sceneIsInstancedUniform = sceneShaderProgram.createUniform(IS_INSTANCED_UNIFORM_NAME);
+        sceneTextureSamplerUniform = sceneShaderProgram.createUniform(TEXTURE_SAMPLER_UNIFORM_NAME);
+        sceneTextureArraySamplerUniform = sceneShaderProgram.createUniform(TEXTURE_ARRAY_SAMPLER_UNIFORM_NAME);
         // Create uniform for material
-        this.sceneShaderProgram.createMaterialUniform(MATERIAL_UNIFORM_NAME);
-        // Create lighting related uniforms
-        this.sceneShaderProgram.createUniform(SPECULAR_POWER_UNIFORM_NAME);
-        this.sceneShaderProgram.createUniform(AMBIENT_LIGHT_UNIFORM_NAME);
-        this.sceneShaderProgram.createPointLightListUniform(POINT_LIGHTS_UNIFORM_NAME, MAX_POINT_LIGHTS);
-        this.sceneShaderProgram.createSpotLightListUniform(SPOT_LIGHTS_UNIFORM_NAME, MAX_SPOT_LIGHTS);
-        this.sceneShaderProgram.createDirectionalLightUniform(DIRECTIONAL_LIGHT_UNIFORM_NAME);
+        sceneMaterialUniforms = sceneShaderProgram.createMaterialUniform(MATERIAL_UNIFORM_NAME);
+        // Create lighting related uniform block, all the lights are uploaded through a single buffer
+        lightBuffer = new LightBuffer(LIGHTS_BINDING_POINT, maxPointLights, maxSpotLights);
+        final int lightsBlockSize = sceneShaderProgram.createUniformBlock(
+                LIGHTS_UNIFORM_BLOCK_NAME, lightBuffer.getBindingPoint());
+        if (lightsBlockSize != lightBuffer.getSize()) {
+            final String errorMessage = String.format("Uniform block [%s] size %d does not match light buffer size %d",
+                    LIGHTS_UNIFORM_BLOCK_NAME, lightsBlockSize, lightBuffer.getSize());
+            LOGGER.error("setupSceneShader() - " + errorMessage);
+            throw new Exception(errorMessage);
+        }
     }
 
     private void setupHudShader() throws Exception {
@@ -117,9 +258,13 @@ public class Renderer {
         this.hudShaderProgram.link();
 
         // Create uniforms for Orthographic-model projection matrix and base colour
-        this.hudShaderProgram.createUniform(PROJ_MODEL_MATRIX_UNIFORM_NAME);
-        this.hudShaderProgram.createUniform(COLOUR_UNIFORM_NAME);
-        this.hudShaderProgram.createUniform(HAS_TEXTURE_UNIFORM_NAME);
+        hudProjModelMatrixUniform = this.hudShaderProgram.createUniform(PROJ_MODEL_MATRIX_UNIFORM_NAME);
+        hudColourUniform = this.hudShaderProgram.createUniform(COLOUR_UNIFORM_NAME);
+        hudHasTextureUniform = this.hudShaderProgram.createUniform(HAS_TEXTURE_UNIFORM_NAME);
+
+        if (hudBatching) {
+            hudBatch = new HudBatch();
+        }
     }
 
     private void clear() {
@@ -128,6 +273,16 @@ public class Renderer {
     }
 
     public void render(final Window window, final Camera camera, final Scene scene, final IHud hud) {
+        render(window, camera, scene, hud, null);
+    }
+
+    /**
+     * Renders the scene and the HUD, then the overlay, if any, on top of them.
+     */
+    public void render(final Window window, final Camera camera, final Scene scene, final IHud hud,
+                       final IHud overlay) {
+
+        assetLoader.processUploads();
 
         clear();
 
@@ -143,21 +298,37 @@ public class Renderer {
         transformation.updateProjectionMatrix(FOV, windowWidth, windowHeight, Z_NEAR, Z_FAR);
         transformation.updateViewMatrix(camera);
 
+        final Terrain terrain = scene.getTerrain();
+        if (terrain != null) {
+            // Pixels covered by one unit at distance one, divided by the error allowed on screen
+            final float lodFactor = windowHeight / (2.0f * (float) Math.tan(FOV / 2)) / terrainPixelError;
+            terrain.update(camera.getRenderPosition(), lodFactor);
+        }
+
         renderScene(scene);
 
-        renderSkyBox(scene);
+        if (scene.getSkyBox() != null) {
+            renderSkyBox(scene);
+        }
 
+        hudDrawCalls = 0;
+        hudNanos = 0;
         renderHud(window, hud);
+        if (overlay != null) {
+            renderHud(window, overlay);
+        }
+
+        GlStateCache.endFrame();
     }
 
     private void renderSkyBox(final Scene scene) {
         skyBoxShaderProgram.bind();
 
-        skyBoxShaderProgram.setUniform(TEXTURE_SAMPLER_UNIFORM_NAME, 0);
+        skyBoxShaderProgram.setUniform(skyBoxTextureSamplerUniform, 0);
 
         // Update projection Matrix
         Matrix4f projectionMatrix = transformation.getProjectionMatrix();
-        skyBoxShaderProgram.setUniform(PROJECTION_MATRIX_UNIFORM_NAME, projectionMatrix);
+        skyBoxShaderProgram.setUniform(skyBoxProjectionMatrixUniform, projectionMatrix);
         SkyBox skyBox = scene.getSkyBox();
         Matrix4f viewMatrix = transformation.getViewMatrix();
         // We want to stick skybox at the origin coordinates at (0, 0, 0). This is achieved by setting to 0 the parts
@@ -170,12 +341,10 @@ public class Renderer {
         viewMatrix.m31(0);
         viewMatrix.m32(0);
         Matrix4f modelViewMatrix = transformation.buildModelViewMatrix(skyBox, viewMatrix);
-        skyBoxShaderProgram.setUniform(MODEL_VIEW_MATRIX_UNIFORM_NAME, modelViewMatrix);
-        skyBoxShaderProgram.setUniform(AMBIENT_LIGHT_UNIFORM_NAME, scene.getSceneLight().getSkyBoxLight());
+        skyBoxShaderProgram.setUniform(skyBoxModelViewMatrixUniform, modelViewMatrix);
+        skyBoxShaderProgram.setUniform(skyBoxAmbientLightUniform, scene.getRenderSceneLight().getSkyBoxLight());
 
         scene.getSkyBox().getMesh().render();
-
-        skyBoxShaderProgram.unbind();
     }
 
     private void renderScene(final Scene scene) {
@@ -184,91 +353,224 @@ public class Renderer {
 
         // Update projection Matrix
         Matrix4f projectionMatrix = transformation.getProjectionMatrix();
-        sceneShaderProgram.setUniform(PROJECTION_MATRIX_UNIFORM_NAME, projectionMatrix);
+        sceneShaderProgram.setUniform(sceneProjectionMatrixUniform, projectionMatrix);
 
-        // Update view Matrix
+        // Update view Matrix. Instanced meshes only upload model matrices, so the view matrix
+        // is combined with them in the vertex shader
         final Matrix4f viewMatrix = transformation.getViewMatrix();
+        sceneShaderProgram.setUniform(sceneViewMatrixUniform, viewMatrix);
 
         // Update Light Uniforms
-        final SceneLight sceneLight = scene.getSceneLight();
-        renderLights(viewMatrix, sceneLight);
-
-        sceneShaderProgram.setUniform(TEXTURE_SAMPLER_UNIFORM_NAME, 0);
-        // Render each mesh with the associated game Items
-        Map<Mesh, List<GameItem>> mapMeshes = scene.getGameMeshes();
-        for (Mesh mesh : mapMeshes.keySet()) {
-            sceneShaderProgram.setUniform(MATERIAL_UNIFORM_NAME, mesh.getMaterial());
-            mesh.renderList(mapMeshes.get(mesh), (GameItem gameItem) -> {
-                        Matrix4f modelViewMatrix = transformation.buildModelViewMatrix(gameItem, viewMatrix);
-                        sceneShaderProgram.setUniform(MODEL_VIEW_MATRIX_UNIFORM_NAME, modelViewMatrix);
-                    }
-            );
+        final SceneLight sceneLight = scene.getRenderSceneLight();
+        lightBuffer.setLights(sceneLight, viewMatrix, specularPower);
+        lightBuffer.upload();
+
+        sceneShaderProgram.setUniform(sceneTextureSamplerUniform, 0);
+        sceneShaderProgram.setUniform(sceneTextureArraySamplerUniform, Texture.ARRAY_TEXTURE_UNIT);
+
+        frustumFilter.updateFrustum(projectionMatrix, viewMatrix);
+
+        // Build the render queue with the visible items and sort it by state and depth
+        buildRenderQueue(scene, viewMatrix);
+        renderQueue.sort();
+
+        // Consecutive items sharing a mesh are drawn as a batch with a single VAO bind. Arena meshes that can be
+        // drawn indirectly only need compatible materials, which may use different layers of a texture array.
+        // Opaque items are drawn without blending. Blended items come last, they are tested against the depth of
+        // the opaque ones but do not write it, so that they do not hide each other.
+        GlStateCache.setBlend(false);
+        GlStateCache.setDepthMask(true);
+        Mesh batchMesh = null;
+        Texture boundTexture = null;
+        boolean blendedPass = false;
+        batchItems.clear();
+        final int queueSize = renderQueue.size();
+        for (int i = 0; i < queueSize; i++) {
+            final GameItem gameItem = renderQueue.get(i);
+            final Mesh mesh = gameItem.getMesh();
+            if (!blendedPass && RenderQueue.isBlended(renderQueue.getKey(i))) {
+                boundTexture = renderBatch(batchMesh, boundTexture);
+                batchMesh = null;
+                blendedPass = true;
+                GlStateCache.setBlend(true);
+                GlStateCache.setDepthMask(false);
+            }
+            if (mesh != batchMesh && !(isDrawnIndirect(mesh) && isDrawnIndirect(batchMesh)
+                    && mesh.getMaterial().canBatchWith(batchMesh.getMaterial()))) {
+                boundTexture = renderBatch(batchMesh, boundTexture);
+                batchMesh = mesh;
+            }
+            batchItems.add(gameItem);
+        }
+        renderBatch(batchMesh, boundTexture);
+        if (batchMesh != null) {
+            batchMesh.endRender();
         }
 
-        this.sceneShaderProgram.unbind();
+        // Back to the state set up by the window, which the sky box and the HUD rely on
+        GlStateCache.setBlend(true);
+        GlStateCache.setDepthMask(true);
     }
 
-    private void renderLights(final Matrix4f viewMatrix, final SceneLight sceneLight) {
-
-        sceneShaderProgram.setUniform(AMBIENT_LIGHT_UNIFORM_NAME, sceneLight.getAmbientLight());
-        sceneShaderProgram.setUniform(SPECULAR_POWER_UNIFORM_NAME, specularPower);
+    private void buildRenderQueue(final Scene scene, final Matrix4f viewMatrix) {
+        renderQueue.clear();
+        culledItems = 0;
+        queueItems(scene.getRenderGameItems(), viewMatrix);
+        if (scene.getTerrain() != null) {
+            queueItems(scene.getTerrain().getSelectedItems(), viewMatrix);
+        }
+        submittedItems = renderQueue.size();
+    }
 
-        // Process Point Lights
-        final PointLight[] pointLightList = sceneLight.getPointLightList();
-        int numLights = pointLightList != null ? pointLightList.length : 0;
-        for (int i = 0; i < numLights; i++) {
-            // Get a copy of the point light object and transform its position to view coordinates
-            final PointLight currPointLight = new PointLight(pointLightList[i]);
-            Vector3f lightPos = currPointLight.getPosition();
-            setViewLightPosition(lightPos, viewMatrix);
-            sceneShaderProgram.setUniform(POINT_LIGHTS_UNIFORM_NAME, currPointLight, i);
+    private void queueItems(final List<GameItem> gameItems, final Matrix4f viewMatrix) {
+        final int shaderId = sceneShaderProgram.getProgramId();
+        final int numItems = gameItems.size();
+        for (int i = 0; i < numItems; i++) {
+            final GameItem gameItem = gameItems.get(i);
+            final Mesh mesh = gameItem.getMesh();
+            if (frustumCulling) {
+                final Matrix4f modelMatrix = transformation.buildModelMatrix(gameItem);
+                if (!frustumFilter.insideFrustum(modelMatrix, gameItem.getRenderScale(), mesh)) {
+                    culledItems++;
+                    continue;
+                }
+            }
+            // Distance to the camera along the view direction
+            viewMatrix.transformPosition(gameItem.getRenderPosition(), viewPosition);
+            final float depth = -viewPosition.z;
+            final Material material = mesh.getMaterial();
+            final Texture texture = material.getTexture();
+            final int textureId = texture != null ? texture.getId() : 0;
+            final long key = material.isTransparent()
+                    ? RenderQueue.blendedKey(shaderId, textureId, material.getId(), mesh.getId(), depth, Z_FAR)
+                    : RenderQueue.opaqueKey(shaderId, textureId, material.getId(), mesh.getId(), depth, Z_FAR);
+            renderQueue.add(gameItem, key);
         }
+    }
 
-        // Process Spot Lights
-        final SpotLight[] spotLightList = sceneLight.getSpotLightList();
-        numLights = spotLightList != null ? spotLightList.length : 0;
-        for (int i = 0; i < numLights; i++) {
-            // Get a copy of the spot light object and transform its position and cone direction
-            // to view coordinates
-            SpotLight currSpotLight = new SpotLight(spotLightList[i]);
-            final Vector4f dir = new Vector4f(currSpotLight.getConeDirection(), 0);
-            dir.mul(viewMatrix);
-            currSpotLight.setConeDirection(new Vector3f(dir.x, dir.y, dir.z));
-            Vector3f lightPos = currSpotLight.getPointLight().getPosition();
-            setViewLightPosition(lightPos, viewMatrix);
-            sceneShaderProgram.setUniform(SPOT_LIGHTS_UNIFORM_NAME, currSpotLight, i);
+    /**
+     * Draws the pending batch items with the given mesh and clears the batch.
+     *
+     * @return the texture left bound after drawing
+     */
+    private Texture renderBatch(final Mesh mesh, final Texture boundTexture) {
+        if (mesh == null || batchItems.isEmpty()) {
+            batchItems.clear();
+            return boundTexture;
+        }
+        final Material material = mesh.getMaterial();
+        sceneShaderProgram.setUniform(sceneMaterialUniforms, material);
+        mesh.initRender(boundTexture);
+        if (material.isTextured() && material.getTexture().isArray() && !isDrawnIndirect(mesh)) {
+            // The arena reads the layer of each item from its instance attribute, other meshes use a constant
+            glVertexAttrib1f(Mesh.TEXTURE_LAYER_LOCATION, material.getTextureLayer());
+        }
+        if (instancedRendering && mesh instanceof InstancedMesh) {
+            sceneShaderProgram.setUniform(sceneIsInstancedUniform, 1);
+            ((InstancedMesh) mesh).drawListInstanced(batchItems, transformation);
+        } else if (isDrawnIndirect(mesh)) {
+            // Model matrices are read from the arena instance attribute
+            sceneShaderProgram.setUniform(sceneIsInstancedUniform, 1);
+            mesh.getArena().drawIndirect(batchItems, transformation);
+        } else {
+            sceneShaderProgram.setUniform(sceneIsInstancedUniform, 0);
+            mesh.drawList(batchItems, modelViewUpdater);
         }
+        batchItems.clear();
+        return material.getTexture() != null ? material.getTexture() : boundTexture;
+    }
+
+    private boolean isDrawnIndirect(final Mesh mesh) {
+        return mesh != null && mesh.getArena() != null && mesh.getArena().isMultiDrawIndirect();
+    }
+
+    private void updateModelViewMatrix(final GameItem gameItem) {
+        final Matrix4f modelViewMatrix = transformation.buildModelViewMatrix(gameItem, transformation.getViewMatrix());
+        sceneShaderProgram.setUniform(sceneModelViewMatrixUniform, modelViewMatrix);
+    }
+
+    /**
+     * @return the number of scene items discarded by frustum culling in the last rendered frame
+     */
+    public int getCulledItems() {
+        return culledItems;
+    }
+
+    /**
+     * @return the number of scene items submitted for drawing in the last rendered frame
+     */
+    public int getSubmittedItems() {
+        return submittedItems;
+    }
+
+    /**
+     * @return the number of draw calls of the HUD in the last rendered frame
+     */
+    public int getHudDrawCalls() {
+        return hudDrawCalls;
+    }
 
-        // Get a copy of the directional light object and transform its position to view coordinates
-        DirectionalLight currDirLight = new DirectionalLight(sceneLight.getDirectionalLight());
-        final Vector4f dir = new Vector4f(currDirLight.getDirection(), 0);
-        dir.mul(viewMatrix);
-        currDirLight.setDirection(new Vector3f(dir.x, dir.y, dir.z));
-        sceneShaderProgram.setUniform(DIRECTIONAL_LIGHT_UNIFORM_NAME, currDirLight);
+    /**
+     * @return the CPU time spent submitting the HUD in the last rendered frame
+     */
+    public long getHudNanos() {
+        return hudNanos;
     }
 
     private void renderHud(final Window window, final IHud hud) {
+        final long start = System.nanoTime();
         hudShaderProgram.bind();
+        // Only the batch enables the colour attribute, the other items read this constant
+        glVertexAttrib4f(HudBatch.COLOUR_LOCATION, 1, 1, 1, 1);
 
         Matrix4f ortho = transformation.getOrthoProjectionMatrix(0, window.getWidth(), window.getHeight(), 0);
         for (GameItem gameItem : hud.getGameItems()) {
 
             final Mesh mesh = gameItem.getMesh();
 
+            // Consecutive items sharing a texture are drawn together, in the order of the HUD
+            if (hudBatch != null && HudBatch.canBatch(mesh)) {
+                if (!hudBatch.accepts(mesh)) {
+                    drawHudBatch(ortho);
+                }
+                hudBatch.add(gameItem, transformation.buildModelMatrix(gameItem));
+                continue;
+            }
+            if (hudBatch != null) {
+                drawHudBatch(ortho);
+            }
+
             // Set orthographic and model matrix for this HUD item
             Matrix4f projModelMatrix = transformation.buildOrthoProjModelMatrix(gameItem, ortho);
-            hudShaderProgram.setUniform(PROJ_MODEL_MATRIX_UNIFORM_NAME, projModelMatrix);
-            hudShaderProgram.setUniform(COLOUR_UNIFORM_NAME, mesh.getMaterial().getAmbientColour());
-            hudShaderProgram.setUniform(HAS_TEXTURE_UNIFORM_NAME, mesh.getMaterial().isTextured() ? 1 : 0);
+            hudShaderProgram.setUniform(hudProjModelMatrixUniform, projModelMatrix);
+            hudShaderProgram.setUniform(hudColourUniform, mesh.getMaterial().getAmbientColour());
+            hudShaderProgram.setUniform(hudHasTextureUniform, mesh.getMaterial().isTextured() ? 1 : 0);
 
             // Render the mesh for this HUD item
             mesh.render();
+            hudDrawCalls++;
+        }
+        if (hudBatch != null) {
+            drawHudBatch(ortho);
         }
+        hudNanos += System.nanoTime() - start;
+    }
 
-        hudShaderProgram.unbind();
+    private void drawHudBatch(final Matrix4f ortho) {
+        if (hudBatch.isEmpty()) {
+            return;
+        }
+        hudShaderProgram.setUniform(hudProjModelMatrixUniform, ortho);
+        hudShaderProgram.setUniform(hudColourUniform, HUD_BATCH_COLOUR);
+        hudShaderProgram.setUniform(hudHasTextureUniform, hudBatch.getTexture() != null ? 1 : 0);
+        hudBatch.draw();
+        hudDrawCalls++;
     }
 
     public void cleanup() {
+        assetLoader.cleanup();
+        TextureCache.cleanup();
+
         if (sceneShaderProgram != null) {
             sceneShaderProgram.cleanup();
         }
@@ -277,21 +579,27 @@ public class Renderer {
             hudShaderProgram.cleanup();
         }
 
-        // Terminate GLFW and free the error callback
-        glfwTerminate();
-        GLFWErrorCallback errorCallback = glfwSetErrorCallback(null);
-        if (errorCallback != null) {
-            errorCallback.free();
-        } else {
-            LOGGER.error("cleanup() - errorCallback is null");
+        if (hudBatch != null) {
+            hudBatch.cleanup();
+        }
+
+        if (lightBuffer != null) {
+            lightBuffer.cleanup();
+        }
+
+        if (geometryArena != null) {
+            Mesh.setGeometryArena(null);
+            geometryArena.cleanup();
         }
     }
 
-    private void setViewLightPosition(final Vector3f lightPos, final Matrix4f viewMatrix) {
-        final Vector4f aux = new Vector4f(lightPos, 1);
-        aux.mul(viewMatrix);
-        lightPos.x = aux.x;
-        lightPos.y = aux.y;
-        lightPos.z = aux.z;
+    /**
+     * Inserts a preprocessor define right after the #version directive, which must stay the first line.
+     */
+    private static String addDefine(final String shaderCode, final String name, final int value) {
+        final int versionEnd = shaderCode.indexOf('\n') + 1;
+        return shaderCode.substring(0, versionEnd)
+                + "#define " + name + " " + value + "\n"
+                + shaderCode.substring(versionEnd);
     }
 }
\ No newline at end of file
@@ -1,25 +1,26 @@
 package com.sizphoto.shiningproject.engine.graph;
 
-import com.sizphoto.shiningproject.engine.graph.lights.DirectionalLight;
-import com.sizphoto.shiningproject.engine.graph.lights.PointLight;
-import com.sizphoto.shiningproject.engine.graph.lights.SpotLight;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
-import org.lwjgl.system.MemoryStack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL31.*;
 
 class ShaderProgram {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ShaderProgram.class);
 
+    // Number of ints reserved per uniform slot in the value cache. It fits the largest type, a mat4
+    private static final int SLOT_SIZE = 16;
+
+    private static final int INITIAL_SLOTS = 16;
+
     private final int programId;
 
     private int vertexShaderId;
@@ -28,6 +29,19 @@ class ShaderProgram {
 
     private final Map<String, Integer> uniforms;
 
+    // Uniform handles are indexes into these arrays. They are resolved once when the uniform is created,
+    // so setting a value neither hashes a name nor builds strings.
+    private int[] locations;
+
+    // Raw bits of the last value uploaded for each slot, used to skip GL calls for unchanged uniforms
+    private int[] cachedValues;
+
+    private boolean[] cached;
+
+    private int numSlots;
+
+    private final float[] matrixValues;
+
     ShaderProgram() throws Exception {
         programId = glCreateProgram();
         if (programId == 0) {
@@ -35,134 +49,132 @@ class ShaderProgram {
             throw new Exception("Could not create Shader");
         }
         uniforms = new HashMap<>();
+        locations = new int[INITIAL_SLOTS];
+        cachedValues = new int[INITIAL_SLOTS * SLOT_SIZE];
+        cached = new boolean[INITIAL_SLOTS];
+        matrixValues = new float[SLOT_SIZE];
     }
 
-    void createUniform(final String uniformName) throws Exception {
+    int createUniform(final String uniformName) throws Exception {
+        final Integer existing = uniforms.get(uniformName);
+        if (existing != null) {
+            return existing;
+        }
         final int uniformLocation = glGetUniformLocation(programId, uniformName);
         if (uniformLocation < 0) {
             final String errorMessage = String.format("Could not find uniform [%s]", uniformName);
             LOGGER.error("createUniform() - " + errorMessage);
             throw new Exception(errorMessage);
         }
-        uniforms.put(uniformName, uniformLocation);
-    }
-
-    void createPointLightListUniform(final String uniformName, final int size) throws Exception {
-        for (int i = 0; i < size; i++) {
-            createPointLightUniform(uniformName + "[" + i + "]");
+        if (numSlots == locations.length) {
+            locations = Arrays.copyOf(locations, numSlots * 2);
+            cachedValues = Arrays.copyOf(cachedValues, numSlots * 2 * SLOT_SIZE);
+            cached = Arrays.copyOf(cached, numSlots * 2);
         }
+        final int handle = numSlots++;
+        locations[handle] = uniformLocation;
+        uniforms.put(uniformName, handle);
+        return handle;
     }
 
-    private void createPointLightUniform(final String uniformName) throws Exception {
-        createUniform(uniformName + ".colour");
-        createUniform(uniformName + ".position");
-        createUniform(uniformName + ".intensity");
-        createUniform(uniformName + ".att.constant");
-        createUniform(uniformName + ".att.linear");
-        createUniform(uniformName + ".att.exponent");
-    }
-
-    void createSpotLightListUniform(final String uniformName, final int size) throws Exception {
-        for (int i = 0; i < size; i++) {
-            createSpotLightUniform(uniformName + "[" + i + "]");
+    int createUniformBlock(final String blockName, final int bindingPoint) throws Exception {
+        final int blockIndex = glGetUniformBlockIndex(programId, blockName);
+        if (blockIndex == GL_INVALID_INDEX) {
+            final String errorMessage = String.format("Could not find uniform block [%s]", blockName);
+            LOGGER.error("createUniformBlock() - " + errorMessage);
+            throw new Exception(errorMessage);
         }
+        glUniformBlockBinding(programId, blockIndex, bindingPoint);
+        return glGetActiveUniformBlocki(programId, blockIndex, GL_UNIFORM_BLOCK_DATA_SIZE);
     }
 
-    private void createSpotLightUniform(final String uniformName) throws Exception {
-        createPointLightUniform(uniformName + ".pl");
-        createUniform(uniformName + ".conedir");
-        createUniform(uniformName + ".cutoff");
-    }
-
-    void createDirectionalLightUniform(final String uniformName) throws Exception {
-        createUniform(uniformName + ".colour");
-        createUniform(uniformName + ".direction");
-        createUniform(uniformName + ".intensity");
-    }
-
-    void createMaterialUniform(final String uniformName) throws Exception {
-        createUniform(uniformName + ".ambient");
-        createUniform(uniformName + ".diffuse");
-        createUniform(uniformName + ".specular");
-        createUniform(uniformName + ".hasTexture");
-        createUniform(uniformName + ".reflectance");
+    MaterialUniforms createMaterialUniform(final String uniformName) throws Exception {
+        return new MaterialUniforms(
+                createUniform(uniformName + ".ambient"),
+                createUniform(uniformName + ".diffuse"),
+                createUniform(uniformName + ".specular"),
+                createUniform(uniformName + ".hasTexture"),
+                createUniform(uniformName + ".reflectance")
+        );
     }
 
-    void setUniform(final String uniformName, final Matrix4f value) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            // Dump the matrix into a float buffer
-            final FloatBuffer fb = stack.mallocFloat(16);
-            value.get(fb);
-            glUniformMatrix4fv(uniforms.get(uniformName), false, fb);
+    void setUniform(final int handle, final Matrix4f value) {
+        value.get(matrixValues);
+        boolean changed = !cached[handle];
+        final int offset = handle * SLOT_SIZE;
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            final int bits = Float.floatToRawIntBits(matrixValues[i]);
+            if (cachedValues[offset + i] != bits) {
+                cachedValues[offset + i] = bits;
+                changed = true;
+            }
         }
-    }
-
-    void setUniform(final String uniformName, final int value) {
-        glUniform1i(uniforms.get(uniformName), value);
-    }
-
-    void setUniform(final String uniformName, final float value) {
-        glUniform1f(uniforms.get(uniformName), value);
-    }
-
-    void setUniform(final String uniformName, final Vector3f value) {
-        glUniform3f(uniforms.get(uniformName), value.x, value.y, value.z);
-    }
-
-    void setUniform(final String uniformName, final Vector4f value) {
-        glUniform4f(uniforms.get(uniformName), value.x, value.y, value.z, value.w);
-    }
-
-    void setUniform(final String uniformName, final PointLight[] pointLights) {
-        final int numLights = pointLights != null ? pointLights.length : 0;
-        for (int i = 0; i < numLights; i++) {
-            setUniform(uniformName, pointLights[i], i);
+        if (changed) {
+            cached[handle] = true;
+            glUniformMatrix4fv(locations[handle], false, matrixValues);
         }
     }
 
-    void setUniform(final String uniformName, final PointLight pointLight, final int pos) {
-        setUniform(uniformName + "[" + pos + "]", pointLight);
-    }
-
-    private void setUniform(final String uniformName, final PointLight pointLight) {
-        setUniform(uniformName + ".colour", pointLight.getColour());
-        setUniform(uniformName + ".position", pointLight.getPosition());
-        setUniform(uniformName + ".intensity", pointLight.getIntensity());
-        final PointLight.Attenuation att = pointLight.getAttenuation();
-        setUniform(uniformName + ".att.constant", att.getConstant());
-        setUniform(uniformName + ".att.linear", att.getLinear());
-        setUniform(uniformName + ".att.exponent", att.getExponent());
+    void setUniform(final int handle, final int value) {
+        if (isCached(handle, value, 0, 0, 0, 1)) {
+            return;
+        }
+        glUniform1i(locations[handle], value);
     }
 
-    void setUniform(final String uniformName, final SpotLight[] spotLights) {
-        final int numLights = spotLights != null ? spotLights.length : 0;
-        for (int i = 0; i < numLights; i++) {
-            setUniform(uniformName, spotLights[i], i);
+    void setUniform(final int handle, final float value) {
+        if (isCached(handle, Float.floatToRawIntBits(value), 0, 0, 0, 1)) {
+            return;
         }
+        glUniform1f(locations[handle], value);
     }
 
-    void setUniform(final String uniformName, final SpotLight spotLight, final int pos) {
-        setUniform(uniformName + "[" + pos + "]", spotLight);
+    void setUniform(final int handle, final Vector3f value) {
+        if (isCached(handle, Float.floatToRawIntBits(value.x), Float.floatToRawIntBits(value.y),
+                Float.floatToRawIntBits(value.z), 0, 3)) {
+            return;
+        }
+        glUniform3f(locations[handle], value.x, value.y, value.z);
     }
 
-    private void setUniform(final String uniformName, final SpotLight spotLight) {
-        setUniform(uniformName + ".pl", spotLight.getPointLight());
-        setUniform(uniformName + ".conedir", spotLight.getConeDirection());
-        setUniform(uniformName + ".cutoff", spotLight.getCutOff());
+    void setUniform(final int handle, final Vector4f value) {
+        if (isCached(handle, Float.floatToRawIntBits(value.x), Float.floatToRawIntBits(value.y),
+                Float.floatToRawIntBits(value.z), Float.floatToRawIntBits(value.w), 4)) {
+            return;
+        }
+        glUniform4f(locations[handle], value.x, value.y, value.z, value.w);
     }
 
-    void setUniform(final String uniformName, final DirectionalLight dirLight) {
-        setUniform(uniformName + ".colour", dirLight.getColour());
-        setUniform(uniformName + ".direction", dirLight.getDirection());
-        setUniform(uniformName + ".intensity", dirLight.getIntensity());
+    void setUniform(final MaterialUniforms handles, final Material material) {
+        setUniform(handles.ambient, material.getAmbientColour());
+        setUniform(handles.diffuse, material.getDiffuseColour());
+        setUniform(handles.specular, material.getSpecularColour());
+        // 1 for a 2D texture, 2 for a layer of a texture array
+        setUniform(handles.hasTexture, material.isTextured() ? (material.getTexture().isArray() ? 2 : 1) : 0);
+        setUniform(handles.reflectance, material.getReflectance());
     }
 
-    void setUniform(final String uniformName, final Material material) {
-        setUniform(uniformName + ".ambient", material.getAmbientColour());
-        setUniform(uniformName + ".diffuse", material.getDiffuseColour());
-        setUniform(uniformName + ".specular", material.getSpecularColour());
-        setUniform(uniformName + ".hasTexture", material.isTextured() ? 1 : 0);
-        setUniform(uniformName + ".reflectance", material.getReflectance());
+    /**
+     * Compares the raw bits of a value with the last one uploaded for the slot and stores them.
+     *
+     * @return true if the uniform already holds this value and the GL call can be skipped
+     */
+    private boolean isCached(final int handle, final int v0, final int v1, final int v2, final int v3,
+                             final int size) {
+        final int offset = handle * SLOT_SIZE;
+        if (cached[handle]
+                && cachedValues[offset] == v0
+                && (size < 2 || cachedValues[offset + 1] == v1)
+                && (size < 3 || cachedValues[offset + 2] == v2)
+                && (size < 4 || cachedValues[offset + 3] == v3)) {
+            return true;
+        }
+        cached[handle] = true;
+        cachedValues[offset] = v0;
+        cachedValues[offset + 1] = v1;
+        cachedValues[offset + 2] = v2;
+        cachedValues[offset + 3] = v3;
+        return false;
     }
 
     void createVertexShader(final String shaderCode) throws Exception {
@@ -223,12 +235,16 @@ class ShaderProgram {
 
     }
 
+    int getProgramId() {
+        return programId;
+    }
+
     void bind() {
-        glUseProgram(programId);
+        GlStateCache.useProgram(programId);
     }
 
     void unbind() {
-        glUseProgram(0);
+        GlStateCache.useProgram(0);
     }
 
     void cleanup() {
@@ -237,4 +253,26 @@ class ShaderProgram {
             glDeleteProgram(programId);
         }
     }
+
+    static class MaterialUniforms {
+
+        private final int ambient;
+
+        private final int diffuse;
+
+        private final int specular;
+
+        private final int hasTexture;
+
+        private final int reflectance;
+
+        MaterialUniforms(final int ambient, final int diffuse, final int specular, final int hasTexture,
+                         final int reflectance) {
+            this.ambient = ambient;
+            this.diffuse = diffuse;
+            this.specular = specular;
+            this.hasTexture = hasTexture;
+            this.reflectance = reflectance;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+/**
+ * Packs rectangles into a square area, keeping only its skyline: the top edge of the rectangles packed so far, as
+ * a list of horizontal segments. A rectangle goes where its top would be lowest, ties broken by the narrowest
+ * segment. Space under the skyline is never reused, callers evicting rectangles must reuse their space themselves.
+ */
+class SkylinePacker {
+
+    private final int size;
+
+    private final int[] nodeX;
+
+    private final int[] nodeY;
+
+    private final int[] nodeWidth;
+
+    private int numNodes;
+
+    private int packedX;
+
+    private int packedY;
+
+    SkylinePacker(final int size) {
+        this.size = size;
+        // Every rectangle adds at most one node
+        nodeX = new int[size + 1];
+        nodeY = new int[size + 1];
+        nodeWidth = new int[size + 1];
+        numNodes = 1;
+        nodeWidth[0] = size;
+    }
+
+    /**
+     * @return true if the rectangle was packed, its corner is then read with {@link #getPackedX()} and
+     * {@link #getPackedY()}
+     */
+    boolean pack(final int width, final int height) {
+        int bestNode = -1;
+        int bestY = Integer.MAX_VALUE;
+        int bestWidth = Integer.MAX_VALUE;
+        for (int i = 0; i < numNodes; i++) {
+            final int y = fit(i, width, height);
+            if (y >= 0 && (y + height < bestY || y + height == bestY && nodeWidth[i] < bestWidth)) {
+                bestNode = i;
+                bestY = y + height;
+                bestWidth = nodeWidth[i];
+            }
+        }
+        if (bestNode < 0) {
+            return false;
+        }
+        packedX = nodeX[bestNode];
+        packedY = bestY - height;
+        addNode(bestNode, packedX, bestY, width);
+        return true;
+    }
+
+    int getPackedX() {
+        return packedX;
+    }
+
+    int getPackedY() {
+        return packedY;
+    }
+
+    /**
+     * @return the y the rectangle would be placed at starting from the node, or -1 if it does not fit there
+     */
+    private int fit(final int node, final int width, final int height) {
+        final int x = nodeX[node];
+        if (x + width > size) {
+            return -1;
+        }
+        int y = 0;
+        int remaining = width;
+        for (int i = node; remaining > 0; i++) {
+            y = Math.max(y, nodeY[i]);
+            if (y + height > size) {
+                return -1;
+            }
+            remaining -= nodeWidth[i];
+        }
+        return y;
+    }
+
+    private void addNode(final int index, final int x, final int y, final int width) {
+        System.arraycopy(nodeX, index, nodeX, index + 1, numNodes - index);
+        System.arraycopy(nodeY, index, nodeY, index + 1, numNodes - index);
+        System.arraycopy(nodeWidth, index, nodeWidth, index + 1, numNodes - index);
+        nodeX[index] = x;
+        nodeY[index] = y;
+        nodeWidth[index] = width;
+        numNodes++;
+
+        // Shrink or remove the nodes now under the new one
+        final int right = x + width;
+        final int next = index + 1;
+        while (next < numNodes && nodeX[next] < right) {
+            final int shrink = right - nodeX[next];
+            if (nodeWidth[next] > shrink) {
+                nodeX[next] += shrink;
+                nodeWidth[next] -= shrink;
+                break;
+            }
+            removeNode(next);
+        }
+        // Merge neighbours at the same height
+        for (int i = 0; i < numNodes - 1; i++) {
+            if (nodeY[i] == nodeY[i + 1]) {
+                nodeWidth[i] += nodeWidth[i + 1];
+                removeNode(i + 1);
+                i--;
+            }
+        }
+    }
+
+    private void removeNode(final int index) {
+        System.arraycopy(nodeX, index + 1, nodeX, index, numNodes - index - 1);
+        System.arraycopy(nodeY, index + 1, nodeY, index, numNodes - index - 1);
+        System.arraycopy(nodeWidth, index + 1, nodeWidth, index, numNodes - index - 1);
+        numNodes--;
+    }
+}
@@ -0,0 +1,181 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chunked level of detail for a height map. The leaves of the tree cover chunkSize x chunkSize quads at full
+ * resolution, and each parent covers the area of its four children with the same number of vertices, taking one
+ * of every two of them. Every node keeps the largest height difference between its mesh and the full resolution
+ * surface, which is projected on the screen to decide whether the node is detailed enough at a given distance.
+ * Chunks are surrounded by skirts, so neighbours selected at different levels do not leave visible cracks.
+ * Selection only works with local coordinates: the caller removes the position and scale of the terrain block.
+ */
+public class TerrainQuadTree {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TerrainQuadTree.class);
+
+    private static final float MIN_DISTANCE = 0.0001f;
+
+    private final List<Node> nodes;
+
+    private final Node root;
+
+    private final int levels;
+
+    public TerrainQuadTree(final HeightMapMesh heightMap, final int chunkSize) {
+        nodes = new ArrayList<>();
+        final int quads = Math.max(heightMap.getNumCols(), heightMap.getNumRows()) - 1;
+        int numLevels = 1;
+        while (chunkSize << (numLevels - 1) < quads) {
+            numLevels++;
+        }
+        levels = numLevels;
+        // Cracks can not be deeper than the height range of the terrain
+        final float skirtDepth = Math.max(heightMap.getMaxY() - heightMap.getMinY(), MIN_DISTANCE);
+        root = buildNode(heightMap, 0, 0, chunkSize << (levels - 1), 1 << (levels - 1), skirtDepth);
+
+        LOGGER.info("TerrainQuadTree() - {} levels, {} chunks for a {}x{} height map",
+                levels, nodes.size(), heightMap.getNumCols(), heightMap.getNumRows());
+    }
+
+    public int getNumNodes() {
+        return nodes.size();
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public Mesh getMesh(final int node) {
+        return nodes.get(node).mesh;
+    }
+
+    public int getNumTriangles(final int node) {
+        return nodes.get(node).mesh.getVertexCount() / 3;
+    }
+
+    /**
+     * Selects the coarsest nodes whose projected error is acceptable from the camera position.
+     *
+     * @param localCamera camera position in the local coordinates of the height map
+     * @param lodFactor   pixels covered by a unit at distance one, divided by the maximum error in pixels
+     * @param selected    receives the indices of the selected nodes, it must hold {@link #getNumNodes()} values
+     * @return the number of selected nodes
+     */
+    public int select(final Vector3f localCamera, final float lodFactor, final int[] selected) {
+        return root != null ? select(root, localCamera, lodFactor, selected, 0) : 0;
+    }
+
+    private int select(final Node node, final Vector3f localCamera, final float lodFactor, final int[] selected,
+                       final int count) {
+        if (node.children.length == 0 || node.error * lodFactor <= distance(node, localCamera)) {
+            selected[count] = node.index;
+            return count + 1;
+        }
+        int newCount = count;
+        for (Node child : node.children) {
+            newCount = select(child, localCamera, lodFactor, selected, newCount);
+        }
+        return newCount;
+    }
+
+    private static float distance(final Node node, final Vector3f point) {
+        final Vector3f min = node.mesh.getBoundsMin();
+        final Vector3f max = node.mesh.getBoundsMax();
+        final float dx = Math.max(Math.max(min.x - point.x, point.x - max.x), 0);
+        final float dy = Math.max(Math.max(min.y - point.y, point.y - max.y), 0);
+        final float dz = Math.max(Math.max(min.z - point.z, point.z - max.z), 0);
+        return Math.max((float) Math.sqrt(dx * dx + dy * dy + dz * dz), MIN_DISTANCE);
+    }
+
+    private Node buildNode(final HeightMapMesh heightMap, final int startCol, final int startRow, final int size,
+                           final int step, final float skirtDepth) {
+        final int lastCol = heightMap.getNumCols() - 1;
+        final int lastRow = heightMap.getNumRows() - 1;
+        if (startCol >= lastCol || startRow >= lastRow) {
+            return null;
+        }
+        final int endCol = Math.min(startCol + size, lastCol);
+        final int endRow = Math.min(startRow + size, lastRow);
+
+        final List<Node> children = new ArrayList<>();
+        if (step > 1) {
+            final int half = size / 2;
+            addChild(children, buildNode(heightMap, startCol, startRow, half, step / 2, skirtDepth));
+            addChild(children, buildNode(heightMap, startCol + half, startRow, half, step / 2, skirtDepth));
+            addChild(children, buildNode(heightMap, startCol, startRow + half, half, step / 2, skirtDepth));
+            addChild(children, buildNode(heightMap, startCol + half, startRow + half, half, step / 2, skirtDepth));
+        }
+
+        float error = calcError(heightMap, startCol, startRow, endCol, endRow, step);
+        for (Node child : children) {
+            // The error must not decrease towards the root, or selection could stop at a worse node
+            error = Math.max(error, child.error);
+        }
+        final Mesh mesh = heightMap.createChunkMesh(startCol, startRow, endCol, endRow, step, skirtDepth);
+        final Node node = new Node(nodes.size(), mesh, error, children.toArray(new Node[0]));
+        nodes.add(node);
+        return node;
+    }
+
+    private static void addChild(final List<Node> children, final Node child) {
+        if (child != null) {
+            children.add(child);
+        }
+    }
+
+    /**
+     * @return the largest height difference between the full resolution vertices and the triangles of the
+     * sampled grid
+     */
+    private static float calcError(final HeightMapMesh heightMap, final int startCol, final int startRow,
+                                   final int endCol, final int endRow, final int step) {
+        float error = 0;
+        if (step == 1) {
+            return error;
+        }
+        for (int row = startRow; row <= endRow; row++) {
+            final int row0 = startRow + Math.min((row - startRow) / step * step, endRow - startRow);
+            final int row1 = Math.min(row0 + step, endRow);
+            final float v = row1 > row0 ? (float) (row - row0) / (row1 - row0) : 0;
+            for (int col = startCol; col <= endCol; col++) {
+                final int col0 = startCol + Math.min((col - startCol) / step * step, endCol - startCol);
+                final int col1 = Math.min(col0 + step, endCol);
+                final float u = col1 > col0 ? (float) (col - col0) / (col1 - col0) : 0;
+                final float leftTop = heightMap.getHeight(col0, row0);
+                final float leftBottom = heightMap.getHeight(col0, row1);
+                final float rightTop = heightMap.getHeight(col1, row0);
+                final float rightBottom = heightMap.getHeight(col1, row1);
+                // Each cell is split by the diagonal from right top to left bottom
+                final float sampled = u + v <= 1
+                        ? leftTop + u * (rightTop - leftTop) + v * (leftBottom - leftTop)
+                        : rightBottom + (1 - u) * (leftBottom - rightBottom) + (1 - v) * (rightTop - rightBottom);
+                error = Math.max(error, Math.abs(heightMap.getHeight(col, row) - sampled));
+            }
+        }
+        return error;
+    }
+
+    private static class Node {
+
+        private final int index;
+
+        private final Mesh mesh;
+
+        private final float error;
+
+        private final Node[] children;
+
+        Node(final int index, final Mesh mesh, final float error, final Node[] children) {
+            this.index = index;
+            this.mesh = mesh;
+            this.error = error;
+            this.children = children;
+        }
+    }
+}
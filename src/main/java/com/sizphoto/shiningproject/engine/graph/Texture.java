@@ -1,82 +1,119 @@
 package com.sizphoto.shiningproject.engine.graph;
 
-import java.io.File;
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import org.lwjgl.opengl.GL;
 
-import org.lwjgl.system.MemoryStack;
-import org.springframework.util.ResourceUtils;
+import java.nio.ByteBuffer;
+import java.util.List;
 
+import static org.lwjgl.opengl.EXTTextureFilterAnisotropic.GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT;
+import static org.lwjgl.opengl.EXTTextureFilterAnisotropic.GL_TEXTURE_MAX_ANISOTROPY_EXT;
 import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL30.glGenerateMipmap;
-import static org.lwjgl.stb.STBImage.*;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
+import static org.lwjgl.opengl.GL12.glTexImage3D;
+import static org.lwjgl.opengl.GL12.glTexSubImage3D;
+import static org.lwjgl.opengl.GL30.GL_TEXTURE_2D_ARRAY;
 
 public class Texture {
 
-    private final int id;
-
-    private final int width;
-
-    private final int height;
+    // A sampler2D and a sampler2DArray can not read the same unit, arrays get their own
+    static final int ARRAY_TEXTURE_UNIT = 1;
 
-    public Texture(final String fileName) throws Exception {
+    private static float maxAnisotropy;
 
-        ByteBuffer buf;
+    private final int id;
 
-        // Load Texture file
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            final IntBuffer w = stack.mallocInt(1);
-            final IntBuffer h = stack.mallocInt(1);
-            final IntBuffer channels = stack.mallocInt(1);
+    private final int target;
 
-            final String fileLocation = String.format("file:%s", fileName);
-            final File file = ResourceUtils.getFile(fileLocation);
-            final String filePath = file.getAbsolutePath();
+    private final int layers;
 
-            buf = stbi_load(filePath, w, h, channels, 4);
-            if (buf == null) {
-                throw new Exception("Image file [" + filePath + "] not loaded: " + stbi_failure_reason());
-            }
+    private final int width;
 
-            /* Set width and height of image */
-            this.width = w.get();
-            this.height = h.get();
-        }
+    private final int height;
 
-        this.id = createTexture(buf);
+    private final int levels;
 
-        stbi_image_free(buf);
+    /**
+     * Loads an image with its mipmap chain, see {@link TextureData#load(String)}.
+     */
+    public Texture(final String fileName) throws Exception {
+        this(TextureData.load(fileName));
     }
 
     Texture(final ByteBuffer imageBuffer) throws Exception {
+        this(TextureData.decode(imageBuffer));
+    }
 
-        ByteBuffer buf;
-
-        // Load Texture file
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            final IntBuffer w = stack.mallocInt(1);
-            final IntBuffer h = stack.mallocInt(1);
-            final IntBuffer channels = stack.mallocInt(1);
+    /**
+     * Uploads decoded pixels, which are freed afterwards.
+     */
+    Texture(final TextureData data) {
+        this.width = data.getWidth();
+        this.height = data.getHeight();
+        this.levels = data.getLevels();
+        this.target = GL_TEXTURE_2D;
+        this.layers = 1;
+        try {
+            this.id = createTexture(data);
+        } finally {
+            data.free();
+        }
+    }
 
-            buf = stbi_load_from_memory(imageBuffer, w, h, channels, 4);
-            if (buf == null) {
-                throw new Exception("Image file not loaded: " + stbi_failure_reason());
+    /**
+     * Uploads images of the same size and levels as the layers of a texture array, they are freed afterwards.
+     */
+    Texture(final List<TextureData> layerData) {
+        final TextureData first = layerData.get(0);
+        this.width = first.getWidth();
+        this.height = first.getHeight();
+        this.levels = first.getLevels();
+        this.target = GL_TEXTURE_2D_ARRAY;
+        this.layers = layerData.size();
+        try {
+            this.id = createTextureArray(layerData);
+        } finally {
+            for (TextureData data : layerData) {
+                data.free();
             }
-
-            this.width = w.get();
-            this.height = h.get();
         }
+    }
 
-        this.id = createTexture(buf);
+    /**
+     * Uploads RGBA pixels owned by the caller.
+     */
+    Texture(final int width, final int height, final ByteBuffer pixels) {
+        this(new TextureData(width, height, 1, pixels, buffer -> {
+        }));
+    }
 
-        stbi_image_free(buf);
+    /**
+     * Sets the anisotropic filtering of the textures created from now on that have mipmaps. It must be called from
+     * the render thread.
+     *
+     * @param anisotropy samples taken along the direction of greatest stretch, 1 or less to disable it
+     */
+    static void setAnisotropy(final float anisotropy) {
+        if (anisotropy > 1 && GL.getCapabilities().GL_EXT_texture_filter_anisotropic) {
+            maxAnisotropy = Math.min(anisotropy, glGetFloat(GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT));
+        } else {
+            maxAnisotropy = 0;
+        }
     }
 
     public void bind() {
-        glBindTexture(GL_TEXTURE_2D, id);
+        GlStateCache.bindTexture(isArray() ? ARRAY_TEXTURE_UNIT : 0, target, id);
+    }
+
+    /**
+     * Replaces a rectangle of the first level of a 2D texture with tightly packed RGBA pixels.
+     */
+    void update(final int x, final int y, final int rectWidth, final int rectHeight, final ByteBuffer pixels) {
+        bind();
+        glTexSubImage2D(GL_TEXTURE_2D, 0, x, y, rectWidth, rectHeight, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
     }
 
     void cleanup() {
+        GlStateCache.textureDeleted(id);
         glDeleteTextures(id);
     }
 
@@ -92,27 +129,83 @@ public class Texture {
         return id;
     }
 
-    private int createTexture(final ByteBuffer buf) {
+    /**
+     * @return true for a GL_TEXTURE_2D_ARRAY, whose layer is chosen by the material
+     */
+    public boolean isArray() {
+        return target == GL_TEXTURE_2D_ARRAY;
+    }
+
+    public int getLayers() {
+        return layers;
+    }
+
+    /**
+     * @return the video memory used by the RGBA image and its mipmaps, for every layer
+     */
+    long getSize() {
+        return TextureData.getSize(width, height, levels) * layers;
+    }
+
+    private int createTexture(final TextureData data) {
 
         // Create a new OpenGL texture
         final int textureId = glGenTextures();
         // Bind the texture
-        glBindTexture(GL_TEXTURE_2D, textureId);
+        GlStateCache.bindTexture(0, textureId);
 
-        // Tell OpenGL how to unpack the RGBA bytes. Each component is 1 byte size
-        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        setParameters();
+
+        // Upload the texture data, level by level
+        for (int level = 0; level < levels; level++) {
+            glTexImage2D(GL_TEXTURE_2D, level, GL_RGBA, TextureData.getLevelSize(width, level),
+                    TextureData.getLevelSize(height, level), 0, GL_RGBA, GL_UNSIGNED_BYTE, data.getLevel(level));
+        }
+
+        return textureId;
+    }
 
-        // smoothing
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+    private int createTextureArray(final List<TextureData> layerData) {
+        final int textureId = glGenTextures();
+        GlStateCache.bindTexture(ARRAY_TEXTURE_UNIT, GL_TEXTURE_2D_ARRAY, textureId);
 
-        // Upload the texture data
-        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA,
-                GL_UNSIGNED_BYTE, buf);
+        setParameters();
 
-        // Generate Mip Map
-        glGenerateMipmap(GL_TEXTURE_2D);
+        // Allocate each level for every layer, then fill the layers one by one
+        for (int level = 0; level < levels; level++) {
+            glTexImage3D(GL_TEXTURE_2D_ARRAY, level, GL_RGBA, TextureData.getLevelSize(width, level),
+                    TextureData.getLevelSize(height, level), layers, 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        }
+        for (int layer = 0; layer < layers; layer++) {
+            final TextureData data = layerData.get(layer);
+            for (int level = 0; level < levels; level++) {
+                glTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, 0, layer, TextureData.getLevelSize(width, level),
+                        TextureData.getLevelSize(height, level), 1, GL_RGBA, GL_UNSIGNED_BYTE, data.getLevel(level));
+            }
+        }
 
         return textureId;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the filtering of the bound texture.
+     */
+    private void setParameters() {
+        // Tell OpenGL how to unpack the RGBA bytes. Each component is 1 byte size
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+
+        if (levels > 1) {
+            // Trilinear filtering between the pre-filtered levels
+            glTexParameteri(target, GL_TEXTURE_MIN_FILTER, GL_LINEAR_MIPMAP_LINEAR);
+            glTexParameteri(target, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+            if (maxAnisotropy > 1) {
+                glTexParameterf(target, GL_TEXTURE_MAX_ANISOTROPY_EXT, maxAnisotropy);
+            }
+        } else {
+            glTexParameteri(target, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+            glTexParameteri(target, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        }
+        // Without it a texture with a single level would not be complete
+        glTexParameteri(target, GL_TEXTURE_MAX_LEVEL, levels - 1);
+    }
+}
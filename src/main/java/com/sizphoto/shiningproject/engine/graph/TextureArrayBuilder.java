@@ -0,0 +1,146 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.lwjgl.system.MemoryStack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL30.GL_MAX_ARRAY_TEXTURE_LAYERS;
+import static org.lwjgl.stb.STBImage.stbi_failure_reason;
+import static org.lwjgl.stb.STBImage.stbi_info;
+
+/**
+ * Packs images into texture arrays, so that items using different images share a texture binding and can be drawn
+ * in the same batch, each one selecting its layer through its material. Images of the same size become the layers
+ * of one GL_TEXTURE_2D_ARRAY, every layer keeping its own mipmap chain and wrapping, so repeating texture
+ * coordinates work as they do with separate textures. Arrays are planned from the image headers only, before
+ * anything is decoded, and the arrays built from the same images are shared through the {@link TextureCache}.
+ */
+public class TextureArrayBuilder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextureArrayBuilder.class);
+
+    private static final String SHARED_NAME_PREFIX = "array:";
+
+    private final List<String> fileNames = new ArrayList<>();
+
+    public TextureArrayBuilder add(final String fileName) {
+        if (!fileNames.contains(fileName)) {
+            fileNames.add(fileName);
+        }
+        return this;
+    }
+
+    /**
+     * Loads the images and uploads the arrays, it must be called from the render thread.
+     */
+    public TextureArrays build() throws Exception {
+        final int numImages = fileNames.size();
+        final int[] widths = new int[numImages];
+        final int[] heights = new int[numImages];
+        for (int i = 0; i < numImages; i++) {
+            readSize(fileNames.get(i), widths, heights, i);
+        }
+        final int[] imageArrays = plan(widths, heights, glGetInteger(GL_MAX_ARRAY_TEXTURE_LAYERS));
+        int numArrays = 0;
+        for (int imageArray : imageArrays) {
+            numArrays = Math.max(numArrays, imageArray + 1);
+        }
+
+        final TextureArrays textureArrays = new TextureArrays();
+        long size = 0;
+        for (int array = 0; array < numArrays; array++) {
+            final List<String> layerNames = new ArrayList<>();
+            for (int i = 0; i < numImages; i++) {
+                if (imageArrays[i] == array) {
+                    layerNames.add(fileNames.get(i));
+                }
+            }
+            final Texture texture = acquireArray(layerNames);
+            textureArrays.addArray(texture);
+            for (int layer = 0; layer < layerNames.size(); layer++) {
+                textureArrays.addLayer(layerNames.get(layer), texture, layer);
+            }
+            size += texture.getSize();
+        }
+        LOGGER.info("build() - {} images packed in {} texture arrays, {} layers per array, {} bytes",
+                numImages, numArrays, String.format("%.1f", textureArrays.getPackingEfficiency()), size);
+        return textureArrays;
+    }
+
+    /**
+     * Groups the images of the same size, in the order they were added. A new array is started when the one of
+     * the size is full.
+     *
+     * @param maxLayers layers an array can hold
+     * @return the array of each image, numbered from 0
+     */
+    static int[] plan(final int[] widths, final int[] heights, final int maxLayers) {
+        final int numImages = widths.length;
+        final int[] imageArrays = new int[numImages];
+        final int[] arrayWidths = new int[numImages];
+        final int[] arrayHeights = new int[numImages];
+        final int[] arrayLayers = new int[numImages];
+        int numArrays = 0;
+        for (int i = 0; i < numImages; i++) {
+            int array = -1;
+            for (int j = 0; j < numArrays && array < 0; j++) {
+                if (arrayWidths[j] == widths[i] && arrayHeights[j] == heights[i] && arrayLayers[j] < maxLayers) {
+                    array = j;
+                }
+            }
+            if (array < 0) {
+                array = numArrays++;
+                arrayWidths[array] = widths[i];
+                arrayHeights[array] = heights[i];
+            }
+            arrayLayers[array]++;
+            imageArrays[i] = array;
+        }
+        return imageArrays;
+    }
+
+    private static void readSize(final String fileName, final int[] widths, final int[] heights, final int index)
+            throws Exception {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final IntBuffer w = stack.mallocInt(1);
+            final IntBuffer h = stack.mallocInt(1);
+            final IntBuffer channels = stack.mallocInt(1);
+            final String filePath = CacheFiles.getSourceFile(fileName).getAbsolutePath();
+            if (!stbi_info(filePath, w, h, channels)) {
+                throw new Exception("Image file [" + filePath + "] not read: " + stbi_failure_reason());
+            }
+            widths[index] = w.get(0);
+            heights[index] = h.get(0);
+        }
+    }
+
+    private static Texture acquireArray(final List<String> layerNames) throws Exception {
+        final String name = SHARED_NAME_PREFIX + String.join(",", layerNames);
+        final Texture shared = TextureCache.acquireIfShared(name);
+        if (shared != null) {
+            return shared;
+        }
+        final List<TextureData> layerData = new ArrayList<>(layerNames.size());
+        try {
+            for (String layerName : layerNames) {
+                final TextureData data = TextureData.load(layerName);
+                layerData.add(data);
+                if (data.getLevels() != layerData.get(0).getLevels()) {
+                    throw new Exception("Image file [" + layerName + "] does not have the levels of ["
+                            + layerNames.get(0) + "]");
+                }
+            }
+        } catch (Exception e) {
+            for (TextureData data : layerData) {
+                data.free();
+            }
+            throw e;
+        }
+        return TextureCache.share(name, new Texture(layerData));
+    }
+}
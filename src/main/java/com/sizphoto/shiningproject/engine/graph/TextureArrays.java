@@ -0,0 +1,64 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Texture arrays built by a {@link TextureArrayBuilder}, with the array and the layer of each image. The arrays are
+ * held until {@link #cleanup()} is called.
+ */
+public class TextureArrays {
+
+    private final List<Texture> arrays = new ArrayList<>();
+
+    private final Map<String, Texture> textures = new HashMap<>();
+
+    private final Map<String, Integer> layers = new HashMap<>();
+
+    void addArray(final Texture texture) {
+        arrays.add(texture);
+    }
+
+    void addLayer(final String fileName, final Texture texture, final int layer) {
+        textures.put(fileName, texture);
+        layers.put(fileName, layer);
+    }
+
+    /**
+     * Points the material to the layer of the image.
+     */
+    public void apply(final Material material, final String fileName) throws Exception {
+        final Texture texture = textures.get(fileName);
+        if (texture == null) {
+            throw new Exception("Image file [" + fileName + "] is not in the texture arrays");
+        }
+        material.setTexture(texture, layers.get(fileName));
+    }
+
+    public int getNumImages() {
+        return textures.size();
+    }
+
+    public int getNumArrays() {
+        return arrays.size();
+    }
+
+    /**
+     * @return the images per array, which is also the number of texture binds and batches each array saves when
+     * the images are drawn together
+     */
+    public float getPackingEfficiency() {
+        return arrays.isEmpty() ? 0 : (float) textures.size() / arrays.size();
+    }
+
+    public void cleanup() {
+        for (Texture texture : arrays) {
+            TextureCache.release(texture);
+        }
+        arrays.clear();
+        textures.clear();
+        layers.clear();
+    }
+}
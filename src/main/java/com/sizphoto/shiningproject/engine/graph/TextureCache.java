@@ -0,0 +1,143 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+
+/**
+ * Textures loaded from files, shared by everyone who asks for the same image. Each {@link #acquire(String)} must be
+ * paired with a {@link #release(Texture)}, and a texture is deleted when its last user releases it, or when the
+ * renderer is cleaned up. Shared textures are never deleted by the meshes using them, whoever acquired one gives it
+ * back: the {@link AssetHandle} of a texture, the sky box and the terrain built from a texture file, the fonts and
+ * the texture arrays.
+ * Textures are created on the render thread, so the cache must only be used from it.
+ */
+public final class TextureCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextureCache.class);
+
+    private static final ReferenceCounts<Texture> TEXTURES = new ReferenceCounts<>(Texture::cleanup);
+
+    private static int hits;
+
+    private static int misses;
+
+    private static long savedBytes;
+
+    private TextureCache() {
+    }
+
+    /**
+     * @return the texture of the image, loaded if no one holds it yet
+     */
+    public static Texture acquire(final String fileName) throws Exception {
+        final Texture texture = acquireIfLoaded(fileName);
+        return texture != null ? texture : add(getKey(fileName), new Texture(TextureData.load(fileName)));
+    }
+
+    /**
+     * Same as {@link #acquire(String)} for an image already decoded, whose pixels are freed.
+     */
+    static Texture acquire(final String fileName, final TextureData data) {
+        final Texture texture = acquireIfLoaded(fileName);
+        if (texture != null) {
+            data.free();
+            return texture;
+        }
+        return add(getKey(fileName), new Texture(data));
+    }
+
+    /**
+     * @return the texture of the image if someone holds it, or null without loading it
+     */
+    static Texture acquireIfLoaded(final String fileName) {
+        return acquireEntry(getKey(fileName));
+    }
+
+    /**
+     * @return the texture shared under a name that is not a file, such as a texture array, or null if no one
+     * holds it
+     */
+    static Texture acquireIfShared(final String name) {
+        return acquireEntry(name);
+    }
+
+    /**
+     * Shares a texture built by the caller under a name that is not a file. The caller holds it, as if it had
+     * been returned by {@link #acquireIfShared(String)}.
+     */
+    static Texture share(final String name, final Texture texture) {
+        return add(name, texture);
+    }
+
+    /**
+     * Gives back a texture, deleting it if no one else holds it. Textures that are not shared are deleted.
+     */
+    public static void release(final Texture texture) {
+        if (!TEXTURES.release(texture)) {
+            texture.cleanup();
+        }
+    }
+
+    /**
+     * @return true if the texture is shared through the cache
+     */
+    public static boolean isCached(final Texture texture) {
+        return TEXTURES.contains(texture);
+    }
+
+    public static int getHits() {
+        return hits;
+    }
+
+    public static int getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the video memory used by the cached textures
+     */
+    public static long getResidentBytes() {
+        long residentBytes = 0;
+        for (Texture texture : TEXTURES.getResources()) {
+            residentBytes += texture.getSize();
+        }
+        return residentBytes;
+    }
+
+    /**
+     * @return the video memory that loading a new copy on every hit would have taken
+     */
+    public static long getSavedBytes() {
+        return savedBytes;
+    }
+
+    /**
+     * Deletes every texture still held.
+     */
+    static void cleanup() {
+        LOGGER.debug("cleanup() - {} hits, {} misses, {} bytes saved, {} textures still held",
+                hits, misses, savedBytes, TEXTURES.size());
+        TEXTURES.deleteAll();
+    }
+
+    private static Texture acquireEntry(final String key) {
+        final Texture texture = TEXTURES.acquire(key);
+        if (texture != null) {
+            hits++;
+            savedBytes += texture.getSize();
+        }
+        return texture;
+    }
+
+    private static Texture add(final String key, final Texture texture) {
+        misses++;
+        return TEXTURES.add(key, texture);
+    }
+
+    private static String getKey(final String fileName) {
+        // Different spellings of the same file share the texture
+        return Paths.get(fileName).toAbsolutePath().normalize().toString();
+    }
+}
@@ -0,0 +1,232 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Texture files holding an image with its whole mipmap chain, written the first time the image is loaded, so that
+ * later runs neither decode the image nor filter its levels. Each image gets one little endian file in the
+ * container directory:
+ * <pre>
+ * int  magic, version
+ * long source size, source modification time
+ * int  width, height, levels
+ * byte RGBA pixels of every level, largest first
+ * </pre>
+ * Files are read into a native buffer whose levels are uploaded as they are. A file is ignored, and
+ * rewritten, when the source size or modification time or the format differ. Failures to read or write the
+ * containers are logged and never stop the image from loading.
+ * Levels are built with a box filter, each texel being the average of the 2x2 texels below it, the last texels of
+ * a side of odd length also averaging the row or column left over. Colours are averaged in linear space, so that
+ * distant surfaces do not get darker, and the rows of a level are filtered in parallel.
+ */
+final class TextureContainer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TextureContainer.class);
+
+    // "SPTC" read as a little endian int
+    private static final int MAGIC = 0x43545053;
+
+    // Increase when the layout or the filtering of the levels changes, to discard old files
+    private static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + 2 * Long.BYTES + 3 * Integer.BYTES;
+
+    private static final String EXTENSION = ".tex";
+
+    private static final int LINEAR_STEPS = 4096;
+
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    private static final byte[] LINEAR_TO_SRGB = new byte[LINEAR_STEPS + 1];
+
+    private static Path directory;
+
+    static {
+        for (int i = 0; i < SRGB_TO_LINEAR.length; i++) {
+            final float value = i / 255f;
+            SRGB_TO_LINEAR[i] = value <= 0.04045f
+                    ? value / 12.92f : (float) Math.pow((value + 0.055f) / 1.055f, 2.4f);
+        }
+        for (int i = 0; i <= LINEAR_STEPS; i++) {
+            final float value = (float) i / LINEAR_STEPS;
+            final float srgb = value <= 0.0031308f
+                    ? value * 12.92f : 1.055f * (float) Math.pow(value, 1 / 2.4f) - 0.055f;
+            LINEAR_TO_SRGB[i] = (byte) Math.round(srgb * 255);
+        }
+    }
+
+    private TextureContainer() {
+    }
+
+    /**
+     * @param directoryName directory of the container files, created on the first write, or empty to keep the
+     *                      levels in memory only
+     */
+    static void setDirectory(final String directoryName) {
+        directory = directoryName == null || directoryName.isEmpty() ? null : Paths.get(directoryName);
+    }
+
+    /**
+     * @return the image and its levels, read from the container, or null if there is no up to date container
+     */
+    static TextureData load(final String fileName) {
+        if (directory == null) {
+            return null;
+        }
+        final Path containerFile = CacheFiles.resolve(directory, fileName, EXTENSION);
+        if (!Files.isRegularFile(containerFile)) {
+            return null;
+        }
+        ByteBuffer buffer = null;
+        try (FileChannel channel = FileChannel.open(containerFile, StandardOpenOption.READ)) {
+            final File source = CacheFiles.getSourceFile(fileName);
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                LOGGER.warn("load() - [{}] is not a texture container", containerFile);
+                return null;
+            }
+            // Read rather than mapped, a mapping would keep the file locked on some platforms until it is collected
+            buffer = CacheFiles.read(channel).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != source.length()
+                    || buffer.getLong() != source.lastModified()) {
+                LOGGER.debug("load() - [{}] is out of date", containerFile);
+                return null;
+            }
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            final int levels = buffer.getInt();
+            if (width <= 0 || height <= 0 || levels <= 0 || levels > getMipLevels(width, height)
+                    || HEADER_BYTES + TextureData.getSize(width, height, levels) != buffer.limit()) {
+                LOGGER.warn("load() - [{}] is truncated", containerFile);
+                return null;
+            }
+            // The pixels are a slice of the whole file, which is released with them
+            final ByteBuffer fileBuffer = buffer;
+            final TextureData data = new TextureData(width, height, levels, buffer.slice(),
+                    pixels -> memFree(fileBuffer));
+            buffer = null;
+            return data;
+        } catch (IOException e) {
+            LOGGER.warn("load() - Could not read [{}]: {}", containerFile, e.getMessage());
+            return null;
+        } finally {
+            if (buffer != null) {
+                memFree(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the image and its levels, replacing any previous container.
+     */
+    static void store(final String fileName, final TextureData data) {
+        if (directory == null) {
+            return;
+        }
+        if (HEADER_BYTES + (long) data.getSize() > Integer.MAX_VALUE) {
+            LOGGER.debug("store() - [{}] is too large for a texture container", fileName);
+            return;
+        }
+        final Path containerFile = CacheFiles.resolve(directory, fileName, EXTENSION);
+        try {
+            final File source = CacheFiles.getSourceFile(fileName);
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION);
+            header.putLong(source.length()).putLong(source.lastModified());
+            header.putInt(data.getWidth()).putInt(data.getHeight()).putInt(data.getLevels());
+            header.flip();
+            CacheFiles.write(containerFile, header, data.getPixels().duplicate());
+            LOGGER.debug("store() - [{}] stored in [{}], {} levels", fileName, containerFile, data.getLevels());
+        } catch (IOException e) {
+            LOGGER.warn("store() - Could not write [{}]: {}", containerFile, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the levels of a full mipmap chain, down to 1x1
+     */
+    static int getMipLevels(final int width, final int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    /**
+     * Filters every level of an image, which is freed.
+     *
+     * @param image the largest level
+     * @return the image followed by the rest of its mipmap chain
+     */
+    static TextureData buildMipChain(final TextureData image) {
+        final long start = System.nanoTime();
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final TextureData data = TextureData.allocate(width, height, getMipLevels(width, height));
+        try {
+            data.getLevel(0).put(image.getLevel(0));
+        } finally {
+            image.free();
+        }
+        for (int level = 1; level < data.getLevels(); level++) {
+            downsample(data.getLevel(level - 1), TextureData.getLevelSize(width, level - 1),
+                    TextureData.getLevelSize(height, level - 1), data.getLevel(level),
+                    TextureData.getLevelSize(width, level), TextureData.getLevelSize(height, level));
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("buildMipChain() - {}x{}, {} levels filtered in {} ms", width, height, data.getLevels(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        return data;
+    }
+
+    private static void downsample(final ByteBuffer source, final int sourceWidth, final int sourceHeight,
+                                   final ByteBuffer target, final int targetWidth, final int targetHeight) {
+        final int bpp = TextureData.BYTES_PER_PIXEL;
+        IntStream.range(0, targetHeight).parallel().forEach(y -> {
+            final int rowStart = Math.min(2 * y, sourceHeight - 1);
+            final int rowEnd = getFootprintEnd(y, targetHeight, sourceHeight);
+            for (int x = 0; x < targetWidth; x++) {
+                final int colStart = Math.min(2 * x, sourceWidth - 1);
+                final int colEnd = getFootprintEnd(x, targetWidth, sourceWidth);
+                final int count = (rowEnd - rowStart) * (colEnd - colStart);
+                float red = 0;
+                float green = 0;
+                float blue = 0;
+                int alpha = 0;
+                for (int row = rowStart; row < rowEnd; row++) {
+                    for (int col = colStart; col < colEnd; col++) {
+                        final int index = (row * sourceWidth + col) * bpp;
+                        red += SRGB_TO_LINEAR[source.get(index) & 0xFF];
+                        green += SRGB_TO_LINEAR[source.get(index + 1) & 0xFF];
+                        blue += SRGB_TO_LINEAR[source.get(index + 2) & 0xFF];
+                        alpha += source.get(index + 3) & 0xFF;
+                    }
+                }
+                final int targetIndex = (y * targetWidth + x) * bpp;
+                target.put(targetIndex, LINEAR_TO_SRGB[Math.round(red / count * LINEAR_STEPS)]);
+                target.put(targetIndex + 1, LINEAR_TO_SRGB[Math.round(green / count * LINEAR_STEPS)]);
+                target.put(targetIndex + 2, LINEAR_TO_SRGB[Math.round(blue / count * LINEAR_STEPS)]);
+                target.put(targetIndex + 3, (byte) ((alpha + count / 2) / count));
+            }
+        });
+    }
+
+    /**
+     * @return the source texel after the last one averaged into a target texel, along one side. A texel covers
+     * the two source texels below it, the last one also covers the third texel left over by a side of odd length.
+     */
+    private static int getFootprintEnd(final int target, final int targetSize, final int sourceSize) {
+        return target == targetSize - 1 ? sourceSize : 2 * target + 2;
+    }
+}
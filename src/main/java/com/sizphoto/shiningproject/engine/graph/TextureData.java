@@ -0,0 +1,146 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.lwjgl.stb.STBImage;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.springframework.util.ResourceUtils;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.function.Consumer;
+
+import static org.lwjgl.stb.STBImage.*;
+
+/**
+ * RGBA pixels decoded from an image, before they are uploaded to GL. Decoding does not need a GL context, so it
+ * can run on any thread. The pixels hold one or more mipmap levels, largest first and each one half the size of
+ * the previous one, and may live outside the Java heap until {@link #free()} is called.
+ */
+class TextureData {
+
+    static final int BYTES_PER_PIXEL = 4;
+
+    private final int width;
+
+    private final int height;
+
+    private final int levels;
+
+    private final ByteBuffer pixels;
+
+    private final Consumer<ByteBuffer> deallocator;
+
+    TextureData(final int width, final int height, final int levels, final ByteBuffer pixels,
+                final Consumer<ByteBuffer> deallocator) {
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+        this.pixels = pixels;
+        this.deallocator = deallocator;
+    }
+
+    /**
+     * Loads an image with its full mipmap chain, from the texture container if there is an up to date one, or
+     * by decoding the image and filtering its levels, which are then written to a container for the next runs.
+     */
+    static TextureData load(final String fileName) throws Exception {
+        final TextureData container = TextureContainer.load(fileName);
+        if (container != null) {
+            return container;
+        }
+        final TextureData data = TextureContainer.buildMipChain(decode(fileName));
+        TextureContainer.store(fileName, data);
+        return data;
+    }
+
+    static TextureData decode(final String fileName) throws Exception {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final IntBuffer w = stack.mallocInt(1);
+            final IntBuffer h = stack.mallocInt(1);
+            final IntBuffer channels = stack.mallocInt(1);
+
+            final String fileLocation = String.format("file:%s", fileName);
+            final File file = ResourceUtils.getFile(fileLocation);
+            final String filePath = file.getAbsolutePath();
+
+            final ByteBuffer buf = stbi_load(filePath, w, h, channels, 4);
+            if (buf == null) {
+                throw new Exception("Image file [" + filePath + "] not loaded: " + stbi_failure_reason());
+            }
+            return new TextureData(w.get(), h.get(), 1, buf, STBImage::stbi_image_free);
+        }
+    }
+
+    static TextureData decode(final ByteBuffer imageBuffer) throws Exception {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final IntBuffer w = stack.mallocInt(1);
+            final IntBuffer h = stack.mallocInt(1);
+            final IntBuffer channels = stack.mallocInt(1);
+
+            final ByteBuffer buf = stbi_load_from_memory(imageBuffer, w, h, channels, 4);
+            if (buf == null) {
+                throw new Exception("Image file not loaded: " + stbi_failure_reason());
+            }
+            return new TextureData(w.get(), h.get(), 1, buf, STBImage::stbi_image_free);
+        }
+    }
+
+    /**
+     * @return pixels allocated with {@link MemoryUtil#memAlloc}, to be filled by the caller
+     */
+    static TextureData allocate(final int width, final int height, final int levels) {
+        return new TextureData(width, height, levels, MemoryUtil.memAlloc((int) getSize(width, height, levels)),
+                MemoryUtil::memFree);
+    }
+
+    static int getLevelSize(final int size, final int level) {
+        return Math.max(size >> level, 1);
+    }
+
+    /**
+     * @return the bytes of the first levels of an image
+     */
+    static long getSize(final int width, final int height, final int levels) {
+        long size = 0;
+        for (int level = 0; level < levels; level++) {
+            size += (long) getLevelSize(width, level) * getLevelSize(height, level) * BYTES_PER_PIXEL;
+        }
+        return size;
+    }
+
+    int getSize() {
+        return pixels.capacity();
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    int getLevels() {
+        return levels;
+    }
+
+    ByteBuffer getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @return a view of the pixels of one level
+     */
+    ByteBuffer getLevel(final int level) {
+        final int offset = (int) getSize(width, height, level);
+        final int length = getLevelSize(width, level) * getLevelSize(height, level) * BYTES_PER_PIXEL;
+        final ByteBuffer view = pixels.duplicate();
+        view.position(offset).limit(offset + length);
+        return view.slice();
+    }
+
+    void free() {
+        deallocator.accept(pixels);
+    }
+}
@@ -50,13 +50,13 @@ public class Transformation {
     }
 
     void updateViewMatrix(final Camera camera) {
-        final Vector3f cameraPos = camera.getPosition();
-        final Vector3f rotation = camera.getRotation();
+        final Vector3f cameraPos = camera.getRenderPosition();
+        final Vector3f rotation = camera.getRenderRotation();
 
         viewMatrix.identity();
         // First do the rotation so camera rotates over its position
-        viewMatrix.rotate((float) Math.toRadians(rotation.x), new Vector3f(1, 0, 0))
-                .rotate((float) Math.toRadians(rotation.y), new Vector3f(0, 1, 0));
+        viewMatrix.rotateX((float) Math.toRadians(rotation.x))
+                .rotateY((float) Math.toRadians(rotation.y));
         // Then do the translation
         viewMatrix.translate(-cameraPos.x, -cameraPos.y, -cameraPos.z);
     }
@@ -72,6 +72,11 @@ public class Transformation {
         return orthoMatrix;
     }
 
+    Matrix4f buildModelMatrix(final GameItem gameItem) {
+        updateModelMatrix(gameItem);
+        return modelMatrix;
+    }
+
     Matrix4f buildModelViewMatrix(final GameItem gameItem, final Matrix4f viewMatrix) {
         updateModelMatrix(gameItem);
         modelViewMatrix.set(viewMatrix);
@@ -86,11 +91,11 @@ public class Transformation {
     }
 
     private void updateModelMatrix(final GameItem gameItem) {
-        Vector3f rotation = gameItem.getRotation();
-        modelMatrix.identity().translate(gameItem.getPosition())
+        Vector3f rotation = gameItem.getRenderRotation();
+        modelMatrix.identity().translate(gameItem.getRenderPosition())
                 .rotateX((float) Math.toRadians(-rotation.x))
                 .rotateY((float) Math.toRadians(-rotation.y))
                 .rotateZ((float) Math.toRadians(-rotation.z))
-                .scale(gameItem.getScale());
+                .scale(gameItem.getRenderScale());
     }
 }
\ No newline at end of file
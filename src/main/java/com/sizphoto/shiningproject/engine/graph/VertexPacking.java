@@ -0,0 +1,143 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * Interleaved vertex layout shared by the meshes and the geometry arena: a float position, texture coordinates as
+ * half floats or floats and, when the mesh has them, a normal packed in a single int.
+ */
+final class VertexPacking {
+
+    // Meshes with more vertices need 32 bit indices
+    static final int MAX_SHORT_INDEX_VERTICES = 65536;
+
+    private static final int FLOAT_SIZE_BYTES = 4;
+
+    private static final int HALF_FLOAT_SIZE_BYTES = 2;
+
+    private static final int POSITION_SIZE_BYTES = 3 * FLOAT_SIZE_BYTES;
+
+    private static final int NORMAL_SIZE_BYTES = 4;
+
+    // Texture coordinates are only stored as half floats while their magnitude keeps the error of the
+    // 10 bit mantissa below a thousandth of a texture repetition
+    private static final float HALF_FLOAT_MAX_TEXT_COORD = 2.0f;
+
+    private static final int NORMAL_COMPONENT_MAX = 511;
+
+    private static final int NORMAL_COMPONENT_MASK = 0x3FF;
+
+    private VertexPacking() {
+    }
+
+    static int vertexSize(final boolean halfTextCoords, final boolean hasNormals) {
+        return POSITION_SIZE_BYTES + textCoordsSize(halfTextCoords) + (hasNormals ? NORMAL_SIZE_BYTES : 0);
+    }
+
+    /**
+     * Writes the vertices in the interleaved layout. Missing texture coordinates and normals are written as zeros.
+     */
+    static void putVertices(final ByteBuffer buffer, final float[] positions, final float[] textCoords,
+                            final float[] normals, final boolean halfTextCoords, final boolean hasNormals) {
+        final int numVertices = positions.length / 3;
+        for (int i = 0; i < numVertices; i++) {
+            buffer.putFloat(positions[i * 3]);
+            buffer.putFloat(positions[i * 3 + 1]);
+            buffer.putFloat(positions[i * 3 + 2]);
+            final float u = i * 2 < textCoords.length ? textCoords[i * 2] : 0;
+            final float v = i * 2 + 1 < textCoords.length ? textCoords[i * 2 + 1] : 0;
+            if (halfTextCoords) {
+                buffer.putShort(toHalfFloat(u));
+                buffer.putShort(toHalfFloat(v));
+            } else {
+                buffer.putFloat(u);
+                buffer.putFloat(v);
+            }
+            if (hasNormals) {
+                buffer.putInt(i * 3 + 2 < normals.length
+                        ? packNormal(normals[i * 3], normals[i * 3 + 1], normals[i * 3 + 2])
+                        : 0);
+            }
+        }
+    }
+
+    /**
+     * Points the attributes 0 to 2 of the bound VAO to the interleaved vertices of the bound array buffer.
+     */
+    static void setUpAttributes(final boolean halfTextCoords, final boolean hasNormals) {
+        final int stride = vertexSize(halfTextCoords, hasNormals);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, stride, 0);
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(1, 2, halfTextCoords ? GL_HALF_FLOAT : GL_FLOAT, false, stride, POSITION_SIZE_BYTES);
+        if (hasNormals) {
+            glEnableVertexAttribArray(2);
+            glVertexAttribPointer(2, 4, GL_INT_2_10_10_10_REV, true, stride,
+                    POSITION_SIZE_BYTES + textCoordsSize(halfTextCoords));
+        }
+    }
+
+    static boolean fitsHalfFloat(final float[] values) {
+        for (float value : values) {
+            if (Math.abs(value) > HALF_FLOAT_MAX_TEXT_COORD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts a float to the bits of an IEEE 754 half precision float, rounding to the nearest value.
+     */
+    static short toHalfFloat(final float value) {
+        final int bits = Float.floatToIntBits(value);
+        final int sign = (bits >>> 16) & 0x8000;
+        final int abs = bits & 0x7FFFFFFF;
+        // Add half of the discarded mantissa to round
+        int val = abs + 0x1000;
+        if (val >= 0x47800000) {
+            if (abs >= 0x47800000) {
+                if (val < 0x7F800000) {
+                    // Too large, becomes infinity
+                    return (short) (sign | 0x7C00);
+                }
+                // Infinity or NaN, keep the payload bits
+                return (short) (sign | 0x7C00 | ((bits & 0x007FFFFF) >>> 13));
+            }
+            // Rounding pushed it past the largest finite half float
+            return (short) (sign | 0x7BFF);
+        }
+        if (val >= 0x38800000) {
+            // Normalized half float, rebias the exponent
+            return (short) (sign | ((val - 0x38000000) >>> 13));
+        }
+        if (val < 0x33000000) {
+            // Too small even for a denormalized half float
+            return (short) sign;
+        }
+        // Denormalized half float
+        val = abs >>> 23;
+        return (short) (sign | ((((abs & 0x7FFFFF) | 0x800000) + (0x800000 >>> (val - 102))) >>> (126 - val)));
+    }
+
+    /**
+     * Packs a unit normal into the GL_INT_2_10_10_10_REV layout: x in the low bits, then y and z,
+     * as signed normalized 10 bit values. The 2 bit w component is left as zero.
+     */
+    static int packNormal(final float x, final float y, final float z) {
+        return packComponent(x)
+                | (packComponent(y) << 10)
+                | (packComponent(z) << 20);
+    }
+
+    private static int textCoordsSize(final boolean halfTextCoords) {
+        return 2 * (halfTextCoords ? HALF_FLOAT_SIZE_BYTES : FLOAT_SIZE_BYTES);
+    }
+
+    private static int packComponent(final float value) {
+        final float clamped = Math.max(-1.0f, Math.min(1.0f, value));
+        return Math.round(clamped * NORMAL_COMPONENT_MAX) & NORMAL_COMPONENT_MASK;
+    }
+}
@@ -10,10 +10,13 @@ public class DirectionalLight {
 
     private float intensity;
 
+    private boolean dirty;
+
     public DirectionalLight(final Vector3f colour, final Vector3f direction, final float intensity) {
         this.colour = colour;
         this.direction = direction;
         this.intensity = intensity;
+        this.dirty = true;
     }
 
     public DirectionalLight(final DirectionalLight light) {
@@ -26,6 +29,7 @@ public class DirectionalLight {
 
     public void setColour(final Vector3f colour) {
         this.colour = colour;
+        this.dirty = true;
     }
 
     public Vector3f getDirection() {
@@ -34,6 +38,7 @@ public class DirectionalLight {
 
     public void setDirection(final Vector3f direction) {
         this.direction = direction;
+        this.dirty = true;
     }
 
     public float getIntensity() {
@@ -42,5 +47,18 @@ public class DirectionalLight {
 
     public void setIntensity(final float intensity) {
         this.intensity = intensity;
+        this.dirty = true;
+    }
+
+    /**
+     * Tells whether the light changed since the renderer last consumed it. Setters raise the flag, code that
+     * modifies the vectors returned by the getters in place must call {@code setDirty(true)} itself.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void setDirty(final boolean dirty) {
+        this.dirty = dirty;
     }
 }
\ No newline at end of file
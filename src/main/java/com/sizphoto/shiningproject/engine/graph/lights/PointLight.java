@@ -12,14 +12,17 @@ public class PointLight {
 
     private Attenuation attenuation;
 
-    private PointLight(final Vector3f colour, final Vector3f position, final float intensity) {
+    private boolean dirty;
+
+    public PointLight(final Vector3f colour, final Vector3f position, final float intensity) {
         attenuation = new Attenuation(1, 0, 0);
         this.colour = colour;
         this.position = position;
         this.intensity = intensity;
+        this.dirty = true;
     }
 
-    private PointLight(final Vector3f colour, final Vector3f position, final float intensity,
+    public PointLight(final Vector3f colour, final Vector3f position, final float intensity,
                        final Attenuation attenuation) {
         this(colour, position, intensity);
         this.attenuation = attenuation;
@@ -30,12 +33,27 @@ public class PointLight {
                 pointLight.getIntensity(), pointLight.getAttenuation());
     }
 
+    /**
+     * Copies the values of another light into the vectors and attenuation of this one, and raises the dirty flag.
+     */
+    public void set(final PointLight pointLight) {
+        colour.set(pointLight.getColour());
+        position.set(pointLight.getPosition());
+        intensity = pointLight.getIntensity();
+        final Attenuation other = pointLight.getAttenuation();
+        attenuation.constant = other.getConstant();
+        attenuation.linear = other.getLinear();
+        attenuation.exponent = other.getExponent();
+        setDirty(true);
+    }
+
     public Vector3f getColour() {
         return colour;
     }
 
     public void setColour(final Vector3f colour) {
         this.colour = colour;
+        this.dirty = true;
     }
 
     public Vector3f getPosition() {
@@ -44,6 +62,7 @@ public class PointLight {
 
     public void setPosition(final Vector3f position) {
         this.position = position;
+        this.dirty = true;
     }
 
     public float getIntensity() {
@@ -52,6 +71,7 @@ public class PointLight {
 
     public void setIntensity(final float intensity) {
         this.intensity = intensity;
+        this.dirty = true;
     }
 
     public Attenuation getAttenuation() {
@@ -60,6 +80,20 @@ public class PointLight {
 
     public void setAttenuation(final Attenuation attenuation) {
         this.attenuation = attenuation;
+        this.dirty = true;
+    }
+
+    /**
+     * Tells whether the light or its attenuation changed since the renderer last consumed it. Setters raise
+     * the flag, code that modifies the vectors returned by the getters in place must call {@code setDirty(true)}.
+     */
+    public boolean isDirty() {
+        return dirty || attenuation.dirty;
+    }
+
+    public void setDirty(final boolean dirty) {
+        this.dirty = dirty;
+        this.attenuation.dirty = dirty;
     }
 
     public static class Attenuation {
@@ -70,10 +104,13 @@ public class PointLight {
 
         private float exponent;
 
-        Attenuation(final float constant, final float linear, final float exponent) {
+        private boolean dirty;
+
+        public Attenuation(final float constant, final float linear, final float exponent) {
             this.constant = constant;
             this.linear = linear;
             this.exponent = exponent;
+            this.dirty = true;
         }
 
         public float getConstant() {
@@ -82,6 +119,7 @@ public class PointLight {
 
         public void setConstant(final float constant) {
             this.constant = constant;
+            this.dirty = true;
         }
 
         public float getLinear() {
@@ -90,6 +128,7 @@ public class PointLight {
 
         public void setLinear(final float linear) {
             this.linear = linear;
+            this.dirty = true;
         }
 
         public float getExponent() {
@@ -98,6 +137,7 @@ public class PointLight {
 
         public void setExponent(final float exponent) {
             this.exponent = exponent;
+            this.dirty = true;
         }
     }
 }
\ No newline at end of file
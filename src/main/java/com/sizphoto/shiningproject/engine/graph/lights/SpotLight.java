@@ -10,7 +10,9 @@ public class SpotLight {
 
     private float cutOff;
 
-    private SpotLight(
+    private boolean dirty;
+
+    public SpotLight(
             final PointLight pointLight,
             final Vector3f coneDirection,
             final float cutOffAngle
@@ -18,6 +20,7 @@ public class SpotLight {
         this.pointLight = pointLight;
         this.coneDirection = coneDirection;
         setCutOffAngle(cutOffAngle);
+        this.dirty = true;
     }
 
     public SpotLight(final SpotLight spotLight) {
@@ -27,12 +30,23 @@ public class SpotLight {
         setCutOff(spotLight.getCutOff());
     }
 
+    /**
+     * Copies the values of another spot light into this one and its point light, and raises the dirty flag.
+     */
+    public void set(final SpotLight spotLight) {
+        pointLight.set(spotLight.getPointLight());
+        coneDirection.set(spotLight.getConeDirection());
+        cutOff = spotLight.getCutOff();
+        setDirty(true);
+    }
+
     public PointLight getPointLight() {
         return pointLight;
     }
 
     public void setPointLight(final PointLight pointLight) {
         this.pointLight = pointLight;
+        this.dirty = true;
     }
 
     public Vector3f getConeDirection() {
@@ -41,6 +55,7 @@ public class SpotLight {
 
     public void setConeDirection(final Vector3f coneDirection) {
         this.coneDirection = coneDirection;
+        this.dirty = true;
     }
 
     public float getCutOff() {
@@ -49,9 +64,22 @@ public class SpotLight {
 
     private void setCutOff(final float cutOff) {
         this.cutOff = cutOff;
+        this.dirty = true;
     }
 
     private void setCutOffAngle(final float cutOffAngle) {
         this.setCutOff((float) Math.cos(Math.toRadians(cutOffAngle)));
     }
+
+    /**
+     * Tells whether the spot light or its point light changed since the renderer last consumed it.
+     */
+    public boolean isDirty() {
+        return dirty || pointLight.isDirty();
+    }
+
+    public void setDirty(final boolean dirty) {
+        this.dirty = dirty;
+        this.pointLight.setDirty(dirty);
+    }
 }
\ No newline at end of file
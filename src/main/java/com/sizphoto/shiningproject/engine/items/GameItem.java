@@ -1,5 +1,6 @@
 package com.sizphoto.shiningproject.engine.items;
 
+import com.sizphoto.shiningproject.engine.Utils;
 import com.sizphoto.shiningproject.engine.graph.Mesh;
 import org.joml.Vector3f;
 
@@ -13,10 +14,32 @@ public class GameItem {
 
     private final Vector3f rotation;
 
+    // Transform drawn by the renderer, the live one until a copy is handed to the item
+    private Vector3f renderPosition;
+
+    private Vector3f renderRotation;
+
+    private float renderScale;
+
+    private boolean renderTransformCopied;
+
+    // Live transform before the last update, frames drawn between two updates interpolate from it
+    private final Vector3f previousPosition;
+
+    private final Vector3f previousRotation;
+
+    private float previousScale;
+
+    private boolean previousTransformStored;
+
     GameItem() {
         position = new Vector3f(0, 0, 0);
         scale = 1;
         rotation = new Vector3f(0, 0, 0);
+        renderPosition = position;
+        renderRotation = rotation;
+        previousPosition = new Vector3f();
+        previousRotation = new Vector3f();
     }
 
     public GameItem(Mesh mesh) {
@@ -52,6 +75,81 @@ public class GameItem {
         this.rotation.z = z;
     }
 
+    public Vector3f getRenderPosition() {
+        return renderPosition;
+    }
+
+    public Vector3f getRenderRotation() {
+        return renderRotation;
+    }
+
+    public float getRenderScale() {
+        return renderTransformCopied ? renderScale : scale;
+    }
+
+    /**
+     * Sets the transform drawn by the renderer, which from then on no longer follows the live transform. Used when
+     * the game logic updates the item on another thread than the renderer.
+     */
+    public void setRenderTransform(
+            final float posX,
+            final float posY,
+            final float posZ,
+            final float rotX,
+            final float rotY,
+            final float rotZ,
+            final float renderScale
+    ) {
+        if (!renderTransformCopied) {
+            renderPosition = new Vector3f();
+            renderRotation = new Vector3f();
+            renderTransformCopied = true;
+        }
+        renderPosition.set(posX, posY, posZ);
+        renderRotation.set(rotX, rotY, rotZ);
+        this.renderScale = renderScale;
+    }
+
+    /**
+     * Keeps the live transform as the previous one, called by the engine before each update.
+     */
+    public void storePreviousTransform() {
+        previousPosition.set(position);
+        previousRotation.set(rotation);
+        previousScale = scale;
+        previousTransformStored = true;
+    }
+
+    public Vector3f getPreviousPosition() {
+        return previousTransformStored ? previousPosition : position;
+    }
+
+    public Vector3f getPreviousRotation() {
+        return previousTransformStored ? previousRotation : rotation;
+    }
+
+    public float getPreviousScale() {
+        return previousTransformStored ? previousScale : scale;
+    }
+
+    /**
+     * Sets the render transform between the previous transform and the live one.
+     *
+     * @param alpha fraction of the update interval elapsed since the last update, from 0 to 1
+     */
+    public void interpolateRenderTransform(final float alpha) {
+        final Vector3f fromPosition = getPreviousPosition();
+        final Vector3f fromRotation = getPreviousRotation();
+        setRenderTransform(
+                fromPosition.x + (position.x - fromPosition.x) * alpha,
+                fromPosition.y + (position.y - fromPosition.y) * alpha,
+                fromPosition.z + (position.z - fromPosition.z) * alpha,
+                Utils.lerpAngle(fromRotation.x, rotation.x, alpha),
+                Utils.lerpAngle(fromRotation.y, rotation.y, alpha),
+                Utils.lerpAngle(fromRotation.z, rotation.z, alpha),
+                getPreviousScale() + (scale - getPreviousScale()) * alpha);
+    }
+
     public Mesh getMesh() {
         return mesh;
     }
@@ -4,15 +4,38 @@ import com.sizphoto.shiningproject.engine.graph.Material;
 import com.sizphoto.shiningproject.engine.graph.Mesh;
 import com.sizphoto.shiningproject.engine.graph.ObjLoader;
 import com.sizphoto.shiningproject.engine.graph.Texture;
+import com.sizphoto.shiningproject.engine.graph.TextureCache;
 
 public class SkyBox extends GameItem {
 
+    // Texture acquired from the texture file, null if the mesh came with its material
+    private Texture acquiredTexture;
+
     public SkyBox(final String objModel, final String textureFile) throws Exception {
         super();
         Mesh skyBoxMesh = ObjLoader.loadMesh(objModel);
-        final Texture skyBoxTexture = new Texture(textureFile);
-        skyBoxMesh.setMaterial(new Material(skyBoxTexture, 0.0f));
+        acquiredTexture = TextureCache.acquire(textureFile);
+        skyBoxMesh.setMaterial(new Material(acquiredTexture, 0.0f));
         setMesh(skyBoxMesh);
         setPosition(0, 0, 0);
     }
+
+    /**
+     * @param skyBoxMesh mesh with the sky box material already set, its texture is left to whoever set it
+     */
+    public SkyBox(final Mesh skyBoxMesh) {
+        super(skyBoxMesh);
+        setPosition(0, 0, 0);
+    }
+
+    /**
+     * Deletes the mesh and gives back the texture loaded from the texture file, if the sky box was created from one.
+     */
+    public void cleanup() {
+        getMesh().cleanUp();
+        if (acquiredTexture != null) {
+            TextureCache.release(acquiredTexture);
+            acquiredTexture = null;
+        }
+    }
 }
@@ -1,11 +1,43 @@
 package com.sizphoto.shiningproject.engine.items;
 
 import com.sizphoto.shiningproject.engine.graph.HeightMapMesh;
+import com.sizphoto.shiningproject.engine.graph.Material;
+import com.sizphoto.shiningproject.engine.graph.TerrainQuadTree;
+import com.sizphoto.shiningproject.engine.graph.Texture;
+import com.sizphoto.shiningproject.engine.graph.TextureCache;
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class Terrain {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Terrain.class);
+
+    // Every chunk of every block, block by block
     private final GameItem[] gameItems;
 
+    private final List<GameItem> selectedItems;
+
+    private final TerrainQuadTree quadTree;
+
+    private final int numBlocks;
+
+    private final int chunksPerBlock;
+
+    private final int[] selectedChunks;
+
+    private final Vector3f localCamera;
+
+    private final int fullDetailTriangles;
+
+    private int selectedTriangles;
+
+    // Texture acquired from the texture file the terrain was created with, null if it was given a material
+    private Texture acquiredTexture;
+
     public Terrain(
             final int blocksPerRow,
             final float scale,
@@ -15,8 +47,63 @@ public class Terrain {
             final String textureFile,
             final int textInc
     ) throws Exception {
-        gameItems = new GameItem[blocksPerRow * blocksPerRow];
-        final HeightMapMesh heightMapMesh = new HeightMapMesh(minY, maxY, heightMap, textureFile, textInc);
+        this(blocksPerRow, scale, minY, maxY, heightMap, textureFile, textInc, 0);
+    }
+
+    /**
+     * @param chunkSize quads per side of the full resolution chunks, or 0 to draw every block at full detail
+     */
+    public Terrain(
+            final int blocksPerRow,
+            final float scale,
+            final float minY,
+            final float maxY,
+            final String heightMap,
+            final String textureFile,
+            final int textInc,
+            final int chunkSize
+    ) throws Exception {
+        this(blocksPerRow, scale, minY, maxY, new HeightMapMesh(minY, maxY, heightMap, textureFile, textInc), true,
+                chunkSize);
+    }
+
+    /**
+     * @param material  material of the terrain, such as a layer of a texture array
+     * @param chunkSize quads per side of the full resolution chunks, or 0 to draw every block at full detail
+     */
+    public Terrain(
+            final int blocksPerRow,
+            final float scale,
+            final float minY,
+            final float maxY,
+            final String heightMap,
+            final Material material,
+            final int textInc,
+            final int chunkSize
+    ) throws Exception {
+        this(blocksPerRow, scale, minY, maxY, new HeightMapMesh(minY, maxY, heightMap, material, textInc), false,
+                chunkSize);
+    }
+
+    private Terrain(
+            final int blocksPerRow,
+            final float scale,
+            final float minY,
+            final float maxY,
+            final HeightMapMesh heightMapMesh,
+            final boolean ownsTexture,
+            final int chunkSize
+    ) {
+        acquiredTexture = ownsTexture ? heightMapMesh.getMaterial().getTexture() : null;
+        numBlocks = blocksPerRow * blocksPerRow;
+        quadTree = chunkSize > 0 ? new TerrainQuadTree(heightMapMesh, chunkSize) : null;
+        chunksPerBlock = quadTree != null ? quadTree.getNumNodes() : 1;
+        gameItems = new GameItem[numBlocks * chunksPerBlock];
+        selectedItems = new ArrayList<>(gameItems.length);
+        selectedChunks = new int[chunksPerBlock];
+        localCamera = new Vector3f();
+        fullDetailTriangles = numBlocks * heightMapMesh.getNumTriangles();
+
         for (int row = 0; row < blocksPerRow; row++) {
             for (int col = 0; col < blocksPerRow; col++) {
                 final float xDisplacement = (col - ((float) blocksPerRow - 1) / (float) 2)
@@ -24,15 +111,84 @@ public class Terrain {
                 final float zDisplacement = (row - ((float) blocksPerRow - 1) / (float) 2)
                         * scale * HeightMapMesh.getZLength();
 
-                GameItem terrainBlock = new GameItem(heightMapMesh.getMesh());
-                terrainBlock.setScale(scale);
-                terrainBlock.setPosition(xDisplacement, 0, zDisplacement);
-                gameItems[row * blocksPerRow + col] = terrainBlock;
+                final int block = row * blocksPerRow + col;
+                for (int chunk = 0; chunk < chunksPerBlock; chunk++) {
+                    GameItem terrainBlock = new GameItem(
+                            quadTree != null ? quadTree.getMesh(chunk) : heightMapMesh.getMesh());
+                    terrainBlock.setScale(scale);
+                    terrainBlock.setPosition(xDisplacement, 0, zDisplacement);
+                    gameItems[block * chunksPerBlock + chunk] = terrainBlock;
+                }
             }
         }
     }
 
+    /**
+     * @return the items of every chunk, whether they are selected or not
+     */
     public GameItem[] getGameItems() {
         return gameItems;
     }
+
+    /**
+     * @return the items selected by the last call to {@link #update(Vector3f, float)}
+     */
+    public List<GameItem> getSelectedItems() {
+        return selectedItems;
+    }
+
+    public int getSelectedTriangles() {
+        return selectedTriangles;
+    }
+
+    /**
+     * @return the triangles that would be drawn if every block was drawn at full detail
+     */
+    public int getFullDetailTriangles() {
+        return fullDetailTriangles;
+    }
+
+    /**
+     * Selects the chunks to draw in this frame.
+     *
+     * @param cameraPosition camera position in world coordinates
+     * @param lodFactor      pixels covered by a unit at distance one, divided by the maximum error in pixels
+     */
+    public void update(final Vector3f cameraPosition, final float lodFactor) {
+        final int previousChunks = selectedItems.size();
+        selectedItems.clear();
+        if (quadTree == null) {
+            for (GameItem gameItem : gameItems) {
+                selectedItems.add(gameItem);
+            }
+            selectedTriangles = fullDetailTriangles;
+            return;
+        }
+
+        selectedTriangles = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            final GameItem blockItem = gameItems[block * chunksPerBlock];
+            localCamera.set(cameraPosition).sub(blockItem.getPosition()).div(blockItem.getScale());
+            final int numSelected = quadTree.select(localCamera, lodFactor, selectedChunks);
+            for (int i = 0; i < numSelected; i++) {
+                selectedItems.add(gameItems[block * chunksPerBlock + selectedChunks[i]]);
+                selectedTriangles += quadTree.getNumTriangles(selectedChunks[i]);
+            }
+        }
+        if (LOGGER.isDebugEnabled() && selectedItems.size() != previousChunks) {
+            LOGGER.debug("update() - {} chunks, {} triangles, {} at full detail",
+                    selectedItems.size(), selectedTriangles, fullDetailTriangles);
+        }
+    }
+
+    /**
+     * Gives back the texture loaded from the texture file, if the terrain was created from one. The meshes of the
+     * chunks are deleted with the other meshes of the scene.
+     */
+    public void cleanup() {
+        if (acquiredTexture != null) {
+            TextureCache.release(acquiredTexture);
+            acquiredTexture = null;
+        }
+    }
 }
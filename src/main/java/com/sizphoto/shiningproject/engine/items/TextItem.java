@@ -1,43 +1,122 @@
 package com.sizphoto.shiningproject.engine.items;
 
-import com.sizphoto.shiningproject.engine.Utils;
-import com.sizphoto.shiningproject.engine.graph.FontTexture;
+import com.sizphoto.shiningproject.engine.graph.DynamicMesh;
+import com.sizphoto.shiningproject.engine.graph.Glyph;
+import com.sizphoto.shiningproject.engine.graph.IFont;
 import com.sizphoto.shiningproject.engine.graph.Material;
-import com.sizphoto.shiningproject.engine.graph.Mesh;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
+/**
+ * A line of text drawn with the glyphs of a font. The text is kept in a single {@link DynamicMesh} whose buffers
+ * are rewritten in place, so changing the text, even on every frame, allocates nothing once the buffers are large
+ * enough for it.
+ */
 public class TextItem extends GameItem {
 
     private static final float Z_POS = 0.0f;
 
     private static final int VERTICES_PER_QUAD = 4;
 
-    private final FontTexture fontTexture;
+    private static final int INDICES_PER_QUAD = 6;
 
-    private String text;
+    // At most a quad per char with 16 bit indices
+    private static final int MAX_CHARS = 65536 / VERTICES_PER_QUAD;
 
-    public TextItem(final String text, final FontTexture fontTexture) {
+    private final IFont font;
+
+    private final DynamicMesh mesh;
+
+    private final Glyph glyph;
+
+    private final StringBuilder text;
+
+    // Code points of the text held in the font. The previous ones are released after the new text is built, so
+    // that the glyphs both texts share are not evicted in between.
+    private int[] heldCodePoints;
+
+    private int numHeldCodePoints;
+
+    private int[] previousHeldCodePoints;
+
+    // Quads the index buffer holds, their indices never change
+    private int indexedQuads;
+
+    public TextItem(final CharSequence text, final IFont font) {
         super();
-        this.text = text;
-        this.fontTexture = fontTexture;
-        this.setMesh(buildMesh());
+        this.font = font;
+        this.glyph = new Glyph();
+        this.text = new StringBuilder();
+        this.heldCodePoints = new int[0];
+        this.previousHeldCodePoints = new int[0];
+        this.mesh = new DynamicMesh();
+        mesh.setMaterial(new Material(font.getTexture()));
+        this.setMesh(mesh);
+        this.setText(text);
     }
 
-    private Mesh buildMesh() {
-        List<Float> positions = new ArrayList<>();
-        List<Float> textCoords = new ArrayList<>();
-        final float[] normals = new float[0];
-        List<Integer> indices = new ArrayList<>();
-        char[] characters = text.toCharArray();
-        int numChars = characters.length;
+    public String getText() {
+        return text.toString();
+    }
 
-        float startX = 0;
+    /**
+     * Rewrites the geometry of the text, nothing is done when the text did not change.
+     */
+    public void setText(final CharSequence newText) {
+        if (text.length() > 0 && contentEquals(newText)) {
+            return;
+        }
+        text.setLength(0);
+        text.append(newText, 0, Math.min(newText.length(), MAX_CHARS));
+        final int numChars = text.length();
+
+        final int[] releasedCodePoints = heldCodePoints;
+        final int numReleasedCodePoints = numHeldCodePoints;
+        heldCodePoints = previousHeldCodePoints.length >= numChars ? previousHeldCodePoints : new int[numChars];
+        previousHeldCodePoints = releasedCodePoints;
+        numHeldCodePoints = 0;
+
+        final int numQuads = buildVertices(numChars);
+        if (numQuads > indexedQuads) {
+            buildIndices(numQuads);
+        }
+        mesh.setIndexCount(numQuads * INDICES_PER_QUAD);
 
-        for (int i = 0; i < numChars; i++) {
+        for (int i = 0; i < numReleasedCodePoints; i++) {
+            font.releaseGlyph(releasedCodePoints[i]);
+        }
+    }
 
-            final FontTexture.CharInfo charInfo = fontTexture.getCharInfo(characters[i]);
+    /**
+     * Deletes the buffers of the text and releases its characters, the font is left to its owner.
+     */
+    public void cleanup() {
+        for (int i = 0; i < numHeldCodePoints; i++) {
+            font.releaseGlyph(heldCodePoints[i]);
+        }
+        numHeldCodePoints = 0;
+        mesh.deleteBuffers();
+    }
+
+    /**
+     * @return the quads written, one per code point
+     */
+    private int buildVertices(final int numChars) {
+        final FloatBuffer vertices = mesh.beginVertices(numChars * VERTICES_PER_QUAD);
+
+        float startX = 0;
+
+        int numQuads = 0;
+        int i = 0;
+        while (i < numChars) {
+            // A surrogate pair is a single character, a lone surrogate has no glyph and gets an empty quad
+            final int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (font.acquireGlyph(codePoint, glyph)) {
+                heldCodePoints[numHeldCodePoints++] = codePoint;
+            }
+            numQuads++;
 
             // Build a character tile composed by two triangles
 
@@ -46,67 +125,51 @@ public class TextItem extends GameItem {
             // The y coordinate of the vertices on top of the triangles is lower than
             // the y coordinate of the vertices on the bottom of the triangles.
 
-            // We don’t scale the shape, so each tile is at a x distance equal to a character width. The height of the
-            // triangles will be the height of each character. This is because we want to represent the text as similar
-            // as possible as the original texture. (Anyway we can scale the result since TextItem class inherits
+            // We don’t scale the shape, so each tile is placed where the font puts the glyph and the pen then moves
+            // by the advance of the character. (Anyway we can scale the result since TextItem class inherits
             // from GameItem).
 
             // We set a fixed value for the z coordinate, since it will be irrelevant in order to draw this object.
 
-            // Left Top vertex
-            positions.add(startX); // x
-            positions.add(0.0f); //y
-            positions.add(Z_POS); //z
-            textCoords.add((float) charInfo.getStartX() / (float) fontTexture.getWidth());
-            textCoords.add(0.0f);
-            indices.add(i * VERTICES_PER_QUAD);
+            final float left = startX + glyph.getX0();
+            final float right = startX + glyph.getX1();
 
+            // Left Top vertex
+            vertices.put(left).put(glyph.getY0()).put(Z_POS).put(glyph.getU0()).put(glyph.getV0());
             // Left Bottom vertex
-            positions.add(startX); // x
-            positions.add((float) fontTexture.getHeight()); //y
-            positions.add(Z_POS); //z
-            textCoords.add((float) charInfo.getStartX() / (float) fontTexture.getWidth());
-            textCoords.add(1.0f);
-            indices.add(i * VERTICES_PER_QUAD + 1);
-
+            vertices.put(left).put(glyph.getY1()).put(Z_POS).put(glyph.getU0()).put(glyph.getV1());
             // Right Bottom vertex
-            positions.add(startX + charInfo.getWidth()); // x
-            positions.add((float) fontTexture.getHeight()); //y
-            positions.add(Z_POS); //z
-            textCoords.add((float) (charInfo.getStartX() + charInfo.getWidth()) / (float) fontTexture.getWidth());
-            textCoords.add(1.0f);
-            indices.add(i * VERTICES_PER_QUAD + 2);
-
+            vertices.put(right).put(glyph.getY1()).put(Z_POS).put(glyph.getU1()).put(glyph.getV1());
             // Right Top vertex
-            positions.add(startX + charInfo.getWidth()); // x
-            positions.add(0.0f); //y
-            positions.add(Z_POS); //z
-            textCoords.add((float) (charInfo.getStartX() + charInfo.getWidth()) / (float) fontTexture.getWidth());
-            textCoords.add(0.0f);
-            indices.add(i * VERTICES_PER_QUAD + 3);
+            vertices.put(right).put(glyph.getY0()).put(Z_POS).put(glyph.getU1()).put(glyph.getV0());
 
-            // Add indices por left top and bottom right vertices
-            indices.add(i * VERTICES_PER_QUAD);
-            indices.add(i * VERTICES_PER_QUAD + 2);
-
-            startX += charInfo.getWidth();
+            startX += glyph.getAdvance();
         }
-
-        final float[] posArr = Utils.listToArray(positions);
-        final float[] textCoordsArr = Utils.listToArray(textCoords);
-        final int[] indicesArr = indices.stream().mapToInt(i -> i).toArray();
-        Mesh mesh = new Mesh(posArr, textCoordsArr, normals, indicesArr);
-        mesh.setMaterial(new Material(fontTexture.getTexture()));
-        return mesh;
+        mesh.endVertices();
+        return numQuads;
     }
 
-    public String getText() {
-        return text;
+    private void buildIndices(final int numQuads) {
+        final ShortBuffer indices = mesh.beginIndices(numQuads * INDICES_PER_QUAD);
+        for (int i = 0; i < numQuads; i++) {
+            final int first = i * VERTICES_PER_QUAD;
+            indices.put((short) first).put((short) (first + 1)).put((short) (first + 2));
+            // Add indices por left top and bottom right vertices
+            indices.put((short) first).put((short) (first + 2)).put((short) (first + 3));
+        }
+        mesh.endIndices();
+        indexedQuads = numQuads;
     }
 
-    public void setText(final String text) {
-        this.text = text;
-        this.getMesh().deleteBuffers();
-        this.setMesh(buildMesh());
+    private boolean contentEquals(final CharSequence newText) {
+        if (text.length() != newText.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != newText.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -3,47 +3,90 @@ package com.sizphoto.shiningproject.game;
 import com.sizphoto.shiningproject.engine.*;
 import com.sizphoto.shiningproject.engine.graph.*;
 import com.sizphoto.shiningproject.engine.graph.lights.DirectionalLight;
-import com.sizphoto.shiningproject.engine.items.GameItem;
 import com.sizphoto.shiningproject.engine.items.SkyBox;
 import com.sizphoto.shiningproject.engine.items.Terrain;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Map;
-
 import static org.lwjgl.glfw.GLFW.*;
 
 @Component
 @Primary
 public class DummyGame implements IGameLogic {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DummyGame.class);
+
     private static final float MOUSE_SENSITIVITY = 0.2f;
 
     private static final float CAMERA_POS_STEP = 0.05f;
 
+    // Images of the same size, packed as the layers of one texture array
+    private static final String[] TERRAIN_TEXTURES = {
+            "textures/terrain.png", "textures/terrain_green.png", "textures/terrain_red.png"
+    };
+
+    // Only used by the thread that updates
     private final Vector3f cameraInc;
 
     private final Renderer renderer;
 
+    private final AssetLoader assetLoader;
+
     private final Camera camera;
 
+    private final PerformanceMonitor performanceMonitor;
+
     private Scene scene;
 
     private Hud hud;
 
+    private PerformanceOverlay performanceOverlay;
+
+    private TextureArrays textureArrays;
+
+    private Material terrainMaterial;
+
+    private AssetHandle<Texture> skyBoxTexture;
+
+    private int terrainTexture;
+
+    private boolean terrainKeyDown;
+
     private float lightAngle;
 
+    private final int terrainChunkSize;
+
+    private final String hudFontFile;
+
+    private final int hudFontSize;
+
+    private final int hudGlyphAtlasSize;
+
     @Autowired
     public DummyGame(
             final Renderer renderer,
-            final Camera camera
+            final AssetLoader assetLoader,
+            final Camera camera,
+            final PerformanceMonitor performanceMonitor,
+            @Value("${rendering.terrainChunkSize}") final int terrainChunkSize,
+            @Value("${hud.fontFile}") final String hudFontFile,
+            @Value("${hud.fontSize}") final int hudFontSize,
+            @Value("${hud.glyphAtlasSize}") final int hudGlyphAtlasSize
     ) {
         this.renderer = renderer;
+        this.assetLoader = assetLoader;
         this.camera = camera;
+        this.performanceMonitor = performanceMonitor;
+        this.terrainChunkSize = terrainChunkSize;
+        this.hudFontFile = hudFontFile;
+        this.hudFontSize = hudFontSize;
+        this.hudGlyphAtlasSize = hudGlyphAtlasSize;
         cameraInc = new Vector3f(0, 0, 0);
         lightAngle = -90;
     }
@@ -55,6 +98,15 @@ public class DummyGame implements IGameLogic {
 
         scene = new Scene();
 
+        // Switching the terrain texture only changes the layer of its material, T cycles through them
+        final TextureArrayBuilder textureArrayBuilder = new TextureArrayBuilder();
+        for (String fileName : TERRAIN_TEXTURES) {
+            textureArrayBuilder.add(fileName);
+        }
+        textureArrays = textureArrayBuilder.build();
+        terrainMaterial = new Material();
+        textureArrays.apply(terrainMaterial, TERRAIN_TEXTURES[terrainTexture]);
+
         // Setup game items
 //    final float reflectance = 1f;
 //    Mesh mesh = ObjLoader.loadMesh("/models/bunny.obj");
@@ -65,7 +117,7 @@ public class DummyGame implements IGameLogic {
 //    mesh.setMaterial(material);
 
 //    float blockScale = 0.5f;
-        float skyBoxScale = 50.0f;
+        final float skyBoxScale = 50.0f;
         float terrainScale = 10;
         int terrainSize = 3;
         float minY = -0.1f;
@@ -79,9 +131,10 @@ public class DummyGame implements IGameLogic {
                 minY,
                 maxY,
                 "textures/heightmap.png",
-                "textures/terrain.png",
-                textInc);
-        scene.setGameItems(terrain.getGameItems());
+                terrainMaterial,
+                textInc,
+                terrainChunkSize);
+        scene.setTerrain(terrain);
 
 //    float startX = extension * (-skyBoxScale + blockScale);
 //    float startZ = extension * (skyBoxScale - blockScale);
@@ -109,16 +162,23 @@ public class DummyGame implements IGameLogic {
 //    }
 //    scene.setGameItems(gameItems);
 
-        // Setup SkyBox
-        SkyBox skyBox = new SkyBox("models/skybox.obj", "textures/skybox.png");
-        skyBox.setScale(skyBoxScale);
-        scene.setSkyBox(skyBox);
+        // Setup SkyBox, it is loaded in the background and shows up once its model is uploaded
+        skyBoxTexture = assetLoader.loadTexture("textures/skybox.png");
+        final Material skyBoxMaterial = new Material(skyBoxTexture.get(), 0.0f);
+        skyBoxTexture.whenLoaded(skyBoxMaterial::setTexture);
+        assetLoader.loadMesh("models/skybox.obj").whenLoaded(skyBoxMesh -> {
+            skyBoxMesh.setMaterial(skyBoxMaterial);
+            final SkyBox skyBox = new SkyBox(skyBoxMesh);
+            skyBox.setScale(skyBoxScale);
+            scene.setSkyBox(skyBox);
+        });
 
         // Setup Lights
         setupLights();
 
         // Create HUD
-        hud = new Hud("Demo");
+        hud = new Hud("Demo", hudFontFile, hudFontSize, hudGlyphAtlasSize);
+        performanceOverlay = new PerformanceOverlay(hud.getFont(), performanceMonitor, renderer);
 
 //    camera.getPosition().x = 0.65f;
 //    camera.getPosition().y = 1.15f;
@@ -146,22 +206,17 @@ public class DummyGame implements IGameLogic {
 
     @Override
     public void input(final Window window, final MouseInput mouseInput) {
-        cameraInc.set(0, 0, 0);
-        if (window.isKeyPressed(GLFW_KEY_W)) {
-            cameraInc.z = -1;
-        } else if (window.isKeyPressed(GLFW_KEY_S)) {
-            cameraInc.z = 1;
-        }
-        if (window.isKeyPressed(GLFW_KEY_A)) {
-            cameraInc.x = -1;
-        } else if (window.isKeyPressed(GLFW_KEY_D)) {
-            cameraInc.x = 1;
-        }
-        if (window.isKeyPressed(GLFW_KEY_Z)) {
-            cameraInc.y = -1;
-        } else if (window.isKeyPressed(GLFW_KEY_X)) {
-            cameraInc.y = 1;
+        // The material is read by the renderer, so the texture is switched on the render thread
+        final boolean terrainKeyPressed = window.isKeyPressed(GLFW_KEY_T);
+        if (terrainKeyPressed && !terrainKeyDown) {
+            terrainTexture = (terrainTexture + 1) % TERRAIN_TEXTURES.length;
+            try {
+                textureArrays.apply(terrainMaterial, TERRAIN_TEXTURES[terrainTexture]);
+            } catch (Exception e) {
+                LOGGER.error("input() - Terrain texture not switched: {}", e.getMessage());
+            }
         }
+        terrainKeyDown = terrainKeyPressed;
 
 //    SpotLight[] spotLightList = scene.getSceneLight().getSpotLightList();
 //    final float lightPos = spotLightList[0].getPointLight().getPosition().z;
@@ -173,14 +228,28 @@ public class DummyGame implements IGameLogic {
     }
 
     @Override
-    public void update(float interval, MouseInput mouseInput) {
+    public void update(float interval, InputSnapshot input) {
+        cameraInc.set(0, 0, 0);
+        if (input.isKeyPressed(GLFW_KEY_W)) {
+            cameraInc.z = -1;
+        } else if (input.isKeyPressed(GLFW_KEY_S)) {
+            cameraInc.z = 1;
+        }
+        if (input.isKeyPressed(GLFW_KEY_A)) {
+            cameraInc.x = -1;
+        } else if (input.isKeyPressed(GLFW_KEY_D)) {
+            cameraInc.x = 1;
+        }
+        if (input.isKeyPressed(GLFW_KEY_Z)) {
+            cameraInc.y = -1;
+        } else if (input.isKeyPressed(GLFW_KEY_X)) {
+            cameraInc.y = 1;
+        }
+
         // Update camera based on mouse
-        if (mouseInput.isRightButtonPressed()) {
-            Vector2f rotVec = mouseInput.getDisplVec();
+        if (input.isRightButtonPressed()) {
+            Vector2f rotVec = input.getDisplVec();
             camera.moveRotation(rotVec.x * MOUSE_SENSITIVITY, rotVec.y * MOUSE_SENSITIVITY, 0);
-
-            // Update HUD compass
-            hud.rotateCompass(camera.getRotation().y);
         }
 
         // Update camera position
@@ -217,21 +286,45 @@ public class DummyGame implements IGameLogic {
         double angRad = Math.toRadians(lightAngle);
         directionalLight.getDirection().x = (float) Math.sin(angRad);
         directionalLight.getDirection().y = (float) Math.cos(angRad);
+        // Colour and direction have been changed in place, let the renderer know
+        directionalLight.setDirty(true);
     }
 
     @Override
     public void render(final Window window) {
         hud.updateSize(window);
-        renderer.render(window, camera, scene, hud);
+        // The HUD belongs to the render thread, the compass follows the interpolated camera
+        hud.rotateCompass(camera.getRenderRotation().y);
+        if (window.isPerformanceOverlay()) {
+            performanceOverlay.update();
+            renderer.render(window, camera, scene, hud, performanceOverlay);
+        } else {
+            renderer.render(window, camera, scene, hud);
+        }
+    }
+
+    @Override
+    public Scene getScene() {
+        return scene;
     }
 
     @Override
     public void cleanup() {
-        this.renderer.cleanup();
-        final Map<Mesh, List<GameItem>> mapMeshes = scene.getGameMeshes();
-        for (Mesh mesh : mapMeshes.keySet()) {
+        // Meshes first, the renderer deletes the shared textures and the arena they still use
+        for (Mesh mesh : scene.getMeshes()) {
             mesh.cleanUp();
         }
+        // The sky box mesh checks whether its texture is still cached, so the texture is given back afterwards
+        if (scene.getSkyBox() != null) {
+            scene.getSkyBox().cleanup();
+        }
+        skyBoxTexture.release();
+        if (scene.getTerrain() != null) {
+            scene.getTerrain().cleanup();
+        }
+        performanceOverlay.cleanup();
         hud.cleanup();
+        textureArrays.cleanup();
+        this.renderer.cleanup();
     }
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import com.sizphoto.shiningproject.engine.IHud;
 import com.sizphoto.shiningproject.engine.items.TextItem;
 import com.sizphoto.shiningproject.engine.Window;
 import com.sizphoto.shiningproject.engine.graph.FontTexture;
+import com.sizphoto.shiningproject.engine.graph.GlyphAtlas;
+import com.sizphoto.shiningproject.engine.graph.IFont;
 import com.sizphoto.shiningproject.engine.graph.Material;
 import com.sizphoto.shiningproject.engine.graph.Mesh;
 import com.sizphoto.shiningproject.engine.graph.ObjLoader;
@@ -20,15 +22,23 @@ public class Hud implements IHud {
 
     private static final String COMPASS_MESH = "models/compass.obj";
 
+    private final IFont font;
+
     private final GameItem[] gameItems;
 
     private final TextItem statusTextItem;
 
     private final GameItem compassItem;
 
-    Hud(final String statusText) throws Exception {
-        FontTexture fontTexture = new FontTexture(FONT, CHARSET);
-        this.statusTextItem = new TextItem(statusText, fontTexture);
+    /**
+     * @param fontFile  TrueType font whose glyphs are loaded on demand, or empty to bake the charset of the default
+     *                  font up front
+     * @param fontSize  height of the glyphs of the TrueType font in pixels
+     * @param atlasSize side of the glyph atlas of the TrueType font in pixels
+     */
+    Hud(final String statusText, final String fontFile, final int fontSize, final int atlasSize) throws Exception {
+        this.font = fontFile.isEmpty() ? new FontTexture(FONT, CHARSET) : new GlyphAtlas(fontFile, fontSize, atlasSize);
+        this.statusTextItem = new TextItem(statusText, font);
         this.statusTextItem.getMesh().getMaterial()
                 .setAmbientColour(new Vector4f(1, 1, 1, 1));
 
@@ -51,6 +61,10 @@ public class Hud implements IHud {
         return gameItems;
     }
 
+    IFont getFont() {
+        return font;
+    }
+
     public void setStatusText(final String statusText) {
         this.statusTextItem.setText(statusText);
     }
@@ -59,6 +73,13 @@ public class Hud implements IHud {
         this.compassItem.setRotation(0, 0, 180 + angle);
     }
 
+    @Override
+    public void cleanup() {
+        statusTextItem.cleanup();
+        compassItem.getMesh().cleanUp();
+        font.cleanup();
+    }
+
     void updateSize(final Window window) {
         this.statusTextItem.setPosition(10f, window.getHeight() - 50f, 0);
         this.compassItem.setPosition(window.getWidth() - 40f, 50f, 0);
@@ -12,6 +12,8 @@ public final class Constant {
 
     public static final int TARGET_FPS = 75;
     public static final int TARGET_UPS = 30;
+    // Updates run in a frame to catch up with the time elapsed, the time left beyond them is dropped
+    public static final int MAX_CATCH_UP_UPDATES = 5;
 
     private Constant() {
     }
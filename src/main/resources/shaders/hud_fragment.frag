@@ -2,6 +2,7 @@
 
 in vec2 outTexCoord;
 in vec3 mvPos;
+in vec4 outColour;
 out vec4 fragColor;
 
 uniform sampler2D texture_sampler;
@@ -12,10 +13,10 @@ void main()
 {
     if (hasTexture == 1)
     {
-        fragColor = colour * texture(texture_sampler, outTexCoord);
+        fragColor = colour * outColour * texture(texture_sampler, outTexCoord);
     }
     else
     {
-        fragColor = colour;
+        fragColor = colour * outColour;
     }
 }
\ No newline at end of file
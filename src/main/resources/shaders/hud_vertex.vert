@@ -3,8 +3,11 @@
 layout (location=0) in vec3 position;
 layout (location=1) in vec2 texCoord;
 layout (location=2) in vec3 vertexNormal;
+// Colour of batched items, a constant white for the others
+layout (location=3) in vec4 vertexColour;
 
 out vec2 outTexCoord;
+out vec4 outColour;
 
 uniform mat4 projModelMatrix;
 
@@ -12,4 +15,5 @@ void main()
 {
     gl_Position = projModelMatrix * vec4(position, 1.0);
     outTexCoord = texCoord;
+    outColour = vertexColour;
 }
\ No newline at end of file
@@ -1,9 +1,15 @@
 #version 330
 
-const int MAX_POINT_LIGHTS = 5;
-const int MAX_SPOT_LIGHTS = 5;
+// Array sizes are defined by the renderer from its configuration, these are only fallbacks
+#ifndef MAX_POINT_LIGHTS
+#define MAX_POINT_LIGHTS 5
+#endif
+#ifndef MAX_SPOT_LIGHTS
+#define MAX_SPOT_LIGHTS 5
+#endif
 
 in vec2 outTexCoord;
+flat in float outTextureLayer;
 in vec3 mvVertexNormal;
 in vec3 mvVertexPos;
 
@@ -16,6 +22,7 @@ struct Attenuation
     float exponent;
 };
 
+// Lights are stored in a std140 uniform block, the member order matches the offsets used by LightBuffer
 struct PointLight
 {
     vec3 colour;
@@ -48,13 +55,20 @@ struct Material
     float reflectance;
 };
 
+layout (std140) uniform Lights
+{
+    vec3 ambientLight;
+    float specularPower;
+    DirectionalLight directionalLight;
+    int numPointLights;
+    int numSpotLights;
+    PointLight pointLights[MAX_POINT_LIGHTS];
+    SpotLight spotLights[MAX_SPOT_LIGHTS];
+};
+
 uniform sampler2D texture_sampler;
-uniform vec3 ambientLight;
-uniform float specularPower;
+uniform sampler2DArray texture_array_sampler;
 uniform Material material;
-uniform PointLight pointLights[MAX_POINT_LIGHTS];
-uniform SpotLight spotLights[MAX_SPOT_LIGHTS];
-uniform DirectionalLight directionalLight;
 // uniform vec3 camera_pos;
 
 vec4 ambientC;
@@ -69,6 +83,12 @@ void setupColours(Material material, vec2 textCoord)
         diffuseC = ambientC;
         speculrC = ambientC;
     }
+    else if (material.hasTexture == 2)
+    {
+        ambientC = texture(texture_array_sampler, vec3(textCoord, outTextureLayer));
+        diffuseC = ambientC;
+        speculrC = ambientC;
+    }
     else
     {
         ambientC = material.ambient;
@@ -140,7 +160,7 @@ void main()
 
     vec4 diffuseSpecularComp = calcDirectionalLight(directionalLight, mvVertexPos, mvVertexNormal);
 
-    for (int i=0; i<MAX_POINT_LIGHTS; i++)
+    for (int i=0; i<numPointLights; i++)
     {
         if (pointLights[i].intensity > 0)
         {
@@ -148,7 +168,7 @@ void main()
         }
     }
 
-    for (int i=0; i<MAX_SPOT_LIGHTS; i++)
+    for (int i=0; i<numSpotLights; i++)
     {
         if (spotLights[i].pl.intensity > 0)
         {
@@ -3,19 +3,32 @@
 layout (location = 0) in vec3 position;
 layout (location = 1) in vec2 texCoord;
 layout (location = 2) in vec3 vertexNormal;
+layout (location = 3) in mat4 modelInstancedMatrix;
+// Layer of the texture array, a constant attribute or a per instance one for indirect draws
+layout (location = 7) in float textureLayer;
 
 out vec2 outTexCoord;
+flat out float outTextureLayer;
 out vec3 mvVertexNormal;
 out vec3 mvVertexPos;
 
+uniform int isInstanced;
 uniform mat4 modelViewMatrix;
+uniform mat4 viewMatrix;
 uniform mat4 projectionMatrix;
 
 void main()
 {
-    vec4 mvPos = modelViewMatrix * vec4(position, 1.0);
+    mat4 modelViewMatrixLocal = modelViewMatrix;
+    if (isInstanced > 0)
+    {
+        // Per instance model matrices come from the instance VBO
+        modelViewMatrixLocal = viewMatrix * modelInstancedMatrix;
+    }
+    vec4 mvPos = modelViewMatrixLocal * vec4(position, 1.0);
     gl_Position = projectionMatrix * mvPos;
     outTexCoord = texCoord;
-    mvVertexNormal = normalize(modelViewMatrix * vec4(vertexNormal, 0.0)).xyz;
+    outTextureLayer = textureLayer;
+    mvVertexNormal = normalize(modelViewMatrixLocal * vec4(vertexNormal, 0.0)).xyz;
     mvVertexPos = mvPos.xyz;
 }
\ No newline at end of file
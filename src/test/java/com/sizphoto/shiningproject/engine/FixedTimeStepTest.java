@@ -0,0 +1,72 @@
+package com.sizphoto.shiningproject.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FixedTimeStepTest {
+
+    // A power of two, so that the sums below are exact
+    private static final float INTERVAL = 0.25f;
+
+    private static final int MAX_UPDATES = 5;
+
+    private static final float DELTA = 1e-5f;
+
+    @Test
+    void elapsedTimeIsSpentInWholeIntervals() {
+        final FixedTimeStep timeStep = new FixedTimeStep(INTERVAL, MAX_UPDATES);
+
+        assertEquals(0, timeStep.advance(0.1f));
+        assertEquals(0.4f, timeStep.getAlpha(), DELTA);
+        assertEquals(1, timeStep.advance(0.2f));
+        assertEquals(0.2f, timeStep.getAlpha(), DELTA);
+        assertEquals(2, timeStep.advance(0.5f));
+        assertEquals(0.2f, timeStep.getAlpha(), DELTA);
+        assertEquals(0, timeStep.getDroppedUpdates());
+    }
+
+    @Test
+    void upToTheMaximumOfUpdatesIsCaughtUp() {
+        final FixedTimeStep timeStep = new FixedTimeStep(INTERVAL, MAX_UPDATES);
+
+        assertEquals(MAX_UPDATES, timeStep.advance(MAX_UPDATES * INTERVAL + 0.2f));
+
+        assertEquals(0, timeStep.getDroppedUpdates());
+        assertEquals(0.8f, timeStep.getAlpha(), DELTA);
+    }
+
+    @Test
+    void timeBeyondTheMaximumOfUpdatesIsDropped() {
+        final FixedTimeStep timeStep = new FixedTimeStep(INTERVAL, MAX_UPDATES);
+
+        // A 10 second stall is worth 40 updates and a tenth of a second
+        assertEquals(MAX_UPDATES, timeStep.advance(10.1f));
+
+        assertEquals(35, timeStep.getDroppedUpdates());
+        // The fraction of an interval is kept, the frames keep interpolating smoothly
+        assertEquals(0.4f, timeStep.getAlpha(), DELTA);
+        // The dropped time is not run in the next frames
+        assertEquals(0, timeStep.advance(0));
+        assertEquals(0, timeStep.getDroppedUpdates());
+        assertEquals(1, timeStep.advance(0.15f));
+    }
+
+    @Test
+    void oneIntervalMoreThanTheMaximumIsDropped() {
+        final FixedTimeStep timeStep = new FixedTimeStep(INTERVAL, MAX_UPDATES);
+
+        assertEquals(MAX_UPDATES, timeStep.advance((MAX_UPDATES + 1) * INTERVAL));
+
+        assertEquals(1, timeStep.getDroppedUpdates());
+        assertEquals(0, timeStep.getAlpha(), DELTA);
+    }
+
+    @Test
+    void noTimeRunsNoUpdate() {
+        final FixedTimeStep timeStep = new FixedTimeStep(INTERVAL, MAX_UPDATES);
+
+        assertEquals(0, timeStep.advance(0));
+        assertEquals(0, timeStep.getAlpha());
+    }
+}
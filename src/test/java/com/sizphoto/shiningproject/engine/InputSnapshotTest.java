@@ -0,0 +1,65 @@
+package com.sizphoto.shiningproject.engine;
+
+import org.joml.Vector2d;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class InputSnapshotTest {
+
+    @Test
+    void displacementIsMeasuredFromThePreviousSnapshotRead() {
+        final MouseInput mouseInput = new MouseInput();
+        mouseInput.cursorEntered(true);
+        final Vector2d previousCursorPos = new Vector2d(-1, -1);
+        final InputSnapshot first = capture(mouseInput, 10, 20);
+        first.measureDisplacement(previousCursorPos);
+        // No previous position yet
+        assertEquals(0, first.getDisplVec().x);
+        assertEquals(0, first.getDisplVec().y);
+
+        // Snapshots captured but never read lose no movement, the next one read gets all of it
+        capture(mouseInput, 13, 21);
+        final InputSnapshot third = capture(mouseInput, 15, 26);
+        third.measureDisplacement(previousCursorPos);
+
+        assertEquals(6, third.getDisplVec().x);
+        assertEquals(5, third.getDisplVec().y);
+
+        // Read again by an update with no new frame in between, the cursor did not move
+        third.measureDisplacement(previousCursorPos);
+        assertEquals(0, third.getDisplVec().x);
+        assertEquals(0, third.getDisplVec().y);
+    }
+
+    @Test
+    void noDisplacementOutsideTheWindow() {
+        final MouseInput mouseInput = new MouseInput();
+        mouseInput.cursorEntered(true);
+        final Vector2d previousCursorPos = new Vector2d(-1, -1);
+        capture(mouseInput, 10, 20).measureDisplacement(previousCursorPos);
+
+        mouseInput.cursorEntered(false);
+        final InputSnapshot snapshot = capture(mouseInput, 30, 40);
+        snapshot.measureDisplacement(previousCursorPos);
+
+        assertEquals(0, snapshot.getDisplVec().x);
+        assertEquals(0, snapshot.getDisplVec().y);
+    }
+
+    @Test
+    void unknownKeysAreNotPressed() {
+        final InputSnapshot snapshot = new InputSnapshot();
+
+        assertFalse(snapshot.isKeyPressed(-1));
+        assertFalse(snapshot.isKeyPressed(Integer.MAX_VALUE));
+    }
+
+    private static InputSnapshot capture(final MouseInput mouseInput, final double x, final double y) {
+        mouseInput.cursorMoved(x, y);
+        final InputSnapshot snapshot = new InputSnapshot();
+        snapshot.captureMouse(mouseInput);
+        return snapshot;
+    }
+}
@@ -0,0 +1,120 @@
+package com.sizphoto.shiningproject.engine;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PerformanceMonitorTest {
+
+    private static final long MILLI_NANOS = 1_000_000L;
+
+    private static final int FRAMES = 10_000;
+
+    private static final int WARM_UP_SECONDS = 20_000;
+
+    private final PerformanceMonitor monitor = new PerformanceMonitor();
+
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        monitor.init(now);
+    }
+
+    @Test
+    void frameTimesAreReadFromTheLastFrame() {
+        frame(5);
+        frame(7);
+        frame(9);
+
+        assertEquals(3, monitor.getNumSamples());
+        assertEquals(9, monitor.getFrameTime(0));
+        assertEquals(7, monitor.getFrameTime(1));
+        assertEquals(5, monitor.getFrameTime(2));
+    }
+
+    @Test
+    void newFrameTimesOverwriteTheOldestOnes() {
+        for (int i = 1; i <= PerformanceMonitor.NUM_SAMPLES + 10; i++) {
+            frame(i);
+        }
+
+        assertEquals(PerformanceMonitor.NUM_SAMPLES, monitor.getNumSamples());
+        assertEquals(PerformanceMonitor.NUM_SAMPLES + 10, monitor.getFrameTime(0));
+        assertEquals(11, monitor.getFrameTime(PerformanceMonitor.NUM_SAMPLES - 1));
+        assertEquals(11, monitor.getFrameTimePercentile(0));
+        assertEquals(PerformanceMonitor.NUM_SAMPLES + 10, monitor.getFrameTimePercentile(100));
+    }
+
+    @Test
+    void percentilesAreTheNearestRankOfTheRecordedFrames() {
+        assertEquals(0, monitor.getFrameTimePercentile(50));
+        // 1 to 100 milliseconds, out of order
+        for (int i = 0; i < 100; i++) {
+            frame(i * 37 % 100 + 1);
+        }
+
+        assertEquals(1, monitor.getFrameTimePercentile(0));
+        assertEquals(1, monitor.getFrameTimePercentile(1));
+        assertEquals(50, monitor.getFrameTimePercentile(50));
+        assertEquals(95, monitor.getFrameTimePercentile(95));
+        assertEquals(99, monitor.getFrameTimePercentile(99));
+        assertEquals(100, monitor.getFrameTimePercentile(100));
+    }
+
+    @Test
+    void percentilesFollowNewFrames() {
+        frame(10);
+        assertEquals(10, monitor.getFrameTimePercentile(99));
+
+        frame(40);
+
+        assertEquals(40, monitor.getFrameTimePercentile(99));
+        assertEquals(10, monitor.getFrameTimePercentile(50));
+    }
+
+    @Test
+    void recordingAndReadingAllocatesNothing() {
+        final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Allocated bytes are not measured");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        // Warm up with frames of a second, so that the garbage collector beans, which allocate once when they are
+        // compiled, are sampled on every frame, and so that the ring buffer is full before measuring
+        for (int i = 0; i < WARM_UP_SECONDS; i++) {
+            frame(1000);
+            monitor.getFrameTimePercentile(99);
+        }
+        recordAndRead();
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        recordAndRead();
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(0, allocated, "Bytes allocated by " + FRAMES + " frames");
+    }
+
+    private void recordAndRead() {
+        // Frame times as the performance overlay reads them, the seconds roll over every 60 or so frames
+        float sum = 0;
+        for (int i = 0; i < FRAMES; i++) {
+            frame(10 + i % 13);
+            monitor.updated();
+            sum += monitor.getFrameTime(0) + monitor.getFrameTimePercentile(99) + monitor.getFramesPerSecond();
+        }
+        assertTrue(sum > 0);
+    }
+
+    private void frame(final int millis) {
+        now += millis * MILLI_NANOS;
+        monitor.frameRendered(now);
+    }
+}
@@ -0,0 +1,95 @@
+package com.sizphoto.shiningproject.engine;
+
+import com.sizphoto.shiningproject.engine.graph.Camera;
+import com.sizphoto.shiningproject.engine.graph.lights.PointLight;
+import com.sizphoto.shiningproject.engine.graph.lights.SpotLight;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SceneSnapshotTest {
+
+    private static final float DELTA = 1e-6f;
+
+    private final Scene scene = new Scene();
+
+    private final Camera camera = new Camera();
+
+    private final SceneSnapshot snapshot = new SceneSnapshot();
+
+    @Test
+    void pointAndSpotLightsAreCopied() {
+        final PointLight pointLight = new PointLight(new Vector3f(1, 0.5f, 0), new Vector3f(1, 2, 3), 0.8f,
+                new PointLight.Attenuation(0, 0.5f, 1));
+        final SpotLight spotLight = new SpotLight(new PointLight(new Vector3f(0, 0, 1), new Vector3f(4, 5, 6), 1),
+                new Vector3f(0, 0, -1), 60);
+        scene.setSceneLight(createSceneLight(new PointLight[] {pointLight}, new SpotLight[] {spotLight}));
+
+        snapshot.capture(scene, camera);
+        // The game logic keeps moving its lights while the renderer reads the snapshot
+        pointLight.getPosition().set(-1, -1, -1);
+        pointLight.getAttenuation().setLinear(2);
+        spotLight.getConeDirection().set(1, 0, 0);
+        snapshot.apply(scene, camera, 1);
+
+        final PointLight copiedPointLight = scene.getRenderSceneLight().getPointLightList()[0];
+        assertNotSame(pointLight, copiedPointLight);
+        assertEquals(new Vector3f(1, 0.5f, 0), copiedPointLight.getColour());
+        assertEquals(new Vector3f(1, 2, 3), copiedPointLight.getPosition());
+        assertEquals(0.8f, copiedPointLight.getIntensity(), DELTA);
+        assertEquals(0.5f, copiedPointLight.getAttenuation().getLinear(), DELTA);
+        assertEquals(1, copiedPointLight.getAttenuation().getExponent(), DELTA);
+        assertTrue(copiedPointLight.isDirty());
+
+        final SpotLight copiedSpotLight = scene.getRenderSceneLight().getSpotLightList()[0];
+        assertNotSame(spotLight, copiedSpotLight);
+        assertEquals(new Vector3f(0, 0, -1), copiedSpotLight.getConeDirection());
+        assertEquals(new Vector3f(4, 5, 6), copiedSpotLight.getPointLight().getPosition());
+        assertEquals(0.5f, copiedSpotLight.getCutOff(), DELTA);
+    }
+
+    @Test
+    void copiesAreReusedUntilTheNumberOfLightsChanges() {
+        final SceneLight sceneLight = createSceneLight(new PointLight[] {createPointLight(1)}, null);
+        scene.setSceneLight(sceneLight);
+
+        snapshot.capture(scene, camera);
+        snapshot.apply(scene, camera, 1);
+        final PointLight[] copies = scene.getRenderSceneLight().getPointLightList();
+        sceneLight.getPointLightList()[0].getPosition().x = 7;
+        snapshot.capture(scene, camera);
+        snapshot.apply(scene, camera, 1);
+
+        assertSame(copies, scene.getRenderSceneLight().getPointLightList());
+        assertEquals(7, copies[0].getPosition().x, DELTA);
+
+        sceneLight.setPointLightList(new PointLight[] {createPointLight(2), createPointLight(3)});
+        snapshot.capture(scene, camera);
+        snapshot.apply(scene, camera, 1);
+
+        final PointLight[] grown = scene.getRenderSceneLight().getPointLightList();
+        assertEquals(2, grown.length);
+        assertSame(copies[0], grown[0]);
+        assertEquals(2, grown[0].getPosition().x, DELTA);
+        assertEquals(3, grown[1].getPosition().x, DELTA);
+        assertNull(scene.getRenderSceneLight().getSpotLightList());
+    }
+
+    private static SceneLight createSceneLight(final PointLight[] pointLights, final SpotLight[] spotLights) {
+        final SceneLight sceneLight = new SceneLight();
+        sceneLight.setAmbientLight(new Vector3f(0.3f, 0.3f, 0.3f));
+        sceneLight.setSkyBoxLight(new Vector3f(1, 1, 1));
+        sceneLight.setPointLightList(pointLights);
+        sceneLight.setSpotLightList(spotLights);
+        return sceneLight;
+    }
+
+    private static PointLight createPointLight(final float x) {
+        return new PointLight(new Vector3f(1, 1, 1), new Vector3f(x, 0, 0), 1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.sizphoto.shiningproject.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TripleBufferTest {
+
+    private static final int VALUES = 64;
+
+    private static final long PUBLISHES = 2_000_000;
+
+    @Test
+    void nothingIsAcquiredBeforeAPublish() {
+        final TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[1]);
+
+        assertFalse(buffer.acquire());
+    }
+
+    @Test
+    void theLatestPublishedSlotWins() {
+        final TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[1]);
+        for (long value = 1; value <= 3; value++) {
+            buffer.getBack()[0] = value;
+            buffer.publish();
+        }
+
+        assertTrue(buffer.acquire());
+        assertEquals(3, buffer.getFront()[0]);
+        // Nothing newer, the front slot is kept
+        assertFalse(buffer.acquire());
+        assertEquals(3, buffer.getFront()[0]);
+    }
+
+    @Test
+    void theWriterNeverGetsTheFrontSlot() {
+        final TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[1]);
+        for (int i = 0; i < 10; i++) {
+            buffer.publish();
+            if (i % 3 == 0) {
+                buffer.acquire();
+            }
+            assertNotSame(buffer.getFront(), buffer.getBack());
+        }
+    }
+
+    @Test
+    void concurrentReadsAreNeverTornAndEndOnTheLatestValue() throws InterruptedException {
+        final TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[VALUES]);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final Thread writer = new Thread(() -> {
+            for (long value = 1; value <= PUBLISHES; value++) {
+                final long[] slot = buffer.getBack();
+                for (int i = 0; i < VALUES; i++) {
+                    slot[i] = value;
+                }
+                buffer.publish();
+            }
+        }, "TRIPLE_BUFFER_WRITER");
+        writer.start();
+
+        long lastValue = 0;
+        int acquired = 0;
+        while (writer.isAlive() || lastValue < PUBLISHES) {
+            if (!buffer.acquire()) {
+                continue;
+            }
+            acquired++;
+            final long[] slot = buffer.getFront();
+            final long value = slot[0];
+            for (int i = 1; i < VALUES && failure.get() == null; i++) {
+                if (slot[i] != value) {
+                    failure.set("torn read, " + value + " and " + slot[i] + " in the same slot");
+                }
+            }
+            if (value <= lastValue && failure.get() == null) {
+                failure.set("went back from " + lastValue + " to " + value);
+            }
+            lastValue = value;
+            if (failure.get() != null) {
+                break;
+            }
+        }
+        writer.join();
+
+        assertNull(failure.get());
+        assertEquals(PUBLISHES, lastValue);
+        assertTrue(acquired > 1, "the reader only acquired " + acquired + " slots");
+    }
+}
@@ -0,0 +1,54 @@
+package com.sizphoto.shiningproject.engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UtilsTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    void lerpAngleReturnsTheEndsAtZeroAndOne() {
+        assertEquals(30f, Utils.lerpAngle(30, 100, 0), DELTA);
+        assertEquals(100f, Utils.lerpAngle(30, 100, 1), DELTA);
+        assertEquals(-45f, Utils.lerpAngle(-45, 135, 0), DELTA);
+    }
+
+    @Test
+    void lerpAngleInterpolatesWithoutWrapping() {
+        assertEquals(20f, Utils.lerpAngle(10, 50, 0.25f), DELTA);
+        assertEquals(-20f, Utils.lerpAngle(10, -50, 0.5f), DELTA);
+    }
+
+    @Test
+    void lerpAngleCrossesPlusMinus180AlongTheShorterArc() {
+        // 20 degrees apart across 180, not 340 degrees the other way round
+        assertEquals(180f, Utils.lerpAngle(170, -170, 0.5f), DELTA);
+        assertEquals(-180f, Utils.lerpAngle(-170, 170, 0.5f), DELTA);
+        assertEquals(175f, Utils.lerpAngle(170, -170, 0.25f), DELTA);
+        assertSameAngle(-170f, Utils.lerpAngle(170, -170, 1));
+    }
+
+    @Test
+    void lerpAngleCrossesZeroAlongTheShorterArc() {
+        assertSameAngle(0f, Utils.lerpAngle(350, 10, 0.5f));
+        assertSameAngle(10f, Utils.lerpAngle(350, 10, 1));
+        assertEquals(0f, Utils.lerpAngle(5, -5, 0.5f), DELTA);
+        assertSameAngle(355f, Utils.lerpAngle(5, -5, 1));
+    }
+
+    @Test
+    void lerpAngleIgnoresWholeTurns() {
+        assertEquals(2.5f, Utils.lerpAngle(0, 725, 0.5f), DELTA);
+        assertEquals(-2.5f, Utils.lerpAngle(0, -725, 0.5f), DELTA);
+    }
+
+    /**
+     * Angles are equal if they only differ by whole turns.
+     */
+    private static void assertSameAngle(final float expected, final float actual) {
+        final float difference = ((actual - expected) % 360 + 540) % 360 - 180;
+        assertEquals(0f, difference, DELTA, "expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,65 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssetHandleTest {
+
+    private final List<String> released = new ArrayList<>();
+
+    private final AssetHandle<String> handle = new AssetHandle<>("grass.png", "placeholder", released::add);
+
+    @Test
+    void loadedAssetsAreReleasedRightAway() {
+        handle.complete("grass");
+
+        handle.release();
+
+        assertEquals(1, released.size());
+        assertEquals("grass", released.get(0));
+        assertEquals("placeholder", handle.get());
+        assertFalse(handle.isLoaded());
+    }
+
+    @Test
+    void assetsStillLoadingAreReleasedOnceUploaded() {
+        final List<String> listened = new ArrayList<>();
+        handle.whenLoaded(listened::add);
+
+        handle.release();
+        assertTrue(released.isEmpty());
+        handle.complete("grass");
+
+        assertEquals(1, released.size());
+        assertTrue(listened.isEmpty());
+        assertEquals("placeholder", handle.get());
+    }
+
+    @Test
+    void assetsAreReleasedOnce() {
+        handle.complete("grass");
+
+        handle.release();
+        handle.release();
+
+        assertEquals(1, released.size());
+    }
+
+    @Test
+    void assetsThatAreNotSharedAreNotReleased() {
+        final AssetHandle<String> meshHandle = new AssetHandle<>("model.obj", null);
+        meshHandle.complete("mesh");
+
+        meshHandle.release();
+
+        assertNull(meshHandle.get());
+        assertTrue(released.isEmpty());
+    }
+}
@@ -0,0 +1,111 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssetLoaderTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private AssetLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        loader = new AssetLoader(1, 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loader.cleanup();
+    }
+
+    @Test
+    void missingFilesFailTheirHandle() throws Exception {
+        final AssetHandle<Mesh> handle = loader.loadMesh("/missing/model.obj");
+
+        uploadAll();
+
+        assertTrue(handle.isFailed());
+        assertFalse(handle.isLoaded());
+    }
+
+    @Test
+    void errorsWhileDecodingFailTheHandleAndAreNotPendingForever() throws Exception {
+        final StackOverflowError error = new StackOverflowError();
+        final AssetHandle<String> handle = submit(() -> {
+            throw error;
+        }, data -> data);
+
+        uploadAll();
+
+        assertTrue(handle.isFailed());
+        assertSame(error, handle.getError().getCause());
+    }
+
+    @Test
+    void failedUploadsAreNotPendingForever() throws Exception {
+        final IllegalStateException error = new IllegalStateException("no context");
+        final AssetHandle<String> handle = submit(() -> "decoded", data -> {
+            throw error;
+        });
+
+        uploadAll();
+
+        assertSame(error, handle.getError());
+    }
+
+    @Test
+    void decodedAssetsCompleteTheirHandle() throws Exception {
+        final AssetHandle<String> handle = submit(() -> "decoded", data -> data + " and uploaded");
+
+        uploadAll();
+
+        assertTrue(handle.isLoaded());
+        assertEquals("decoded and uploaded", handle.get());
+    }
+
+    private interface Decoder {
+        String decode() throws Exception;
+    }
+
+    private interface Uploader {
+        String upload(String data);
+    }
+
+    private AssetHandle<String> submit(final Decoder decoder, final Uploader uploader) {
+        final AssetHandle<String> handle = new AssetHandle<>("test", null);
+        loader.submit(loader.new LoadJob<String, String>(handle) {
+
+            @Override
+            String decode() throws Exception {
+                return decoder.decode();
+            }
+
+            @Override
+            String upload(final String decodedData) {
+                return uploader.upload(decodedData);
+            }
+
+            @Override
+            int getSize(final String decodedData) {
+                return decodedData.length();
+            }
+        });
+        return handle;
+    }
+
+    private void uploadAll() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (loader.getPendingAssets() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "assets still pending");
+            loader.processUploads();
+            Thread.sleep(1);
+        }
+    }
+}
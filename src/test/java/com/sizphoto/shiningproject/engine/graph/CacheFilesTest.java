@@ -0,0 +1,66 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+class CacheFilesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void resolveKeepsPathsThatFlattenAlikeApart() {
+        final Path first = CacheFiles.resolve(tempDir, "a/b_c.obj", ".mesh");
+        final Path second = CacheFiles.resolve(tempDir, "a_b/c.obj", ".mesh");
+
+        assertNotEquals(first, second);
+        assertTrue(first.getFileName().toString().startsWith("a_b_c.obj-"), first.toString());
+        assertTrue(first.getFileName().toString().endsWith(".mesh"), first.toString());
+    }
+
+    @Test
+    void resolveNormalizesThePath() {
+        assertEquals(CacheFiles.resolve(tempDir, "models/cube.obj", ".mesh"),
+                CacheFiles.resolve(tempDir, "./models/../models//cube.obj", ".mesh"));
+        assertEquals(CacheFiles.resolve(tempDir, "/models/cube.obj", ".mesh").getFileName().toString(),
+                CacheFiles.resolve(tempDir, "//models/cube.obj", ".mesh").getFileName().toString());
+    }
+
+    @Test
+    void resolveStaysInTheDirectory() {
+        final Path file = CacheFiles.resolve(tempDir, "../../etc/passwd", ".mesh");
+        assertEquals(tempDir, file.getParent());
+    }
+
+    @Test
+    void writtenFilesCanBeReadAndReplaced() throws Exception {
+        final Path file = CacheFiles.resolve(tempDir.resolve("cache"), "models/cube.obj", ".mesh");
+        CacheFiles.write(file, ByteBuffer.wrap(new byte[]{1, 2}), ByteBuffer.wrap(new byte[]{3}));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = CacheFiles.read(channel);
+            try {
+                assertEquals(3, buffer.remaining());
+                assertEquals(1, buffer.get(0));
+                assertEquals(3, buffer.get(2));
+                // Nothing is mapped, the file can be replaced while its contents are in use
+                CacheFiles.write(file, ByteBuffer.wrap(new byte[]{4}));
+            } finally {
+                memFree(buffer);
+            }
+        }
+        assertArrayEquals(new byte[]{4}, Files.readAllBytes(file));
+    }
+}
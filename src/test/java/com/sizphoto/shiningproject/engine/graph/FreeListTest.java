@@ -0,0 +1,131 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FreeListTest {
+
+    private static final int CAPACITY = 100;
+
+    @Test
+    void allocatesFromTheFirstRangeLargeEnough() {
+        final GeometryArena.FreeList freeList = new GeometryArena.FreeList(CAPACITY);
+        assertEquals(0, freeList.allocate(10));
+        assertEquals(10, freeList.allocate(20));
+        assertEquals(30, freeList.allocate(30));
+        assertEquals(60, freeList.allocate(10));
+        // A hole of 20 before the 30 left at the end
+        freeList.free(10, 20);
+        assertEquals(2, freeList.getNumBlocks());
+
+        assertEquals(10, freeList.allocate(15));
+        // The 5 left in the hole are too small, the end is used
+        assertEquals(70, freeList.allocate(10));
+        // The hole is filled and removed
+        assertEquals(25, freeList.allocate(5));
+        assertEquals(1, freeList.getNumBlocks());
+        assertEquals(20, freeList.getFreeSize());
+        assertEquals(-1, freeList.allocate(21));
+    }
+
+    @Test
+    void mergesWithThePreviousRange() {
+        final GeometryArena.FreeList freeList = allocateThree();
+        freeList.free(0, 10);
+        assertEquals(2, freeList.getNumBlocks());
+
+        freeList.free(10, 10);
+
+        assertEquals(2, freeList.getNumBlocks());
+        assertEquals(90, freeList.getFreeSize());
+        assertEquals(0, freeList.allocate(20));
+    }
+
+    @Test
+    void mergesWithTheNextRange() {
+        final GeometryArena.FreeList freeList = allocateThree();
+
+        freeList.free(20, 10);
+
+        assertEquals(1, freeList.getNumBlocks());
+        assertEquals(80, freeList.getLargestBlock());
+        assertEquals(20, freeList.allocate(80));
+    }
+
+    @Test
+    void mergesWithBothNeighbours() {
+        final GeometryArena.FreeList freeList = allocateThree();
+        freeList.free(0, 10);
+        freeList.free(20, 10);
+        assertEquals(2, freeList.getNumBlocks());
+
+        freeList.free(10, 10);
+
+        assertEquals(1, freeList.getNumBlocks());
+        assertEquals(CAPACITY, freeList.getLargestBlock());
+    }
+
+    @Test
+    void growsPastItsInitialBlocks() {
+        final GeometryArena.FreeList freeList = new GeometryArena.FreeList(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            assertEquals(i, freeList.allocate(1));
+        }
+        assertEquals(0, freeList.getNumBlocks());
+
+        // 50 separate ranges, more than the 16 the list starts with
+        for (int i = 0; i < CAPACITY; i += 2) {
+            freeList.free(i, 1);
+        }
+        assertEquals(CAPACITY / 2, freeList.getNumBlocks());
+        assertEquals(CAPACITY / 2, freeList.getFreeSize());
+        assertEquals(1, freeList.getLargestBlock());
+
+        for (int i = 1; i < CAPACITY; i += 2) {
+            freeList.free(i, 1);
+        }
+        assertEquals(1, freeList.getNumBlocks());
+        assertEquals(CAPACITY, freeList.getLargestBlock());
+    }
+
+    @Test
+    void resetLeavesOneRangeAfterTheUsedElements() {
+        final GeometryArena.FreeList freeList = allocateThree();
+        freeList.free(10, 10);
+        assertEquals(2, freeList.getNumBlocks());
+
+        // Defragmenting packs the 20 elements still used at the start
+        freeList.reset(20);
+
+        assertEquals(1, freeList.getNumBlocks());
+        assertEquals(80, freeList.getFreeSize());
+        assertEquals(20, freeList.allocate(80));
+        assertEquals(-1, freeList.allocate(1));
+
+        freeList.reset(CAPACITY);
+        assertEquals(0, freeList.getNumBlocks());
+        assertEquals(0, freeList.getFreeSize());
+    }
+
+    @Test
+    void freeingNothingChangesNothing() {
+        final GeometryArena.FreeList freeList = allocateThree();
+
+        freeList.free(10, 0);
+
+        assertEquals(1, freeList.getNumBlocks());
+        assertEquals(70, freeList.getFreeSize());
+    }
+
+    /**
+     * @return a list with [0, 10), [10, 20) and [20, 30) allocated and the rest free
+     */
+    private static GeometryArena.FreeList allocateThree() {
+        final GeometryArena.FreeList freeList = new GeometryArena.FreeList(CAPACITY);
+        freeList.allocate(10);
+        freeList.allocate(10);
+        freeList.allocate(10);
+        return freeList;
+    }
+}
@@ -0,0 +1,51 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.lwjgl.opengl.GL;
+
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Hidden window whose OpenGL context is made current on the calling thread, for the tests that need one. Machines
+ * without a display cannot create it, the tests then skip themselves.
+ */
+final class GlTestContext {
+
+    private static long windowHandle = NULL;
+
+    private GlTestContext() {
+    }
+
+    /**
+     * @return true if the context could be created
+     */
+    static boolean create() {
+        if (!glfwInit()) {
+            return false;
+        }
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+        windowHandle = glfwCreateWindow(64, 64, "test", NULL, NULL);
+        if (windowHandle == NULL) {
+            glfwTerminate();
+            return false;
+        }
+        glfwMakeContextCurrent(windowHandle);
+        GL.createCapabilities();
+        GlStateCache.reset();
+        return true;
+    }
+
+    static void destroy() {
+        if (windowHandle != NULL) {
+            GL.setCapabilities(null);
+            glfwDestroyWindow(windowHandle);
+            windowHandle = NULL;
+            glfwTerminate();
+        }
+    }
+}
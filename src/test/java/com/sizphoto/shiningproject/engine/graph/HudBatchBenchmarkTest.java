@@ -0,0 +1,126 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.IHud;
+import com.sizphoto.shiningproject.engine.Scene;
+import com.sizphoto.shiningproject.engine.SceneLight;
+import com.sizphoto.shiningproject.engine.Window;
+import com.sizphoto.shiningproject.engine.graph.lights.DirectionalLight;
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import com.sizphoto.shiningproject.engine.items.TextItem;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.lwjgl.opengl.GL11.GL_NO_ERROR;
+import static org.lwjgl.opengl.GL11.glFinish;
+import static org.lwjgl.opengl.GL11.glGetError;
+
+/**
+ * Time spent drawing a HUD of many text items with rendering.hudBatching on and off. Run with -Dbenchmark=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class HudBatchBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HudBatchBenchmarkTest.class);
+
+    private static final int NUM_TEXT_ITEMS = 120;
+
+    private static final int WARM_UP_FRAMES = 20;
+
+    private static final int FRAMES = 500;
+
+    private static boolean hasContext;
+
+    @BeforeAll
+    static void createContext() {
+        hasContext = GlTestContext.create();
+    }
+
+    @AfterAll
+    static void destroyContext() {
+        GlTestContext.destroy();
+    }
+
+    @Test
+    void batchingDrawsTheHudFaster() throws Exception {
+        assumeTrue(hasContext, "No OpenGL context available");
+
+        final Result unbatched = measure(false);
+        final Result batched = measure(true);
+
+        LOGGER.info("batchingDrawsTheHudFaster() - {} text items, unbatched: {} draws, {} us HUD, {} us frame,"
+                        + " batched: {} draws, {} us HUD, {} us frame ({}x)",
+                NUM_TEXT_ITEMS, unbatched.drawCalls, unbatched.hudMicros, unbatched.frameMicros,
+                batched.drawCalls, batched.hudMicros, batched.frameMicros,
+                String.format("%.1f", (double) unbatched.hudMicros / batched.hudMicros));
+        assertEquals(NUM_TEXT_ITEMS, unbatched.drawCalls);
+        assertEquals(1, batched.drawCalls);
+        assertTrue(batched.hudMicros < unbatched.hudMicros);
+    }
+
+    private static Result measure(final boolean hudBatching) throws Exception {
+        final Window window = new Window("test", 64, 64, false, false, false);
+        final Renderer renderer = new Renderer(new Transformation(), new AssetLoader(1, 1 << 20), true, 1, 1, true,
+                false, 0, 0, 2f, "", "", "", 0f, hudBatching);
+        renderer.init(window);
+
+        final MonospaceFont font = new MonospaceFont();
+        final GameItem[] hudItems = new GameItem[NUM_TEXT_ITEMS];
+        for (int i = 0; i < NUM_TEXT_ITEMS; i++) {
+            hudItems[i] = new TextItem("Item " + i + ": 60 FPS", font);
+            hudItems[i].setPosition(i % 4 * 16, i / 4 * 2, 0);
+        }
+        final IHud hud = () -> hudItems;
+        final Scene scene = new Scene();
+        final SceneLight sceneLight = new SceneLight();
+        sceneLight.setAmbientLight(new Vector3f(0.3f, 0.3f, 0.3f));
+        sceneLight.setSkyBoxLight(new Vector3f(1, 1, 1));
+        sceneLight.setDirectionalLight(new DirectionalLight(new Vector3f(1, 1, 1), new Vector3f(0, 1, 0), 1));
+        scene.setSceneLight(sceneLight);
+        final Camera camera = new Camera();
+
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            renderer.render(window, camera, scene, hud);
+        }
+        glFinish();
+        long hudNanos = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            renderer.render(window, camera, scene, hud);
+            hudNanos += renderer.getHudNanos();
+        }
+        glFinish();
+        final long frameNanos = System.nanoTime() - start;
+        final Result result = new Result(renderer.getHudDrawCalls(), hudNanos / FRAMES / 1000,
+                frameNanos / FRAMES / 1000);
+        assertEquals(GL_NO_ERROR, glGetError());
+
+        for (GameItem hudItem : hudItems) {
+            ((TextItem) hudItem).cleanup();
+        }
+        renderer.cleanup();
+        return result;
+    }
+
+    private static class Result {
+
+        private final int drawCalls;
+
+        private final long hudMicros;
+
+        private final long frameMicros;
+
+        Result(final int drawCalls, final long hudMicros, final long frameMicros) {
+            this.drawCalls = drawCalls;
+            this.hudMicros = hudMicros;
+            this.frameMicros = frameMicros;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ShortBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HudBatchTest {
+
+    private static boolean hasContext;
+
+    @BeforeAll
+    static void createContext() {
+        hasContext = GlTestContext.create();
+    }
+
+    @AfterAll
+    static void destroyContext() {
+        GlTestContext.destroy();
+    }
+
+    @Test
+    void indicesOfLaterItemsAreOffsetByTheVerticesBeforeThem() {
+        assumeTrue(hasContext, "No OpenGL context available");
+        final DynamicMesh quad = createMesh(4, new short[] {0, 1, 3, 3, 1, 2});
+        final DynamicMesh triangle = createMesh(3, new short[] {2, 1, 0});
+        final HudBatch batch = new HudBatch();
+        try {
+            final Matrix4f modelMatrix = new Matrix4f();
+            batch.add(new GameItem(quad), modelMatrix);
+            assertTrue(batch.accepts(triangle));
+            batch.add(new GameItem(triangle), modelMatrix);
+            assertTrue(batch.accepts(quad));
+            batch.add(new GameItem(quad), modelMatrix);
+
+            final ShortBuffer indices = batch.getIndices();
+            final short[] merged = new short[indices.position()];
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] = indices.get(i);
+            }
+            assertArrayEquals(new short[] {0, 1, 3, 3, 1, 2, 6, 5, 4, 7, 8, 10, 10, 8, 9}, merged);
+        } finally {
+            batch.cleanup();
+            quad.cleanUp();
+            triangle.cleanUp();
+        }
+    }
+
+    private static DynamicMesh createMesh(final int numVertices, final short[] indices) {
+        final DynamicMesh mesh = new DynamicMesh();
+        mesh.setMaterial(new Material());
+        mesh.beginVertices(numVertices).put(new float[numVertices * DynamicMesh.VERTEX_SIZE_FLOATS]);
+        mesh.endVertices();
+        mesh.beginIndices(indices.length).put(indices);
+        mesh.endIndices();
+        mesh.setIndexCount(indices.length);
+        return mesh;
+    }
+}
@@ -0,0 +1,123 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.lwjgl.opengl.GL11.GL_NO_ERROR;
+import static org.lwjgl.opengl.GL11.glFinish;
+import static org.lwjgl.opengl.GL11.glGetError;
+
+/**
+ * Items drawn per second with one instanced draw per chunk against one draw per item. Run with -Dbenchmark=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class InstancedMeshBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstancedMeshBenchmarkTest.class);
+
+    private static final int NUM_ITEMS = 10_000;
+
+    private static final int NUM_INSTANCES = 1_000;
+
+    private static final int WARM_UP_FRAMES = 20;
+
+    private static final int FRAMES = 100;
+
+    private static final String VERTEX_SHADER = "#version 330\n"
+            + "layout (location=0) in vec3 position;\n"
+            + "layout (location=3) in mat4 modelInstancedMatrix;\n"
+            + "uniform mat4 modelMatrix;\n"
+            + "uniform int isInstanced;\n"
+            + "void main() {\n"
+            + "    mat4 model = isInstanced > 0 ? modelInstancedMatrix : modelMatrix;\n"
+            + "    gl_Position = model * vec4(position * 0.01, 1.0);\n"
+            + "}\n";
+
+    private static final String FRAGMENT_SHADER = "#version 330\n"
+            + "out vec4 fragColour;\n"
+            + "void main() {\n"
+            + "    fragColour = vec4(1.0);\n"
+            + "}\n";
+
+    private static boolean hasContext;
+
+    @BeforeAll
+    static void createContext() {
+        hasContext = GlTestContext.create();
+    }
+
+    @AfterAll
+    static void destroyContext() {
+        GlTestContext.destroy();
+    }
+
+    @Test
+    void instancedDrawsMoreItemsPerSecond() throws Exception {
+        assumeTrue(hasContext, "No OpenGL context available");
+
+        final ShaderProgram shaderProgram = new ShaderProgram();
+        shaderProgram.createVertexShader(VERTEX_SHADER);
+        shaderProgram.createFragmentShader(FRAGMENT_SHADER);
+        shaderProgram.link();
+        final int modelMatrixUniform = shaderProgram.createUniform("modelMatrix");
+        final int isInstancedUniform = shaderProgram.createUniform("isInstanced");
+
+        final float[] positions = {-1, 1, 0, -1, -1, 0, 1, -1, 0, 1, 1, 0};
+        final float[] textCoords = {0, 0, 0, 1, 1, 1, 1, 0};
+        final float[] normals = {0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1};
+        final int[] indices = {0, 1, 3, 3, 1, 2};
+        final InstancedMesh mesh = new InstancedMesh(positions, textCoords, normals, indices, NUM_INSTANCES);
+        mesh.setMaterial(new Material());
+
+        final List<GameItem> gameItems = new ArrayList<>(NUM_ITEMS);
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            final GameItem gameItem = new GameItem(mesh);
+            gameItem.setPosition((i % 100) / 50f - 1, (i / 100) / 50f - 1, 0);
+            gameItems.add(gameItem);
+        }
+        final Transformation transformation = new Transformation();
+
+        shaderProgram.bind();
+        mesh.initRender();
+
+        shaderProgram.setUniform(isInstancedUniform, 0);
+        final double perItem = itemsPerSecond(() -> mesh.drawList(gameItems,
+                gameItem -> shaderProgram.setUniform(modelMatrixUniform, transformation.buildModelMatrix(gameItem))));
+
+        shaderProgram.setUniform(isInstancedUniform, 1);
+        final double instanced = itemsPerSecond(() -> mesh.drawListInstanced(gameItems, transformation));
+
+        LOGGER.info("instancedDrawsMoreItemsPerSecond() - per item: {} items/s, instanced: {} items/s ({}x)",
+                Math.round(perItem), Math.round(instanced), String.format("%.1f", instanced / perItem));
+        assertEquals(GL_NO_ERROR, glGetError());
+
+        mesh.endRender();
+        shaderProgram.unbind();
+        mesh.cleanUp();
+        shaderProgram.cleanup();
+    }
+
+    private static double itemsPerSecond(final Runnable frame) {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            frame.run();
+        }
+        glFinish();
+        final long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            frame.run();
+        }
+        glFinish();
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        return (double) NUM_ITEMS * FRAMES / seconds;
+    }
+}
@@ -0,0 +1,89 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongIntHashMapTest {
+
+    @Test
+    void putIfAbsentKeepsTheFirstValue() {
+        final LongIntHashMap map = new LongIntHashMap(4);
+
+        assertEquals(LongIntHashMap.NO_VALUE, map.putIfAbsent(7, 1));
+        assertEquals(1, map.putIfAbsent(7, 2));
+        assertEquals(LongIntHashMap.NO_VALUE, map.putIfAbsent(0, 3));
+        assertEquals(3, map.putIfAbsent(0, 4));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void growsPastTheExpectedSize() {
+        final LongIntHashMap map = new LongIntHashMap(0);
+        // Consecutive keys, as the vertex keys of a mesh often are
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(LongIntHashMap.NO_VALUE, map.putIfAbsent(i, i));
+        }
+        assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, map.putIfAbsent(i, -5));
+        }
+        assertEquals(10_000, map.size());
+    }
+
+    @Test
+    void behavesLikeAHashMapForLargeKeys() {
+        final LongIntHashMap map = new LongIntHashMap(100);
+        final Map<Long, Integer> expected = new HashMap<>();
+        final Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            // Few distinct keys in the low bits and large ones, so both collisions and repeats happen
+            final long key = random.nextBoolean() ? random.nextInt(1000) : random.nextLong() & Long.MAX_VALUE;
+            final Integer previous = expected.putIfAbsent(key, i);
+            assertEquals(previous != null ? previous : LongIntHashMap.NO_VALUE, map.putIfAbsent(key, i));
+        }
+        assertEquals(expected.size(), map.size());
+    }
+
+    @Test
+    void removedKeysAreGoneAndTheOthersStay() {
+        final LongIntHashMap map = new LongIntHashMap(4);
+        map.putIfAbsent(1, 10);
+        map.putIfAbsent(2, 20);
+
+        assertEquals(10, map.remove(1));
+        assertEquals(LongIntHashMap.NO_VALUE, map.remove(1));
+        assertEquals(LongIntHashMap.NO_VALUE, map.get(1));
+        assertEquals(20, map.get(2));
+        assertEquals(1, map.size());
+        assertEquals(LongIntHashMap.NO_VALUE, map.putIfAbsent(1, 11));
+        assertEquals(11, map.get(1));
+    }
+
+    @Test
+    void behavesLikeAHashMapWithRemovals() {
+        // Small table and few keys, so that removals keep breaking probe sequences
+        final LongIntHashMap map = new LongIntHashMap(8);
+        final Map<Long, Integer> expected = new HashMap<>();
+        final Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            final long key = random.nextInt(64);
+            if (random.nextBoolean()) {
+                final Integer previous = expected.putIfAbsent(key, i);
+                assertEquals(previous != null ? previous : LongIntHashMap.NO_VALUE, map.putIfAbsent(key, i));
+            } else {
+                final Integer previous = expected.remove(key);
+                assertEquals(previous != null ? previous : LongIntHashMap.NO_VALUE, map.remove(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key < 64; key++) {
+            final Integer value = expected.get(key);
+            assertEquals(value != null ? value : LongIntHashMap.NO_VALUE, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MeshCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String sourceFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MeshCache.setDirectory(tempDir.resolve("cache").toString());
+        final Path source = tempDir.resolve("quad.obj");
+        Files.write(source, "v 0 0 0\n".getBytes());
+        sourceFile = source.toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        MeshCache.setDirectory(null);
+    }
+
+    @Test
+    void storedGeometryIsLoadedBack() {
+        final MeshData data = quad();
+        MeshCache.store(sourceFile, 42, data);
+
+        final MeshData loaded = MeshCache.load(sourceFile, 42);
+
+        assertNotNull(loaded);
+        assertArrayEquals(data.getPositions(), loaded.getPositions());
+        assertArrayEquals(data.getTextCoords(), loaded.getTextCoords());
+        assertArrayEquals(data.getNormals(), loaded.getNormals());
+        assertArrayEquals(data.getIndices(), loaded.getIndices());
+        assertEquals(7, loaded.getGridColumns());
+    }
+
+    @Test
+    void otherParametersOrAChangedSourceMissTheCache() throws Exception {
+        MeshCache.store(sourceFile, 42, quad());
+
+        assertNull(MeshCache.load(sourceFile, 43));
+        Files.write(Paths.get(sourceFile), "v 1 1 1\nv 2 2 2\n".getBytes());
+        assertNull(MeshCache.load(sourceFile, 42));
+    }
+
+    @Test
+    void entriesCanBeRewrittenRightAfterBeingLoaded() {
+        MeshCache.store(sourceFile, 1, quad());
+        assertNotNull(MeshCache.load(sourceFile, 1));
+
+        // Nothing keeps the file mapped, so replacing it succeeds on every platform
+        MeshCache.store(sourceFile, 2, quad());
+
+        assertNull(MeshCache.load(sourceFile, 1));
+        assertNotNull(MeshCache.load(sourceFile, 2));
+    }
+
+    @Test
+    void truncatedFilesAreIgnored() throws Exception {
+        MeshCache.store(sourceFile, 1, quad());
+        final Path cacheFile = CacheFiles.resolve(tempDir.resolve("cache"), sourceFile, ".mesh");
+        final byte[] bytes = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, java.util.Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertNull(MeshCache.load(sourceFile, 1));
+    }
+
+    private static MeshData quad() {
+        return new MeshData(new float[]{0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0}, new float[]{0, 0, 1, 0, 1, 1, 0, 1},
+                new float[]{0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1}, new int[]{0, 1, 2, 2, 3, 0}, 7);
+    }
+}
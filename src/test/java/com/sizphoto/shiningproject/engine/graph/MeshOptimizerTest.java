@@ -0,0 +1,186 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeshOptimizerTest {
+
+    private static final int GRID_SIZE = 64;
+
+    @Test
+    void optimizeKeepsTheTrianglesAndTheirWinding() {
+        final float[] positions = gridPositions();
+        final float[] textCoords = gridTextCoords();
+        final int[] indices = shuffledTriangles(gridIndices(), 3);
+        final List<String> before = triangles(positions, textCoords, indices);
+
+        MeshOptimizer.optimize(positions, textCoords, new float[0], indices, true);
+
+        assertEquals(before, triangles(positions, textCoords, indices));
+    }
+
+    @Test
+    void optimizeDoesNotWorsenTheAcmrOfAGrid() {
+        final float[] positions = gridPositions();
+        final int[] indices = gridIndices();
+        final int numVertices = positions.length / 3;
+        final float rowOrderAcmr = MeshOptimizer.calcAcmr(indices, numVertices);
+
+        MeshOptimizer.optimize(positions, gridTextCoords(), new float[0], indices, false);
+
+        final float acmr = MeshOptimizer.calcAcmr(indices, numVertices);
+        assertTrue(acmr <= rowOrderAcmr, "ACMR " + acmr + " after, " + rowOrderAcmr + " before");
+    }
+
+    @Test
+    void optimizeVertexCacheFixesAShuffledGrid() {
+        final int numVertices = GRID_SIZE * GRID_SIZE;
+        final int[] indices = shuffledTriangles(gridIndices(), 5);
+        final float shuffledAcmr = MeshOptimizer.calcAcmr(indices, numVertices);
+
+        MeshOptimizer.optimizeVertexCache(indices, numVertices);
+
+        final float acmr = MeshOptimizer.calcAcmr(indices, numVertices);
+        assertTrue(shuffledAcmr > 2, "Shuffled ACMR " + shuffledAcmr);
+        assertTrue(acmr < 0.8f, "ACMR " + acmr);
+    }
+
+    @Test
+    void overdrawPassOnlyReordersTriangles() {
+        final float[] positions = gridPositions();
+        final int[] indices = gridIndices();
+        MeshOptimizer.optimizeVertexCache(indices, positions.length / 3);
+        final List<String> before = triangles(positions, null, indices);
+        final float acmrBefore = MeshOptimizer.calcAcmr(indices, positions.length / 3);
+
+        MeshOptimizer.optimizeOverdraw(indices, positions);
+
+        assertEquals(before, triangles(positions, null, indices));
+        // Clusters start where the cache is cold, so moving them costs little
+        assertTrue(MeshOptimizer.calcAcmr(indices, positions.length / 3) <= acmrBefore * 1.1f);
+    }
+
+    @Test
+    void optimizeHandlesEmptyMeshes() {
+        final int[] indices = new int[0];
+        MeshOptimizer.optimize(new float[0], new float[0], new float[0], indices, true);
+        assertEquals(0, MeshOptimizer.calcAcmr(indices, 0));
+
+        // Vertices but no triangles
+        final float[] positions = {1, 2, 3, 4, 5, 6};
+        MeshOptimizer.optimize(positions, new float[0], new float[0], indices, true);
+        assertArrayEquals(new float[]{1, 2, 3, 4, 5, 6}, positions);
+    }
+
+    @Test
+    void optimizeHandlesDegenerateTriangles() {
+        // A repeated corner, a zero area triangle, a duplicated triangle and an unused last vertex
+        final float[] positions = {0, 0, 0, 1, 0, 0, 2, 0, 0, 0, 1, 0, 9, 9, 9};
+        final float[] normals = {0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1, 1, 0, 0};
+        final int[] indices = {0, 0, 1, 0, 1, 2, 0, 1, 3, 0, 1, 3};
+        final List<String> before = triangles(positions, null, indices);
+
+        MeshOptimizer.optimize(positions, new float[0], normals, indices, true);
+
+        assertEquals(before, triangles(positions, null, indices));
+        // The unused vertex keeps its attributes and goes to the end
+        assertArrayEquals(new float[]{9, 9, 9}, new float[]{positions[12], positions[13], positions[14]});
+        assertArrayEquals(new float[]{1, 0, 0}, new float[]{normals[12], normals[13], normals[14]});
+    }
+
+    @Test
+    void vertexFetchRemapNumbersVerticesInOrderOfFirstUse() {
+        final int[] indices = {3, 1, 3, 0, 1, 3};
+        final int[] remap = MeshOptimizer.buildVertexFetchRemap(indices, 5);
+
+        assertArrayEquals(new int[]{0, 1, 0, 2, 1, 0}, indices);
+        assertArrayEquals(new int[]{2, 1, 3, 0, 4}, remap);
+    }
+
+    /**
+     * @return the triangles as sorted strings of their corners, each one starting at its smallest corner so that
+     * the winding is kept
+     */
+    private static List<String> triangles(final float[] positions, final float[] textCoords, final int[] indices) {
+        final List<String> triangles = new ArrayList<>();
+        for (int t = 0; t < indices.length / 3; t++) {
+            final String[] corners = new String[3];
+            for (int k = 0; k < 3; k++) {
+                final int vertex = indices[t * 3 + k];
+                corners[k] = positions[vertex * 3] + "," + positions[vertex * 3 + 1] + "," + positions[vertex * 3 + 2]
+                        + (textCoords != null ? "/" + textCoords[vertex * 2] + "," + textCoords[vertex * 2 + 1] : "");
+            }
+            int first = 0;
+            for (int k = 1; k < 3; k++) {
+                if (corners[k].compareTo(corners[first]) < 0) {
+                    first = k;
+                }
+            }
+            triangles.add(corners[first] + " " + corners[(first + 1) % 3] + " " + corners[(first + 2) % 3]);
+        }
+        Collections.sort(triangles);
+        return triangles;
+    }
+
+    private static float[] gridPositions() {
+        final float[] positions = new float[GRID_SIZE * GRID_SIZE * 3];
+        for (int i = 0; i < GRID_SIZE * GRID_SIZE; i++) {
+            positions[i * 3] = i % GRID_SIZE;
+            positions[i * 3 + 1] = (float) Math.sin(i);
+            positions[i * 3 + 2] = i / GRID_SIZE;
+        }
+        return positions;
+    }
+
+    private static float[] gridTextCoords() {
+        final float[] textCoords = new float[GRID_SIZE * GRID_SIZE * 2];
+        for (int i = 0; i < GRID_SIZE * GRID_SIZE; i++) {
+            textCoords[i * 2] = (float) (i % GRID_SIZE) / GRID_SIZE;
+            textCoords[i * 2 + 1] = (float) (i / GRID_SIZE) / GRID_SIZE;
+        }
+        return textCoords;
+    }
+
+    /**
+     * @return two triangles per cell, in row order as the height map mesh builds them
+     */
+    private static int[] gridIndices() {
+        final int[] indices = new int[(GRID_SIZE - 1) * (GRID_SIZE - 1) * 6];
+        int next = 0;
+        for (int row = 0; row < GRID_SIZE - 1; row++) {
+            for (int col = 0; col < GRID_SIZE - 1; col++) {
+                final int topLeft = row * GRID_SIZE + col;
+                final int bottomLeft = topLeft + GRID_SIZE;
+                indices[next++] = topLeft;
+                indices[next++] = bottomLeft;
+                indices[next++] = topLeft + 1;
+                indices[next++] = topLeft + 1;
+                indices[next++] = bottomLeft;
+                indices[next++] = bottomLeft + 1;
+            }
+        }
+        return indices;
+    }
+
+    private static int[] shuffledTriangles(final int[] indices, final long seed) {
+        final Random random = new Random(seed);
+        final int[] shuffled = indices.clone();
+        for (int t = shuffled.length / 3 - 1; t > 0; t--) {
+            final int other = random.nextInt(t + 1);
+            for (int k = 0; k < 3; k++) {
+                final int swap = shuffled[t * 3 + k];
+                shuffled[t * 3 + k] = shuffled[other * 3 + k];
+                shuffled[other * 3 + k] = swap;
+            }
+        }
+        return shuffled;
+    }
+}
@@ -0,0 +1,39 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+/**
+ * Font whose glyphs are all the same box, holding every glyph it fills.
+ */
+final class MonospaceFont implements IFont {
+
+    private static final int HEIGHT = 16;
+
+    int heldGlyphs;
+
+    @Override
+    public Texture getTexture() {
+        return null;
+    }
+
+    @Override
+    public int getHeight() {
+        return HEIGHT;
+    }
+
+    @Override
+    public boolean acquireGlyph(final int codePoint, final Glyph glyph) {
+        glyph.setQuad(0, 0, HEIGHT / 2f, HEIGHT);
+        glyph.setTextCoords(0, 0, 1, 1);
+        glyph.setAdvance(HEIGHT / 2f);
+        heldGlyphs++;
+        return true;
+    }
+
+    @Override
+    public void releaseGlyph(final int codePoint) {
+        heldGlyphs--;
+    }
+
+    @Override
+    public void cleanup() {
+    }
+}
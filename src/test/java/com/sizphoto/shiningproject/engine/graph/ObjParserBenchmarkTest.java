@@ -0,0 +1,135 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parse time of a generated OBJ file of a million triangles, against the line splitting parser the loader used
+ * before. Run with -Dbenchmark=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ObjParserBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjParserBenchmarkTest.class);
+
+    private static final int TRIANGLES = 1_000_000;
+
+    // Vertices on a side of the grid, with two triangles per cell
+    private static final int GRID_SIZE = (int) Math.ceil(Math.sqrt(TRIANGLES / 2.0)) + 1;
+
+    private static final int WARM_UP_RUNS = 5;
+
+    private static final int RUNS = 10;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parseLargeGrid() throws Exception {
+        final Path file = writeGrid(tempDir.resolve("grid.obj"));
+        final double megabytes = Files.size(file) / 1e6;
+        final int expectedCorners = (GRID_SIZE - 1) * (GRID_SIZE - 1) * 2 * 3;
+        assertTrue(expectedCorners / 3 >= TRIANGLES);
+
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            assertEquals(expectedCorners * 3, ObjParser.parse(file.toString()).getCorners().size());
+            assertEquals(expectedCorners, parseBySplitting(file));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            ObjParser.parse(file.toString());
+        }
+        final double parserMillis = (System.nanoTime() - start) / 1e6 / RUNS;
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            parseBySplitting(file);
+        }
+        final double splittingMillis = (System.nanoTime() - start) / 1e6 / RUNS;
+
+        LOGGER.info("parseLargeGrid() - {} MB: ObjParser {} ms ({} MB/s), line splitting {} ms ({} MB/s)",
+                String.format("%.1f", megabytes), String.format("%.1f", parserMillis),
+                String.format("%.0f", megabytes * 1000 / parserMillis), String.format("%.1f", splittingMillis),
+                String.format("%.0f", megabytes * 1000 / splittingMillis));
+    }
+
+    private static Path writeGrid(final Path file) throws Exception {
+        // Decimal points whatever the default locale, a comma would not be valid OBJ
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (int row = 0; row < GRID_SIZE; row++) {
+                for (int col = 0; col < GRID_SIZE; col++) {
+                    writer.write(String.format(Locale.ROOT, "v %.6f %.6f %.6f%n", col * 0.1f,
+                            (float) Math.sin(col + row), row * 0.1f));
+                    writer.write(String.format(Locale.ROOT, "vt %.6f %.6f%n", (float) col / GRID_SIZE,
+                            (float) row / GRID_SIZE));
+                    writer.write(String.format(Locale.ROOT, "vn %.6f %.6f %.6f%n", 0f, 1f, 0f));
+                }
+            }
+            for (int row = 0; row < GRID_SIZE - 1; row++) {
+                for (int col = 0; col < GRID_SIZE - 1; col++) {
+                    final int topLeft = row * GRID_SIZE + col + 1;
+                    final int bottomLeft = topLeft + GRID_SIZE;
+                    writer.write(String.format(Locale.ROOT, "f %d/%d/%d %d/%d/%d %d/%d/%d%n", topLeft, topLeft,
+                            topLeft, bottomLeft, bottomLeft, bottomLeft, topLeft + 1, topLeft + 1, topLeft + 1));
+                    writer.write(String.format(Locale.ROOT, "f %d/%d/%d %d/%d/%d %d/%d/%d%n", topLeft + 1,
+                            topLeft + 1, topLeft + 1, bottomLeft, bottomLeft, bottomLeft, bottomLeft + 1,
+                            bottomLeft + 1, bottomLeft + 1));
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Reads the file the way the loader used to: one string per line, split in tokens, one vector per element.
+     *
+     * @return the number of face corners
+     */
+    private static int parseBySplitting(final Path file) throws Exception {
+        final List<Vector3f> positions = new ArrayList<>();
+        final List<Vector2f> textCoords = new ArrayList<>();
+        final List<Vector3f> normals = new ArrayList<>();
+        final List<int[]> corners = new ArrayList<>();
+        for (final String line : Files.readAllLines(file)) {
+            final String[] tokens = line.split("\\s+");
+            switch (tokens[0]) {
+                case "v":
+                    positions.add(new Vector3f(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2]),
+                            Float.parseFloat(tokens[3])));
+                    break;
+                case "vt":
+                    textCoords.add(new Vector2f(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2])));
+                    break;
+                case "vn":
+                    normals.add(new Vector3f(Float.parseFloat(tokens[1]), Float.parseFloat(tokens[2]),
+                            Float.parseFloat(tokens[3])));
+                    break;
+                case "f":
+                    for (int i = 1; i < tokens.length; i++) {
+                        final String[] indices = tokens[i].split("/");
+                        corners.add(new int[]{Integer.parseInt(indices[0]) - 1, Integer.parseInt(indices[1]) - 1,
+                            Integer.parseInt(indices[2]) - 1});
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return corners.size();
+    }
+}
@@ -0,0 +1,155 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjParserTest {
+
+    private static final int NO = ObjParser.NO_VALUE;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parsesVertexAttributes() throws Exception {
+        final ObjParser parser = parse("# comment\n"
+                + "o cube\n"
+                + "v 1 -2.5 3e2\n"
+                + "v\t+0.125  1E-3 -0\n"
+                + "vt 0.5 0.25 0.0\n"
+                + "vn 0 1 0\n"
+                + "mtllib cube.mtl\n"
+                + "usemtl none\n");
+
+        assertArrayEquals(new float[]{1, -2.5f, 300, 0.125f, 0.001f, -0f}, parser.getPositions().toArray());
+        assertArrayEquals(new float[]{0.5f, 0.25f}, parser.getTextCoords().toArray());
+        assertArrayEquals(new float[]{0, 1, 0}, parser.getNormals().toArray());
+        assertEquals(0, parser.getCorners().size());
+    }
+
+    @Test
+    void parsesFloatsLikeTheJdk() throws Exception {
+        final String[] values = {"0.1", "-123.456", "3.4028235e38", "1.17549435E-38", "0.000001", "12345678901234567890",
+            "1.5e-45", "99999.99999", ".5", "5.", "NaN", "-Infinity"};
+        final StringBuilder obj = new StringBuilder();
+        for (final String value : values) {
+            obj.append("v ").append(value).append(" 0 0\n");
+        }
+        final ObjParser parser = parse(obj.toString());
+
+        for (int i = 0; i < values.length; i++) {
+            final float expected = Float.parseFloat(values[i]);
+            // The fast path divides in double precision, it may round the last bit differently
+            final float delta = Float.isFinite(expected) ? Math.ulp(expected) : 0;
+            assertEquals(expected, parser.getPositions().get(i * 3), delta, values[i]);
+        }
+    }
+
+    @Test
+    void parsesAllCornerFormats() throws Exception {
+        final ObjParser parser = parse(cube()
+                + "f 1 2 3\n"
+                + "f 1/1 2/2 3/3\n"
+                + "f 1//1 2//1 3//1\n"
+                + "f 1/2/1 2/3/1 3/4/1\n");
+
+        assertArrayEquals(new int[]{
+            0, NO, NO, 1, NO, NO, 2, NO, NO,
+            0, 0, NO, 1, 1, NO, 2, 2, NO,
+            0, NO, 0, 1, NO, 0, 2, NO, 0,
+            0, 1, 0, 1, 2, 0, 2, 3, 0
+        }, parser.getCorners().toArray());
+    }
+
+    @Test
+    void splitsPolygonsInAFan() throws Exception {
+        final ObjParser parser = parse(cube() + "f 1 2 3 4 5\n");
+
+        assertArrayEquals(new int[]{
+            0, NO, NO, 1, NO, NO, 2, NO, NO,
+            0, NO, NO, 2, NO, NO, 3, NO, NO,
+            0, NO, NO, 3, NO, NO, 4, NO, NO
+        }, parser.getCorners().toArray());
+    }
+
+    @Test
+    void resolvesNegativeIndicesAgainstTheElementsDeclaredSoFar() throws Exception {
+        final ObjParser parser = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nvt 0 0\nvn 0 0 1\n"
+                + "f -3/-1/-1 -2/-1/-1 -1/-1/-1\n"
+                + "v 0 1 0\n"
+                + "f -4 -2 -1\n");
+
+        assertArrayEquals(new int[]{
+            0, 0, 0, 1, 0, 0, 2, 0, 0,
+            0, NO, NO, 2, NO, NO, 3, NO, NO
+        }, parser.getCorners().toArray());
+    }
+
+    @Test
+    void acceptsWindowsLineEndingsAndAMissingLastNewline() throws Exception {
+        final ObjParser parser = parse("v 0 0 0\r\nv 1 0 0\r\nv 1 1 0\r\nf 1 2 3");
+
+        assertEquals(9, parser.getPositions().size());
+        assertEquals(9, parser.getCorners().size());
+    }
+
+    @Test
+    void rejectsFacesWithLessThanThreeCorners() {
+        final Exception exception = assertThrows(Exception.class, () -> parse(cube() + "f 1 2\n"));
+        assertTrue(exception.getMessage().contains("line 11"), exception.getMessage());
+    }
+
+    @Test
+    void rejectsInvalidNumbers() {
+        final Exception exception = assertThrows(Exception.class, () -> parse("v 0 0 0\nv 1 x 0\n"));
+        assertTrue(exception.getMessage().contains("line 2: number expected"), exception.getMessage());
+    }
+
+    @Test
+    void rejectsPositionIndicesOutOfRange() {
+        assertOutOfRange(cube() + "f 1 2 6\n", "line 11: index 6 out of range, 5 declared");
+        assertOutOfRange(cube() + "f 0 1 2\n", "line 11: index 0 out of range, 5 declared");
+        assertOutOfRange(cube() + "f -6 1 2\n", "line 11: index -6 out of range, 5 declared");
+    }
+
+    @Test
+    void rejectsTextureCoordinateIndicesOutOfRange() {
+        assertOutOfRange(cube() + "f 1/1 2/5 3/1\n", "line 11: index 5 out of range, 4 declared");
+        assertOutOfRange(cube() + "f 1/-5 2/1 3/1\n", "line 11: index -5 out of range, 4 declared");
+    }
+
+    @Test
+    void rejectsNormalIndicesOutOfRange() {
+        assertOutOfRange(cube() + "f 1//1 2//2 3//1\n", "line 11: index 2 out of range, 1 declared");
+        assertOutOfRange(cube() + "f 1//-2 2//1 3//1\n", "line 11: index -2 out of range, 1 declared");
+        // Normals declared after the face do not count
+        assertOutOfRange("v 0 0 0\nv 1 0 0\nv 1 1 0\nf 1//1 2//1 3//1\nvn 0 0 1\n",
+                "line 4: index 1 out of range, 0 declared");
+    }
+
+    private void assertOutOfRange(final String content, final String message) {
+        final Exception exception = assertThrows(Exception.class, () -> parse(content));
+        assertTrue(exception.getMessage().endsWith(message), exception.getMessage());
+    }
+
+    private static String cube() {
+        return "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nv 0 0 1\n"
+                + "vt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+                + "vn 0 0 1\n";
+    }
+
+    private ObjParser parse(final String content) throws Exception {
+        final Path file = tempDir.resolve("test.obj");
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        return ObjParser.parse(file.toString());
+    }
+}
@@ -0,0 +1,84 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReferenceCountsTest {
+
+    private final List<String> deleted = new ArrayList<>();
+
+    private final ReferenceCounts<String> counts = new ReferenceCounts<>(deleted::add);
+
+    @Test
+    void resourcesAreDeletedOnTheLastRelease() {
+        final String texture = counts.add("grass.png", "grass");
+        assertSame(texture, counts.acquire("grass.png"));
+        assertSame(texture, counts.acquire("grass.png"));
+        assertEquals(3, counts.getReferences(texture));
+
+        assertTrue(counts.release(texture));
+        assertTrue(counts.release(texture));
+        assertTrue(deleted.isEmpty());
+        assertTrue(counts.contains(texture));
+
+        assertTrue(counts.release(texture));
+        assertEquals(1, deleted.size());
+        assertSame(texture, deleted.get(0));
+        assertFalse(counts.contains(texture));
+        assertEquals(0, counts.size());
+    }
+
+    @Test
+    void unknownResourcesAreLeftToTheCaller() {
+        counts.add("grass.png", "grass");
+
+        assertFalse(counts.release("other"));
+        assertTrue(deleted.isEmpty());
+        assertEquals(0, counts.getReferences("other"));
+    }
+
+    @Test
+    void resourcesAreMatchedByIdentity() {
+        final String texture = counts.add("grass.png", "grass");
+
+        assertFalse(counts.release(new String(texture)));
+        assertEquals(1, counts.getReferences(texture));
+    }
+
+    @Test
+    void deletedKeysAreLoadedAgain() {
+        final String first = counts.add("grass.png", "grass");
+        counts.release(first);
+
+        assertNull(counts.acquire("grass.png"));
+        final String second = counts.add("grass.png", new String("grass"));
+        assertEquals(1, counts.getReferences(second));
+        assertFalse(counts.contains(first));
+
+        counts.release(second);
+        assertEquals(2, deleted.size());
+    }
+
+    @Test
+    void deleteAllDeletesEveryResourceHeld() {
+        final String grass = counts.add("grass.png", "grass");
+        counts.acquire("grass.png");
+        final String rock = counts.add("rock.png", "rock");
+
+        counts.deleteAll();
+
+        assertEquals(2, deleted.size());
+        assertTrue(deleted.contains(grass));
+        assertTrue(deleted.contains(rock));
+        assertEquals(0, counts.size());
+        assertFalse(counts.release(grass));
+    }
+}
@@ -0,0 +1,124 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderQueueTest {
+
+    private static final float MAX_DEPTH = 1000f;
+
+    @Test
+    void opaqueItemsComeBeforeBlendedOnes() {
+        final RenderQueue queue = new RenderQueue();
+        final GameItem blended = new GameItem((Mesh) null);
+        final GameItem opaque = new GameItem((Mesh) null);
+        queue.add(blended, RenderQueue.blendedKey(0, 0, 0, 0, 1, MAX_DEPTH));
+        queue.add(opaque, RenderQueue.opaqueKey(7, 4095, 4095, 4095, MAX_DEPTH, MAX_DEPTH));
+        queue.sort();
+
+        assertSame(opaque, queue.get(0));
+        assertSame(blended, queue.get(1));
+        assertFalse(RenderQueue.isBlended(queue.getKey(0)));
+        assertTrue(RenderQueue.isBlended(queue.getKey(1)));
+    }
+
+    @Test
+    void opaqueItemsAreGroupedByStateThenDrawnFrontToBack() {
+        final RenderQueue queue = new RenderQueue();
+        final GameItem farA = add(queue, RenderQueue.opaqueKey(1, 2, 3, 1, 500, MAX_DEPTH));
+        final GameItem nearB = add(queue, RenderQueue.opaqueKey(1, 2, 3, 2, 10, MAX_DEPTH));
+        final GameItem nearA = add(queue, RenderQueue.opaqueKey(1, 2, 3, 1, 10, MAX_DEPTH));
+        final GameItem otherTexture = add(queue, RenderQueue.opaqueKey(1, 1, 3, 1, 900, MAX_DEPTH));
+        queue.sort();
+
+        assertSame(otherTexture, queue.get(0));
+        assertSame(nearA, queue.get(1));
+        assertSame(farA, queue.get(2));
+        assertSame(nearB, queue.get(3));
+    }
+
+    @Test
+    void blendedItemsAreDrawnBackToFrontWhateverTheirState() {
+        final RenderQueue queue = new RenderQueue();
+        final GameItem near = add(queue, RenderQueue.blendedKey(0, 1, 1, 1, 5, MAX_DEPTH));
+        final GameItem far = add(queue, RenderQueue.blendedKey(0, 9, 9, 9, 800, MAX_DEPTH));
+        final GameItem middle = add(queue, RenderQueue.blendedKey(0, 5, 1, 1, 100, MAX_DEPTH));
+        queue.sort();
+
+        assertSame(far, queue.get(0));
+        assertSame(middle, queue.get(1));
+        assertSame(near, queue.get(2));
+    }
+
+    @Test
+    void depthIsClampedToTheQueueRange() {
+        assertEquals(RenderQueue.opaqueKey(0, 0, 0, 0, 0, MAX_DEPTH),
+                RenderQueue.opaqueKey(0, 0, 0, 0, -5, MAX_DEPTH));
+        assertEquals(RenderQueue.opaqueKey(0, 0, 0, 0, MAX_DEPTH, MAX_DEPTH),
+                RenderQueue.opaqueKey(0, 0, 0, 0, 2 * MAX_DEPTH, MAX_DEPTH));
+    }
+
+    @Test
+    void sortOrdersLargeQueuesByUnsignedKey() {
+        final RenderQueue queue = new RenderQueue();
+        final Random random = new Random(42);
+        final List<Long> keys = new ArrayList<>();
+        // Several times the initial capacity, so the queue grows
+        for (int i = 0; i < 2000; i++) {
+            final float depth = random.nextFloat() * MAX_DEPTH;
+            final long key = random.nextBoolean()
+                    ? RenderQueue.opaqueKey(random.nextInt(3), random.nextInt(5), random.nextInt(5), i, depth, MAX_DEPTH)
+                    : RenderQueue.blendedKey(random.nextInt(3), random.nextInt(5), 0, i, depth, MAX_DEPTH);
+            keys.add(key);
+            queue.add(new GameItem((Mesh) null), key);
+        }
+        queue.sort();
+
+        assertEquals(keys.size(), queue.size());
+        keys.sort(Long::compareUnsigned);
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals((long) keys.get(i), queue.getKey(i), "Key " + i);
+        }
+    }
+
+    @Test
+    void sortKeepsTheInsertionOrderOfEqualKeys() {
+        final RenderQueue queue = new RenderQueue();
+        final long key = RenderQueue.opaqueKey(1, 1, 1, 1, 1, MAX_DEPTH);
+        final GameItem first = add(queue, key);
+        add(queue, RenderQueue.opaqueKey(1, 1, 1, 0, 1, MAX_DEPTH));
+        final GameItem second = add(queue, key);
+        queue.sort();
+
+        assertSame(first, queue.get(1));
+        assertSame(second, queue.get(2));
+    }
+
+    @Test
+    void clearEmptiesTheQueue() {
+        final RenderQueue queue = new RenderQueue();
+        add(queue, 1);
+        queue.clear();
+        queue.sort();
+
+        assertEquals(0, queue.size());
+        final GameItem item = add(queue, 2);
+        queue.sort();
+        assertSame(item, queue.get(0));
+    }
+
+    private static GameItem add(final RenderQueue queue, final long key) {
+        final GameItem gameItem = new GameItem((Mesh) null);
+        queue.add(gameItem, key);
+        return gameItem;
+    }
+}
@@ -0,0 +1,126 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.IHud;
+import com.sizphoto.shiningproject.engine.Scene;
+import com.sizphoto.shiningproject.engine.SceneLight;
+import com.sizphoto.shiningproject.engine.Window;
+import com.sizphoto.shiningproject.engine.graph.lights.DirectionalLight;
+import com.sizphoto.shiningproject.engine.graph.lights.PointLight;
+import com.sizphoto.shiningproject.engine.graph.lights.SpotLight;
+import com.sizphoto.shiningproject.engine.items.GameItem;
+import com.sun.management.ThreadMXBean;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class RendererAllocationTest {
+
+    private static final int FRAMES = 1_000;
+
+    private static final int NUM_ITEMS = 50;
+
+    private static final int MAX_LIGHTS = 5;
+
+    // Average bytes a rendered frame may allocate. Below the smallest object, so that anything allocated on every
+    // frame fails, while a one-off allocation, such as a list growing once, does not
+    private static final long MAX_BYTES_PER_FRAME = 8;
+
+    private static boolean hasContext;
+
+    @BeforeAll
+    static void createContext() {
+        hasContext = GlTestContext.create();
+    }
+
+    @AfterAll
+    static void destroyContext() {
+        GlTestContext.destroy();
+    }
+
+    @Test
+    void steadyStateFrameStaysUnderTheThreshold() throws Exception {
+        assumeTrue(hasContext, "No OpenGL context available");
+        final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Allocated bytes are not measured");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final Window window = new Window("test", 64, 64, false, false, false);
+        final AssetLoader assetLoader = new AssetLoader(1, 1 << 20);
+        final Renderer renderer = new Renderer(new Transformation(), assetLoader, true, MAX_LIGHTS, MAX_LIGHTS, true,
+                false, 0, 0, 2f, "", "", "", 0f, true);
+        renderer.init(window);
+
+        final float[] positions = {-1, 1, 0, -1, -1, 0, 1, -1, 0, 1, 1, 0};
+        final float[] textCoords = {0, 0, 0, 1, 1, 1, 1, 0};
+        final float[] normals = {0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1};
+        final int[] indices = {0, 1, 3, 3, 1, 2};
+        final Mesh mesh = new Mesh(positions, textCoords, normals, indices);
+        mesh.setMaterial(new Material());
+        final GameItem[] gameItems = new GameItem[NUM_ITEMS];
+        for (int i = 0; i < NUM_ITEMS; i++) {
+            gameItems[i] = new GameItem(mesh);
+            gameItems[i].setPosition(i % 10 - 5, i / 10 - 2, -10);
+        }
+        final Scene scene = new Scene();
+        scene.setGameItems(gameItems);
+        final SceneLight sceneLight = createSceneLight();
+        scene.setSceneLight(sceneLight);
+        final Camera camera = new Camera();
+        final GameItem[] hudItems = new GameItem[0];
+        final IHud hud = () -> hudItems;
+
+        // Warm up, so that lazily initialised state and the first uploads are not measured
+        renderFrames(renderer, window, camera, scene, hud, sceneLight);
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        renderFrames(renderer, window, camera, scene, hud, sceneLight);
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        mesh.cleanUp();
+        renderer.cleanup();
+        assertTrue(allocated <= MAX_BYTES_PER_FRAME * FRAMES,
+                allocated + " bytes allocated by " + FRAMES + " frames, at most " + MAX_BYTES_PER_FRAME
+                        + " per frame are allowed");
+    }
+
+    private static SceneLight createSceneLight() {
+        final SceneLight sceneLight = new SceneLight();
+        sceneLight.setAmbientLight(new Vector3f(0.3f, 0.3f, 0.3f));
+        sceneLight.setSkyBoxLight(new Vector3f(1, 1, 1));
+        sceneLight.setDirectionalLight(new DirectionalLight(new Vector3f(1, 1, 1), new Vector3f(0, 1, 0), 1));
+        final PointLight[] pointLights = new PointLight[MAX_LIGHTS - 1];
+        final SpotLight[] spotLights = new SpotLight[MAX_LIGHTS - 1];
+        for (int i = 0; i < pointLights.length; i++) {
+            pointLights[i] = new PointLight(new Vector3f(1, 0.5f, 0), new Vector3f(i, 1, -8), 1,
+                    new PointLight.Attenuation(0, 0, 1));
+            spotLights[i] = new SpotLight(new PointLight(new Vector3f(0, 0.5f, 1), new Vector3f(-i, 1, -8), 1),
+                    new Vector3f(0, 0, -1), 30);
+        }
+        sceneLight.setPointLightList(pointLights);
+        sceneLight.setSpotLightList(spotLights);
+        return sceneLight;
+    }
+
+    private static void renderFrames(final Renderer renderer, final Window window, final Camera camera,
+                                     final Scene scene, final IHud hud, final SceneLight sceneLight) {
+        final PointLight movingLight = sceneLight.getPointLightList()[0];
+        final SpotLight turningLight = sceneLight.getSpotLightList()[0];
+        // The camera turns on every frame while one point and one spot light change, the others stay still
+        for (int i = 0; i < FRAMES; i++) {
+            final float angle = i * 0.01f;
+            camera.setRenderTransform(0, 0, 0, 0, (float) Math.sin(angle) * 10, 0);
+            movingLight.getPosition().x = (float) Math.cos(angle);
+            movingLight.setDirty(true);
+            turningLight.getConeDirection().set((float) Math.sin(angle), 0, -1);
+            turningLight.setDirty(true);
+            renderer.render(window, camera, scene, hud);
+        }
+    }
+}
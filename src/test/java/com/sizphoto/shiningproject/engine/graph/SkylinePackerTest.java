@@ -0,0 +1,95 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SkylinePackerTest {
+
+    @Test
+    void rectanglesFillARowBeforeStartingAnother() {
+        final SkylinePacker packer = new SkylinePacker(10);
+
+        assertPacked(packer, 4, 3, 0, 0);
+        assertPacked(packer, 4, 3, 4, 0);
+        // Only 2 columns left on the first row, the rectangle goes on top of the lowest segment
+        assertPacked(packer, 4, 3, 0, 3);
+        assertPacked(packer, 2, 5, 8, 0);
+    }
+
+    @Test
+    void theLowestTopWins() {
+        final SkylinePacker packer = new SkylinePacker(10);
+        assertPacked(packer, 4, 6, 0, 0);
+        assertPacked(packer, 6, 2, 4, 0);
+
+        // On top of the short one rather than the tall one
+        assertPacked(packer, 4, 3, 4, 2);
+        // Spanning segments of different heights rests on the highest of them
+        assertPacked(packer, 10, 1, 0, 6);
+    }
+
+    @Test
+    void tiesGoToTheNarrowestSegment() {
+        final SkylinePacker packer = new SkylinePacker(10);
+        assertPacked(packer, 5, 3, 0, 0);
+        assertPacked(packer, 3, 5, 5, 0);
+        assertPacked(packer, 2, 3, 8, 0);
+
+        // The segments at x 0 and x 8 are both at height 3, the one at x 8 is narrower
+        assertPacked(packer, 2, 1, 8, 3);
+    }
+
+    @Test
+    void rectanglesLargerThanTheAreaDoNotFit() {
+        final SkylinePacker packer = new SkylinePacker(8);
+
+        assertFalse(packer.pack(9, 1));
+        assertFalse(packer.pack(1, 9));
+        assertPacked(packer, 8, 8, 0, 0);
+        assertFalse(packer.pack(1, 1));
+    }
+
+    @Test
+    void packedRectanglesNeverOverlapNorLeaveTheArea() {
+        final int size = 128;
+        final SkylinePacker packer = new SkylinePacker(size);
+        final Random random = new Random(3);
+        final List<int[]> packed = new ArrayList<>();
+        int area = 0;
+        for (int i = 0; i < 2000; i++) {
+            final int width = 1 + random.nextInt(12);
+            final int height = 1 + random.nextInt(12);
+            if (!packer.pack(width, height)) {
+                continue;
+            }
+            final int[] rectangle = {packer.getPackedX(), packer.getPackedY(), width, height};
+            assertTrue(rectangle[0] >= 0 && rectangle[1] >= 0, "corner out of the area");
+            assertTrue(rectangle[0] + width <= size && rectangle[1] + height <= size, "rectangle out of the area");
+            for (int[] other : packed) {
+                assertFalse(overlap(rectangle, other), "rectangles overlap");
+            }
+            packed.add(rectangle);
+            area += width * height;
+        }
+        // Glyphs of mixed sizes leave some space under the skyline, not most of it
+        assertTrue(area > size * size / 2, "only " + area + " texels used");
+    }
+
+    private static void assertPacked(final SkylinePacker packer, final int width, final int height, final int x,
+                                     final int y) {
+        assertTrue(packer.pack(width, height), width + "x" + height + " not packed");
+        assertEquals(x, packer.getPackedX(), "x");
+        assertEquals(y, packer.getPackedY(), "y");
+    }
+
+    private static boolean overlap(final int[] a, final int[] b) {
+        return a[0] < b[0] + b[2] && b[0] < a[0] + a[2] && a[1] < b[1] + b[3] && b[1] < a[1] + a[3];
+    }
+}
@@ -0,0 +1,86 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import com.sizphoto.shiningproject.engine.items.TextItem;
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TextItemAllocationTest {
+
+    private static final int FRAMES = 1_000;
+
+    private static final Path SYSTEM_FONT = Paths.get("/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf");
+
+    private static boolean hasContext;
+
+    @BeforeAll
+    static void createContext() {
+        hasContext = GlTestContext.create();
+    }
+
+    @AfterAll
+    static void destroyContext() {
+        GlTestContext.destroy();
+    }
+
+    @Test
+    void repeatedSetTextAllocatesNothing() {
+        assumeTrue(hasContext, "No OpenGL context available");
+        final MonospaceFont font = new MonospaceFont();
+
+        assertNoAllocation(font);
+
+        assertEquals(0, font.heldGlyphs, "Glyphs still held after the cleanup");
+    }
+
+    @Test
+    void repeatedSetTextWithAGlyphAtlasAllocatesNothing() throws Exception {
+        assumeTrue(hasContext, "No OpenGL context available");
+        assumeTrue(Files.isRegularFile(SYSTEM_FONT), "No TrueType font to load");
+        final GlyphAtlas atlas = new GlyphAtlas(SYSTEM_FONT.toString(), 20, 512);
+        try {
+            assertNoAllocation(atlas);
+        } finally {
+            atlas.cleanup();
+        }
+    }
+
+    private static void assertNoAllocation(final IFont font) {
+        final ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Allocated bytes are not measured");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final TextItem textItem = new TextItem("", font);
+        final StringBuilder text = new StringBuilder(64);
+
+        // Warm up, so that the buffers grow to their final size and the glyphs are loaded before measuring
+        setTexts(textItem, text);
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        setTexts(textItem, text);
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        textItem.cleanup();
+        assertEquals(0, allocated, "Bytes allocated by " + FRAMES + " texts");
+    }
+
+    private static void setTexts(final TextItem textItem, final StringBuilder text) {
+        // A different text on every frame, as the figures of the performance overlay
+        for (int i = 0; i < FRAMES; i++) {
+            text.setLength(0);
+            text.append("FPS ").append(60 + i % 7).append("  frame ").append(i % 100).append('.').append(i % 10)
+                    .append(" ms");
+            textItem.setText(text);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class TextureArrayBuilderTest {
+
+    @Test
+    void imagesOfTheSameSizeShareAnArray() {
+        final int[] widths = {1024, 512, 1024, 1024, 512};
+        final int[] heights = {1024, 512, 1024, 512, 512};
+
+        assertArrayEquals(new int[]{0, 1, 0, 2, 1}, TextureArrayBuilder.plan(widths, heights, 256));
+    }
+
+    @Test
+    void sameAreaDifferentShapeIsNotTheSameSize() {
+        final int[] widths = {256, 128, 256};
+        final int[] heights = {128, 256, 128};
+
+        assertArrayEquals(new int[]{0, 1, 0}, TextureArrayBuilder.plan(widths, heights, 256));
+    }
+
+    @Test
+    void fullArraysStartANewOne() {
+        final int[] widths = {64, 64, 64, 64, 64, 32};
+        final int[] heights = {64, 64, 64, 64, 64, 32};
+
+        assertArrayEquals(new int[]{0, 0, 1, 1, 2, 3}, TextureArrayBuilder.plan(widths, heights, 2));
+    }
+
+    @Test
+    void singleLayerArraysHoldOneImageEach() {
+        final int[] sizes = {16, 16, 16};
+
+        assertArrayEquals(new int[]{0, 1, 2}, TextureArrayBuilder.plan(sizes, sizes, 1));
+    }
+
+    @Test
+    void noImagesPlanNoArrays() {
+        assertArrayEquals(new int[0], TextureArrayBuilder.plan(new int[0], new int[0], 256));
+    }
+}
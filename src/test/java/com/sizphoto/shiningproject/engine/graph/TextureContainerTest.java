@@ -0,0 +1,133 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TextureContainerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String sourceFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        TextureContainer.setDirectory(tempDir.resolve("textures").toString());
+        final Path source = tempDir.resolve("image.png");
+        Files.write(source, new byte[]{1, 2, 3});
+        sourceFile = source.toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TextureContainer.setDirectory(null);
+    }
+
+    @Test
+    void mipChainsGoDownToOneTexel() {
+        assertEquals(1, TextureContainer.getMipLevels(1, 1));
+        assertEquals(2, TextureContainer.getMipLevels(2, 1));
+        assertEquals(3, TextureContainer.getMipLevels(5, 3));
+        assertEquals(9, TextureContainer.getMipLevels(256, 256));
+        assertEquals(11, TextureContainer.getMipLevels(1024, 1));
+        assertEquals(11, TextureContainer.getMipLevels(1023, 1024));
+    }
+
+    @Test
+    void builtChainsHoldEveryLevel() {
+        final TextureData data = TextureContainer.buildMipChain(image(64, 16, 0x80));
+        try {
+            assertEquals(7, data.getLevels());
+            assertEquals(TextureData.getSize(64, 16, 7), data.getPixels().capacity());
+            // A flat image stays flat at every level
+            final ByteBuffer last = data.getLevel(6);
+            assertEquals(TextureData.BYTES_PER_PIXEL, last.capacity());
+            for (int i = 0; i < last.capacity(); i++) {
+                assertEquals(0x80, last.get(i) & 0xFF);
+            }
+        } finally {
+            data.free();
+        }
+    }
+
+    @Test
+    void oddEdgesFoldIntoTheLastTexel() {
+        // Transparent 5x3 image whose bottom right texel alone is opaque
+        final TextureData image = image(5, 3, 0);
+        image.getLevel(0).put((2 * 5 + 4) * TextureData.BYTES_PER_PIXEL + 3, (byte) 255);
+
+        final TextureData data = TextureContainer.buildMipChain(image);
+        try {
+            assertEquals(3, data.getLevels());
+            // The 2x1 level: the second texel averages columns 2 to 4 of all 3 rows
+            final ByteBuffer level1 = data.getLevel(1);
+            assertEquals(2 * TextureData.BYTES_PER_PIXEL, level1.capacity());
+            assertEquals(0, level1.get(3) & 0xFF);
+            assertEquals(28, level1.get(TextureData.BYTES_PER_PIXEL + 3) & 0xFF);
+            // The 1x1 level averages both texels
+            assertEquals(14, data.getLevel(2).get(3) & 0xFF);
+        } finally {
+            data.free();
+        }
+    }
+
+    @Test
+    void storedChainsAreLoadedBack() {
+        final TextureData image = image(6, 5, 0);
+        final ByteBuffer pixels = image.getLevel(0);
+        for (int i = 0; i < pixels.capacity(); i++) {
+            pixels.put(i, (byte) (i * 7));
+        }
+        final TextureData data = TextureContainer.buildMipChain(image);
+        try {
+            TextureContainer.store(sourceFile, data);
+
+            final TextureData loaded = TextureContainer.load(sourceFile);
+            assertNotNull(loaded);
+            try {
+                assertEquals(6, loaded.getWidth());
+                assertEquals(5, loaded.getHeight());
+                assertEquals(data.getLevels(), loaded.getLevels());
+                assertEquals(data.getPixels().duplicate().clear(), loaded.getPixels().duplicate().clear());
+            } finally {
+                loaded.free();
+            }
+        } finally {
+            data.free();
+        }
+    }
+
+    @Test
+    void changedSourcesAreNotLoaded() throws Exception {
+        final TextureData data = TextureContainer.buildMipChain(image(4, 4, 0x10));
+        try {
+            TextureContainer.store(sourceFile, data);
+        } finally {
+            data.free();
+        }
+
+        Files.write(Paths.get(sourceFile), new byte[]{1, 2, 3, 4});
+
+        assertNull(TextureContainer.load(sourceFile));
+    }
+
+    private static TextureData image(final int width, final int height, final int value) {
+        final TextureData image = TextureData.allocate(width, height, 1);
+        final ByteBuffer pixels = image.getPixels();
+        for (int i = 0; i < pixels.capacity(); i++) {
+            pixels.put(i, (byte) value);
+        }
+        return image;
+    }
+}
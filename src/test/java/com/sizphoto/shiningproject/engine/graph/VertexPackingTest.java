@@ -0,0 +1,127 @@
+package com.sizphoto.shiningproject.engine.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VertexPackingTest {
+
+    @Test
+    void toHalfFloatConvertsExactValues() {
+        assertEquals(0x0000, bits(0f));
+        assertEquals(0x8000, bits(-0f));
+        assertEquals(0x3C00, bits(1f));
+        assertEquals(0xBC00, bits(-1f));
+        assertEquals(0x3800, bits(0.5f));
+        assertEquals(0x4000, bits(2f));
+        assertEquals(0x7BFF, bits(65504f));
+        // Smallest denormalized half float
+        assertEquals(0x0001, bits((float) Math.pow(2, -24)));
+    }
+
+    @Test
+    void toHalfFloatHandlesOutOfRangeValues() {
+        assertEquals(0x7C00, bits(1e6f));
+        assertEquals(0xFC00, bits(Float.NEGATIVE_INFINITY));
+        assertEquals(0x7C00, bits(Float.POSITIVE_INFINITY));
+        final int nan = bits(Float.NaN);
+        assertEquals(0x7C00, nan & 0x7C00);
+        assertTrue((nan & 0x03FF) != 0, "NaN must keep a mantissa bit");
+        assertEquals(0x0000, bits(1e-10f));
+    }
+
+    @Test
+    void toHalfFloatRoundsToTheNearestValue() {
+        for (float value = -2f; value <= 2f; value += 0.0013f) {
+            final float decoded = fromHalfFloat(VertexPacking.toHalfFloat(value));
+            // Half the spacing of half floats around the value, or of the denormals near zero
+            final float tolerance = Math.max(Math.abs(value) * 0x1p-11f, 0x1p-25f);
+            assertEquals(value, decoded, tolerance, "Half float of " + value);
+        }
+    }
+
+    @Test
+    void fitsHalfFloatOnlyAcceptsSmallTextureCoordinates() {
+        assertTrue(VertexPacking.fitsHalfFloat(new float[]{0f, 1f, -2f, 2f}));
+        assertTrue(VertexPacking.fitsHalfFloat(new float[0]));
+        assertFalse(VertexPacking.fitsHalfFloat(new float[]{0f, 2.5f}));
+        assertFalse(VertexPacking.fitsHalfFloat(new float[]{-16f}));
+    }
+
+    @Test
+    void packNormalStoresSignedTenBitComponents() {
+        assertEquals(511, VertexPacking.packNormal(1, 0, 0));
+        assertEquals(511 << 10, VertexPacking.packNormal(0, 1, 0));
+        assertEquals(511 << 20, VertexPacking.packNormal(0, 0, 1));
+        assertEquals(-511 & 0x3FF, VertexPacking.packNormal(-1, 0, 0));
+        // The w component stays zero
+        assertEquals(0, VertexPacking.packNormal(-1, -1, -1) >>> 30);
+    }
+
+    @Test
+    void packNormalClampsAndRoundTrips() {
+        assertEquals(VertexPacking.packNormal(1, -1, 1), VertexPacking.packNormal(3, -7, 1.5f));
+        final float[][] normals = {{0.267f, 0.535f, 0.802f}, {-0.577f, 0.577f, -0.577f}, {0, -0.6f, 0.8f}};
+        for (final float[] normal : normals) {
+            final int packed = VertexPacking.packNormal(normal[0], normal[1], normal[2]);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(normal[i], unpackComponent(packed >> (10 * i)), 0.5f / 511, "Component " + i);
+            }
+        }
+    }
+
+    @Test
+    void putVerticesInterleavesTheAttributes() {
+        final float[] positions = {1, 2, 3, 4, 5, 6};
+        final float[] textCoords = {0.5f, 0.25f, 1, 0};
+        final float[] normals = {0, 0, 1, 0, 1, 0};
+
+        final ByteBuffer half = ByteBuffer.allocate(2 * VertexPacking.vertexSize(true, true));
+        VertexPacking.putVertices(half, positions, textCoords, normals, true, true);
+        assertEquals(20, VertexPacking.vertexSize(true, true));
+        assertEquals(half.capacity(), half.position());
+        assertEquals(0x3800, half.getShort(12) & 0xFFFF);
+        assertEquals(4f, half.getFloat(20));
+        assertEquals(0x3C00, half.getShort(32) & 0xFFFF);
+        assertEquals(VertexPacking.packNormal(0, 1, 0), half.getInt(36));
+
+        final ByteBuffer full = ByteBuffer.allocate(2 * VertexPacking.vertexSize(false, false));
+        VertexPacking.putVertices(full, positions, textCoords, new float[0], false, false);
+        assertEquals(20, VertexPacking.vertexSize(false, false));
+        assertEquals(full.capacity(), full.position());
+        assertEquals(0.25f, full.getFloat(16));
+        assertEquals(6f, full.getFloat(28));
+    }
+
+    @Test
+    void putVerticesWritesZerosForMissingAttributes() {
+        final ByteBuffer buffer = ByteBuffer.allocate(VertexPacking.vertexSize(false, true));
+        VertexPacking.putVertices(buffer, new float[]{1, 2, 3}, new float[0], new float[0], false, true);
+        assertEquals(0f, buffer.getFloat(12));
+        assertEquals(0f, buffer.getFloat(16));
+        assertEquals(0, buffer.getInt(20));
+    }
+
+    private static int bits(final float value) {
+        return VertexPacking.toHalfFloat(value) & 0xFFFF;
+    }
+
+    private static float fromHalfFloat(final short half) {
+        final int bits = half & 0xFFFF;
+        final int exponent = (bits >>> 10) & 0x1F;
+        final int mantissa = bits & 0x3FF;
+        final float magnitude = exponent == 0
+                ? mantissa * 0x1p-24f
+                : (1 + mantissa / 1024f) * (float) Math.pow(2, exponent - 15);
+        return (bits & 0x8000) != 0 ? -magnitude : magnitude;
+    }
+
+    private static float unpackComponent(final int bits) {
+        // Sign extend the 10 bit value
+        return ((bits & 0x3FF) << 22 >> 22) / 511f;
+    }
+}